@@ -704,6 +704,16 @@ var text20 = {},
              *  to true. Otherwise keep it for for performance reasons */
             registerHighVolumeListeners: false,
 
+            /** Performance. If the plugin supports it, batches are sent in a
+             *  compact, delta encoded format. Only disable this for debugging. */
+            compactBatches: true,
+
+            /** Performance. Sends all plugin callbacks of a frame in one call
+             *  and drops outdated gaze samples, at the cost of up to one frame
+             *  of latency. Plugins not supporting this ignore it. */
+            coalescedCallbacks: false,
+            transmitRate: 60,              // Frames per second with coalescedCallbacks
+
             /** List of 3rd party extensions to load. See the documentation
              *  for more info on how to write extensions. */
             extensions : [],
@@ -823,7 +833,7 @@ var text20 = {},
 
         /** Adds a listener to a given channel */
         listener: function(channel, fct){
-            var supportedChannels = ["INITIALIZED", "reducedApplicationGaze", "fixation", "specialCallback", "perusal", "headPosition", "weakSaccade"];
+            var supportedChannels = ["INITIALIZED", "reducedApplicationGaze", "fixation", "specialCallback", "perusal", "headPosition", "weakSaccade", "enterExitGaze"];
 
             // Safety check
             if (supportedChannels.indexOf(channel) < 0) {
@@ -848,6 +858,7 @@ var text20 = {},
                 transmitWindowVisibility: function(isVisible) {},
                 transmitElementRemoved: function(id) {},
                 transmitElementPositionAnchor: function(id, anchor) {},
+                transmitElementFlag: function(id, flag, value) {},
                 transmitBrowserGeometry: function(x, y, w, h) {},
                 preference: function(key, value) {},
                 transmitElement: function(id, type, content, x, y, w, h) {},
@@ -866,6 +877,12 @@ var text20 = {},
                     appletID: "m8doaaas33a",            // ID of our applet
                     offset: null,                       // Browser offset to use
                     batch: null,                        // Batch call for bulk transmission
+                    compact: {                          // State of the compact batch format
+                        version: 0,                     // Version the plugin understands, 0 if none
+                        started: false,                 // If the plugin has seen our numbers
+                        next: 0,                        // Next numeric element id
+                        elements: {}                    // What the plugin knows about each element
+                    },
                     loadIndicator: this.loadIndicator,  // TODO: What does this do?
                     times: {
                         jsinit: new Date().getTime(),
@@ -880,6 +897,7 @@ var text20 = {},
                 batch: function() {
 
                     var batch = {},
+                        compact = this.variables.compact,
                         browserFlag = [],
                         elementGeometry = [],
                         elementMeta = []
@@ -899,10 +917,72 @@ var text20 = {},
                         elementGeometry.push({id:id, type:type, content:content, x:x, y:y, w:w, h:h});
                     }
 
-                    /** Generate a batch call */
-                    batch.generateBatchCalls = function(){
+                    /** Generate a single compact batch call (see CompactBatchDecoder) */
+                    batch.generateCompactCall = function(){
+                        var records = ["~2"],
+                            elements = compact.elements
+
+                        // Tell the plugin to forget old numbers the first time
+                        if (!compact.started) {
+                            records.push("R")
+                            compact.started = true
+                        }
+
+                        // Returns what the plugin knows about an element, defines it if necessary
+                        var element = function(id) {
+                            var e = elements[id]
+                            if (!e) {
+                                e = elements[id] = { n: (compact.next++).toString(36), x: 0, y: 0, w: 0, h: 0, type: null, content: null }
+                                records.push("D" + e.n + "," + encodeURIComponent(id))
+                            }
+                            return e
+                        }
+
+                        browserFlag.forEach(function(f){
+                            var value = (f.flag === true || f.flag == "true") ? 1 : 0
+                            records.push("F" + element(f.id).n + "," + encodeURIComponent(f.type) + "," + value)
+
+                            // The plugin forgets removed elements as well
+                            if (value && f.type == "REMOVED") delete elements[f.id]
+                        })
+
+                        elementMeta.forEach(function(m){
+                            records.push("M" + element(m.id).n + "," + encodeURIComponent(m.key) + "," + encodeURIComponent(m.value))
+                        })
+
+                        elementGeometry.forEach(function(g){
+                            var e = element(g.id),
+                                x = Math.round(g.x), y = Math.round(g.y),
+                                w = Math.round(g.w), h = Math.round(g.h),
+                                mask = 0,
+                                fields = ""
+
+                            // Only changed fields, numbers relative to what we sent last time
+                            if (x != e.x) { mask |= 1; fields += "," + (x - e.x).toString(36); e.x = x }
+                            if (y != e.y) { mask |= 2; fields += "," + (y - e.y).toString(36); e.y = y }
+                            if (w != e.w) { mask |= 4; fields += "," + (w - e.w).toString(36); e.w = w }
+                            if (h != e.h) { mask |= 8; fields += "," + (h - e.h).toString(36); e.h = h }
+                            if (g.type != null && g.type != e.type) { mask |= 16; fields += "," + encodeURIComponent(g.type); e.type = g.type }
+                            if (g.content != null && g.content != e.content) { mask |= 32; fields += "," + encodeURIComponent(g.content); e.content = g.content }
+
+                            records.push("G" + e.n + "," + mask.toString(36) + fields)
+                        })
+
+                        return records.join(";")
+                    }
+
+                    /** Generate a batch call, textual ones only if requested */
+                    batch.generateBatchCalls = function(textual){
                         var rval = []
 
+                        // Use the compact format if the plugin understands it
+                        if (!textual && compact.version >= 2 && connector.config.compactBatches) {
+                            if (browserFlag.length + elementMeta.length + elementGeometry.length > 0)
+                                rval.push(batch.generateCompactCall())
+
+                            return rval
+                        }
+
                         // TODO: Generalize calls with single method
 
                         var assembler = function(prefix, array, keyset) {
@@ -979,13 +1059,27 @@ var text20 = {},
                 /** Ends the current batch call and executes it */
                 endBatch: function(){
                     var batch = this.variables.batch,
-                        engine = this.variables.engine
+                        engine = this.variables.engine,
+                        compact = this.variables.compact
 
                     if (!batch) return;
 
                     // Execute each call
                     batch.generateBatchCalls().forEach(function(c){
-                        engine.batch(c);
+                        // The plugin could not decode a compact batch and applied nothing of it.
+                        // Start over with absolute values, and if that fails as well, fall back
+                        // to the textual format for this batch.
+                        if (String(engine.batch(c)) != "R") return
+
+                        compact.started = false
+                        compact.elements = {}
+                        if (String(engine.batch(batch.generateCompactCall())) != "R") return
+
+                        compact.started = false
+                        compact.elements = {}
+                        batch.generateBatchCalls(true).forEach(function(t){
+                            engine.batch(t);
+                        })
                     })
 
                     this.variables.batch = null;
@@ -1059,6 +1153,11 @@ var text20 = {},
                     onRawPerusal: function(_speed, _x, _y, _w, _h, text){
                         connector.connection.handler.generic("perusal", ["speed", "x", "y", "w", "h", "text"], parseFloat(_speed), parseInt(_x), parseInt(_y), parseInt(_w), parseInt(_h), text)
                     },
+
+                    /** Called when the gaze entered or left an element flagged for it */
+                    onRawEnterExitGaze: function(_id, _type){
+                        connector.connection.handler.generic("enterExitGaze", ["id", "type"], "" + _id, "" + _type)
+                    },
                 },
 
                 /** Called when the plugin is ready */
@@ -1091,6 +1190,13 @@ var text20 = {},
                                 return;
                             }
 
+                            // Older plugins only understand textual batches
+                            try {
+                                self.variables.compact.version = parseInt(engine.getBatchVersion()) || 0
+                            } catch (e) {
+                                self.variables.compact.version = 0
+                            }
+
                             text20.browser.log("Starting to load extensions.");
 
                             // Check if we can query extensions (what is causing these problems?!!?)
@@ -1144,6 +1250,7 @@ var text20 = {},
                             self.registerCallback("fixation", self.handler.onRawFixation);
                             self.registerCallback("perusal", self.handler.onRawPerusal);
                             self.registerCallback("weakSaccade", self.handler.onRawWeakSaccade);
+                            self.registerCallback("enterExitGaze", self.handler.onRawEnterExitGaze);
 
                             // Only register the high volume listeners if there is a need
                             if(connector.config.registerHighVolumeListeners) {
@@ -1205,6 +1312,42 @@ var text20 = {},
 
 
 
+                /** Called with all callbacks of a frame in COALESCED mode. Calls are separated by
+                 *  ';', fields by ','. The first field is the function name, all others are
+                 *  arguments prefixed by their type (n)umber, (b)oolean, (s)tring or (u) for null. */
+                onFrame: function(frame){
+                    String(frame).split(";").forEach(function(call) {
+                        if (!call) return;
+
+                        var fields = call.split(","),
+                            fnc = window[decodeURIComponent(fields[0])],
+                            args = [];
+
+                        if (!fnc) return;
+
+                        for (var i = 1; i < fields.length; i++) {
+                            var v = fields[i].substr(1)
+
+                            switch (fields[i].charAt(0)) {
+                                case "n": args.push(Number(v)); break;
+                                case "b": args.push(v == "1"); break;
+                                case "s": args.push(decodeURIComponent(v)); break;
+                                default: args.push(null);
+                            }
+                        }
+
+                        // A failing listener must not take the rest of the frame with it
+                        try {
+                            fnc.apply(window, args)
+                        }
+                        catch (e) {
+                            text20.browser.log("onFrame() failure : " + e);
+                        }
+                    })
+                },
+
+
+
                 /** Connect the applet to the plugin, i.e., activate gaze! */
                 connect: function(){
                     // Assemble extension string
@@ -1221,6 +1364,8 @@ var text20 = {},
                                           "<param name='braintrackingconnection' value='" + connector.config.brainTrackingURL + "'>" +
                                           "<param name='callbackprefix' value='" + callbacks.prefix() + "'>" +
                                           "<param name='transmitmode' value='" + connector.config.transmitMode + "'>" +
+                                          "<param name='coalescedcallbacks' value='" + connector.config.coalescedCallbacks + "'>" +
+                                          "<param name='transmitrate' value='" + connector.config.transmitRate + "'>" +
                                           "<param name='sessionpath' value='" + connector.config.sessionPath + "'>" +
                                           "<param name='recordingenabled' value='" + connector.config.recordingEnabled + "'>" +
                                           "<param name='extensions' value='" + allExtensions + "'>" +
@@ -1281,6 +1426,8 @@ var text20 = {},
                         braintrackingconnection: connector.config.brainTrackingURL,
                         callbackprefix: callbacks.prefix(),
                         transmitmode: connector.config.transmitMode,
+                        coalescedcallbacks: connector.config.coalescedCallbacks,
+                        transmitrate: connector.config.transmitRate,
                         sessionpath: connector.config.sessionPath,
                         recordingenabled: connector.config.recordingEnabled,
                         extensions: allExtensions,
@@ -1303,6 +1450,7 @@ var text20 = {},
                     // Prepare special callbacks
                     callbacks.register("_augmentedTextStatusFunction", this.onStatus)
                     callbacks.register("specialCallback", this.onSpecialCallback)
+                    callbacks.register("_augmentedTextFrameFunction", this.onFrame)
 
                     // Initialize cache
                     this.variables.transmitCache.create("windowPosition")
@@ -1376,6 +1524,20 @@ var text20 = {},
                 },
 
 
+                /** Transmits an arbitrary element flag (e.g., CALLBACK_ENTER_EXIT_GAZE) */
+                transmitElementFlag: function(id, flag, value) {
+                    this.enginecheck(function(e, v, s) {
+                        // If we have a batch call, call that one
+                        if (v.batch) {
+                            v.batch.updateElementFlag(id, flag, value);
+                            return;
+                        }
+
+                        e.updateElementFlag(id, flag, value);
+                    })
+                },
+
+
                /** Transmits the browser's outline */
                transmitBrowserGeometry: function(x, y, w, h) {
                     this.enginecheck(function(e, v, s) {
@@ -1991,6 +2153,25 @@ var text20 = {},
             connector.connection.endBatch();
         },
 
+        /**
+         * Asks the engine to report when the gaze enters or leaves the given (registered)
+         * elements. Transitions arrive on the "enterExitGaze" channel with the element's 
+         * id and the type "ENTER" or "EXIT", so there is no need to poll the gaze.
+         *
+         * @param {Object} element
+         * @param {Object} enabled false to stop reporting, defaults to true
+         */
+        trackEnterExit: function(element, enabled){
+            if(!element) return;
+            if(!element.forEach) element = [element]
+
+            var value = enabled === undefined ? true : !!enabled
+
+            element.forEach(function(e) {
+                connector.connection.transmitElementFlag(dom.ensureID(e), "CALLBACK_ENTER_EXIT_GAZE", value);
+            })
+        },
+
 
 
         /** Call when everything is set up and ready to go */
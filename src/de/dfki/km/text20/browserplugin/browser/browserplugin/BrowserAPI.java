@@ -74,8 +74,20 @@ public interface BrowserAPI {
      * times with the given parameters each.
      * 
      * @param call The batch call. See the JavaScript code how batch calls are being assembled.
+     * @return <code>null</code>, or <code>"R"</code> if the call was a corrupt compact batch.
+     * Nothing of it was applied then, and the page has to forget its numeric IDs and send it 
+     * again with absolute values (since 1.4).
      */
-    public void batch(String call);
+    public String batch(String call);
+
+    /**
+     * Returns the latest version of the compact batch format this plugin understands. 
+     * Older pages keep using the textual format, which is still supported.
+     * 
+     * @return The version of the compact batch format.
+     * @since 1.4
+     */
+    public int getBatchVersion();
 
     /**
      * Calls a function from one of the registered extensions. 
@@ -24,8 +24,12 @@ package de.dfki.km.text20.browserplugin.browser.browserplugin.impl;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Logger;
 
+import de.dfki.km.text20.browserplugin.browser.browserplugin.BrowserAPI;
+import de.dfki.km.text20.browserplugin.services.pagemanager.PageManager;
+
 /**
  * Handles batch calls.
  * 
@@ -34,32 +38,79 @@ import java.util.logging.Logger;
  */
 public class BatchHandler {
     /** */
-    private final BrowserPluginImpl browserAPI;
-    
+    private final BrowserAPI browserAPI;
+
+    /** Groups the updates of a batch */
+    private final PageManager pageManager;
+
     /** */
     final Logger logger = Logger.getLogger(this.getClass().getName());
 
+    /** Handles compact batches */
+    private final CompactBatchDecoder compactDecoder;
+
     /**
      * Constructs a new batch handler.
      * 
      * @param browserAPI
+     * @param pageManager
      */
-    public BatchHandler(BrowserPluginImpl browserAPI) {
+    public BatchHandler(BrowserAPI browserAPI, PageManager pageManager) {
         this.browserAPI = browserAPI;
+        this.pageManager = pageManager;
+        this.compactDecoder = new CompactBatchDecoder();
+    }
+
+    /**
+     * Called with a JS batch call, either in the textual or in the compact 
+     * format (see {@link CompactBatchDecoder}). The call is decoded first and then 
+     * applied at once, so the page is only locked while the updates are applied.
+     * 
+     * @param call
+     * @return <code>null</code>, or {@link CompactBatchDecoder#RESYNC} if a compact batch 
+     * was corrupt and has to be sent again.
+     */
+    public synchronized String batch(String call) {
+        final List<ElementUpdate> updates = CompactBatchDecoder.isCompact(call) ? this.compactDecoder.parse(call) : decode(call);
+        if (updates == null) return CompactBatchDecoder.RESYNC;
+
+        apply(updates);
+        return null;
+    }
+
+    /**
+     * Applies the decoded updates of a batch at once, so the gaze thread never sees half 
+     * of them.
+     * 
+     * @param updates
+     */
+    private void apply(final List<ElementUpdate> updates) {
+        if (updates.isEmpty()) return;
+
+        this.pageManager.beginUpdate();
+        try {
+            for (final ElementUpdate update : updates) {
+                update.apply(this.browserAPI);
+            }
+        } finally {
+            this.pageManager.commitUpdate();
+        }
     }
 
     /**
-     * Called with a JS batch call.
+     * Decodes a textual batch call.
      * 
      * @param call
+     * @return The updates up to the first broken one.
      */
-    public void batch(String call) {
+    private List<ElementUpdate> decode(String call) {
+        final List<ElementUpdate> rval = new ArrayList<ElementUpdate>();
 
         // Check where the actual call name ends
         final int indexOf = call.indexOf("(");
         if (indexOf < 0) {
             this.logger.warning("Batch: Wrong call syntax!");
-            return;
+            return rval;
         }
 
         // Extract method names and parameters
@@ -81,9 +132,9 @@ public class BatchHandler {
                         bool = false;
                     } else {
                         this.logger.warning("Batch: Not a boolean!");
-                        return;
+                        return rval;
                     }
-                    this.browserAPI.updateElementFlag(argument[0], argument[1], bool);
+                    rval.add(ElementUpdate.flag(argument[0], argument[1], bool));
                 } else {
                     this.logger.warning("Batch: Wrong number of elements!");
                 }
@@ -93,7 +144,7 @@ public class BatchHandler {
         if (method.equals("updateElementMeta")) {
             for (final String[] argument : splittedArguments) {
                 if (argument.length == 3) {
-                    this.browserAPI.updateElementMetaInformation(argument[0], argument[1], argument[2]);
+                    rval.add(ElementUpdate.meta(argument[0], argument[1], argument[2]));
                 } else {
                     this.logger.warning("Batch: Wrong number of elements!");
                 }
@@ -119,7 +170,7 @@ public class BatchHandler {
                             e.printStackTrace();
                         }
 
-                        this.browserAPI.updateElementGeometry(argument[0], type, content, Integer.parseInt(argument[3]), Integer.parseInt(argument[4]), Integer.parseInt(argument[5]), Integer.parseInt(argument[6]));
+                        rval.add(ElementUpdate.geometry(argument[0], type, content, Integer.parseInt(argument[3]), Integer.parseInt(argument[4]), Integer.parseInt(argument[5]), Integer.parseInt(argument[6])));
 
                     } catch (final NumberFormatException e) {
                         this.logger.warning("Batch: Not a number");
@@ -129,6 +180,8 @@ public class BatchHandler {
                 }
             }
         }
+
+        return rval;
     }
 
 }
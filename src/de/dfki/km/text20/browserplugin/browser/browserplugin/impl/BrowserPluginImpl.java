@@ -35,6 +35,8 @@ import java.net.URI;
 import java.net.URL;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -96,9 +98,15 @@ import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingListener;
 public class BrowserPluginImpl extends Applet implements JSExecutor, BrowserAPI {
     /** Indicates how JavaScript calls should be made from the Applet. */
     public static enum TransmitMode {
-        ASYNC, DIRECT
+        ASYNC, DIRECT, COALESCED
     }
 
+    /** Channels whose calls only matter until the next sample arrives (used in COALESCED mode) */
+    private static final Collection<String> SAMPLE_CHANNELS = Arrays.asList("rawGaze", "rawApplicationGaze", "reducedApplicationGaze", "headPosition");
+
+    /** Receives our frames in COALESCED mode */
+    private static final String FRAME_FUNCTION = "_augmentedTextFrameFunction";
+
     /** The build number of this release */
     private final String buildNumber;
     
@@ -151,7 +159,10 @@ public class BrowserPluginImpl extends Applet implements JSExecutor, BrowserAPI
     final int instanceID = new Random().nextInt();
 
     /** Handles calls with many objects */
-    final BatchHandler batchHandler = new BatchHandler(this);
+    private BatchHandler batchHandler;
+
+    /** Collects JavaScript calls into frames */
+    final JSCallCoalescer coalescer = new JSCallCoalescer();
 
     /** If the diagnosis should be enabled */
     boolean diagnosisEnabled;
@@ -193,8 +204,18 @@ public class BrowserPluginImpl extends Applet implements JSExecutor, BrowserAPI
      * .lang.String)
      */
     @Override
-    public void batch(final String call) {
-        this.batchHandler.batch(call);
+    public String batch(final String call) {
+        return this.batchHandler.batch(call);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see de.dfki.km.text20.browserplugin.browser.browserplugin.BrowserAPI#getBatchVersion()
+     */
+    @Override
+    public int getBatchVersion() {
+        return CompactBatchDecoder.VERSION;
     }
 
     /*
@@ -251,6 +272,7 @@ public class BrowserPluginImpl extends Applet implements JSExecutor, BrowserAPI
     public void destroy() {
         System.out.println("BrowserPluginImpl.destroy()");
         this.diagnosis.status("destroy/call");
+        this.coalescer.stop();
         this.pluginManager.shutdown();
     }
 
@@ -310,6 +332,14 @@ public class BrowserPluginImpl extends Applet implements JSExecutor, BrowserAPI
             return null;
         }
 
+        // Sent with the next frame, which is cheap for high frequency callbacks
+        if (this.transmitMode.equals(TransmitMode.COALESCED)) {
+            this.diagnosis.status("executejsfunction/call/coalesced");
+            this.coalescer.enqueue(function, args);
+            this.diagnosis.status("executejsfunction/end");
+            return null;
+        }
+
         // This is the ugly way (Safari likes it)
         if (this.transmitMode.equals(TransmitMode.ASYNC)) {
             this.diagnosis.status("executejsfunction/call/async");
@@ -366,7 +396,7 @@ public class BrowserPluginImpl extends Applet implements JSExecutor, BrowserAPI
      */
     @Override
     public String[][] getParameterInfo() {
-        return new String[][] { { "transmitmode", "string", "What to use to call JavaScript" }, { "trackingdevice", "string", "Identifies the device handler" }, { "trackingconnection", "url", "If it is a remote device, where to contact?" }, { "sessionpath", "string", "Save all stuff to what?" }, { "callbackprefix", "string", "Appended to all callbacks from the applet via liveconnect." } };
+        return new String[][] { { "transmitmode", "string", "What to use to call JavaScript" }, { "trackingdevice", "string", "Identifies the device handler" }, { "trackingconnection", "url", "If it is a remote device, where to contact?" }, { "sessionpath", "string", "Save all stuff to what?" }, { "callbackprefix", "string", "Appended to all callbacks from the applet via liveconnect." }, { "transmitrate", "int", "Frames per second in COALESCED transmit mode" }, { "coalescedcallbacks", "boolean", "Use the COALESCED transmit mode, ignored by older plugins" } };
     }
 
     /*
@@ -421,6 +451,7 @@ public class BrowserPluginImpl extends Applet implements JSExecutor, BrowserAPI
         this.pseudorender = this.pluginManager.getPlugin(PseudorendererManager.class).createPseudorenderer();
         this.gazeHandler = this.pluginManager.getPlugin(MasterGazeHandlerManager.class).createMasterGazeHandler(this, this.pseudorender);
         this.pageManager = this.pluginManager.getPlugin(PageManagerManager.class).createPageManager(this.pseudorender);
+        this.batchHandler = new BatchHandler(this, this.pageManager);
         this.diagnosis = this.pluginManager.getPlugin(Diagnosis.class).channel(BrowserPluginTracer.class);
 
         
@@ -474,6 +505,8 @@ public class BrowserPluginImpl extends Applet implements JSExecutor, BrowserAPI
         this.diagnosis.status("registerlistener/call", new OptionInfo("type", type), new OptionInfo("listener", listener));
         this.sessionRecorder.registerListener(type, listener);
         this.gazeHandler.registerJSCallback(type, listener);
+
+        if (SAMPLE_CHANNELS.contains(type)) this.coalescer.addSupersedable(this.callbackPrefix + listener);
     }
 
     /*
@@ -486,6 +519,13 @@ public class BrowserPluginImpl extends Applet implements JSExecutor, BrowserAPI
     public void removeListener(final String listener) {
         this.diagnosis.status("removelistener/call", new OptionInfo("listener", listener));
         this.sessionRecorder.removeListener(listener);
+
+        // Registrations for other sample channels keep the function supersedable
+        for (final String type : SAMPLE_CHANNELS) {
+            if (this.gazeHandler.getHandlerForType(type).contains(listener))
+                this.coalescer.releaseSupersedable(this.callbackPrefix + listener);
+        }
+
         this.gazeHandler.removeJSCallback(listener);
     }
 
@@ -721,10 +761,42 @@ public class BrowserPluginImpl extends Applet implements JSExecutor, BrowserAPI
         this.diagnosis.status("processadditional/start");
 
         // Initialize the transmission mode. Determines how Java calls Javascript.
-        this.transmitMode = TransmitMode.valueOf($(getParameter("transmitmode")).get("DIRECT").toUpperCase());
+        final String mode = $(getParameter("transmitmode")).get("DIRECT").toUpperCase();
+        try {
+            this.transmitMode = TransmitMode.valueOf(mode);
+        } catch (final IllegalArgumentException e) {
+            this.diagnosis.status("processadditional/param/invalid", new OptionInfo("param", "transmitmode"), new OptionInfo("value", mode));
+            this.transmitMode = TransmitMode.DIRECT;
+        }
+
+        // Pages opt in with a parameter of its own, which older plugins simply ignore
+        if ($(getParameter("coalescedcallbacks")).get("false").equals("true"))
+            this.transmitMode = TransmitMode.COALESCED;
+
         this.callbackPrefix = $(getParameter("callbackprefix")).get("");
 
         this.diagnosis.status("processadditional/param", new OptionInfo("param", "transmitmode"), new OptionInfo("value", this.transmitMode));
+
+        // In COALESCED mode all calls of a frame are sent at once
+        if (this.transmitMode.equals(TransmitMode.COALESCED)) {
+            final String rate = $(getParameter("transmitrate")).get("" + JSCallCoalescer.DEFAULT_RATE);
+
+            int transmitRate;
+            try {
+                transmitRate = Integer.parseInt(rate.trim());
+            } catch (final NumberFormatException e) {
+                transmitRate = -1;
+            }
+
+            if (transmitRate <= 0) {
+                this.diagnosis.status("processadditional/param/invalid", new OptionInfo("param", "transmitrate"), new OptionInfo("value", rate));
+                transmitRate = JSCallCoalescer.DEFAULT_RATE;
+            }
+
+            this.coalescer.start(this, this.callbackPrefix + FRAME_FUNCTION, transmitRate, this.diagnosis);
+            this.diagnosis.status("processadditional/param", new OptionInfo("param", "transmitrate"), new OptionInfo("value", Integer.valueOf(transmitRate)));
+        }
+
         this.diagnosis.status("processadditional/param", new OptionInfo("param", "callbackprefix"), new OptionInfo("value", this.callbackPrefix));
         this.diagnosis.status("processadditional/param", new OptionInfo("param", "extensions"), new OptionInfo("value", getParameter("extensions")));
 
@@ -0,0 +1,292 @@
+/*
+ * CompactBatchDecoder.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.browserplugin.browser.browserplugin.impl;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Decodes compact batch calls. A compact batch starts with <code>~</code> and the protocol 
+ * version, followed by <code>;</code> separated records whose fields are separated by 
+ * <code>,</code>. Numbers are signed and in base 36, strings are URI encoded. The records
+ * of version 2 are:<br/><br/>
+ * 
+ * <ul>
+ * <li><code>R</code> - Forgets all numeric IDs.</li>
+ * <li><code>D&lt;num&gt;,&lt;id&gt;</code> - Binds a numeric ID to an element ID.</li>
+ * <li><code>F&lt;num&gt;,&lt;flag&gt;,&lt;0|1&gt;</code> - Updates an element flag.</li>
+ * <li><code>M&lt;num&gt;,&lt;key&gt;,&lt;value&gt;</code> - Updates an element's meta information.</li>
+ * <li><code>G&lt;num&gt;,&lt;mask&gt;[,dx][,dy][,dw][,dh][,type][,content]</code> - Updates 
+ * an element's geometry. The mask tells which fields are present (x = 1, y = 2, w = 4, h = 8, 
+ * type = 16, content = 32), the numbers are relative to the last geometry of that element and 
+ * missing fields did not change.</li>
+ * </ul>
+ * 
+ * The batch is parsed in a single pass without splitting it, and the {@link BatchHandler} 
+ * only applies it if it could be parsed completely. Otherwise all numeric IDs are forgotten 
+ * and {@link #RESYNC} is returned, telling the page to start over with an <code>R</code> 
+ * record and absolute values, since its delta base already moved on. Not thread safe.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public class CompactBatchDecoder {
+
+    /** The protocol version we understand */
+    public static final int VERSION = 2;
+
+    /** Returned if the page has to forget its numeric IDs and send the batch again */
+    public static final String RESYNC = "R";
+
+    /** Mask bits of geometry records */
+    private static final int X = 1, Y = 2, W = 4, H = 8, TYPE = 16, CONTENT = 32;
+
+    /** */
+    final Logger logger = Logger.getLogger(this.getClass().getName());
+
+    /** Elements by their numeric ID */
+    private final Map<Integer, Element> elements = new HashMap<Integer, Element>();
+
+    /** The batch we decode */
+    private String call;
+
+    /** Current position in the batch */
+    private int position;
+
+    /** Updates decoded so far */
+    private List<ElementUpdate> updates;
+
+    /**
+     * Checks if the call is a compact batch.
+     * 
+     * @param call
+     * @return True if it is.
+     */
+    public static boolean isCompact(final String call) {
+        return call.length() > 0 && call.charAt(0) == '~';
+    }
+
+    /**
+     * Parses a compact batch without executing it.
+     * 
+     * @param batch
+     * @return The updates of the batch, or <code>null</code> if it was corrupt.
+     */
+    List<ElementUpdate> parse(final String batch) {
+        this.call = batch;
+        this.position = 1;
+        this.updates = new ArrayList<ElementUpdate>();
+
+        try {
+            final int version = (int) number();
+            if (version != VERSION)
+                throw new IllegalArgumentException("Unsupported version " + version);
+
+            while (this.position < this.call.length()) {
+                expect(';');
+                record();
+            }
+
+            return this.updates;
+        } catch (final IllegalArgumentException e) {
+            this.logger.warning("Batch: " + e.getMessage() + " at " + this.position + ", requesting resync");
+
+            // The page's delta base is not ours anymore
+            this.elements.clear();
+            return null;
+        } finally {
+            this.call = null;
+            this.updates = null;
+        }
+    }
+
+    /**
+     * Decodes a single record.
+     */
+    private void record() {
+        if (this.position >= this.call.length()) throw new IllegalArgumentException("Missing record");
+
+        final char type = this.call.charAt(this.position++);
+
+        if (type == 'R') {
+            this.elements.clear();
+            return;
+        }
+
+        final Integer num = Integer.valueOf((int) number());
+
+        if (type == 'D') {
+            expect(',');
+            this.elements.put(num, new Element(string()));
+            return;
+        }
+
+        final Element element = this.elements.get(num);
+        if (element == null) throw new IllegalArgumentException("Unknown element " + num);
+
+        switch (type) {
+        case 'F':
+            expect(',');
+            final String flag = string();
+            expect(',');
+            final boolean value = number() != 0;
+
+            this.updates.add(ElementUpdate.flag(element.id, flag, value));
+
+            // Removed elements get a new number when they come back
+            if (value && flag.equals("REMOVED")) this.elements.remove(num);
+            break;
+
+        case 'M':
+            expect(',');
+            final String key = string();
+            expect(',');
+            this.updates.add(ElementUpdate.meta(element.id, key, string()));
+            break;
+
+        case 'G':
+            expect(',');
+            final int mask = (int) number();
+
+            if ((mask & X) != 0) element.x += field();
+            if ((mask & Y) != 0) element.y += field();
+            if ((mask & W) != 0) element.w += field();
+            if ((mask & H) != 0) element.h += field();
+            if ((mask & TYPE) != 0) {
+                expect(',');
+                element.type = string();
+            }
+            if ((mask & CONTENT) != 0) {
+                expect(',');
+                element.content = string();
+            }
+
+            this.updates.add(ElementUpdate.geometry(element.id, element.type, element.content, element.x, element.y, element.w, element.h));
+            break;
+
+        default:
+            throw new IllegalArgumentException("Unknown record " + type);
+        }
+    }
+
+    /**
+     * @return The next number field.
+     */
+    private int field() {
+        expect(',');
+        return (int) number();
+    }
+
+    /**
+     * Reads a signed base 36 number.
+     * 
+     * @return The number.
+     */
+    private long number() {
+        boolean negative = false;
+        if (this.position < this.call.length() && this.call.charAt(this.position) == '-') {
+            negative = true;
+            this.position++;
+        }
+
+        final int start = this.position;
+        long rval = 0;
+
+        while (this.position < this.call.length()) {
+            final int digit = Character.digit(this.call.charAt(this.position), 36);
+            if (digit < 0) break;
+
+            rval = rval * 36 + digit;
+            this.position++;
+        }
+
+        if (this.position == start) throw new IllegalArgumentException("Not a number");
+
+        return negative ? -rval : rval;
+    }
+
+    /**
+     * Reads an URI encoded string, only strings containing escapes are decoded.
+     * 
+     * @return The string.
+     */
+    private String string() {
+        final int start = this.position;
+        boolean escaped = false;
+
+        while (this.position < this.call.length()) {
+            final char c = this.call.charAt(this.position);
+            if (c == ',' || c == ';') break;
+            if (c == '%') escaped = true;
+
+            this.position++;
+        }
+
+        final String rval = this.call.substring(start, this.position);
+        if (!escaped) return rval;
+
+        // Other than the URLDecoder, encodeURIComponent() does not use '+' for spaces
+        try {
+            return URLDecoder.decode(rval.replace("+", "%2B"), "UTF-8");
+        } catch (final UnsupportedEncodingException e) {
+            throw new IllegalArgumentException("Unsupported encoding");
+        }
+    }
+
+    /**
+     * Consumes the given separator.
+     * 
+     * @param c
+     */
+    private void expect(final char c) {
+        if (this.position >= this.call.length() || this.call.charAt(this.position) != c)
+            throw new IllegalArgumentException("Expected '" + c + "'");
+
+        this.position++;
+    }
+
+    /**
+     * What we know about an element.
+     */
+    private static class Element {
+        /** */
+        final String id;
+
+        /** Last geometry */
+        int x, y, w, h;
+
+        /** Last type and content */
+        String type, content;
+
+        /**
+         * @param id
+         */
+        Element(final String id) {
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * ElementUpdate.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.browserplugin.browser.browserplugin.impl;
+
+import de.dfki.km.text20.browserplugin.browser.browserplugin.BrowserAPI;
+
+/**
+ * A decoded element update of a batch, so that batches can be checked completely before 
+ * anything of them is applied.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+abstract class ElementUpdate {
+
+    /**
+     * Applies the update.
+     * 
+     * @param browserAPI The API to call.
+     */
+    abstract void apply(BrowserAPI browserAPI);
+
+    /**
+     * @param id
+     * @param flag
+     * @param value
+     * @return An update of an element flag.
+     */
+    static ElementUpdate flag(final String id, final String flag, final boolean value) {
+        return new ElementUpdate() {
+            @Override
+            void apply(final BrowserAPI browserAPI) {
+                browserAPI.updateElementFlag(id, flag, value);
+            }
+        };
+    }
+
+    /**
+     * @param id
+     * @param key
+     * @param value
+     * @return An update of an element's meta information.
+     */
+    static ElementUpdate meta(final String id, final String key, final String value) {
+        return new ElementUpdate() {
+            @Override
+            void apply(final BrowserAPI browserAPI) {
+                browserAPI.updateElementMetaInformation(id, key, value);
+            }
+        };
+    }
+
+    /**
+     * @param id
+     * @param type
+     * @param content
+     * @param x
+     * @param y
+     * @param w
+     * @param h
+     * @return An update of an element's geometry.
+     */
+    static ElementUpdate geometry(final String id, final String type,
+                                  final String content, final int x, final int y,
+                                  final int w, final int h) {
+        return new ElementUpdate() {
+            @Override
+            void apply(final BrowserAPI browserAPI) {
+                browserAPI.updateElementGeometry(id, type, content, x, y, w, h);
+            }
+        };
+    }
+}
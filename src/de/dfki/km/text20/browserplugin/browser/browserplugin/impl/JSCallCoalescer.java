@@ -0,0 +1,340 @@
+/*
+ * JSCallCoalescer.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.browserplugin.browser.browserplugin.impl;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import net.xeoh.plugins.diagnosis.local.DiagnosisChannel;
+import net.xeoh.plugins.diagnosis.local.options.status.OptionInfo;
+import netscape.javascript.JSObject;
+
+/**
+ * Collects outbound JavaScript calls and sends them as frames, i.e., one LiveConnect call 
+ * per frame instead of one per callback. Calls to functions marked as supersedable (like 
+ * raw gaze positions) replace their pending predecessor, so only the latest one per frame 
+ * reaches the browser. All other calls are delivered in order.<br/><br/>
+ * 
+ * A frame is a single string passed to the dispatch function. Calls are separated by 
+ * <code>;</code>, fields by <code>,</code>. The first field is the URI-encoded function 
+ * name, each following field an argument, prefixed by its type: <code>n</code> (number),
+ * <code>b</code> (boolean, <code>1</code> or <code>0</code>), <code>s</code> (URI-encoded 
+ * string) or <code>u</code> (null).
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public class JSCallCoalescer {
+    /** Frames per second if none or an invalid rate was given */
+    public static final int DEFAULT_RATE = 60;
+
+    /** A pending call */
+    static class Call {
+        /** The function to call */
+        final String function;
+
+        /** Its arguments */
+        final Object[] args;
+
+        /**
+         * @param function
+         * @param args
+         */
+        Call(final String function, final Object[] args) {
+            this.function = function;
+            this.args = args;
+        }
+    }
+
+    /** The plugin whose window we call, set on start */
+    private BrowserPluginImpl browserPlugin;
+
+    /** Reports problems, set on start */
+    private DiagnosisChannel<String> diagnosis;
+
+    /** Functions of which only the latest call per frame is delivered, and how often they were marked */
+    private final Map<String, Integer> supersedable = new HashMap<String, Integer>();
+
+    /** Calls for the next frame, superseded ones are <code>null</code> */
+    private List<Call> pending = new ArrayList<Call>();
+
+    /** Position of the latest call in the pending list for supersedable functions */
+    private final Map<String, Integer> latest = new HashMap<String, Integer>();
+
+    /** Sends our frames */
+    private ScheduledExecutorService scheduler;
+
+    /** The JavaScript function receiving our frames */
+    private String dispatchFunction;
+
+    /** Number of enqueued calls */
+    private long calls = 0;
+
+    /** Number of calls that were replaced by a newer one */
+    private long superseded = 0;
+
+    /** Number of sent frames */
+    private long frames = 0;
+
+    /**
+     * Starts sending frames.
+     * 
+     * @param browserPlugin The plugin whose window we call.
+     * @param function The JavaScript function receiving the frames.
+     * @param rate Number of frames per second, {@link #DEFAULT_RATE} is used if it is not positive.
+     * @param diagnosis Receives problems sending frames.
+     */
+    public synchronized void start(final BrowserPluginImpl browserPlugin,
+                                   final String function, final int rate,
+                                   final DiagnosisChannel<String> diagnosis) {
+        if (this.scheduler != null) return;
+
+        this.browserPlugin = browserPlugin;
+        this.diagnosis = diagnosis;
+
+        int framesPerSecond = rate;
+        if (framesPerSecond <= 0) {
+            this.diagnosis.status("coalescer/start/rate/invalid", new OptionInfo("rate", Integer.valueOf(rate)), new OptionInfo("default", Integer.valueOf(DEFAULT_RATE)));
+            framesPerSecond = DEFAULT_RATE;
+        }
+
+        this.dispatchFunction = function;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, "JSCallCoalescer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        final long period = TimeUnit.SECONDS.toMicros(1) / framesPerSecond;
+        this.scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, period, period, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Stops sending frames. Pending calls are discarded.
+     */
+    public synchronized void stop() {
+        if (this.scheduler == null) return;
+
+        this.scheduler.shutdownNow();
+        this.scheduler = null;
+        this.pending.clear();
+        this.latest.clear();
+    }
+
+    /**
+     * Specifies that only the latest call to the given function per frame should be 
+     * delivered. The function stays supersedable until {@link #releaseSupersedable(String)} 
+     * was called as often as this method, so that it can be registered for several channels.
+     * 
+     * @param function The (prefixed) function name.
+     */
+    public synchronized void addSupersedable(final String function) {
+        final Integer count = this.supersedable.get(function);
+        this.supersedable.put(function, Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+    }
+
+    /**
+     * Undoes one call of {@link #addSupersedable(String)}. Once the last one is undone, all 
+     * calls to the function are delivered again.
+     * 
+     * @param function The (prefixed) function name.
+     */
+    public synchronized void releaseSupersedable(final String function) {
+        final Integer count = this.supersedable.get(function);
+        if (count == null) return;
+
+        if (count.intValue() > 1) {
+            this.supersedable.put(function, Integer.valueOf(count.intValue() - 1));
+        } else {
+            this.supersedable.remove(function);
+        }
+    }
+
+    /**
+     * Adds a call to the next frame.
+     * 
+     * @param function The (prefixed) function name.
+     * @param args The arguments.
+     */
+    public synchronized void enqueue(final String function, final Object... args) {
+        this.calls++;
+
+        if (this.supersedable.containsKey(function)) {
+            final Integer previous = this.latest.put(function, Integer.valueOf(this.pending.size()));
+            if (previous != null) {
+                this.pending.set(previous.intValue(), null);
+                this.superseded++;
+            }
+        }
+
+        this.pending.add(new Call(function, args));
+    }
+
+    /**
+     * Sends all pending calls as one frame. Called by our scheduler, but may also be 
+     * called directly. Before we were started the frame is only taken from the queue.
+     * 
+     * @return The encoded frame, or <code>null</code> if no calls were pending.
+     */
+    public String flush() {
+        final List<Call> calls;
+        final BrowserPluginImpl plugin;
+        final String function;
+
+        synchronized (this) {
+            if (this.pending.isEmpty()) return null;
+
+            calls = this.pending;
+            this.pending = new ArrayList<Call>(calls.size());
+            this.latest.clear();
+            this.frames++;
+
+            plugin = this.browserPlugin;
+            function = this.dispatchFunction;
+        }
+
+        final String frame = encode(calls);
+
+        final JSObject window = plugin == null ? null : plugin.window;
+        if (window == null) return frame;
+
+        try {
+            window.call(function, new Object[] { frame });
+        } catch (final Exception e) {
+            report("coalescer/flush/exception", e);
+        }
+
+        return frame;
+    }
+
+    /**
+     * Returns the number of calls enqueued so far.
+     * 
+     * @return The number of calls.
+     */
+    public synchronized long getCalls() {
+        return this.calls;
+    }
+
+    /**
+     * Returns the number of calls dropped because a newer call to the same function arrived 
+     * within the same frame.
+     * 
+     * @return The number of superseded calls.
+     */
+    public synchronized long getSuperseded() {
+        return this.superseded;
+    }
+
+    /**
+     * Returns the number of frames sent so far.
+     * 
+     * @return The number of frames.
+     */
+    public synchronized long getFrames() {
+        return this.frames;
+    }
+
+    /**
+     * Reports a problem through the plugin's diagnosis.
+     * 
+     * @param status
+     * @param e
+     */
+    private void report(final String status, final Exception e) {
+        final DiagnosisChannel<String> channel;
+        synchronized (this) {
+            channel = this.diagnosis;
+        }
+
+        if (channel != null) channel.status(status, new OptionInfo("message", e.getMessage()));
+    }
+
+    /**
+     * Encodes the given calls into a frame.
+     * 
+     * @param calls The calls, <code>null</code> entries are skipped.
+     * @return The frame string.
+     */
+    String encode(final List<Call> calls) {
+        final StringBuilder sb = new StringBuilder();
+
+        for (final Call call : calls) {
+            if (call == null) continue;
+
+            if (sb.length() > 0) sb.append(';');
+            sb.append(uriEncode(call.function));
+
+            if (call.args == null) continue;
+
+            for (final Object arg : call.args) {
+                sb.append(',');
+
+                if (arg == null) {
+                    sb.append('u');
+                } else if (arg instanceof Number) {
+                    sb.append('n');
+                    sb.append(arg);
+                } else if (arg instanceof Boolean) {
+                    sb.append('b');
+                    sb.append(((Boolean) arg).booleanValue() ? '1' : '0');
+                } else {
+                    sb.append('s');
+                    sb.append(uriEncode(arg.toString()));
+                }
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Encodes the string so that JavaScript's <code>decodeURIComponent()</code> restores it.
+     * 
+     * @param string
+     * @return The encoded string.
+     */
+    private String uriEncode(final String string) {
+        try {
+            return URLEncoder.encode(string, "UTF-8").replace("+", "%20");
+        } catch (final UnsupportedEncodingException e) {
+            report("coalescer/encode/exception", e);
+            return "";
+        }
+    }
+}
@@ -26,6 +26,7 @@ import java.util.List;
 import de.dfki.km.text20.browserplugin.browser.browserplugin.BrowserAPI;
 import de.dfki.km.text20.services.evaluators.gaze.GazeEvaluator;
 import de.dfki.km.text20.services.evaluators.gaze.util.filter.ChainedFilter;
+import de.dfki.km.text20.services.pseudorenderer.util.HitTestCache;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingDevice;
 
 /**
@@ -98,4 +99,12 @@ public interface MasterGazeHandler {
      */
     public ChainedFilter getMasterFilterChain();
 
-}
\ No newline at end of file
+    /**
+     * Returns the cache handlers should use to query elements. It is cleared for every 
+     * tracking event, so all handlers looking at the same sample share their results.
+     * 
+     * @return The hit test cache.
+     * @since 1.4
+     */
+    public HitTestCache getHitTestCache();
+}
@@ -35,6 +35,7 @@ import de.dfki.km.text20.browserplugin.browser.browserplugin.JSExecutor;
 import de.dfki.km.text20.browserplugin.services.mastergazehandler.MasterGazeHandler;
 import de.dfki.km.text20.browserplugin.services.mastergazehandler.diagnosis.channels.tracing.MasterGazeHandlerTracer;
 import de.dfki.km.text20.browserplugin.services.mastergazehandler.impl.gazehandler.AbstractGazeHandler;
+import de.dfki.km.text20.browserplugin.services.mastergazehandler.impl.gazehandler.enterexit.EnterExitGazeHandler;
 import de.dfki.km.text20.browserplugin.services.mastergazehandler.impl.gazehandler.fixation.FixationHandler;
 import de.dfki.km.text20.browserplugin.services.mastergazehandler.impl.gazehandler.reading.PerusalHandler;
 import de.dfki.km.text20.browserplugin.services.mastergazehandler.impl.gazehandler.saccade.WeakSaccadeHandler;
@@ -49,6 +50,7 @@ import de.dfki.km.text20.services.evaluators.gaze.util.filter.centralpoint.Centr
 import de.dfki.km.text20.services.evaluators.gaze.util.filter.centralpoint.VirtualMedianFilter;
 import de.dfki.km.text20.services.evaluators.gaze.util.filter.displacement.ReferenceBasedDisplacementFilter;
 import de.dfki.km.text20.services.pseudorenderer.Pseudorenderer;
+import de.dfki.km.text20.services.pseudorenderer.util.HitTestCache;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingDevice;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingListener;
@@ -97,6 +99,9 @@ public class MasterGazeHandlerImpl implements MasterGazeHandler {
     /** Responsible for tracing messages */
     final DiagnosisChannel<String> diagnosis;
 
+    /** Element queries of the current sample */
+    final HitTestCache hitTestCache;
+
     // AbstractFilter filter = new SpakovFilter(5, 8, 12);
     // AbstractFilter filter = new FixedSmoothingFilter(20);
     // AbstractFilter filter = new EmptyFilter();
@@ -112,6 +117,7 @@ public class MasterGazeHandlerImpl implements MasterGazeHandler {
         this.browserPlugin = browserPlugin;
         this.pseudorenderer = pseudorenderer;
         this.pluginManager = pluginManager;
+        this.hitTestCache = new HitTestCache(pseudorenderer);
 
         this.diagnosis = this.pluginManager.getPlugin(Diagnosis.class).channel(MasterGazeHandlerTracer.class);
     }
@@ -231,6 +237,7 @@ public class MasterGazeHandlerImpl implements MasterGazeHandler {
         this.allGazeHandler.add(new PerusalHandler());
         this.allGazeHandler.add(new HeadPositionHandler());
         this.allGazeHandler.add(new WeakSaccadeHandler());
+        this.allGazeHandler.add(new EnterExitGazeHandler());
 
         // Initialize them
         for (final AbstractGazeHandler gazeHandler : this.allGazeHandler) {
@@ -243,6 +250,7 @@ public class MasterGazeHandlerImpl implements MasterGazeHandler {
             @Override
             public void newTrackingEvent(final EyeTrackingEvent event) {
                 MasterGazeHandlerImpl.this.lastObservedTime.set(event.getObservationTime());
+                MasterGazeHandlerImpl.this.hitTestCache.nextSample();
 
                 // If we're past switchoff time
                 if (MasterGazeHandlerImpl.this.lastObservedTime.get() > MasterGazeHandlerImpl.this.switchReducedOffAt.get()) {
@@ -266,4 +274,12 @@ public class MasterGazeHandlerImpl implements MasterGazeHandler {
     public ChainedFilter getMasterFilterChain() {
         return this.filter;
     }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.browserplugin.services.mastergazehandler.MasterGazeHandler#getHitTestCache()
+     */
+    @Override
+    public HitTestCache getHitTestCache() {
+        return this.hitTestCache;
+    }
 }
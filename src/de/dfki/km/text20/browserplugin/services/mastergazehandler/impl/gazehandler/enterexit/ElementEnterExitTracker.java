@@ -0,0 +1,249 @@
+/*
+ * ElementEnterExitTracker.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.browserplugin.services.mastergazehandler.impl.gazehandler.enterexit;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.dfki.km.text20.services.pseudorenderer.CoordinatesType;
+import de.dfki.km.text20.services.pseudorenderer.Pseudorenderer;
+import de.dfki.km.text20.services.pseudorenderer.PseudorendererChanges;
+import de.dfki.km.text20.services.pseudorenderer.RenderElement;
+import de.dfki.km.text20.services.pseudorenderer.RenderElementMetaAttribute;
+import de.dfki.km.text20.services.pseudorenderer.options.getallelementsintersecting.OptionOnlyValid;
+import de.dfki.km.text20.services.pseudorenderer.util.HitTestCache;
+import de.dfki.km.text20.services.pseudorenderer.util.PseudorendererSubscription;
+import de.dfki.km.text20.services.pseudorenderer.util.elements.RenderElementUtil;
+
+/**
+ * Keeps track of which elements marked with {@link RenderElementMetaAttribute#CALLBACK_ENTER_EXIT_GAZE} 
+ * contain the gaze. An element is entered once the gaze stayed on it for the minimum dwell 
+ * time, and exited once the gaze left its bounds grown by the hysteresis margin, once the 
+ * gaze left the page, or once the element was removed or unsubscribed. Listeners are only 
+ * notified on these transitions.<br/><br/>
+ * 
+ * Elements below the gaze are obtained from the renderer's spatial index, so the cost of 
+ * a sample depends on the elements around the gaze point and the elements currently 
+ * entered, not on the size of the page. Not thread safe.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public class ElementEnterExitTracker {
+
+    /**
+     * Receives the transitions.
+     */
+    public static interface TransitionListener {
+        /**
+         * Called when the gaze entered an element.
+         * 
+         * @param element The element.
+         * @param time Time of the sample.
+         */
+        public void elementEntered(RenderElement element, long time);
+
+        /**
+         * Called when the gaze left an element.
+         * 
+         * @param element The element.
+         * @param time Time of the sample.
+         */
+        public void elementExited(RenderElement element, long time);
+    }
+
+    /** Renderer we track */
+    private final Pseudorenderer pseudorenderer;
+
+    /** Used to query the elements under the gaze */
+    private final HitTestCache hitTestCache;
+
+    /** Tells us which elements were removed */
+    private final PseudorendererSubscription subscription;
+
+    /** Receives the transitions */
+    private final TransitionListener listener;
+
+    /** Number of pixels the gaze may leave an entered element before it is exited */
+    private final int hysteresis;
+
+    /** Time the gaze has to stay on an element before it is entered */
+    private final long minDwell;
+
+    /** Elements under the gaze which have not been entered yet, and since when they are */
+    private final Map<RenderElement, Long> candidates = new HashMap<RenderElement, Long>();
+
+    /** Elements entered */
+    private final Set<RenderElement> entered = new HashSet<RenderElement>();
+
+    /** Scratch rectangle */
+    private final Rectangle bounds = new Rectangle();
+
+    /**
+     * Creates a new tracker.
+     * 
+     * @param pseudorenderer The renderer containing the elements.
+     * @param hitTestCache Used to query elements.
+     * @param listener Receives the transitions.
+     * @param hysteresis Number of pixels the gaze may leave an entered element.
+     * @param minDwell Time in ms the gaze has to stay on an element before it is entered.
+     */
+    public ElementEnterExitTracker(final Pseudorenderer pseudorenderer,
+                                   final HitTestCache hitTestCache,
+                                   final TransitionListener listener,
+                                   final int hysteresis, final long minDwell) {
+        this.pseudorenderer = pseudorenderer;
+        this.hitTestCache = hitTestCache;
+        this.listener = listener;
+        this.hysteresis = hysteresis;
+        this.minDwell = minDwell;
+        this.subscription = new PseudorendererSubscription(pseudorenderer);
+    }
+
+    /**
+     * Processes the next gaze sample. If the gaze is not on the page (the sample was invalid, 
+     * the page is hidden or the point is outside the window), nothing is under the gaze and 
+     * all entered elements are exited.
+     * 
+     * @param point The (filtered) gaze point in screen coordinates, or <code>null</code> if 
+     * the gaze is not on the page.
+     * @param time The time of the sample.
+     */
+    public void update(final Point point, final long time) {
+        forgetRemoved(time);
+
+        final Point p = this.pseudorenderer.convertPoint(point, CoordinatesType.SCREEN_BASED, CoordinatesType.DOCUMENT_BASED);
+
+        // Collect the subscribed elements under the gaze
+        final List<RenderElement> hits = new ArrayList<RenderElement>();
+        if (p != null) {
+            for (final RenderElement element : this.hitTestCache.getAllElementsIntersecting(new Rectangle(p.x, p.y, 1, 1), CoordinatesType.DOCUMENT_BASED, new OptionOnlyValid())) {
+                if (isSubscribed(element)) hits.add(element);
+            }
+        }
+
+        // Exit elements we left
+        final Iterator<RenderElement> iterator = this.entered.iterator();
+        while (iterator.hasNext()) {
+            final RenderElement element = iterator.next();
+
+            if (p != null && isSubscribed(element) && RenderElementUtil.geometry(element, CoordinatesType.DOCUMENT_BASED, this.bounds) != null) {
+                this.bounds.grow(this.hysteresis, this.hysteresis);
+                if (this.bounds.contains(p)) continue;
+            }
+
+            iterator.remove();
+            this.listener.elementExited(element, time);
+        }
+
+        // Candidates have to stay under the gaze
+        this.candidates.keySet().retainAll(hits);
+
+        // And enter those which stayed long enough
+        for (final RenderElement element : hits) {
+            if (this.entered.contains(element)) continue;
+
+            Long since = this.candidates.get(element);
+            if (since == null) {
+                since = Long.valueOf(time);
+                this.candidates.put(element, since);
+            }
+
+            if (time - since.longValue() < this.minDwell) continue;
+
+            this.candidates.remove(element);
+            this.entered.add(element);
+            this.listener.elementEntered(element, time);
+        }
+    }
+
+    /**
+     * Returns if the gaze is currently considered to be on the element.
+     * 
+     * @param element The element to check.
+     * @return True if it has been entered and not exited yet.
+     */
+    public boolean isEntered(final RenderElement element) {
+        return this.entered.contains(element);
+    }
+
+    /**
+     * Drops elements removed from the renderer, entered ones are exited.
+     * 
+     * @param time
+     */
+    private void forgetRemoved(final long time) {
+        if (this.entered.isEmpty() && this.candidates.isEmpty()) {
+            this.subscription.resync();
+            return;
+        }
+
+        final PseudorendererChanges changes = this.subscription.poll();
+        if (!changes.isComplete()) {
+            // We missed changes, so we check against all elements still present
+            final Set<RenderElement> present = new HashSet<RenderElement>(this.subscription.resync().getElements());
+            forget(present, false, time);
+            return;
+        }
+
+        if (changes.getRemoved().isEmpty()) return;
+        forget(new HashSet<RenderElement>(changes.getRemoved()), true, time);
+    }
+
+    /**
+     * @param elements
+     * @param removed True if the elements were removed, false if they are the ones still present.
+     * @param time
+     */
+    private void forget(final Set<RenderElement> elements, final boolean removed,
+                        final long time) {
+        if (removed) {
+            this.candidates.keySet().removeAll(elements);
+        } else {
+            this.candidates.keySet().retainAll(elements);
+        }
+
+        final Iterator<RenderElement> iterator = this.entered.iterator();
+        while (iterator.hasNext()) {
+            final RenderElement element = iterator.next();
+            if (elements.contains(element) != removed) continue;
+
+            iterator.remove();
+            this.listener.elementExited(element, time);
+        }
+    }
+
+    /**
+     * @param element
+     * @return True if the element wants enter / exit callbacks.
+     */
+    private static boolean isSubscribed(final RenderElement element) {
+        return Boolean.TRUE.equals(element.getMetaAttribute(RenderElementMetaAttribute.CALLBACK_ENTER_EXIT_GAZE));
+    }
+}
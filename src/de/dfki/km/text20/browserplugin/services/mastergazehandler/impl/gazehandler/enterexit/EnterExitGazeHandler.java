@@ -0,0 +1,117 @@
+/*
+ * EnterExitGazeHandler.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.browserplugin.services.mastergazehandler.impl.gazehandler.enterexit;
+
+import java.util.List;
+
+import de.dfki.km.text20.browserplugin.services.mastergazehandler.impl.gazehandler.AbstractGazeHandler;
+import de.dfki.km.text20.browserplugin.services.mastergazehandler.impl.gazehandler.enterexit.ElementEnterExitTracker.TransitionListener;
+import de.dfki.km.text20.services.evaluators.gaze.GazeEvaluator;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.raw.RawGazeEvent;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.raw.RawGazeListener;
+import de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener.OptionSynchronous;
+import de.dfki.km.text20.services.pseudorenderer.PseudorendererStatus;
+import de.dfki.km.text20.services.pseudorenderer.RenderElement;
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEventValidity;
+
+/**
+ * Calls the <code>enterExitGaze</code> handlers with the element ID and <code>ENTER</code> 
+ * or <code>EXIT</code> whenever the filtered gaze enters or leaves an element flagged 
+ * with <code>CALLBACK_ENTER_EXIT_GAZE</code>.
+ *
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public class EnterExitGazeHandler extends AbstractGazeHandler {
+
+    /** Number of pixels the gaze may leave an element before we exit it */
+    private static final int HYSTERESIS = 10;
+
+    /** Time in ms the gaze has to stay on an element before we enter it */
+    private static final long MIN_DWELL = 80;
+
+    /** Tracks the elements under gaze, created on first use */
+    private ElementEnterExitTracker tracker;
+
+    /**
+     * Handles the next event
+     *
+     * @param event
+     */
+    protected void handleEvent(final EyeTrackingEvent event) {
+        final List<String> handler = this.masterGazeHandler.getHandlerForType("enterExitGaze");
+        if (handler.size() == 0) return;
+
+        // If the page is not visible or we don't know where the gaze is, nothing is under it
+        final boolean onPage = this.pseudorenderer.getStatus().contains(PseudorendererStatus.VISIBLE) && event.areValid(EyeTrackingEventValidity.CENTER_POSITION_VALID);
+
+        if (this.tracker == null) {
+            if (!onPage) return;
+
+            this.tracker = new ElementEnterExitTracker(this.pseudorenderer, this.masterGazeHandler.getHitTestCache(), new TransitionListener() {
+                @Override
+                public void elementEntered(final RenderElement element, final long time) {
+                    dispatch(element, "ENTER");
+                }
+
+                @Override
+                public void elementExited(final RenderElement element, final long time) {
+                    dispatch(element, "EXIT");
+                }
+            }, HYSTERESIS, MIN_DWELL);
+        }
+
+        this.tracker.update(onPage ? event.getGazeCenter() : null, event.getObservationTime());
+    }
+
+    /**
+     * Calls all handler.
+     * 
+     * @param element
+     * @param type
+     */
+    void dispatch(final RenderElement element, final String type) {
+        for (final String h : this.masterGazeHandler.getHandlerForType("enterExitGaze")) {
+            this.browserPlugin.executeJSFunction(h, element.getIdentifier(), type);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.browserplugin.services.mastergazehandler.impl.gazehandler.AbstractGazeHandler#registerToEvaluator(de.dfki.km.text20.services.evaluators.gaze.GazeEvaluator)
+     */
+    @Override
+    protected void registerToEvaluator(final GazeEvaluator evaluator) {
+        evaluator.addEvaluationListener(new RawGazeListener() {
+
+            @Override
+            public void newEvaluationEvent(final RawGazeEvent event) {
+                handleEvent(event.getTrackingEvent());
+            }
+
+            @Override
+            public boolean requireUnfilteredEvents() {
+                return false;
+            }
+        }, new OptionSynchronous());
+    }
+}
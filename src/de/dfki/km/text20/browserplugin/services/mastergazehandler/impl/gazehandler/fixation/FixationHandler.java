@@ -34,6 +34,7 @@ import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.Fixatio
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationListener;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.util.FixationUtil;
 import de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener.OptionFixationParameters;
+import de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener.OptionSynchronous;
 import de.dfki.km.text20.services.pseudorenderer.CoordinatesType;
 import de.dfki.km.text20.services.pseudorenderer.PseudorendererStatus;
 
@@ -89,6 +90,6 @@ public class FixationHandler extends AbstractGazeHandler {
             public void newEvaluationEvent(final FixationEvent event) {
                 handleEvent(event);
             }
-        }, fixationParameters);
+        }, fixationParameters, new OptionSynchronous());
     }
 }
@@ -72,7 +72,7 @@ public class ReadingHandlerOld extends AbstractGazeHandler {
     @SuppressWarnings("unused")
     private RenderElement getTextualElementAt(final Point p) {
         // Get element at gaze point
-        final Collection<RenderElement> elementsAt = this.pseudorenderer.getAllElementsIntersecting(new Rectangle(p, new Dimension(1, 1)), CoordinatesType.SCREEN_BASED);
+        final Collection<RenderElement> elementsAt = this.masterGazeHandler.getHitTestCache().getAllElementsIntersecting(new Rectangle(p, new Dimension(1, 1)), CoordinatesType.SCREEN_BASED);
         for (final RenderElement renderElement : elementsAt) {
             // Check that the element is visible
             if (!renderElement.isVisible()) {
@@ -101,7 +101,7 @@ public class ReadingHandlerOld extends AbstractGazeHandler {
         region.y -= 100;
 
         // Update elements in region.
-        final Collection<RenderElement> allElementsIntersecting = this.pseudorenderer.getAllElementsIntersecting(region, CoordinatesType.SCREEN_BASED);
+        final Collection<RenderElement> allElementsIntersecting = this.masterGazeHandler.getHitTestCache().getAllElementsIntersecting(region, CoordinatesType.SCREEN_BASED);
 
         for (final RenderElement renderElement : allElementsIntersecting) {
             this.displacementFilter.updateRenderElement(renderElement);
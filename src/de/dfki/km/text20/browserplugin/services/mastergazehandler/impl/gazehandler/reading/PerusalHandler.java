@@ -28,6 +28,7 @@ import de.dfki.km.text20.browserplugin.services.mastergazehandler.impl.gazehandl
 import de.dfki.km.text20.services.evaluators.gaze.GazeEvaluator;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.perusal.PerusalEvent;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.perusal.PerusalListener;
+import de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener.OptionSynchronous;
 import de.dfki.km.text20.services.pseudorenderer.Pseudorenderer;
 import de.dfki.km.text20.services.pseudorenderer.PseudorendererStatus;
 
@@ -78,6 +79,6 @@ public class PerusalHandler extends AbstractGazeHandler {
             public Pseudorenderer getPseudorenderer() {
                 return PerusalHandler.this.pseudorenderer;
             }
-        });
+        }, new OptionSynchronous());
     }
 }
@@ -28,6 +28,7 @@ import de.dfki.km.text20.services.evaluators.gaze.GazeEvaluator;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.saccade.SaccadeEvent;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.saccade.WeakSaccadeListener;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.saccade.util.SaccadeUtil;
+import de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener.OptionSynchronous;
 import de.dfki.km.text20.services.pseudorenderer.PseudorendererStatus;
 
 /**
@@ -71,6 +72,6 @@ public class WeakSaccadeHandler extends AbstractGazeHandler {
             public void newEvaluationEvent(SaccadeEvent event) {
                 handleEvent(event);
             }
-        });
+        }, new OptionSynchronous());
     }
 }
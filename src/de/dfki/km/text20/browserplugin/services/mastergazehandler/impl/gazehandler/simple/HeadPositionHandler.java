@@ -27,6 +27,7 @@ import de.dfki.km.text20.browserplugin.services.mastergazehandler.impl.gazehandl
 import de.dfki.km.text20.services.evaluators.gaze.GazeEvaluator;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.raw.RawGazeEvent;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.raw.RawGazeListener;
+import de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener.OptionSynchronous;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
 
 /**
@@ -43,11 +44,12 @@ public class HeadPositionHandler extends AbstractGazeHandler {
 
         // Execute rawGaze handler
         final List<String> handler = this.masterGazeHandler.getHandlerForType("headPosition");
-        float[] headPosition = event.getHeadPosition();
 
         // Call only every 2nd turn (improves performance)
         if (this.i++ % 2 == 0) return;
 
+        final float[] headPosition = event.getHeadPosition();
+
         for (final String h : handler) {
             this.browserPlugin.executeJSFunction(h, event.getObservationTime(), headPosition[0], headPosition[1], headPosition[2]);
         }
@@ -70,6 +72,6 @@ public class HeadPositionHandler extends AbstractGazeHandler {
             public boolean requireUnfilteredEvents() {
                 return false;
             }
-        });
+        }, new OptionSynchronous());
     }
 }
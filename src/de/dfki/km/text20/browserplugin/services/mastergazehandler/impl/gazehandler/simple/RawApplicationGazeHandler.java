@@ -28,6 +28,7 @@ import de.dfki.km.text20.browserplugin.services.mastergazehandler.impl.gazehandl
 import de.dfki.km.text20.services.evaluators.gaze.GazeEvaluator;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.raw.RawGazeEvent;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.raw.RawGazeListener;
+import de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener.OptionSynchronous;
 import de.dfki.km.text20.services.pseudorenderer.CoordinatesType;
 import de.dfki.km.text20.services.pseudorenderer.PseudorendererStatus;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
@@ -78,6 +79,6 @@ public class RawApplicationGazeHandler extends AbstractGazeHandler {
             public boolean requireUnfilteredEvents() {
                 return false;
             }
-        });
+        }, new OptionSynchronous());
     }
 }
@@ -21,14 +21,15 @@
  */
 package de.dfki.km.text20.browserplugin.services.mastergazehandler.impl.gazehandler.simple;
 
-import java.awt.Point;
 import java.util.List;
 
 import de.dfki.km.text20.browserplugin.services.mastergazehandler.impl.gazehandler.AbstractGazeHandler;
 import de.dfki.km.text20.services.evaluators.gaze.GazeEvaluator;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.raw.RawGazeEvent;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.raw.RawGazeListener;
+import de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener.OptionSynchronous;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
+import de.dfki.km.text20.services.trackingdevices.eyes.util.EyeTrackingEventUtil;
 
 /**
  * @author Ralf Biedert
@@ -42,9 +43,10 @@ public class RawGazeHandler extends AbstractGazeHandler {
 
         // Execute rawGaze handler
         final List<String> handler = this.masterGazeHandler.getHandlerForType("rawGaze");
-        final Point gaze = event.getGazeCenter();
+        final int x = EyeTrackingEventUtil.gazeX(event);
+        final int y = EyeTrackingEventUtil.gazeY(event);
         for (final String h : handler) {
-            this.browserPlugin.executeJSFunction(h, event.getObservationTime(), gaze.x, gaze.y);
+            this.browserPlugin.executeJSFunction(h, event.getObservationTime(), x, y);
         }
     }
 
@@ -65,6 +67,6 @@ public class RawGazeHandler extends AbstractGazeHandler {
             public boolean requireUnfilteredEvents() {
                 return false;
             }
-        });
+        }, new OptionSynchronous());
     }
 }
@@ -22,6 +22,7 @@
 package de.dfki.km.text20.browserplugin.services.pagemanager;
 
 import de.dfki.km.text20.services.pseudorenderer.Pseudorenderer;
+import de.dfki.km.text20.services.pseudorenderer.util.layout.TextLayoutIndex;
 
 /**
  * Handles the information the web page provides (e.g., window geometry and elements). It is 
@@ -84,4 +85,30 @@ public interface PageManager {
      */
     public void updateElementMetaInformation(String id, String key, String value);
 
-}
\ No newline at end of file
+    /**
+     * Starts a bulk update. All element updates until the matching {@link #commitUpdate()} 
+     * are published by the {@link Pseudorenderer} as a single version, together with its 
+     * index and snapshot. The elements themselves are updated in place, see 
+     * {@link Pseudorenderer#beginUpdate()}. Calls can be nested.
+     * 
+     * @since 1.4
+     */
+    public void beginUpdate();
+
+    /**
+     * Commits the bulk update started with {@link #beginUpdate()}. Must be called by the 
+     * same thread, usually in a <code>finally</code> block.
+     * 
+     * @since 1.4
+     */
+    public void commitUpdate();
+
+    /**
+     * Returns the layout of the textual elements of the page, which is kept up to date 
+     * with the element updates this manager receives.
+     * 
+     * @return The layout index.
+     * @since 1.4
+     */
+    public TextLayoutIndex getLayoutIndex();
+}
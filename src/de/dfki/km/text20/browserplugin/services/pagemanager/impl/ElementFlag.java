@@ -0,0 +1,64 @@
+/*
+ * ElementFlag.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.browserplugin.services.pagemanager.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Flags the web page can set on an element.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+enum ElementFlag {
+    /** The element was removed from the page */
+    REMOVED,
+
+    /** The page wants to know when the gaze enters or leaves the element */
+    CALLBACK_ENTER_EXIT_GAZE,
+
+    /** The element's data is not valid anymore */
+    INVALID,
+
+    /** The element does not scroll with the document */
+    FIXED_ON_WINDOW;
+
+    /** All flags by their name */
+    private static final Map<String, ElementFlag> byName = new HashMap<String, ElementFlag>();
+
+    static {
+        for (final ElementFlag flag : values()) {
+            byName.put(flag.name(), flag);
+        }
+    }
+
+    /**
+     * Resolves a flag name.
+     * 
+     * @param name The name as sent by the page.
+     * @return The flag, or <code>null</code> if we don't know it.
+     */
+    static ElementFlag forName(final String name) {
+        return name == null ? null : byName.get(name);
+    }
+}
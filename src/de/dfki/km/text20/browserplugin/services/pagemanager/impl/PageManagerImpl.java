@@ -23,8 +23,8 @@ package de.dfki.km.text20.browserplugin.services.pagemanager.impl;
 
 import java.awt.Point;
 import java.awt.Rectangle;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.xeoh.plugins.base.PluginManager;
 import net.xeoh.plugins.diagnosis.local.Diagnosis;
@@ -39,6 +39,7 @@ import de.dfki.km.text20.services.pseudorenderer.RenderElement;
 import de.dfki.km.text20.services.pseudorenderer.RenderElementMetaAttribute;
 import de.dfki.km.text20.services.pseudorenderer.renderelements.GraphicalRenderElement;
 import de.dfki.km.text20.services.pseudorenderer.renderelements.TextualRenderElement;
+import de.dfki.km.text20.services.pseudorenderer.util.layout.TextLayoutIndex;
 
 /**
  * @author Ralf Biedert
@@ -48,8 +49,8 @@ public class PageManagerImpl implements PageManager {
     /** In case we need a plugin */
     private final PluginManager pluginManager;
 
-    /** Maps IDs to render elements */
-    private final Map<String, RenderElement> id2element = new HashMap<String, RenderElement>();
+    /** Maps IDs to render elements, also read by the gaze thread */
+    private final Map<String, RenderElement> id2element = new ConcurrentHashMap<String, RenderElement>();
 
     /** Needed to register and retrieve elements */
     private final Pseudorenderer pseudorenderer;
@@ -57,6 +58,18 @@ public class PageManagerImpl implements PageManager {
     /** Responsible for tracing messages */
     private final DiagnosisChannel<String> diagnosis;
 
+    /** Lines and reading order of our textual elements */
+    private final TextLayoutIndex layoutIndex;
+
+    /** Nesting depth of bulk updates, only changed by the bulk thread while it holds the renderer lock */
+    private volatile int bulkDepth = 0;
+
+    /** Number of updates in the current bulk update, only changed by the bulk thread while it holds the renderer lock */
+    private volatile int bulkSize = 0;
+
+    /** Thread running the current bulk update, <code>null</code> if there is none */
+    private volatile Thread bulkThread;
+
     /**
      *
      * @param pluginManager
@@ -65,6 +78,7 @@ public class PageManagerImpl implements PageManager {
     public PageManagerImpl(final PluginManager pluginManager, final Pseudorenderer pseudorenderer) {
         this.pluginManager = pluginManager;
         this.pseudorenderer = pseudorenderer;
+        this.layoutIndex = new TextLayoutIndex(pseudorenderer);
 
         this.diagnosis = this.pluginManager.getPlugin(Diagnosis.class).channel(PageManagerTracer.class);
     }
@@ -107,7 +121,8 @@ public class PageManagerImpl implements PageManager {
      */
     @Override
     public void updateElementFlag(final String id, final String flag, final boolean value) {
-        this.diagnosis.status("updateElementFlag/start", new OptionInfo("id", id), new OptionInfo("flag", flag), new OptionInfo("value", Boolean.valueOf(value)));
+        if (tracing())
+            this.diagnosis.status("updateElementFlag/start", new OptionInfo("id", id), new OptionInfo("flag", flag), new OptionInfo("value", Boolean.valueOf(value)));
 
         if (id == null) {
             this.diagnosis.status("updateElementFlag/end/id/unusual", new OptionInfo("id", id));
@@ -125,20 +140,34 @@ public class PageManagerImpl implements PageManager {
             return;
         }
 
-        if (flag.equals("REMOVED") && value) {
+        final ElementFlag elementFlag = ElementFlag.forName(flag);
+        if (elementFlag == null) {
+            this.diagnosis.status("updateElementFlag/end/flag/unknown", new OptionInfo("flag", flag));
+            return;
+        }
+
+        if (!tracing()) this.bulkSize++;
+
+        switch (elementFlag) {
+        case REMOVED:
+            if (!value) break;
+
             this.id2element.remove(id);
+            this.layoutIndex.remove(renderElement);
             this.pseudorenderer.removeElement(renderElement);
-        }
+            break;
 
-        if (flag.equals("CALLBACK_ENTER_EXIT_GAZE")) {
+        case CALLBACK_ENTER_EXIT_GAZE:
             renderElement.setMetaAttribute(RenderElementMetaAttribute.CALLBACK_ENTER_EXIT_GAZE, Boolean.valueOf(value));
-        }
+            break;
 
-        if (flag.equals("INVALID")) {
+        case INVALID:
             renderElement.setMetaAttribute(RenderElementMetaAttribute.INVALID, Boolean.TRUE);
-        }
+            break;
+
+        case FIXED_ON_WINDOW:
+            if (!value) break;
 
-        if (flag.equals("FIXED_ON_WINDOW") && value) {
             if (renderElement.getCoordinatesType() == CoordinatesType.VIEWPORT_BASED) {
                 this.diagnosis.status("updateElementFlag/end/coordinatestype/viewportbased");
                 return;
@@ -147,9 +176,11 @@ public class PageManagerImpl implements PageManager {
             // TODO: Basically we assume our coordinates haven't changed much since then.
             final Rectangle geometry = renderElement.getGeometry(CoordinatesType.DOCUMENT_BASED);
             renderElement.setGeometry(geometry, CoordinatesType.VIEWPORT_BASED);
+            updateLayout(renderElement);
+            break;
         }
 
-        this.diagnosis.status("updateElementFlag/end");
+        if (tracing()) this.diagnosis.status("updateElementFlag/end");
     }
 
     /*
@@ -163,7 +194,7 @@ public class PageManagerImpl implements PageManager {
     public void updateElementGeometry(final String id, final String type,
                                       final String content, final int x, final int y,
                                       final int w, final int h) {
-        this.diagnosis.status("updateElementGeometry/start");
+        if (tracing()) this.diagnosis.status("updateElementGeometry/start");
 
         // If we have no ID, do nothing.
         if (id == null) {
@@ -213,7 +244,11 @@ public class PageManagerImpl implements PageManager {
         // Remember the element's id.
         this.id2element.put(id, element);
 
-        this.diagnosis.status("updateElementGeometry/end");
+        updateLayout(element);
+
+        if (!tracing()) this.bulkSize++;
+
+        if (tracing()) this.diagnosis.status("updateElementGeometry/end");
     }
 
     /*
@@ -224,7 +259,8 @@ public class PageManagerImpl implements PageManager {
      */
     @Override
     public void updateElementMetaInformation(String id, String key, String value) {
-        this.diagnosis.status("updateElementMetaInformation/start", new OptionInfo("id", id), new OptionInfo("key", key), new OptionInfo("value", value));
+        if (tracing())
+            this.diagnosis.status("updateElementMetaInformation/start", new OptionInfo("id", id), new OptionInfo("key", key), new OptionInfo("value", value));
         if (id == null || key == null || value == null) {
             this.diagnosis.status("updateElementMetaInformation/end/unusual");
             return;
@@ -254,6 +290,9 @@ public class PageManagerImpl implements PageManager {
         if (key.equals("textID")) {
             if (element instanceof TextualRenderElement)
                 ((TextualRenderElement) element).setTextID(Integer.parseInt(value));
+
+            // Lines are grouped by text
+            updateLayout(element);
         }
 
         if (key.equals("wordID")) {
@@ -261,6 +300,81 @@ public class PageManagerImpl implements PageManager {
                 ((TextualRenderElement) element).setWordID(Integer.parseInt(value));
         }
 
-        this.diagnosis.status("updateElementMetaInformation/end");
+        if (!tracing()) this.bulkSize++;
+
+        if (tracing()) this.diagnosis.status("updateElementMetaInformation/end");
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.dfki.km.text20.browserplugin.services.pagemanager.PageManager#getLayoutIndex()
+     */
+    @Override
+    public TextLayoutIndex getLayoutIndex() {
+        return this.layoutIndex;
+    }
+
+    /*
+     *
+     * (non-Javadoc)
+     *
+     * @see de.dfki.km.text20.browserplugin.services.pagemanager.PageManager#beginUpdate()
+     */
+    @Override
+    public void beginUpdate() {
+        // Traced before locking, so nobody waits for the diagnosis
+        if (tracing()) this.diagnosis.status("beginUpdate/call");
+
+        this.pseudorenderer.beginUpdate();
+
+        if (this.bulkDepth++ > 0) return;
+
+        this.bulkSize = 0;
+        this.bulkThread = Thread.currentThread();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.dfki.km.text20.browserplugin.services.pagemanager.PageManager#commitUpdate()
+     */
+    @Override
+    public void commitUpdate() {
+        int committed = -1;
+
+        try {
+            // Without a matching beginUpdate() we leave the counters alone, endUpdate() complains
+            if (this.bulkThread == Thread.currentThread() && this.bulkDepth > 0 && --this.bulkDepth == 0) {
+                committed = this.bulkSize;
+                this.bulkThread = null;
+            }
+        } finally {
+            this.pseudorenderer.endUpdate();
+        }
+
+        // Traced after unlocking, so nobody waits for the diagnosis
+        if (committed >= 0)
+            this.diagnosis.status("commitUpdate/call", new OptionInfo("updates", Integer.valueOf(committed)));
+    }
+
+    /**
+     * Per-update tracing is skipped inside bulk updates, which are traced as a whole. Updates
+     * of other threads are traced as usual.
+     *
+     * @return True if single updates should be traced.
+     */
+    private boolean tracing() {
+        return this.bulkThread != Thread.currentThread();
+    }
+
+    /**
+     * Updates the layout in case the element is textual.
+     *
+     * @param element
+     */
+    private void updateLayout(final RenderElement element) {
+        if (element instanceof TextualRenderElement)
+            this.layoutIndex.update((TextualRenderElement) element);
     }
 }
@@ -126,6 +126,7 @@ public class SessionStreamer implements Serializable {
         xstream.alias("RemoveListenerEvent", RemoveListenerEvent.class);
         xstream.alias("SetPreferenceEvent", SetPreferenceEvent.class);
         xstream.alias("EyeTrackingEventContainer", EyeTrackingEventContainer.class);
+        xstream.alias("TrackingEventContainer", EyeTrackingEventContainer.class); // Older sessions
         xstream.alias("EyeTrackingDeviceInformationContainer", EyeTrackingDeviceInformationContainer.class);
         xstream.alias("BrainTrackingEventContainer", BrainTrackingEventContainer.class);
         xstream.alias("BrainTrackingDeviceInformationContainer", BrainTrackingDeviceInformationContainer.class);
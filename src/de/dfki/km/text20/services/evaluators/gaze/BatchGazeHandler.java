@@ -0,0 +1,43 @@
+/*
+ * BatchGazeHandler.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.evaluators.gaze;
+
+import java.util.List;
+
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
+
+/**
+ * A {@link GazeHandler} that can process several events at once. The evaluator passes 
+ * whole batches to these handlers, all others receive the events one by one.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public interface BatchGazeHandler extends GazeHandler {
+    /**
+     * Called with a number of new (filtered) events, in the order they were observed. The
+     * list must not be modified and should not be kept after the call returns.
+     * 
+     * @param filteredEvents The events to process.
+     */
+    public void newTrackingEvents(final List<EyeTrackingEvent> filteredEvents);
+}
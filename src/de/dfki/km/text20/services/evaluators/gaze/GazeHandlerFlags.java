@@ -36,5 +36,36 @@ public enum GazeHandlerFlags {
     /**
      * Return this value if you need raw values (i.e., have newTrackingEvent being called).
      */
-    REQUIRE_RAW
+    REQUIRE_RAW,
+
+    /**
+     * If returned, the handler receives every event even if the evaluator is overloaded. 
+     * Otherwise events may be coalesced or dropped for this handler.
+     * 
+     * @since 1.4
+     */
+    REQUIRE_ALL_EVENTS,
+
+    /**
+     * If returned, the handler is never shed when the evaluator is overloaded.
+     * 
+     * @since 1.4
+     */
+    PRIORITY_HIGH,
+
+    /**
+     * If returned, the handler is the first to be shed when the evaluator is overloaded. 
+     * Return this if the handler is expensive and not essential.
+     * 
+     * @since 1.4
+     */
+    PRIORITY_LOW,
+
+    /**
+     * If returned, the handler is always called on the evaluator's thread, even if the 
+     * evaluator runs its handlers on parallel lanes.
+     * 
+     * @since 1.4
+     */
+    REQUIRE_SYNCHRONOUS
 }
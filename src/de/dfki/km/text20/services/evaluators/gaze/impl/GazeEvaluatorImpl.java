@@ -23,36 +23,92 @@ package de.dfki.km.text20.services.evaluators.gaze.impl;
 
 import static net.jcores.jre.CoreKeeper.$;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
+import net.xeoh.plugins.base.PluginConfiguration;
 import net.xeoh.plugins.base.PluginInformation;
 import net.xeoh.plugins.base.PluginInformation.Information;
 import net.xeoh.plugins.base.PluginManager;
-import net.xeoh.plugins.base.options.getplugin.OptionPluginSelector;
 import net.xeoh.plugins.base.options.getplugin.PluginSelector;
 import net.xeoh.plugins.base.util.OptionUtils;
+import net.xeoh.plugins.base.util.PluginManagerUtil;
+import net.xeoh.plugins.diagnosis.local.Diagnosis;
+import net.xeoh.plugins.diagnosis.local.DiagnosisChannel;
+import net.xeoh.plugins.diagnosis.local.options.status.OptionInfo;
+import de.dfki.km.text20.services.evaluators.gaze.BatchGazeHandler;
 import de.dfki.km.text20.services.evaluators.gaze.GazeEvaluationListener;
 import de.dfki.km.text20.services.evaluators.gaze.GazeEvaluator;
 import de.dfki.km.text20.services.evaluators.gaze.GazeFilter;
 import de.dfki.km.text20.services.evaluators.gaze.GazeHandler;
 import de.dfki.km.text20.services.evaluators.gaze.GazeHandlerFactory;
 import de.dfki.km.text20.services.evaluators.gaze.GazeHandlerFlags;
+import de.dfki.km.text20.services.evaluators.gaze.diagnosis.channels.tracer.GazeEvaluatorTracer;
 import de.dfki.km.text20.services.evaluators.gaze.options.AddGazeEvaluationListenerOption;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationListener;
+import de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener.OptionFixationParameters;
+import de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener.OptionFixationVelocity;
 import de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener.OptionRequestVersion;
+import de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener.OptionSynchronous;
 import de.dfki.km.text20.services.evaluators.gaze.options.spawnevaluator.OptionGazeEvaluator;
 import de.dfki.km.text20.services.evaluators.gaze.options.spawnevaluator.OptionGazeEvaluatorPassthrough;
+import de.dfki.km.text20.services.evaluators.gaze.util.filter.AbstractFilter;
+import de.dfki.km.text20.services.trackingdevices.eyes.BatchEyeTrackingListener;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingDevice;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
-import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingListener;
 
 /**
  * @author Ralf Biedert
  */
-public class GazeEvaluatorImpl implements GazeEvaluator, EyeTrackingListener {
+public class GazeEvaluatorImpl implements GazeEvaluator, BatchEyeTrackingListener {
+
+    /** What to do if events arrive faster than we can process them. */
+    public static enum OverloadPolicy {
+        /** Block the caller until the previous event was processed (the old behavior). */
+        BLOCK,
+
+        /** Queue events while busy and, once they are backlogged, only pass the latest one to all handlers. */
+        COALESCE,
+
+        /** Like COALESCE, but handlers flagged REQUIRE_ALL_EVENTS still get every event. */
+        DROP,
+
+        /** Like DROP, but additionally skip handlers by priority if events waited too long. */
+        SHED
+    }
+
+    /** How handlers are executed. */
+    public static enum ExecutionMode {
+        /** All handlers are called one after another on the thread delivering the event. */
+        SEQUENTIAL,
+
+        /** Each handler is assigned to one of several single threaded lanes. */
+        LANES
+    }
+
+    /** Default number of tasks a lane queues before blocking the evaluator */
+    static final int DEFAULT_LANE_QUEUE_SIZE = 1024;
+
+    /** Default number of events we queue while busy */
+    static final int DEFAULT_QUEUE_SIZE = 256;
+
+    /** Default delay in ms after which low priority handlers are shed */
+    static final long DEFAULT_SHED_DELAY = 50;
+
+    /** Default delay in ms after which queued events count as backlog */
+    static final long DEFAULT_BACKLOG_DELAY = 10;
+
+    /** Min. time in ms between two overload reports */
+    static final long REPORT_INTERVAL = 1000;
 
     /** Locks this object for multiple concurrent gaze entries. */
     private final ReentrantLock gazeEventLock = new ReentrantLock();
@@ -72,6 +128,45 @@ public class GazeEvaluatorImpl implements GazeEvaluator, EyeTrackingListener {
     /** List of our handlers */
     final List<GazeHandler> gazeHandler = $.list();
 
+    /** Which listeners each of our handlers feeds (guarded by gazeEventLock) */
+    final Map<GazeHandler, List<? extends GazeEvaluationListener<?>>> handlerGraph = new LinkedHashMap<GazeHandler, List<? extends GazeEvaluationListener<?>>>();
+
+    /** Shared fixation handlers by factory and options (guarded by gazeEventLock) */
+    final Map<List<Object>, SharedFixationListener> sharedFixations = new HashMap<List<Object>, SharedFixationListener>();
+
+    /** How we deal with overload */
+    final OverloadPolicy overloadPolicy;
+
+    /** Events that arrived while we were busy (unused in BLOCK mode) */
+    final PendingEvents pendingEvents;
+
+    /** Waiting time in ms after which we start to shed handlers */
+    final long shedDelay;
+
+    /** Waiting time in ms after which queued events are considered a backlog */
+    final long backlogDelay;
+
+    /** Parallel lanes for our handlers (null in SEQUENTIAL mode) */
+    final HandlerLanes lanes;
+
+    /** Where we report overload (may be null) */
+    final DiagnosisChannel<String> diagnosis;
+
+    /** Number of events handlers didn't receive due to coalescing (guarded by gazeEventLock) */
+    long coalesced = 0;
+
+    /** Number of events handlers didn't receive because they were shed (guarded by gazeEventLock) */
+    long shed = 0;
+
+    /** Max. queueing delay in ns since the last report (guarded by gazeEventLock) */
+    long maxDelay = 0;
+
+    /** Time of the last report in ms (guarded by gazeEventLock) */
+    long lastReport = 0;
+
+    /** If something was lost since the last report (guarded by gazeEventLock) */
+    boolean overloaded = false;
+
     /**
      * Add ourselves to the tracking listener list.
      * @param gazeEvaluatorManagerImpl
@@ -83,6 +178,24 @@ public class GazeEvaluatorImpl implements GazeEvaluator, EyeTrackingListener {
         this.pluginManager = pluginManager;
         this.pluginInformation = pluginManager.getPlugin(PluginInformation.class);
 
+        final Diagnosis diag = pluginManager.getPlugin(Diagnosis.class);
+        this.diagnosis = diag != null ? diag.channel(GazeEvaluatorTracer.class) : null;
+
+        // Check how we should deal with overload
+        final PluginConfiguration configuration = pluginManager.getPlugin(PluginConfiguration.class);
+        this.overloadPolicy = getOverloadPolicy(configuration);
+        this.shedDelay = getLong(configuration, "overload.shed.delay", DEFAULT_SHED_DELAY);
+        this.backlogDelay = getLong(configuration, "overload.backlog.delay", DEFAULT_BACKLOG_DELAY);
+        this.pendingEvents = this.overloadPolicy == OverloadPolicy.BLOCK ? null : new PendingEvents((int) getLong(configuration, "overload.queue.size", DEFAULT_QUEUE_SIZE));
+
+        // And how our handlers should be executed
+        if (getExecutionMode(configuration) == ExecutionMode.LANES) {
+            final int numLanes = (int) getLong(configuration, "execution.lanes", Runtime.getRuntime().availableProcessors());
+            this.lanes = new HandlerLanes(numLanes, (int) getLong(configuration, "execution.queue.size", DEFAULT_LANE_QUEUE_SIZE));
+        } else {
+            this.lanes = null;
+        }
+
         // Sanity check
         if (trackingDevice == null) {
             this.logger.warning("TrackingDevice is null. We won't do anything ... either you're debugging our you have a bug ...");
@@ -102,12 +215,12 @@ public class GazeEvaluatorImpl implements GazeEvaluator, EyeTrackingListener {
         final AddGazeEvaluationListenerOption options[] = $(_options).compact().array(AddGazeEvaluationListenerOption.class);
         final OptionUtils<AddGazeEvaluationListenerOption> ou = new OptionUtils<AddGazeEvaluationListenerOption>(options);
         final Collection<OptionRequestVersion> requestedVersions = ou.getAll(OptionRequestVersion.class);
+        final boolean synchronous = ou.contains(OptionSynchronous.class);
 
         GazeEvaluatorImpl.this.logger.fine("Obtained request to return an evaluator for " + listener.getClass());
 
         // Select the proper plugin
-        final GazeHandlerFactory selectedCreator = this.pluginManager.getPlugin(GazeHandlerFactory.class, 
-                                                                                new OptionPluginSelector<GazeHandlerFactory>(new PluginSelector<GazeHandlerFactory>() {
+        final PluginSelector<GazeHandlerFactory> selector = new PluginSelector<GazeHandlerFactory>() {
 
             @Override
             public boolean selectPlugin(GazeHandlerFactory creator) {
@@ -120,6 +233,9 @@ public class GazeEvaluatorImpl implements GazeEvaluator, EyeTrackingListener {
 
                 GazeEvaluatorImpl.this.logger.finer("Plugin looks promising");
 
+                // Some factories only want to be used if a request names their capabilities 
+                boolean explicit = pi.getInformation(Information.CAPABILITIES, creator).contains("meta:selection:explicit");
+
                 // Now check the requested versions
                 for (OptionRequestVersion rqv : requestedVersions) {
                     // Check if we're dealing with the proper listener.
@@ -150,20 +266,37 @@ public class GazeEvaluatorImpl implements GazeEvaluator, EyeTrackingListener {
                     GazeEvaluatorImpl.this.logger.finer("Checking capabilities ... ");
 
                     // Check capabilities
-                    if (rqv.getCapabilities().length > 0) {
+                    if (rqv.getCapabilities() != null && rqv.getCapabilities().length > 0) {
                         final Collection<String> information = pi.getInformation(Information.CAPABILITIES, creator);
 
                         // Must match all caps
                         if (!information.containsAll(Arrays.asList(rqv.getCapabilities())))
                             return false;
+
+                        explicit = false;
                     }
                 }
 
+                if (explicit) return false;
+
                 GazeEvaluatorImpl.this.logger.finer("All tests passed. Plugin selected.");
 
                 return true;
             }
-        }));
+        };
+
+        // If several versions qualify, take the oldest one. Newer versions are only used if a
+        // request asks for them, so existing applications keep their handlers.
+        GazeHandlerFactory selectedCreator = null;
+        int selectedVersion = Integer.MAX_VALUE;
+
+        for (GazeHandlerFactory creator : new PluginManagerUtil(this.pluginManager).getPlugins(GazeHandlerFactory.class, selector)) {
+            final int version = getVersion(creator);
+            if (selectedCreator == null || version < selectedVersion) {
+                selectedCreator = creator;
+                selectedVersion = version;
+            }
+        }
 
         // No handler to spawn something found, tthis is bad
         if (selectedCreator == null) {
@@ -171,15 +304,181 @@ public class GazeEvaluatorImpl implements GazeEvaluator, EyeTrackingListener {
             return;
         }
 
+        // Fixation handlers only depend on their parameters, so listeners requesting the same
+        // ones from the same factory can share a single handler.
+        if (selectedCreator.getEvaluatorType() == FixationListener.class && isShareable(options)) {
+            addSharedFixationListener(selectedCreator, (FixationListener) listener, options, ou, synchronous);
+            return;
+        }
+
         final GazeHandler spawnEvaluator = selectedCreator.spawnEvaluator(listener, new OptionGazeEvaluatorPassthrough(options), new OptionGazeEvaluator(this));
 
         // Even worse: the handler was unable to spawn something
         if (spawnEvaluator == null) { throw new IllegalStateException("Unable to spawn the selected evaluator. This is a bug."); }
 
-        // Register the evaluator
+        registerHandler(spawnEvaluator, Collections.singletonList(listener), synchronous);
+    }
+
+    /**
+     * Removes a listener added before. If it was the last listener of its handler, the 
+     * handler is removed as well.
+     * 
+     * @param listener The listener to remove.
+     * @since 1.4
+     */
+    public void removeEvaluationListener(final GazeEvaluationListener<?> listener) {
+        this.gazeEventLock.lock();
         try {
-            this.gazeEventLock.lock();
-            this.gazeHandler.add(spawnEvaluator);
+            // Shared fixation handlers stay as long as they have subscribers
+            final Iterator<SharedFixationListener> shared = this.sharedFixations.values().iterator();
+            while (shared.hasNext()) {
+                final SharedFixationListener candidate = shared.next();
+                if (!candidate.unsubscribe(listener)) continue;
+                if (!candidate.getSubscribers().isEmpty()) return;
+
+                shared.remove();
+                removeHandler(candidate.getSubscribers(), null);
+                return;
+            }
+
+            removeHandler(null, listener);
+        } finally {
+            this.gazeEventLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the handler feeding either the given list of listeners or the given single 
+     * listener. Must be called with the gaze lock held.
+     * 
+     * @param listeners The list the handler feeds (compared by identity, may be null).
+     * @param listener The only listener the handler feeds (may be null).
+     */
+    private void removeHandler(final List<? extends GazeEvaluationListener<?>> listeners,
+                               final GazeEvaluationListener<?> listener) {
+        final Iterator<Map.Entry<GazeHandler, List<? extends GazeEvaluationListener<?>>>> iterator = this.handlerGraph.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            final Map.Entry<GazeHandler, List<? extends GazeEvaluationListener<?>>> entry = iterator.next();
+            final List<? extends GazeEvaluationListener<?>> fed = entry.getValue();
+
+            final boolean match = listeners != null ? fed == listeners : fed.size() == 1 && fed.get(0) == listener;
+            if (!match) continue;
+
+            final GazeHandler handler = entry.getKey();
+
+            iterator.remove();
+            this.gazeHandler.remove(handler);
+
+            // Otherwise its lane would keep a reference forever
+            if (this.lanes != null) {
+                this.lanes.release(handler);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Returns which listeners are fed by which handler. Listeners sharing a fixation handler
+     * appear together in its list. 
+     * 
+     * @return A snapshot of all handlers and their listeners, in registration order.
+     */
+    public Map<GazeHandler, List<GazeEvaluationListener<?>>> getHandlerGraph() {
+        final Map<GazeHandler, List<GazeEvaluationListener<?>>> rval = new LinkedHashMap<GazeHandler, List<GazeEvaluationListener<?>>>();
+
+        this.gazeEventLock.lock();
+        try {
+            for (Map.Entry<GazeHandler, List<? extends GazeEvaluationListener<?>>> entry : this.handlerGraph.entrySet()) {
+                rval.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<GazeEvaluationListener<?>>(entry.getValue())));
+            }
+        } finally {
+            this.gazeEventLock.unlock();
+        }
+
+        return rval;
+    }
+
+    /**
+     * Subscribes the listener to the fixation handler of the given factory with the 
+     * requested parameters, spawning the handler if there is none yet.
+     * 
+     * @param creator The selected factory.
+     * @param listener The listener to add.
+     * @param options The options of the request.
+     * @param ou Utils for the options.
+     * @param synchronous If the handler must not run on a lane.
+     */
+    private void addSharedFixationListener(final GazeHandlerFactory creator,
+                                           final FixationListener listener,
+                                           final AddGazeEvaluationListenerOption[] options,
+                                           final OptionUtils<AddGazeEvaluationListenerOption> ou,
+                                           final boolean synchronous) {
+        // The same defaults the fixation handlers use
+        final OptionFixationParameters parameters = ou.get(OptionFixationParameters.class, new OptionFixationParameters(25, 100));
+        final OptionFixationVelocity velocity = ou.get(OptionFixationVelocity.class);
+        final List<Object> key = Arrays.<Object> asList(creator.getClass(), Integer.valueOf(parameters.getRadiusFixationSize()), Integer.valueOf(parameters.getMinimalTime()), Integer.valueOf(parameters.getMinFixationEvents()), velocity == null ? null : Integer.valueOf(velocity.getMaxVelocity()), Boolean.valueOf(synchronous));
+
+        this.gazeEventLock.lock();
+        try {
+            SharedFixationListener shared = this.sharedFixations.get(key);
+
+            if (shared == null) {
+                shared = new SharedFixationListener();
+
+                final GazeHandler spawnEvaluator = creator.spawnEvaluator(shared, new OptionGazeEvaluatorPassthrough(options), new OptionGazeEvaluator(this));
+                if (spawnEvaluator == null) { throw new IllegalStateException("Unable to spawn the selected evaluator. This is a bug."); }
+
+                this.sharedFixations.put(key, shared);
+                registerHandler(spawnEvaluator, shared.getSubscribers(), synchronous);
+            } else {
+                this.logger.fine("Sharing fixation handler " + key);
+            }
+
+            shared.subscribe(listener);
+        } finally {
+            this.gazeEventLock.unlock();
+        }
+    }
+
+    /**
+     * Checks if a fixation handler spawned with the given options may be shared. This is only
+     * the case if we know every option, so the share key fully describes them. 
+     * 
+     * @param options The options of the request.
+     * @return True if the handler may be shared.
+     */
+    private static boolean isShareable(final AddGazeEvaluationListenerOption[] options) {
+        for (AddGazeEvaluationListenerOption option : options) {
+            if (option instanceof OptionFixationParameters) continue;
+            if (option instanceof OptionFixationVelocity) continue;
+            if (option instanceof OptionSynchronous) continue;
+            if (option instanceof OptionRequestVersion) continue;
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Registers a new handler.
+     * 
+     * @param handler The handler to register. 
+     * @param listeners The listeners it feeds.
+     * @param synchronous If the handler must not run on a lane, regardless of its flags.
+     */
+    private void registerHandler(final GazeHandler handler,
+                                 final List<? extends GazeEvaluationListener<?>> listeners,
+                                 final boolean synchronous) {
+        this.gazeEventLock.lock();
+        try {
+            this.gazeHandler.add(handler);
+            this.handlerGraph.put(handler, listeners);
+
+            if (this.lanes != null && !synchronous && !handler.getFlags().contains(GazeHandlerFlags.REQUIRE_SYNCHRONOUS)) {
+                this.lanes.assign(handler);
+            }
         } finally {
             this.gazeEventLock.unlock();
         }
@@ -199,6 +498,13 @@ public class GazeEvaluatorImpl implements GazeEvaluator, EyeTrackingListener {
         // We ignore invalid points. NO WE DON'T!!!!!
         // if (!event.areValid(EyeTrackingEventValidity.CENTER_POSITION_VALID)) return;
 
+        // Queue the event and process whatever is pending, unless somebody else is doing that already
+        if (this.pendingEvents != null) {
+            this.pendingEvents.add(event);
+            processPending();
+            return;
+        }
+
         // Check for event flooding.
         if (this.gazeEventLock.isLocked()) {
             this.logger.warning("Event flooding detected. This means handling takes too long, events arrive too fast, or both.");
@@ -215,12 +521,13 @@ public class GazeEvaluatorImpl implements GazeEvaluator, EyeTrackingListener {
 
             // Process every handler
             for (final GazeHandler handler : this.gazeHandler) {
+                final Collection<GazeHandlerFlags> flags = handler.getFlags();
 
                 // Check if the handler requires unfiltered events or filtered ones.
-                if (handler.getFlags().contains(GazeHandlerFlags.REQUIRE_UNFILTERED)) {
-                    handler.newTrackingEvent(event);
+                if (flags.contains(GazeHandlerFlags.REQUIRE_UNFILTERED)) {
+                    deliver(handler, event);
                 } else {
-                    handler.newTrackingEvent(filteredEvent);
+                    deliver(handler, filteredEvent);
                 }
             }
         } catch (Exception e) {
@@ -231,6 +538,285 @@ public class GazeEvaluatorImpl implements GazeEvaluator, EyeTrackingListener {
         }
     }
 
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.BatchEyeTrackingListener#newTrackingEvents(java.util.List)
+     */
+    @Override
+    public void newTrackingEvents(final List<EyeTrackingEvent> events) {
+        // Sanity check
+        if (events == null || events.isEmpty()) return;
+
+        // Queue the events and process whatever is pending, unless somebody else is doing that already
+        if (this.pendingEvents != null) {
+            for (int i = 0; i < events.size(); i++) {
+                this.pendingEvents.add(events.get(i));
+            }
+            processPending();
+            return;
+        }
+
+        // Check for event flooding.
+        if (this.gazeEventLock.isLocked()) {
+            this.logger.warning("Event flooding detected. This means handling takes too long, events arrive too fast, or both.");
+        }
+
+        // Process all known handler, but take the lock only once for the whole batch
+        try {
+            this.gazeEventLock.lock();
+
+            final List<EyeTrackingEvent> filteredEvents = filterEvents(events);
+
+            // Process every handler
+            for (final GazeHandler handler : this.gazeHandler) {
+                final Collection<GazeHandlerFlags> flags = handler.getFlags();
+
+                // Use the batch if the handler supports it, otherwise feed one by one.
+                deliver(handler, flags.contains(GazeHandlerFlags.REQUIRE_UNFILTERED) ? events : filteredEvents);
+            }
+        } catch (Exception e) {
+            this.logger.warning("Exception occured during event handling. You should check the stack trace.");
+            e.printStackTrace();
+        } finally {
+            this.gazeEventLock.unlock();
+        }
+    }
+
+    /**
+     * Processes all pending events. If another thread is already doing that we return
+     * immediately, that thread will pick up our events as well.
+     */
+    private void processPending() {
+        // Check again after unlocking, an event might have been queued just before
+        while (!this.pendingEvents.isEmpty() && this.gazeEventLock.tryLock()) {
+            try {
+                final List<EyeTrackingEvent> events = new ArrayList<EyeTrackingEvent>();
+                final long queued = this.pendingEvents.drainTo(events);
+
+                if (events.isEmpty()) continue;
+
+                processOverloaded(events, System.nanoTime() - queued);
+                reportOverload();
+            } catch (Exception e) {
+                this.logger.warning("Exception occured during event handling. You should check the stack trace.");
+                e.printStackTrace();
+            } finally {
+                this.gazeEventLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Processes a number of events that queued up, applying our overload policy if they
+     * waited longer than the backlog delay. Batches the device delivers at once, or that
+     * we drain while idle, always reach every handler in full. Must be called with the 
+     * gaze lock held.
+     * 
+     * @param events The events to process.
+     * @param delay How long (in ns) the oldest event waited.
+     */
+    private void processOverloaded(final List<EyeTrackingEvent> events, final long delay) {
+        // All events go through the filter, so its state stays consistent
+        final List<EyeTrackingEvent> filteredEvents = filterEvents(events);
+        final long delayMillis = delay / 1000000;
+        final boolean backlog = events.size() > 1 && delayMillis > this.backlogDelay;
+
+        this.maxDelay = Math.max(this.maxDelay, delay);
+
+        for (final GazeHandler handler : this.gazeHandler) {
+            final Collection<GazeHandlerFlags> flags = handler.getFlags();
+            final List<EyeTrackingEvent> batch = flags.contains(GazeHandlerFlags.REQUIRE_UNFILTERED) ? events : filteredEvents;
+
+            // Without backlog everybody gets everything
+            if (!backlog) {
+                deliver(handler, batch);
+                continue;
+            }
+
+            // Check if we have to skip this handler entirely
+            if (this.overloadPolicy == OverloadPolicy.SHED && isShed(flags, delayMillis)) {
+                this.shed += batch.size();
+                this.overloaded = true;
+                continue;
+            }
+
+            // Check if the handler is content with the latest event
+            if (this.overloadPolicy == OverloadPolicy.COALESCE || !flags.contains(GazeHandlerFlags.REQUIRE_ALL_EVENTS)) {
+                deliver(handler, batch.get(batch.size() - 1));
+                this.coalesced += batch.size() - 1;
+                this.overloaded = true;
+                continue;
+            }
+
+            deliver(handler, batch);
+        }
+    }
+
+    /**
+     * Checks if a handler with the given flags should be skipped, given the time the events
+     * waited. Low priority handlers are shed first, normal ones only at twice the delay, 
+     * high priority handlers and those requiring all events never.
+     * 
+     * @param flags The flags of the handler.
+     * @param delayMillis How long the oldest event waited.
+     * @return True if the handler should be skipped.
+     */
+    private boolean isShed(final Collection<GazeHandlerFlags> flags, final long delayMillis) {
+        if (flags.contains(GazeHandlerFlags.REQUIRE_ALL_EVENTS)) return false;
+        if (flags.contains(GazeHandlerFlags.PRIORITY_HIGH)) return false;
+        if (flags.contains(GazeHandlerFlags.PRIORITY_LOW)) return delayMillis > this.shedDelay;
+
+        return delayMillis > 2 * this.shedDelay;
+    }
+
+    /**
+     * Passes an event to the handler, either directly or on its lane.
+     * 
+     * @param handler The handler.
+     * @param event The event.
+     */
+    private void deliver(final GazeHandler handler, final EyeTrackingEvent event) {
+        if (this.lanes != null && this.lanes.deliver(handler, event)) return;
+
+        handler.newTrackingEvent(event);
+    }
+
+    /**
+     * Passes a number of events to the handler, either directly or on its lane, and as a 
+     * batch if it supports that.
+     * 
+     * @param handler The handler.
+     * @param events The events.
+     */
+    private void deliver(final GazeHandler handler, final List<EyeTrackingEvent> events) {
+        if (this.lanes != null && this.lanes.deliver(handler, events)) return;
+
+        if (handler instanceof BatchGazeHandler) {
+            ((BatchGazeHandler) handler).newTrackingEvents(events);
+            return;
+        }
+
+        for (int i = 0; i < events.size(); i++) {
+            handler.newTrackingEvent(events.get(i));
+        }
+    }
+
+    /**
+     * Reports what we lost due to overload, at most once per interval. Must be called 
+     * with the gaze lock held.
+     */
+    private void reportOverload() {
+        final long now = System.currentTimeMillis();
+
+        if (!this.overloaded || this.diagnosis == null) return;
+        if (now - this.lastReport < REPORT_INTERVAL) return;
+
+        this.diagnosis.status("overload/status", new OptionInfo("policy", this.overloadPolicy.name()), new OptionInfo("coalesced", Long.valueOf(this.coalesced)), new OptionInfo("shed", Long.valueOf(this.shed)), new OptionInfo("overflows", Long.valueOf(this.pendingEvents.getOverflows())), new OptionInfo("maxdelay", Long.valueOf(this.maxDelay / 1000)));
+
+        this.lastReport = now;
+        this.maxDelay = 0;
+        this.overloaded = false;
+    }
+
+    /**
+     * Returns the version of a handler factory.
+     * 
+     * @param creator The factory.
+     * @return Its version, or 0 if it has none.
+     */
+    private int getVersion(final GazeHandlerFactory creator) {
+        final Collection<String> information = this.pluginInformation.getInformation(Information.VERSION, creator);
+        if (information.size() != 1) return 0;
+
+        try {
+            return Integer.parseInt(information.iterator().next());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the configured overload policy (key <code>overload.policy</code>).
+     * 
+     * @param configuration The configuration to use (may be null).
+     * @return The policy, {@link OverloadPolicy#BLOCK} by default.
+     */
+    private OverloadPolicy getOverloadPolicy(final PluginConfiguration configuration) {
+        if (configuration == null) return OverloadPolicy.BLOCK;
+
+        final String policy = configuration.getConfiguration(GazeEvaluator.class, "overload.policy");
+        if (policy == null) return OverloadPolicy.BLOCK;
+
+        try {
+            return OverloadPolicy.valueOf(policy.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            this.logger.warning("Unknown overload policy " + policy + ", using BLOCK.");
+            return OverloadPolicy.BLOCK;
+        }
+    }
+
+    /**
+     * Returns the configured execution mode (key <code>execution.mode</code>).
+     * 
+     * @param configuration The configuration to use (may be null).
+     * @return The mode, {@link ExecutionMode#SEQUENTIAL} by default.
+     */
+    private ExecutionMode getExecutionMode(final PluginConfiguration configuration) {
+        if (configuration == null) return ExecutionMode.SEQUENTIAL;
+
+        final String mode = configuration.getConfiguration(GazeEvaluator.class, "execution.mode");
+        if (mode == null) return ExecutionMode.SEQUENTIAL;
+
+        try {
+            return ExecutionMode.valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            this.logger.warning("Unknown execution mode " + mode + ", using SEQUENTIAL.");
+            return ExecutionMode.SEQUENTIAL;
+        }
+    }
+
+    /**
+     * Returns a positive numeric configuration value.
+     * 
+     * @param configuration The configuration to use (may be null).
+     * @param key The key to query.
+     * @param deflt The default value.
+     * @return The value.
+     */
+    private long getLong(final PluginConfiguration configuration, final String key, final long deflt) {
+        if (configuration == null) return deflt;
+
+        final String value = configuration.getConfiguration(GazeEvaluator.class, key);
+        if (value == null) return deflt;
+
+        try {
+            final long rval = Long.parseLong(value.trim());
+            return rval > 0 ? rval : deflt;
+        } catch (NumberFormatException e) {
+            this.logger.warning("Invalid value " + value + " for " + key + ", using " + deflt + ".");
+            return deflt;
+        }
+    }
+
+    /**
+     * Filters a batch of events with our current filter (if any). Must be called with the 
+     * gaze lock held.
+     * 
+     * @param events The events to filter.
+     * @return The filtered events.
+     */
+    private List<EyeTrackingEvent> filterEvents(final List<EyeTrackingEvent> events) {
+        final GazeFilter filter = this.gazeFilter;
+
+        if (filter == null) return events;
+        if (filter instanceof AbstractFilter) return ((AbstractFilter) filter).filterEvents(events);
+
+        final List<EyeTrackingEvent> rval = new ArrayList<EyeTrackingEvent>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            rval.add(filter.filterEvent(events.get(i)));
+        }
+        return rval;
+    }
+
     /* (non-Javadoc)
      * @see de.dfki.km.augmentedtext.sandbox.services.gazeevaluator.GazeEvaluator#setGazeFilter(de.dfki.km.augmentedtext.sandbox.services.gazeevaluator.GazeFilter)
      */
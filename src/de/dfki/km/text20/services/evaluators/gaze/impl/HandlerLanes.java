@@ -0,0 +1,187 @@
+/*
+ * HandlerLanes.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.evaluators.gaze.impl;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import de.dfki.km.text20.services.evaluators.gaze.BatchGazeHandler;
+import de.dfki.km.text20.services.evaluators.gaze.GazeHandler;
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
+
+/**
+ * A fixed number of single threaded lanes handlers are assigned to. Each handler always
+ * runs on the same lane, so it sees its events in order, while handlers on different lanes
+ * run in parallel.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+class HandlerLanes {
+    /** */
+    final Logger logger = Logger.getLogger(this.getClass().getName());
+
+    /** Our lanes */
+    private final ThreadPoolExecutor[] lanes;
+
+    /** Which handler runs on which lane */
+    private final Map<GazeHandler, ThreadPoolExecutor> assignment = new IdentityHashMap<GazeHandler, ThreadPoolExecutor>();
+
+    /** Next lane to assign */
+    private int next = 0;
+
+    /**
+     * Creates the given number of lanes.
+     * 
+     * @param numLanes Number of lanes (threads).
+     * @param queueSize Max. number of pending tasks per lane before the caller is blocked.
+     */
+    HandlerLanes(final int numLanes, final int queueSize) {
+        this.lanes = new ThreadPoolExecutor[numLanes];
+
+        for (int i = 0; i < numLanes; i++) {
+            final int laneID = i;
+
+            this.lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread thread = new Thread(r, "GazeEvaluator.Lane-" + laneID);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }, new RejectedExecutionHandler() {
+                @Override
+                public void rejectedExecution(final Runnable r, final ThreadPoolExecutor executor) {
+                    // Block the caller instead of dropping or reordering the task
+                    final BlockingQueue<Runnable> queue = executor.getQueue();
+                    try {
+                        queue.put(r);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Assigns a handler to the next lane.
+     * 
+     * @param handler The handler to assign.
+     */
+    synchronized void assign(final GazeHandler handler) {
+        if (this.assignment.containsKey(handler)) return;
+
+        this.assignment.put(handler, this.lanes[this.next]);
+        this.next = (this.next + 1) % this.lanes.length;
+    }
+
+    /**
+     * Removes a handler from its lane. Events already queued for it are still delivered.
+     * 
+     * @param handler The handler to remove.
+     */
+    synchronized void release(final GazeHandler handler) {
+        this.assignment.remove(handler);
+    }
+
+    /**
+     * Passes an event to the handler on its lane.
+     * 
+     * @param handler The handler.
+     * @param event The event.
+     * @return False if the handler has no lane and must be called directly.
+     */
+    boolean deliver(final GazeHandler handler, final EyeTrackingEvent event) {
+        final ThreadPoolExecutor lane = lane(handler);
+        if (lane == null) return false;
+
+        lane.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    handler.newTrackingEvent(event);
+                } catch (Exception e) {
+                    HandlerLanes.this.logger.warning("Exception occured during event handling. You should check the stack trace.");
+                    e.printStackTrace();
+                }
+            }
+        });
+
+        return true;
+    }
+
+    /**
+     * Passes a batch of events to the handler on its lane.
+     * 
+     * @param handler The handler.
+     * @param batch The events, will be copied.
+     * @return False if the handler has no lane and must be called directly.
+     */
+    boolean deliver(final GazeHandler handler, final List<EyeTrackingEvent> batch) {
+        final ThreadPoolExecutor lane = lane(handler);
+        if (lane == null) return false;
+
+        // The caller may reuse its list as soon as we return
+        final List<EyeTrackingEvent> events = new ArrayList<EyeTrackingEvent>(batch);
+
+        lane.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (handler instanceof BatchGazeHandler) {
+                        ((BatchGazeHandler) handler).newTrackingEvents(events);
+                        return;
+                    }
+
+                    for (int i = 0; i < events.size(); i++) {
+                        handler.newTrackingEvent(events.get(i));
+                    }
+                } catch (Exception e) {
+                    HandlerLanes.this.logger.warning("Exception occured during event handling. You should check the stack trace.");
+                    e.printStackTrace();
+                }
+            }
+        });
+
+        return true;
+    }
+
+    /**
+     * Returns the lane of a handler.
+     * 
+     * @param handler The handler.
+     * @return The lane, or null if the handler was never assigned or already released.
+     */
+    private synchronized ThreadPoolExecutor lane(final GazeHandler handler) {
+        return this.assignment.get(handler);
+    }
+}
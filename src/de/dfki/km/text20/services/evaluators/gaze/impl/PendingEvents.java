@@ -0,0 +1,140 @@
+/*
+ * PendingEvents.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.evaluators.gaze.impl;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
+
+/**
+ * Bounded queue of events that arrived while the evaluator was busy. Also remembers when 
+ * each event was queued, so we can tell how long it waited.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+class PendingEvents {
+    /** Queued events */
+    private final EyeTrackingEvent[] events;
+
+    /** When they were queued (in ns) */
+    private final long[] times;
+
+    /** Guards all fields below */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Index of the oldest element */
+    private int head = 0;
+
+    /** Number of queued elements */
+    private int size = 0;
+
+    /** Number of events we had to drop because we were full */
+    private long overflows = 0;
+
+    /**
+     * @param capacity Max. number of queued events.
+     */
+    PendingEvents(final int capacity) {
+        this.events = new EyeTrackingEvent[capacity];
+        this.times = new long[capacity];
+    }
+
+    /**
+     * Queues an event. If we are full the oldest event is dropped.
+     * 
+     * @param event The event to queue.
+     */
+    void add(final EyeTrackingEvent event) {
+        final long now = System.nanoTime();
+
+        this.lock.lock();
+        try {
+            if (this.size == this.events.length) {
+                this.events[this.head] = null;
+                this.head = (this.head + 1) % this.events.length;
+                this.size--;
+                this.overflows++;
+            }
+
+            final int index = (this.head + this.size) % this.events.length;
+            this.events[index] = event;
+            this.times[index] = now;
+            this.size++;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Moves all queued events into the given list.
+     * 
+     * @param target The list to fill.
+     * @return The time (in ns) the oldest moved event was queued, or -1 if there was none.
+     */
+    long drainTo(final List<EyeTrackingEvent> target) {
+        this.lock.lock();
+        try {
+            if (this.size == 0) return -1;
+
+            final long rval = this.times[this.head];
+
+            for (int i = 0; i < this.size; i++) {
+                final int index = (this.head + i) % this.events.length;
+                target.add(this.events[index]);
+                this.events[index] = null;
+            }
+
+            this.head = 0;
+            this.size = 0;
+
+            return rval;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return True if nothing is queued.
+     */
+    boolean isEmpty() {
+        this.lock.lock();
+        try {
+            return this.size == 0;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of events dropped because the queue was full.
+     */
+    long getOverflows() {
+        this.lock.lock();
+        try {
+            return this.overflows;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * SharedFixationListener.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.evaluators.gaze.impl;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+import de.dfki.km.text20.services.evaluators.gaze.GazeEvaluationListener;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationEvent;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationEventType;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationListener;
+
+/**
+ * Attached to a fixation handler that is shared by several listeners requesting the same 
+ * factory and options. Passes each detected event on to all of them. A listener only 
+ * receives events once it saw the start of a fixation, so listeners joining during a 
+ * fixation don't get its remainder.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+class SharedFixationListener implements FixationListener {
+
+    /** The listeners interested in our fixations */
+    private final List<FixationListener> subscribers = new CopyOnWriteArrayList<FixationListener>();
+
+    /** Listeners that did not see a fixation start yet */
+    private final Set<FixationListener> waiting = Collections.newSetFromMap(new ConcurrentHashMap<FixationListener, Boolean>());
+
+    /** */
+    final Logger logger = Logger.getLogger(this.getClass().getName());
+
+    /**
+     * Adds another listener.
+     * 
+     * @param listener The listener to add.
+     */
+    void subscribe(final FixationListener listener) {
+        this.waiting.add(listener);
+        this.subscribers.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     * 
+     * @param listener The listener to remove.
+     * @return True if it was subscribed.
+     */
+    boolean unsubscribe(final GazeEvaluationListener<?> listener) {
+        this.waiting.remove(listener);
+        return this.subscribers.remove(listener);
+    }
+
+    /**
+     * Returns the current listeners.
+     * 
+     * @return The subscribed listeners.
+     */
+    List<FixationListener> getSubscribers() {
+        return this.subscribers;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.common.EvaluationListener#newEvaluationEvent(de.dfki.km.text20.services.evaluators.common.EvaluationEvent)
+     */
+    @Override
+    public void newEvaluationEvent(final FixationEvent event) {
+        final boolean start = event.getType() == FixationEventType.FIXATION_START;
+
+        for (FixationListener listener : this.subscribers) {
+            if (start) {
+                this.waiting.remove(listener);
+            } else if (this.waiting.contains(listener)) {
+                continue;
+            }
+
+            // A failing listener must not keep the others from their events
+            try {
+                listener.newEvaluationEvent(event);
+            } catch (Exception e) {
+                this.logger.warning("Exception occured in fixation listener " + listener + ". You should check the stack trace.");
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * FixationAccumulator.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.evaluators.gaze.impl.handler.fixation;
+
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.Fixation;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationEvent;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationEventType;
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
+
+/**
+ * Collects the events of a fixation and keeps their running sums, so the center and 
+ * snapshots of the fixation are available in constant time. Events are only ever
+ * appended, {@link #clear()} starts a new array, so {@link FixationSnapshot}s handed out 
+ * before remain valid.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public class FixationAccumulator {
+    /** */
+    private static final EyeTrackingEvent[] EMPTY = new EyeTrackingEvent[0];
+
+    /** Events of the fixation, shared with the snapshots */
+    private EyeTrackingEvent[] events = EMPTY;
+
+    /** Number of events */
+    private int size = 0;
+
+    /** Sum of all x coordinates */
+    private long sumX = 0;
+
+    /** Sum of all y coordinates */
+    private long sumY = 0;
+
+    /**
+     * Appends an event.
+     * 
+     * @param event The event.
+     * @param x Its gaze x.
+     * @param y Its gaze y.
+     */
+    public void add(final EyeTrackingEvent event, final int x, final int y) {
+        // Never write into a slot a snapshot might see, grow into a new array instead
+        if (this.size == this.events.length) {
+            final EyeTrackingEvent[] grown = new EyeTrackingEvent[Math.max(16, this.events.length * 2)];
+            System.arraycopy(this.events, 0, grown, 0, this.size);
+            this.events = grown;
+        }
+
+        this.events[this.size++] = event;
+        this.sumX += x;
+        this.sumY += y;
+    }
+
+    /**
+     * Forgets all events. Snapshots keep the old array.
+     */
+    public void clear() {
+        this.events = EMPTY;
+        this.size = 0;
+        this.sumX = 0;
+        this.sumY = 0;
+    }
+
+    /**
+     * Returns the number of events.
+     * 
+     * @return The size.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the x coordinate of the center (the integer mean, 0 if empty).
+     * 
+     * @return The x coordinate.
+     */
+    public int getCenterX() {
+        return this.size == 0 ? 0 : (int) (this.sumX / this.size);
+    }
+
+    /**
+     * Returns the y coordinate of the center (the integer mean, 0 if empty).
+     * 
+     * @return The y coordinate.
+     */
+    public int getCenterY() {
+        return this.size == 0 ? 0 : (int) (this.sumY / this.size);
+    }
+
+    /**
+     * Returns the time between the first and the last event.
+     * 
+     * @return The duration in ms.
+     */
+    public long getDuration() {
+        if (this.size < 2) return 0;
+        return this.events[this.size - 1].getObservationTime() - this.events[0].getObservationTime();
+    }
+
+    /**
+     * Returns an immutable snapshot of the current state.
+     * 
+     * @return The snapshot.
+     */
+    public FixationSnapshot snapshot() {
+        return new FixationSnapshot(this.events, this.size, getCenterX(), getCenterY());
+    }
+
+    /**
+     * Creates an event for the current state.
+     * 
+     * @param type The type of the event.
+     * @return The event.
+     */
+    public FixationEvent event(final FixationEventType type) {
+        final FixationSnapshot fixation = snapshot();
+
+        return new FixationEvent() {
+            @Override
+            public Fixation getFixation() {
+                return fixation;
+            }
+
+            @Override
+            public long getGenerationTime() {
+                return fixation.getLastTime();
+            }
+
+            @Override
+            public FixationEventType getType() {
+                return type;
+            }
+        };
+    }
+}
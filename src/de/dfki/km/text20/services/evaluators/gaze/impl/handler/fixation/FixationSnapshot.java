@@ -0,0 +1,116 @@
+/*
+ * FixationSnapshot.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.evaluators.gaze.impl.handler.fixation;
+
+import java.awt.Point;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.Fixation;
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
+
+/**
+ * Immutable view on the first events of a fixation. The {@link FixationAccumulator} only 
+ * ever appends to the underlying array (or replaces it), so all snapshots of a growing 
+ * fixation share the same events without copying them.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public final class FixationSnapshot implements Fixation {
+
+    /** Events of the fixation, only the first <code>size</code> belong to us */
+    final EyeTrackingEvent[] events;
+
+    /** Number of events in this snapshot */
+    final int size;
+
+    /** Center x */
+    final int x;
+
+    /** Center y */
+    final int y;
+
+    /**
+     * Creates a new snapshot.
+     * 
+     * @param events The events array (not copied).
+     * @param size Number of valid events.
+     * @param x Center x.
+     * @param y Center y.
+     */
+    FixationSnapshot(final EyeTrackingEvent[] events, final int size, final int x, final int y) {
+        this.events = events;
+        this.size = size;
+        this.x = x;
+        this.y = y;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.Fixation#getCenter()
+     */
+    @Override
+    public Point getCenter() {
+        // Callers (e.g. wrappers) modify the returned point
+        return new Point(this.x, this.y);
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.Fixation#getTrackingEvents()
+     */
+    @Override
+    public List<EyeTrackingEvent> getTrackingEvents() {
+        return new Events();
+    }
+
+    /**
+     * Returns the time of the last event.
+     * 
+     * @return The time, or 0 if empty.
+     */
+    public long getLastTime() {
+        if (this.size == 0) return 0;
+        return this.events[this.size - 1].getObservationTime();
+    }
+
+    /** Read only list over our part of the array. */
+    private final class Events extends AbstractList<EyeTrackingEvent> implements RandomAccess {
+        /* (non-Javadoc)
+         * @see java.util.AbstractList#get(int)
+         */
+        @Override
+        public EyeTrackingEvent get(final int index) {
+            if (index < 0 || index >= FixationSnapshot.this.size)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + FixationSnapshot.this.size);
+            return FixationSnapshot.this.events[index];
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.AbstractCollection#size()
+         */
+        @Override
+        public int size() {
+            return FixationSnapshot.this.size;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * DispersionFixationHandler.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.evaluators.gaze.impl.handler.fixation.idt.v1;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.logging.Logger;
+
+import net.xeoh.plugins.base.util.OptionUtils;
+import de.dfki.km.text20.services.evaluators.gaze.GazeHandlerFlags;
+import de.dfki.km.text20.services.evaluators.gaze.impl.handler.fixation.FixationAccumulator;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationEvent;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationEventType;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationListener;
+import de.dfki.km.text20.services.evaluators.gaze.options.AddGazeEvaluationListenerOption;
+import de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener.OptionFixationParameters;
+import de.dfki.km.text20.services.evaluators.gaze.util.handler.AbstractGazeHandler;
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
+import de.dfki.km.text20.services.trackingdevices.eyes.util.EyeTrackingEventUtil;
+
+/**
+ * Dispersion threshold fixation detection (I-DT). A window of events is a fixation 
+ * candidate as long as its dispersion <code>(max x - min x) + (max y - min y)</code> 
+ * does not exceed twice the radius of {@link OptionFixationParameters}; if it does, 
+ * the oldest events are dropped. Once the window spans the minimal time and number of 
+ * events it becomes a fixation, which then grows until an event would exceed the 
+ * dispersion. The window extrema are kept in monotonic deques, so each event costs 
+ * O(1) amortized.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public class DispersionFixationHandler extends AbstractGazeHandler<FixationEvent, FixationListener> {
+    /** We need every sample */
+    private static final Collection<GazeHandlerFlags> FLAGS = Collections.singletonList(GazeHandlerFlags.REQUIRE_ALL_EVENTS);
+
+    /** */
+    private final Logger logger = Logger.getLogger(this.getClass().getName());
+
+    /** The current fixation (empty if we are looking for one) */
+    private final FixationAccumulator fixation = new FixationAccumulator();
+
+    /** Candidate window */
+    private EyeTrackingEvent[] window = new EyeTrackingEvent[16];
+
+    /** Gaze x of the window events */
+    private int[] windowX = new int[16];
+
+    /** Gaze y of the window events */
+    private int[] windowY = new int[16];
+
+    /** Index of the oldest window event */
+    private int windowHead = 0;
+
+    /** Number of window events */
+    private int windowSize = 0;
+
+    /** Sequence number of the oldest window event */
+    private long firstSeq = 0;
+
+    /** Sequence number for the next event */
+    private long nextSeq = 0;
+
+    /** Window extrema */
+    private final MonotonicDeque minX = new MonotonicDeque(false);
+
+    /** */
+    private final MonotonicDeque maxX = new MonotonicDeque(true);
+
+    /** */
+    private final MonotonicDeque minY = new MonotonicDeque(false);
+
+    /** */
+    private final MonotonicDeque maxY = new MonotonicDeque(true);
+
+    /** Extrema of the current fixation (which never shrinks) */
+    private int fixationMinX, fixationMaxX, fixationMinY, fixationMaxY;
+
+    /** Used to detect event flow anomalies */
+    private long lastObservedEventTime = Long.MAX_VALUE;
+
+    /** Max. dispersion in pixel */
+    private int maxDispersion;
+
+    /** Minimal time for a fixation to be recognized */
+    private int minimalTime;
+
+    /** Minimal number of events we need */
+    private int minNumberOfEvents;
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.handler.AbstractGazeHandler#init()
+     */
+    @Override
+    public void init() {
+        final OptionUtils<AddGazeEvaluationListenerOption> ou = new OptionUtils<AddGazeEvaluationListenerOption>(this.options);
+        final OptionFixationParameters parameters = ou.get(OptionFixationParameters.class, new OptionFixationParameters(25, 100));
+
+        this.maxDispersion = 2 * parameters.getRadiusFixationSize();
+        this.minimalTime = parameters.getMinimalTime();
+        this.minNumberOfEvents = parameters.getMinFixationEvents();
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.handler.AbstractGazeHandler#newTrackingEvent(de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent)
+     */
+    @Override
+    public void newTrackingEvent(final EyeTrackingEvent filteredEvent) {
+        final long eventTime = filteredEvent.getObservationTime();
+
+        if (eventTime - this.lastObservedEventTime > 1000) {
+            this.logger.fine("The last observed tracking event was very long ago. You should really check your tracking input!");
+            endFixation();
+            clearWindow();
+        }
+
+        this.lastObservedEventTime = eventTime;
+
+        final int gx = EyeTrackingEventUtil.gazeX(filteredEvent);
+        final int gy = EyeTrackingEventUtil.gazeY(filteredEvent);
+
+        // Grow the current fixation as long as the dispersion allows
+        if (this.fixation.size() > 0) {
+            final int x0 = Math.min(this.fixationMinX, gx), x1 = Math.max(this.fixationMaxX, gx);
+            final int y0 = Math.min(this.fixationMinY, gy), y1 = Math.max(this.fixationMaxY, gy);
+
+            if ((x1 - x0) + (y1 - y0) <= this.maxDispersion) {
+                this.fixationMinX = x0;
+                this.fixationMaxX = x1;
+                this.fixationMinY = y0;
+                this.fixationMaxY = y1;
+
+                this.fixation.add(filteredEvent, gx, gy);
+                callListener(this.fixation.event(FixationEventType.FIXATION_CONTINUED));
+                return;
+            }
+
+            endFixation();
+        }
+
+        // Otherwise slide the candidate window
+        addToWindow(filteredEvent, gx, gy);
+
+        while (this.windowSize > 1 && getWindowDispersion() > this.maxDispersion) {
+            removeOldestFromWindow();
+        }
+
+        if (this.windowSize >= this.minNumberOfEvents && getWindowDuration() >= this.minimalTime) {
+            this.fixationMinX = this.minX.get();
+            this.fixationMaxX = this.maxX.get();
+            this.fixationMinY = this.minY.get();
+            this.fixationMaxY = this.maxY.get();
+
+            for (int i = 0; i < this.windowSize; i++) {
+                final int j = (this.windowHead + i) % this.window.length;
+                this.fixation.add(this.window[j], this.windowX[j], this.windowY[j]);
+            }
+
+            clearWindow();
+            callListener(this.fixation.event(FixationEventType.FIXATION_START));
+        }
+    }
+
+    /**
+     * Ends the current fixation, if there is one.
+     */
+    private void endFixation() {
+        if (this.fixation.size() == 0) return;
+
+        callListener(this.fixation.event(FixationEventType.FIXATION_END));
+        this.fixation.clear();
+    }
+
+    /**
+     * Appends an event to the window.
+     * 
+     * @param event
+     * @param x
+     * @param y
+     */
+    private void addToWindow(final EyeTrackingEvent event, final int x, final int y) {
+        if (this.windowSize == this.window.length) {
+            final int capacity = this.window.length * 2;
+            final EyeTrackingEvent[] events = new EyeTrackingEvent[capacity];
+            final int[] xs = new int[capacity];
+            final int[] ys = new int[capacity];
+
+            for (int i = 0; i < this.windowSize; i++) {
+                final int j = (this.windowHead + i) % this.window.length;
+                events[i] = this.window[j];
+                xs[i] = this.windowX[j];
+                ys[i] = this.windowY[j];
+            }
+
+            this.window = events;
+            this.windowX = xs;
+            this.windowY = ys;
+            this.windowHead = 0;
+        }
+
+        final int i = (this.windowHead + this.windowSize) % this.window.length;
+        this.window[i] = event;
+        this.windowX[i] = x;
+        this.windowY[i] = y;
+        this.windowSize++;
+
+        final long seq = this.nextSeq++;
+        this.minX.push(seq, x);
+        this.maxX.push(seq, x);
+        this.minY.push(seq, y);
+        this.maxY.push(seq, y);
+    }
+
+    /**
+     * Drops the oldest event of the window.
+     */
+    private void removeOldestFromWindow() {
+        this.window[this.windowHead] = null;
+        this.windowHead = (this.windowHead + 1) % this.window.length;
+        this.windowSize--;
+
+        this.firstSeq++;
+        this.minX.expire(this.firstSeq);
+        this.maxX.expire(this.firstSeq);
+        this.minY.expire(this.firstSeq);
+        this.maxY.expire(this.firstSeq);
+    }
+
+    /**
+     * Empties the window.
+     */
+    private void clearWindow() {
+        for (int i = 0; i < this.windowSize; i++) {
+            this.window[(this.windowHead + i) % this.window.length] = null;
+        }
+
+        this.windowHead = 0;
+        this.windowSize = 0;
+        this.firstSeq = this.nextSeq;
+
+        this.minX.clear();
+        this.maxX.clear();
+        this.minY.clear();
+        this.maxY.clear();
+    }
+
+    /**
+     * @return The dispersion of the (non empty) window.
+     */
+    private int getWindowDispersion() {
+        return (this.maxX.get() - this.minX.get()) + (this.maxY.get() - this.minY.get());
+    }
+
+    /**
+     * @return The time between the first and the last event of the window.
+     */
+    private long getWindowDuration() {
+        if (this.windowSize < 2) return 0;
+
+        final long start = this.window[this.windowHead].getObservationTime();
+        final long stop = this.window[(this.windowHead + this.windowSize - 1) % this.window.length].getObservationTime();
+        return stop - start;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.handler.AbstractGazeHandler#getFlags()
+     */
+    @Override
+    public Collection<GazeHandlerFlags> getFlags() {
+        // Coalesced or dropped samples would break up fixations
+        return FLAGS;
+    }
+}
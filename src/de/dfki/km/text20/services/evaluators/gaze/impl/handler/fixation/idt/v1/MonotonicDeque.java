@@ -0,0 +1,122 @@
+/*
+ * MonotonicDeque.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.evaluators.gaze.impl.handler.fixation.idt.v1;
+
+/**
+ * Keeps the minimum (or maximum) of a sliding window of values. Each value is added 
+ * and expired at most once, so all operations are O(1) amortized.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+class MonotonicDeque {
+    /** If we track the maximum instead of the minimum */
+    private final boolean max;
+
+    /** Sequence numbers of the candidates */
+    private long[] seqs = new long[16];
+
+    /** Values of the candidates, monotonic from head to tail */
+    private int[] values = new int[16];
+
+    /** Index of the oldest candidate */
+    private int head = 0;
+
+    /** Number of candidates */
+    private int size = 0;
+
+    /**
+     * @param max True to track the maximum, false for the minimum.
+     */
+    MonotonicDeque(final boolean max) {
+        this.max = max;
+    }
+
+    /**
+     * Adds a new value at the end of the window.
+     * 
+     * @param seq The sequence number of the value (must increase).
+     * @param value The value.
+     */
+    void push(final long seq, final int value) {
+        // Drop all candidates the new value makes irrelevant
+        while (this.size > 0) {
+            final int last = this.values[(this.head + this.size - 1) % this.values.length];
+            if (this.max ? last > value : last < value) break;
+            this.size--;
+        }
+
+        if (this.size == this.values.length) grow();
+
+        final int i = (this.head + this.size) % this.values.length;
+        this.seqs[i] = seq;
+        this.values[i] = value;
+        this.size++;
+    }
+
+    /**
+     * Removes all values older than the given sequence number.
+     * 
+     * @param firstSeq The sequence number of the oldest value still in the window.
+     */
+    void expire(final long firstSeq) {
+        while (this.size > 0 && this.seqs[this.head] < firstSeq) {
+            this.head = (this.head + 1) % this.values.length;
+            this.size--;
+        }
+    }
+
+    /**
+     * Returns the minimum (maximum) of the window. Must not be empty.
+     * 
+     * @return The value.
+     */
+    int get() {
+        return this.values[this.head];
+    }
+
+    /**
+     * Removes all values.
+     */
+    void clear() {
+        this.head = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Doubles our capacity.
+     */
+    private void grow() {
+        final long[] s = new long[this.seqs.length * 2];
+        final int[] v = new int[this.values.length * 2];
+
+        for (int i = 0; i < this.size; i++) {
+            final int j = (this.head + i) % this.values.length;
+            s[i] = this.seqs[j];
+            v[i] = this.values[j];
+        }
+
+        this.seqs = s;
+        this.values = v;
+        this.head = 0;
+    }
+}
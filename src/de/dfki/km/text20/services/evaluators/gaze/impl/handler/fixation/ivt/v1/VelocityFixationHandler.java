@@ -0,0 +1,171 @@
+/*
+ * VelocityFixationHandler.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.evaluators.gaze.impl.handler.fixation.ivt.v1;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.logging.Logger;
+
+import net.xeoh.plugins.base.util.OptionUtils;
+import de.dfki.km.text20.services.evaluators.gaze.GazeHandlerFlags;
+import de.dfki.km.text20.services.evaluators.gaze.impl.handler.fixation.FixationAccumulator;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationEvent;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationEventType;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationListener;
+import de.dfki.km.text20.services.evaluators.gaze.options.AddGazeEvaluationListenerOption;
+import de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener.OptionFixationParameters;
+import de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener.OptionFixationVelocity;
+import de.dfki.km.text20.services.evaluators.gaze.util.handler.AbstractGazeHandler;
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
+import de.dfki.km.text20.services.trackingdevices.eyes.util.EyeTrackingEventUtil;
+
+/**
+ * Velocity threshold fixation detection (I-VT). Every event reached from its 
+ * predecessor slower than the velocity threshold ({@link OptionFixationVelocity}) 
+ * belongs to a fixation, every faster one to a saccade. A run of slow events becomes 
+ * a fixation once it is long enough (minimal time and number of events of 
+ * {@link OptionFixationParameters}, the radius is not used).
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public class VelocityFixationHandler extends AbstractGazeHandler<FixationEvent, FixationListener> {
+    /** We need every sample */
+    private static final Collection<GazeHandlerFlags> FLAGS = Collections.singletonList(GazeHandlerFlags.REQUIRE_ALL_EVENTS);
+
+    /** */
+    private final Logger logger = Logger.getLogger(this.getClass().getName());
+
+    /** The current run of slow events */
+    private final FixationAccumulator fixation = new FixationAccumulator();
+
+    /** If the current run was already reported as a fixation */
+    private boolean inFixation = false;
+
+    /** If we have a previous event */
+    private boolean hasPrevious = false;
+
+    /** Previous gaze x */
+    private int previousX;
+
+    /** Previous gaze y */
+    private int previousY;
+
+    /** Used to detect event flow anomalies */
+    private long lastObservedEventTime = Long.MAX_VALUE;
+
+    /** Minimal time for a fixation to be recognized */
+    private int minimalTime;
+
+    /** Minimal number of events we need */
+    private int minNumberOfEvents;
+
+    /** Max. velocity in pixel per second */
+    private int maxVelocity;
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.handler.AbstractGazeHandler#init()
+     */
+    @Override
+    public void init() {
+        final OptionUtils<AddGazeEvaluationListenerOption> ou = new OptionUtils<AddGazeEvaluationListenerOption>(this.options);
+        final OptionFixationParameters parameters = ou.get(OptionFixationParameters.class, new OptionFixationParameters(25, 100));
+
+        this.minimalTime = parameters.getMinimalTime();
+        this.minNumberOfEvents = parameters.getMinFixationEvents();
+        this.maxVelocity = ou.get(OptionFixationVelocity.class, new OptionFixationVelocity(1000)).getMaxVelocity();
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.handler.AbstractGazeHandler#newTrackingEvent(de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent)
+     */
+    @Override
+    public void newTrackingEvent(final EyeTrackingEvent filteredEvent) {
+        final long eventTime = filteredEvent.getObservationTime();
+        final long deltaTime = eventTime - this.lastObservedEventTime;
+
+        // After a long pause we can't tell anything about the velocity
+        if (deltaTime > 1000) {
+            this.logger.fine("The last observed tracking event was very long ago. You should really check your tracking input!");
+            endFixation();
+            this.hasPrevious = false;
+        }
+
+        this.lastObservedEventTime = eventTime;
+
+        final int gx = EyeTrackingEventUtil.gazeX(filteredEvent);
+        final int gy = EyeTrackingEventUtil.gazeY(filteredEvent);
+
+        boolean slow = true;
+
+        if (this.hasPrevious) {
+            final double dx = (double) gx - this.previousX;
+            final double dy = (double) gy - this.previousY;
+            final double velocity = Math.sqrt(dx * dx + dy * dy) * 1000.0 / Math.max(1, deltaTime);
+
+            slow = velocity <= this.maxVelocity;
+        }
+
+        this.hasPrevious = true;
+        this.previousX = gx;
+        this.previousY = gy;
+
+        // Saccades end the current fixation
+        if (!slow) {
+            endFixation();
+            return;
+        }
+
+        this.fixation.add(filteredEvent, gx, gy);
+
+        if (this.inFixation) {
+            callListener(this.fixation.event(FixationEventType.FIXATION_CONTINUED));
+            return;
+        }
+
+        if (this.fixation.size() >= this.minNumberOfEvents && this.fixation.getDuration() >= this.minimalTime) {
+            this.inFixation = true;
+            callListener(this.fixation.event(FixationEventType.FIXATION_START));
+        }
+    }
+
+    /**
+     * Ends the current fixation (if any) and starts a new run.
+     */
+    private void endFixation() {
+        if (this.inFixation) {
+            callListener(this.fixation.event(FixationEventType.FIXATION_END));
+        }
+
+        this.inFixation = false;
+        this.fixation.clear();
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.handler.AbstractGazeHandler#getFlags()
+     */
+    @Override
+    public Collection<GazeHandlerFlags> getFlags() {
+        // Coalesced or dropped samples would break up fixations
+        return FLAGS;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * VelocityFixationHandlerFactory.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.evaluators.gaze.impl.handler.fixation.ivt.v1;
+
+import net.xeoh.plugins.base.annotations.Capabilities;
+import net.xeoh.plugins.base.annotations.PluginImplementation;
+import net.xeoh.plugins.base.annotations.meta.Author;
+import net.xeoh.plugins.base.annotations.meta.Version;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationListener;
+import de.dfki.km.text20.services.evaluators.gaze.util.handler.AbstractGazeHandlerFactory;
+
+/**
+ * @author Ralf Biedert
+ */
+@Version(version = 10000)
+@Author(name = "Ralf Biedert")
+@PluginImplementation
+public class VelocityFixationHandlerFactory extends AbstractGazeHandlerFactory {
+    public VelocityFixationHandlerFactory() {
+        super(FixationListener.class, VelocityFixationHandler.class);
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.handler.AbstractGazeHandlerFactory#getCapabilities()
+     */
+    @Override
+    @Capabilities
+    public String[] getCapabilities() {
+        return new String[] { "meta:status:maturity:beta", "meta:selection:explicit", "fixation:algorithm:ivt" };
+    }
+}
@@ -23,11 +23,13 @@ package de.dfki.km.text20.services.evaluators.gaze.impl.handler.fixation.v1;
 
 import java.awt.Point;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
 
 import net.xeoh.plugins.base.util.OptionUtils;
+import de.dfki.km.text20.services.evaluators.gaze.GazeHandlerFlags;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.Fixation;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationEvent;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationEventType;
@@ -43,6 +45,9 @@ import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
  * @author Ralf Biedert
  */
 public class FixationHandler extends AbstractGazeHandler<FixationEvent, FixationListener> {
+    /** We need every sample */
+    private static final Collection<GazeHandlerFlags> FLAGS = Collections.singletonList(GazeHandlerFlags.REQUIRE_ALL_EVENTS);
+
     /** */
     private final Logger logger = Logger.getLogger(this.getClass().getName());
 
@@ -283,4 +288,13 @@ public class FixationHandler extends AbstractGazeHandler<FixationEvent, Fixation
 
         return max;
     }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.handler.AbstractGazeHandler#getFlags()
+     */
+    @Override
+    public Collection<GazeHandlerFlags> getFlags() {
+        // Coalesced or dropped samples would break up fixations
+        return FLAGS;
+    }
 }
@@ -0,0 +1,310 @@
+/*
+ * FixationHandler2.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.evaluators.gaze.impl.handler.fixation.v2;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.logging.Logger;
+
+import net.xeoh.plugins.base.util.OptionUtils;
+import de.dfki.km.text20.services.evaluators.gaze.GazeHandlerFlags;
+import de.dfki.km.text20.services.evaluators.gaze.impl.handler.fixation.FixationAccumulator;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.Fixation;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationEvent;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationEventType;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationListener;
+import de.dfki.km.text20.services.evaluators.gaze.options.AddGazeEvaluationListenerOption;
+import de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener.OptionFixationParameters;
+import de.dfki.km.text20.services.evaluators.gaze.util.handler.AbstractGazeHandler;
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
+import de.dfki.km.text20.services.trackingdevices.eyes.util.EyeTrackingEventUtil;
+
+/**
+ * Detects fixations exactly like the v1 handler, but keeps running sums of the 
+ * current fixation and the outliers, so the centers don't have to be recomputed
+ * for every event. The {@link Fixation}s we pass to our listener are immutable views 
+ * on the events collected so far instead of copies.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public class FixationHandler2 extends AbstractGazeHandler<FixationEvent, FixationListener> {
+    /** We need every sample */
+    private static final Collection<GazeHandlerFlags> FLAGS = Collections.singletonList(GazeHandlerFlags.REQUIRE_ALL_EVENTS);
+
+    /** */
+    private final Logger logger = Logger.getLogger(this.getClass().getName());
+
+    /** The current fixation */
+    private final FixationAccumulator fixation = new FixationAccumulator();
+
+    /** Ring of points outside the current fixation */
+    private EyeTrackingEvent[] outliers = new EyeTrackingEvent[16];
+
+    /** Their x coordinates */
+    private int[] outliersX = new int[16];
+
+    /** Their y coordinates */
+    private int[] outliersY = new int[16];
+
+    /** Index of the oldest outlier */
+    private int outliersHead = 0;
+
+    /** Number of outliers */
+    private int outliersSize = 0;
+
+    /** Sum of the outliers' x coordinates */
+    private long outliersSumX = 0;
+
+    /** Sum of the outliers' y coordinates */
+    private long outliersSumY = 0;
+
+    /** How many consecutive outliers we had */
+    private int numConsecutiveOutliers = 0;
+
+    /** Minimal time for a fixation to be recognized */
+    private int minimalTime;
+
+    /** Max. distance of a point from the fixation center */
+    private int radiusFixationSize;
+
+    /** Minimal number of events we need */
+    private int minNumberOfEvents;
+
+    /** Used to detect event flow anomalies */
+    private long lastObservedEventTime = Long.MAX_VALUE;
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.handler.AbstractGazeHandler#init()
+     */
+    @Override
+    public void init() {
+        final OptionFixationParameters defaultParameters = new OptionFixationParameters(25, 100);
+        final OptionUtils<AddGazeEvaluationListenerOption> ou = new OptionUtils<AddGazeEvaluationListenerOption>(this.options);
+        final OptionFixationParameters parameters = ou.get(OptionFixationParameters.class, defaultParameters);
+
+        this.minimalTime = parameters.getMinimalTime();
+        this.radiusFixationSize = parameters.getRadiusFixationSize();
+        this.minNumberOfEvents = parameters.getMinFixationEvents();
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.handler.AbstractGazeHandler#newTrackingEvent(de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent)
+     */
+    @Override
+    public void newTrackingEvent(final EyeTrackingEvent filteredEvent) {
+
+        // First perform an anomaly detection
+        final long eventTime = filteredEvent.getObservationTime();
+        final long deltaTime = eventTime - this.lastObservedEventTime;
+        if (deltaTime > 1000) {
+            this.logger.fine("The last observed tracking event was very long ago. You should really check your tracking input!");
+
+            callListener(this.fixation.event(FixationEventType.FIXATION_END));
+
+            this.numConsecutiveOutliers = 0;
+            clearOutliers();
+            this.fixation.clear();
+        }
+
+        this.lastObservedEventTime = eventTime;
+
+        // Get the gaze without allocating if we can
+        final int gx = EyeTrackingEventUtil.gazeX(filteredEvent);
+        final int gy = EyeTrackingEventUtil.gazeY(filteredEvent);
+
+        // Same as v1, an empty fixation has its center at (0, 0)
+        if (distance(this.fixation.getCenterX(), this.fixation.getCenterY(), gx, gy) > this.radiusFixationSize) {
+
+            this.numConsecutiveOutliers++;
+            addOutlier(filteredEvent, gx, gy);
+
+            final float maxOSize = getMaxOutlierDistance();
+
+            // Rejuvenate scattered outliers
+            if (maxOSize > this.radiusFixationSize) {
+                removeOldestOutlier();
+            }
+
+            // Outliers close together for long enough make a new fixation
+            if (maxOSize <= this.radiusFixationSize && this.outliersSize >= this.minNumberOfEvents && getOutlierTime() >= this.minimalTime) {
+                if (this.fixation.size() > 0) {
+                    callListener(this.fixation.event(FixationEventType.FIXATION_END));
+                }
+
+                this.numConsecutiveOutliers = 0;
+                promoteOutliers();
+
+                callListener(this.fixation.event(FixationEventType.FIXATION_START));
+            }
+
+            // Too many scattered outliers end the current fixation
+            if (this.numConsecutiveOutliers > this.minNumberOfEvents && this.fixation.size() > 0) {
+                this.numConsecutiveOutliers = 0;
+                clearOutliers();
+                callListener(this.fixation.event(FixationEventType.FIXATION_END));
+                this.fixation.clear();
+            }
+
+        } else {
+            this.numConsecutiveOutliers = 0;
+            this.fixation.add(filteredEvent, gx, gy);
+            callListener(this.fixation.event(FixationEventType.FIXATION_CONTINUED));
+        }
+    }
+
+    /**
+     * Makes all outliers the new current fixation.
+     */
+    private void promoteOutliers() {
+        this.fixation.clear();
+
+        for (int i = 0; i < this.outliersSize; i++) {
+            final int j = (this.outliersHead + i) % this.outliers.length;
+            this.fixation.add(this.outliers[j], this.outliersX[j], this.outliersY[j]);
+        }
+
+        clearOutliers();
+    }
+
+    /**
+     * Appends an outlier.
+     * 
+     * @param event The event.
+     * @param x Its gaze x.
+     * @param y Its gaze y.
+     */
+    private void addOutlier(final EyeTrackingEvent event, final int x, final int y) {
+        if (this.outliersSize == this.outliers.length) {
+            final int capacity = this.outliers.length * 2;
+            final EyeTrackingEvent[] events = new EyeTrackingEvent[capacity];
+            final int[] xs = new int[capacity];
+            final int[] ys = new int[capacity];
+
+            for (int i = 0; i < this.outliersSize; i++) {
+                final int j = (this.outliersHead + i) % this.outliers.length;
+                events[i] = this.outliers[j];
+                xs[i] = this.outliersX[j];
+                ys[i] = this.outliersY[j];
+            }
+
+            this.outliers = events;
+            this.outliersX = xs;
+            this.outliersY = ys;
+            this.outliersHead = 0;
+        }
+
+        final int i = (this.outliersHead + this.outliersSize) % this.outliers.length;
+
+        this.outliers[i] = event;
+        this.outliersX[i] = x;
+        this.outliersY[i] = y;
+        this.outliersSize++;
+        this.outliersSumX += x;
+        this.outliersSumY += y;
+    }
+
+    /**
+     * Removes the oldest outlier.
+     */
+    private void removeOldestOutlier() {
+        if (this.outliersSize == 0) return;
+
+        this.outliersSumX -= this.outliersX[this.outliersHead];
+        this.outliersSumY -= this.outliersY[this.outliersHead];
+        this.outliers[this.outliersHead] = null;
+        this.outliersHead = (this.outliersHead + 1) % this.outliers.length;
+        this.outliersSize--;
+    }
+
+    /**
+     * Removes all outliers.
+     */
+    private void clearOutliers() {
+        for (int i = 0; i < this.outliersSize; i++) {
+            this.outliers[(this.outliersHead + i) % this.outliers.length] = null;
+        }
+
+        this.outliersHead = 0;
+        this.outliersSize = 0;
+        this.outliersSumX = 0;
+        this.outliersSumY = 0;
+    }
+
+    /**
+     * Returns the time between the first and the last outlier.
+     * 
+     * @return The time in ms.
+     */
+    private int getOutlierTime() {
+        if (this.outliersSize < 1) return 0;
+
+        final long start = this.outliers[this.outliersHead].getObservationTime();
+        final long stop = this.outliers[(this.outliersHead + this.outliersSize - 1) % this.outliers.length].getObservationTime();
+        return (int) (stop - start);
+    }
+
+    /**
+     * The maximal distance of the outliers from their center. The outliers are either 
+     * promoted or discarded once they are too far apart or old enough, so there are never 
+     * many of them. 
+     * 
+     * @return The distance.
+     */
+    private float getMaxOutlierDistance() {
+        final int cx = (int) (this.outliersSumX / this.outliersSize);
+        final int cy = (int) (this.outliersSumY / this.outliersSize);
+
+        float max = Float.MIN_VALUE;
+
+        for (int i = 0; i < this.outliersSize; i++) {
+            final int j = (this.outliersHead + i) % this.outliers.length;
+            max = (float) Math.max(distance(cx, cy, this.outliersX[j], this.outliersY[j]), max);
+        }
+
+        return max;
+    }
+
+    /**
+     * Distance between two points.
+     * 
+     * @param x1
+     * @param y1
+     * @param x2
+     * @param y2
+     * @return The distance.
+     */
+    private static double distance(final int x1, final int y1, final int x2, final int y2) {
+        final double dx = (double) x2 - x1;
+        final double dy = (double) y2 - y1;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.handler.AbstractGazeHandler#getFlags()
+     */
+    @Override
+    public Collection<GazeHandlerFlags> getFlags() {
+        // Coalesced or dropped samples would break up fixations
+        return FLAGS;
+    }
+}
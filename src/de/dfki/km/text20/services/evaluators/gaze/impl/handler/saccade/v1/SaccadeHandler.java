@@ -21,6 +21,10 @@
  */
 package de.dfki.km.text20.services.evaluators.gaze.impl.handler.saccade.v1;
 
+import java.util.Collection;
+import java.util.Collections;
+
+import de.dfki.km.text20.services.evaluators.gaze.GazeHandlerFlags;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.Fixation;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationEvent;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationEventType;
@@ -35,6 +39,9 @@ import de.dfki.km.text20.services.evaluators.gaze.util.handler.AbstractGazeHandl
  * @author Ralf Biedert
  */
 public class SaccadeHandler extends AbstractGazeHandler<SaccadeEvent, SaccadeListener> {
+    /** We need every sample */
+    private static final Collection<GazeHandlerFlags> FLAGS = Collections.singletonList(GazeHandlerFlags.REQUIRE_ALL_EVENTS);
+
 
     /** Last fixation */
     Fixation lastFixation;
@@ -96,4 +103,13 @@ public class SaccadeHandler extends AbstractGazeHandler<SaccadeEvent, SaccadeLis
             }
         });
     }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.handler.AbstractGazeHandler#getFlags()
+     */
+    @Override
+    public Collection<GazeHandlerFlags> getFlags() {
+        // Coalesced or dropped samples would break up saccades
+        return FLAGS;
+    }
 }
@@ -21,8 +21,11 @@
  */
 package de.dfki.km.text20.services.evaluators.gaze.impl.handler.weaksaccade.v2;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.logging.Logger;
 
+import de.dfki.km.text20.services.evaluators.gaze.GazeHandlerFlags;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.Fixation;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationEvent;
 import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationEventType;
@@ -42,6 +45,8 @@ import de.dfki.km.text20.services.evaluators.gaze.util.handler.AbstractGazeHandl
  */
 public class WeakSaccadeHandler2 extends
         AbstractGazeHandler<SaccadeEvent, WeakSaccadeListener> {
+    /** We need every sample */
+    private static final Collection<GazeHandlerFlags> FLAGS = Collections.singletonList(GazeHandlerFlags.REQUIRE_ALL_EVENTS);
 
     /** */
     @SuppressWarnings("unused")
@@ -112,4 +117,13 @@ public class WeakSaccadeHandler2 extends
             });
         }
     }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.handler.AbstractGazeHandler#getFlags()
+     */
+    @Override
+    public Collection<GazeHandlerFlags> getFlags() {
+        // Coalesced or dropped samples would break up saccades
+        return FLAGS;
+    }
 }
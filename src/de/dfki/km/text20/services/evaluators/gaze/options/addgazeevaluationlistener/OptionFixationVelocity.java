@@ -0,0 +1,58 @@
+/*
+ * OptionFixationVelocity.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener;
+
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationListener;
+import de.dfki.km.text20.services.evaluators.gaze.options.AddGazeEvaluationListenerOption;
+
+/**
+ * Specifies the velocity threshold for velocity based fixation detection 
+ * (capability <code>fixation:algorithm:ivt</code>). Gaze moving slower than the 
+ * threshold is considered to be part of a fixation.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ * @see FixationListener
+ */
+public class OptionFixationVelocity implements AddGazeEvaluationListenerOption {
+    /** */
+    private static final long serialVersionUID = -2306513781120871045L;
+
+    /** */
+    private final int maxVelocity;
+
+    /**
+     * Constructs an options with the given threshold.
+     * 
+     * @param maxVelocity The maximal velocity in pixel per second.
+     */
+    public OptionFixationVelocity(int maxVelocity) {
+        this.maxVelocity = maxVelocity;
+    }
+
+    /**
+     * @return the maxVelocity
+     */
+    public int getMaxVelocity() {
+        return this.maxVelocity;
+    }
+}
@@ -55,7 +55,8 @@ public class OptionRequestVersion implements AddGazeEvaluationListenerOption {
      * 
      * @param listener The listener to use.
      * @param author The required author (may be null).
-     * @param version The required minimum version (any version larger than the given one is considered). 
+     * @param version The required minimum version (any version larger than the given one is considered, 
+     * the oldest of them is used). 
      * @param capabilities The required capabilities (may be null). 
      */
     public OptionRequestVersion(Class<? extends GazeEvaluationListener<?>> listener,
@@ -0,0 +1,40 @@
+/*
+ * OptionSynchronous.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener;
+
+import de.dfki.km.text20.services.evaluators.gaze.GazeEvaluator;
+import de.dfki.km.text20.services.evaluators.gaze.GazeHandlerFlags;
+import de.dfki.km.text20.services.evaluators.gaze.options.AddGazeEvaluationListenerOption;
+
+/**
+ * Requests the {@link GazeEvaluator} to always call the listener on the thread delivering 
+ * the events, as if its handler returned {@link GazeHandlerFlags#REQUIRE_SYNCHRONOUS}. Use 
+ * this option if your listener is not thread safe.   
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public class OptionSynchronous implements AddGazeEvaluationListenerOption {
+
+    /** */
+    private static final long serialVersionUID = 2817740093214426159L;
+}
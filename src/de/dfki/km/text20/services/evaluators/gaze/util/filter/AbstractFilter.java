@@ -21,18 +21,22 @@
  */
 package de.dfki.km.text20.services.evaluators.gaze.util.filter;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import de.dfki.km.text20.services.evaluators.gaze.GazeEvaluator;
 import de.dfki.km.text20.services.evaluators.gaze.GazeFilter;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
 
 /**
  * Represents an abstract filter, implementing the {@link GazeEvaluator}'s
- * {@link GazeFilter} interface.
+ * {@link GazeFilter} interface. Filters not overriding {@link #filterSample(GazeSample)} 
+ * are adapted to the {@link SampleFilter} interface by creating an event for them.
  *
  * @author Ralf Biedert
  * @since 1.0
  */
-public abstract class AbstractFilter implements GazeFilter {
+public abstract class AbstractFilter implements GazeFilter, SampleFilter {
 
     /**
      * Feeds the filter a new event.
@@ -42,4 +46,27 @@ public abstract class AbstractFilter implements GazeFilter {
      */
     @Override
     public abstract EyeTrackingEvent filterEvent(EyeTrackingEvent event);
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.filter.SampleFilter#filterSample(de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample)
+     */
+    @Override
+    public void filterSample(final GazeSample sample) {
+        sample.set(filterEvent(sample.toEvent()));
+    }
+
+    /**
+     * Feeds the filter a number of events in the order they were observed. Filters that
+     * can do better than processing the events one by one may override this.
+     *
+     * @param events The events to feed.
+     * @return The filtered events, in the same order.
+     */
+    public List<EyeTrackingEvent> filterEvents(final List<EyeTrackingEvent> events) {
+        final List<EyeTrackingEvent> rval = new ArrayList<EyeTrackingEvent>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            rval.add(filterEvent(events.get(i)));
+        }
+        return rval;
+    }
 }
@@ -27,12 +27,17 @@ import java.util.List;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
 
 /**
- * Allows chaining of several filters and makes them execute sequentially.
+ * Allows chaining of several filters and makes them execute sequentially. The filters
+ * work on a single reused {@link GazeSample}, and the resulting event is only created 
+ * once at the end of the chain. 
  * 
  * @author Eugen Massini
  */
 public class ChainedFilter extends AbstractFilter {
-    private final List<AbstractFilter> filters = new ArrayList<AbstractFilter>();
+    private final List<SampleFilter> filters = new ArrayList<SampleFilter>();
+
+    /** Reused for every event */
+    private final GazeSample sample = new GazeSample();
 
     /**
      * Adds a filter to the chain.
@@ -43,12 +48,29 @@ public class ChainedFilter extends AbstractFilter {
         this.filters.add(filter);
     }
 
+    /**
+     * Adds a sample filter to the chain.
+     * 
+     * @param filter
+     */
+    public void addFilter(final SampleFilter filter) {
+        this.filters.add(filter);
+    }
+
     @Override
     public EyeTrackingEvent filterEvent(final EyeTrackingEvent event) {
-        EyeTrackingEvent e = event; // use a new variable to suppress warning
-        for (final AbstractFilter filter : this.filters) {
-            e = filter.filterEvent(e);
+        this.sample.set(event);
+        filterSample(this.sample);
+        return this.sample.toEvent();
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.filter.AbstractFilter#filterSample(de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample)
+     */
+    @Override
+    public void filterSample(final GazeSample s) {
+        for (int i = 0; i < this.filters.size(); i++) {
+            this.filters.get(i).filterSample(s);
         }
-        return e;
     }
 }
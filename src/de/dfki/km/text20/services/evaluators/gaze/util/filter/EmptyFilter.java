@@ -38,4 +38,12 @@ public class EmptyFilter extends AbstractFilter {
     public EyeTrackingEvent filterEvent(final EyeTrackingEvent event) {
         return event;
     }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.filter.AbstractFilter#filterSample(de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample)
+     */
+    @Override
+    public void filterSample(final GazeSample sample) {
+        // Nothing to do
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * GazeSample.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.evaluators.gaze.util.filter;
+
+import java.awt.Point;
+
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEventValidity;
+import de.dfki.km.text20.services.trackingdevices.eyes.PrimitiveEyeTrackingEvent;
+
+/**
+ * The primitive, mutable state of an event passing through a chain of {@link SampleFilter}s. 
+ * Filters modify the public fields in place; only when the chain is done an event is 
+ * created again (see {@link #toEvent()}), and only if something actually changed.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public class GazeSample {
+    /** Gaze x */
+    public int x;
+
+    /** Gaze y */
+    public int y;
+
+    /** Observation time */
+    public long time;
+
+    /** If the gaze center is valid */
+    public boolean valid;
+
+    /** The event all other attributes are taken from */
+    private EyeTrackingEvent event;
+
+    /** Values of the event */
+    private int eventX, eventY;
+
+    /** */
+    private long eventTime;
+
+    /** */
+    private boolean eventValid;
+
+    /**
+     * Loads the sample from the given event.
+     * 
+     * @param event The event.
+     */
+    public void set(final EyeTrackingEvent event) {
+        this.event = event;
+
+        if (event instanceof PrimitiveEyeTrackingEvent) {
+            final PrimitiveEyeTrackingEvent e = (PrimitiveEyeTrackingEvent) event;
+            this.eventX = e.getGazeX();
+            this.eventY = e.getGazeY();
+            this.eventValid = e.isValid(EyeTrackingEventValidity.CENTER_POSITION_VALID);
+        } else {
+            final Point p = event.getGazeCenter();
+            this.eventX = p == null ? -1 : p.x;
+            this.eventY = p == null ? -1 : p.y;
+            this.eventValid = event.areValid(EyeTrackingEventValidity.CENTER_POSITION_VALID);
+        }
+
+        this.eventTime = event.getObservationTime();
+
+        this.x = this.eventX;
+        this.y = this.eventY;
+        this.time = this.eventTime;
+        this.valid = this.eventValid;
+    }
+
+    /**
+     * Returns the event the sample was loaded from.
+     * 
+     * @return The original event.
+     */
+    public EyeTrackingEvent getEvent() {
+        return this.event;
+    }
+
+    /**
+     * Returns an event reflecting the current state of the sample. If no field was 
+     * changed this is the event the sample was loaded from.
+     * 
+     * @return The event.
+     */
+    public EyeTrackingEvent toEvent() {
+        if (this.x == this.eventX && this.y == this.eventY && this.time == this.eventTime && this.valid == this.eventValid)
+            return this.event;
+
+        return new SampleEyeTrackingEvent(this.event, this.x, this.y, this.time, this.valid);
+    }
+}
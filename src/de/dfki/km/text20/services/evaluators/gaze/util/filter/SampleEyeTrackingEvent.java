@@ -0,0 +1,150 @@
+/*
+ * SampleEyeTrackingEvent.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.evaluators.gaze.util.filter;
+
+import java.awt.Point;
+
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEventValidity;
+import de.dfki.km.text20.services.trackingdevices.eyes.PrimitiveEyeTrackingEvent;
+import de.dfki.km.text20.services.trackingdevices.eyes.util.EyeTrackingEventWrapper;
+
+/**
+ * The event a {@link GazeSample} creates at the end of a filter chain. Gaze, time and 
+ * validity come from the sample, everything else from the original event.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+class SampleEyeTrackingEvent extends EyeTrackingEventWrapper implements PrimitiveEyeTrackingEvent {
+    /** */
+    private static final long serialVersionUID = 2848367190217431785L;
+
+    /** */
+    private final int x;
+
+    /** */
+    private final int y;
+
+    /** */
+    private final long time;
+
+    /** */
+    private final boolean valid;
+
+    /**
+     * @param event
+     * @param x
+     * @param y
+     * @param time
+     * @param valid
+     */
+    SampleEyeTrackingEvent(final EyeTrackingEvent event, final int x, final int y,
+                           final long time, final boolean valid) {
+        super(event);
+        this.x = x;
+        this.y = y;
+        this.time = time;
+        this.valid = valid;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.util.EyeTrackingEventWrapper#getGazeCenter()
+     */
+    @Override
+    public Point getGazeCenter() {
+        return new Point(this.x, this.y);
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.util.EyeTrackingEventWrapper#getObservationTime()
+     */
+    @Override
+    public long getObservationTime() {
+        return this.time;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.util.EyeTrackingEventWrapper#areValid(de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEventValidity[])
+     */
+    @Override
+    public boolean areValid(final EyeTrackingEventValidity... validities) {
+        for (EyeTrackingEventValidity v : validities) {
+            if (!isValid(v)) return false;
+        }
+
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.PrimitiveEyeTrackingEvent#isValid(de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEventValidity)
+     */
+    @Override
+    public boolean isValid(final EyeTrackingEventValidity validity) {
+        if (validity == EyeTrackingEventValidity.CENTER_POSITION_VALID) return this.valid;
+        if (this.originalEvent instanceof PrimitiveEyeTrackingEvent) return ((PrimitiveEyeTrackingEvent) this.originalEvent).isValid(validity);
+        return this.originalEvent.areValid(validity);
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.PrimitiveEyeTrackingEvent#getGazeX()
+     */
+    @Override
+    public int getGazeX() {
+        return this.x;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.PrimitiveEyeTrackingEvent#getGazeY()
+     */
+    @Override
+    public int getGazeY() {
+        return this.y;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.PrimitiveEyeTrackingEvent#getHeadX()
+     */
+    @Override
+    public float getHeadX() {
+        if (this.originalEvent instanceof PrimitiveEyeTrackingEvent) return ((PrimitiveEyeTrackingEvent) this.originalEvent).getHeadX();
+        return this.originalEvent.getHeadPosition()[0];
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.PrimitiveEyeTrackingEvent#getHeadY()
+     */
+    @Override
+    public float getHeadY() {
+        if (this.originalEvent instanceof PrimitiveEyeTrackingEvent) return ((PrimitiveEyeTrackingEvent) this.originalEvent).getHeadY();
+        return this.originalEvent.getHeadPosition()[1];
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.PrimitiveEyeTrackingEvent#getHeadZ()
+     */
+    @Override
+    public float getHeadZ() {
+        if (this.originalEvent instanceof PrimitiveEyeTrackingEvent) return ((PrimitiveEyeTrackingEvent) this.originalEvent).getHeadZ();
+        return this.originalEvent.getHeadPosition()[2];
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * SampleFilter.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.evaluators.gaze.util.filter;
+
+/**
+ * A filter working on a reusable {@link GazeSample} in place instead of wrapping 
+ * events. All {@link AbstractFilter}s are sample filters, but only the ones overriding 
+ * {@link #filterSample(GazeSample)} avoid creating intermediate events.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ * @see ChainedFilter
+ */
+public interface SampleFilter {
+    /**
+     * Filters the given sample by modifying it. Implementations must not keep a 
+     * reference to the sample, it will be reused for the next event.
+     * 
+     * @param sample The sample to filter.
+     */
+    public void filterSample(GazeSample sample);
+}
@@ -21,16 +21,14 @@
  */
 package de.dfki.km.text20.services.evaluators.gaze.util.filter.centralpoint;
 
-import java.awt.Point;
-import java.util.ArrayList;
-import java.util.List;
-
 import de.dfki.km.text20.services.evaluators.gaze.util.filter.AbstractFilter;
+import de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
-import de.dfki.km.text20.services.trackingdevices.eyes.util.EyeTrackingEventWrapper;
 
 /**
- * Collects functions all centralPoint filters use. 
+ * Collects functions all centralPoint filters use. The last points are kept in a ring 
+ * buffer together with their sums, subclasses maintain anything else they need through 
+ * {@link #pointAdded(int, int)} and {@link #pointRemoved(int, int)}.
  * 
  * @author Ralf Biedert
  *
@@ -40,8 +38,23 @@ public abstract class CentralPointFilter extends AbstractFilter {
     /** Size of the backlog */
     protected int backlogSize;
 
-    /** All points used to smooth */
-    final protected List<Point> lastPoints = new ArrayList<Point>();
+    /** X coordinates of the last points */
+    private int[] lastX;
+
+    /** Y coordinates of the last points */
+    private int[] lastY;
+
+    /** Index of the oldest point */
+    private int head = 0;
+
+    /** Number of points */
+    private int size = 0;
+
+    /** Sum of all x coordinates in the backlog */
+    long sumX = 0;
+
+    /** Sum of all y coordinates in the backlog */
+    long sumY = 0;
 
     /**
      * Creates the filter with a given backlog size
@@ -50,6 +63,8 @@ public abstract class CentralPointFilter extends AbstractFilter {
      */
     public CentralPointFilter(final int backlogSize) {
         this.backlogSize = backlogSize;
+        this.lastX = new int[Math.max(1, backlogSize)];
+        this.lastY = new int[Math.max(1, backlogSize)];
     }
 
     /* (non-Javadoc)
@@ -57,40 +72,132 @@ public abstract class CentralPointFilter extends AbstractFilter {
      */
     @Override
     public final EyeTrackingEvent filterEvent(final EyeTrackingEvent event) {
+        final GazeSample sample = new GazeSample();
+        sample.set(event);
+        filterSample(sample);
+        return sample.toEvent();
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.filter.AbstractFilter#filterSample(de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample)
+     */
+    @Override
+    public final void filterSample(final GazeSample sample) {
         // Cap size
-        if (this.lastPoints.size() == this.backlogSize) {
-            this.lastPoints.remove(0);
+        if (this.size > 0 && this.size >= this.backlogSize) {
+            removeOldest();
         }
 
-        this.lastPoints.add(event.getGazeCenter());
+        final int i = (this.head + this.size) % this.lastX.length;
+        this.lastX[i] = sample.x;
+        this.lastY[i] = sample.y;
+        this.size++;
+        this.sumX += sample.x;
+        this.sumY += sample.y;
+
+        pointAdded(sample.x, sample.y);
 
-        // Get point to return
-        final Point rval = getPoint();
+        // Replace the sample's position by the central point, if there is one
+        applyPoint(sample);
+    }
 
-        // If nothing returned, return the event itself
-        if (rval == null) return event;
+    /**
+     * Sets the central point to use as the sample's position. Leaves the sample 
+     * untouched if there is none (yet).
+     * 
+     * @param sample The sample to modify.
+     */
+    abstract void applyPoint(GazeSample sample);
 
-        return new EyeTrackingEventWrapper(event) {
+    /**
+     * Called after a point was added to the backlog.
+     * 
+     * @param x
+     * @param y
+     */
+    void pointAdded(final int x, final int y) {
+        //
+    }
 
-            @Override
-            public Point getGazeCenter() {
-                return (Point) rval.clone();
-            }
-        };
+    /**
+     * Called after a point was removed from the backlog.
+     * 
+     * @param x
+     * @param y
+     */
+    void pointRemoved(final int x, final int y) {
+        //
     }
 
     /**
-     * Return the central point to use.
+     * Returns the number of points in the backlog.
      * 
-     * @return
+     * @return The number of points.
      */
-    abstract Point getPoint();
+    final int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the x coordinate of a point.
+     * 
+     * @param i The index of the point, 0 is the oldest.
+     * @return The x coordinate.
+     */
+    final int x(final int i) {
+        return this.lastX[(this.head + i) % this.lastX.length];
+    }
+
+    /**
+     * Returns the y coordinate of a point.
+     * 
+     * @param i The index of the point, 0 is the oldest.
+     * @return The y coordinate.
+     */
+    final int y(final int i) {
+        return this.lastY[(this.head + i) % this.lastY.length];
+    }
+
+    /**
+     * Drops the oldest point of the backlog.
+     */
+    private void removeOldest() {
+        final int x = this.lastX[this.head];
+        final int y = this.lastY[this.head];
+
+        this.head = (this.head + 1) % this.lastX.length;
+        this.size--;
+        this.sumX -= x;
+        this.sumY -= y;
+
+        pointRemoved(x, y);
+    }
 
     /**
+     * Changes the size of the backlog. If it shrinks the oldest points are dropped, the 
+     * buffer is only reallocated if it grows beyond its capacity.
      * 
      * @param newSize
      */
     public void resize(int newSize) {
+        while (this.size > Math.max(0, newSize)) {
+            removeOldest();
+        }
+
+        if (newSize > this.lastX.length) {
+            final int[] x = new int[newSize];
+            final int[] y = new int[newSize];
+
+            for (int i = 0; i < this.size; i++) {
+                x[i] = x(i);
+                y[i] = y(i);
+            }
+
+            this.lastX = x;
+            this.lastY = y;
+            this.head = 0;
+        }
+
         this.backlogSize = newSize;
     }
 }
@@ -21,7 +21,7 @@
  */
 package de.dfki.km.text20.services.evaluators.gaze.util.filter.centralpoint;
 
-import java.awt.Point;
+import de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample;
 
 /**
  * 
@@ -41,32 +41,28 @@ public class MedianFilter extends CentralPointFilter {
     }
 
     /* (non-Javadoc)
-     * @see de.dfki.km.augmentedtext.util.filter.centralpoint.CentralPointFilter#getPoint()
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.filter.centralpoint.CentralPointFilter#applyPoint(de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample)
      */
-
     @Override
-    Point getPoint() {
-        final Point center = new Point();
-
-        for (final Point p : this.lastPoints) {
-            center.x += p.x;
-            center.y += p.y;
-        }
+    void applyPoint(final GazeSample sample) {
+        final int cx = (int) (this.sumX / size());
+        final int cy = (int) (this.sumY / size());
 
-        center.x /= this.lastPoints.size();
-        center.y /= this.lastPoints.size();
-
-        Point rval = null;
+        int best = 0;
         double dist = Double.MAX_VALUE;
 
-        for (final Point p : this.lastPoints) {
-            final double dd = p.distance(center);
+        for (int i = 0; i < size(); i++) {
+            final double dx = x(i) - cx;
+            final double dy = y(i) - cy;
+            final double dd = Math.sqrt(dx * dx + dy * dy);
+
             if (dd < dist) {
-                rval = p;
+                best = i;
                 dist = dd;
             }
         }
 
-        return rval;
+        sample.x = x(best);
+        sample.y = y(best);
     }
 }
@@ -0,0 +1,98 @@
+/*
+ * SlidingMedian.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.evaluators.gaze.util.filter.centralpoint;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the values of a sliding window sorted, so order statistics like the median are 
+ * available without sorting the window for every sample. Adding and removing a value costs 
+ * a binary search and a (short) array move, nothing is allocated unless the window grows.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+class SlidingMedian {
+    /** The sorted values */
+    private int[] values;
+
+    /** Number of values */
+    private int size = 0;
+
+    /**
+     * @param capacity Initial capacity.
+     */
+    SlidingMedian(final int capacity) {
+        this.values = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Adds a value.
+     * 
+     * @param value
+     */
+    void add(final int value) {
+        if (this.size == this.values.length) {
+            this.values = Arrays.copyOf(this.values, this.values.length * 2);
+        }
+
+        int i = Arrays.binarySearch(this.values, 0, this.size, value);
+        if (i < 0) i = -i - 1;
+
+        System.arraycopy(this.values, i, this.values, i + 1, this.size - i);
+        this.values[i] = value;
+        this.size++;
+    }
+
+    /**
+     * Removes one occurrence of a value previously added.
+     * 
+     * @param value
+     */
+    void remove(final int value) {
+        final int i = Arrays.binarySearch(this.values, 0, this.size, value);
+        if (i < 0) return;
+
+        System.arraycopy(this.values, i + 1, this.values, i, this.size - i - 1);
+        this.size--;
+    }
+
+    /**
+     * Returns the k-th smallest value.
+     * 
+     * @param k The index in sorted order.
+     * @return The value.
+     */
+    int get(final int k) {
+        if (k < 0 || k >= this.size) throw new ArrayIndexOutOfBoundsException(k);
+        return this.values[k];
+    }
+
+    /**
+     * Returns the number of values.
+     * 
+     * @return The size.
+     */
+    int size() {
+        return this.size;
+    }
+}
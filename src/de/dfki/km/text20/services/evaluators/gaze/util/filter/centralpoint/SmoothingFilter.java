@@ -21,7 +21,7 @@
  */
 package de.dfki.km.text20.services.evaluators.gaze.util.filter.centralpoint;
 
-import java.awt.Point;
+import de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample;
 
 /**
  * @author Ralf Biedert
@@ -37,22 +37,11 @@ public class SmoothingFilter extends CentralPointFilter {
     }
 
     /* (non-Javadoc)
-     * @see de.dfki.km.augmentedtext.util.filter.centralpoint.CentralPointFilter#getPoint()
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.filter.centralpoint.CentralPointFilter#applyPoint(de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample)
      */
-
     @Override
-    Point getPoint() {
-        final Point rval = new Point();
-
-        for (final Point p : this.lastPoints) {
-            rval.x += p.x;
-            rval.y += p.y;
-        }
-
-        rval.x /= this.lastPoints.size();
-        rval.y /= this.lastPoints.size();
-
-        return rval;
+    void applyPoint(final GazeSample sample) {
+        sample.x = (int) (this.sumX / size());
+        sample.y = (int) (this.sumY / size());
     }
-
 }
@@ -21,8 +21,7 @@
  */
 package de.dfki.km.text20.services.evaluators.gaze.util.filter.centralpoint;
 
-import java.awt.Point;
-import java.util.Arrays;
+import de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample;
 
 /**
  * 
@@ -33,35 +32,43 @@ import java.util.Arrays;
  */
 public class VerticalStabilization extends CentralPointFilter {
 
+    /** Sorted y coordinates of the backlog */
+    private final SlidingMedian medianY;
+
     /**
      * 
      * @param size
      */
     public VerticalStabilization(final int size) {
         super(size);
+
+        this.medianY = new SlidingMedian(size);
     }
 
     /* (non-Javadoc)
-     * @see de.dfki.km.augmentedtext.util.filter.centralpoint.CentralPointFilter#getPoint()
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.filter.centralpoint.CentralPointFilter#applyPoint(de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample)
      */
-
     @Override
-    Point getPoint() {
-        if (this.lastPoints.size() < this.backlogSize) return null;
-
-        final int y[] = new int[this.lastPoints.size()];
+    void applyPoint(final GazeSample sample) {
+        if (size() < this.backlogSize) return;
 
-        int i = 0;
-
-        for (final Point p : this.lastPoints) {
-            y[i] = p.y;
-            i++;
-        }
+        // The x coordinate is the one of the last point, i.e., the sample's own 
+        sample.y = this.medianY.get(size() / 2);
+    }
 
-        Arrays.sort(y);
-        final int s = this.lastPoints.size() / 2;
-        final Point lastPoint = this.lastPoints.get(this.lastPoints.size() - 1);
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.filter.centralpoint.CentralPointFilter#pointAdded(int, int)
+     */
+    @Override
+    void pointAdded(final int x, final int y) {
+        this.medianY.add(y);
+    }
 
-        return new Point(lastPoint.x, y[s]);
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.filter.centralpoint.CentralPointFilter#pointRemoved(int, int)
+     */
+    @Override
+    void pointRemoved(final int x, final int y) {
+        this.medianY.remove(y);
     }
 }
@@ -21,8 +21,7 @@
  */
 package de.dfki.km.text20.services.evaluators.gaze.util.filter.centralpoint;
 
-import java.awt.Point;
-import java.util.Arrays;
+import de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample;
 
 /**
  * 
@@ -34,38 +33,51 @@ import java.util.Arrays;
  */
 public class VirtualMedianFilter extends CentralPointFilter {
 
+    /** Sorted x coordinates of the backlog */
+    private final SlidingMedian medianX;
+
+    /** Sorted y coordinates of the backlog */
+    private final SlidingMedian medianY;
+
     /**
      * 
      * @param size
      */
     public VirtualMedianFilter(final int size) {
         super(size);
+
+        this.medianX = new SlidingMedian(size);
+        this.medianY = new SlidingMedian(size);
     }
 
     /* (non-Javadoc)
-     * @see de.dfki.km.augmentedtext.util.filter.centralpoint.CentralPointFilter#getPoint()
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.filter.centralpoint.CentralPointFilter#applyPoint(de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample)
      */
     @Override
-    Point getPoint() {
-        if (this.lastPoints.size() < this.backlogSize) return null;
-
-        final int x[] = new int[this.lastPoints.size()];
-        final int y[] = new int[this.lastPoints.size()];
+    void applyPoint(final GazeSample sample) {
+        if (size() < this.backlogSize) return;
 
-        int i = 0;
+        final int s = size() / 2;
 
-        for (final Point p : this.lastPoints) {
-            x[i] = p.x;
-            y[i] = p.y;
-            i++;
-        }
-
-        Arrays.sort(x);
-        Arrays.sort(y);
-
-        final int s = this.lastPoints.size() / 2;
+        sample.x = this.medianX.get(s);
+        sample.y = this.medianY.get(s);
+    }
 
-        return new Point(x[s], y[s]);
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.filter.centralpoint.CentralPointFilter#pointAdded(int, int)
+     */
+    @Override
+    void pointAdded(final int x, final int y) {
+        this.medianX.add(x);
+        this.medianY.add(y);
     }
 
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.filter.centralpoint.CentralPointFilter#pointRemoved(int, int)
+     */
+    @Override
+    void pointRemoved(final int x, final int y) {
+        this.medianX.remove(x);
+        this.medianY.remove(y);
+    }
 }
@@ -21,9 +21,10 @@
  */
 package de.dfki.km.text20.services.evaluators.gaze.util.filter.centralpoint;
 
-import java.awt.Point;
 import java.util.Arrays;
 
+import de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample;
+
 /**
  * 
  * Computes the center of the last n points, it now selects the point of the last n 
@@ -37,6 +38,9 @@ public class VirtualSmoothingFilter extends CentralPointFilter {
     final int xs;
     final int ys;
 
+    /** Reused to sort the x coordinates */
+    private final int[] sortedX;
+
     /**
      * 
      * @param xsize
@@ -47,37 +51,33 @@ public class VirtualSmoothingFilter extends CentralPointFilter {
 
         this.xs = xsize;
         this.ys = ysize;
+        this.sortedX = new int[xsize];
     }
 
     /* (non-Javadoc)
-     * @see de.dfki.km.augmentedtext.util.filter.centralpoint.CentralPointFilter#getPoint()
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.filter.centralpoint.CentralPointFilter#applyPoint(de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample)
      */
     @Override
-    Point getPoint() {
-        if (this.lastPoints.size() < this.backlogSize) return null;
+    void applyPoint(final GazeSample sample) {
+        if (size() < this.backlogSize) return;
 
-        final int x[] = new int[this.xs];
-        final int y[] = new int[this.ys];
+        final int last = size() - 1;
 
         for (int i = 0; i < this.xs; i++) {
-            x[i] = this.lastPoints.get(this.backlogSize - 1 - i).x;
+            this.sortedX[i] = x(last - i);
         }
 
-        for (int i = 0; i < this.ys; i++) {
-            y[i] = this.lastPoints.get(this.backlogSize - 1 - i).y;
-        }
-
-        Arrays.sort(x);
+        Arrays.sort(this.sortedX);
 
         int my = 0;
-        for (int i : y) {
-            my += i;
+        for (int i = 0; i < this.ys; i++) {
+            my += y(last - i);
         }
-        my /= y.length;
+        my /= this.ys;
 
-        final int s = this.lastPoints.size() / 2;
+        final int s = size() / 2;
 
-        return new Point(x[s], my);
+        sample.x = this.sortedX[s];
+        sample.y = my;
     }
-
 }
@@ -0,0 +1,247 @@
+/*
+ * LineIndex.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.evaluators.gaze.util.filter.displacement;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.dfki.km.text20.services.pseudorenderer.CoordinatesType;
+import de.dfki.km.text20.services.pseudorenderer.RenderElement;
+import de.dfki.km.text20.services.pseudorenderer.renderelements.TextualRenderElement;
+import de.dfki.km.text20.services.pseudorenderer.util.elements.RenderElementUtil;
+
+/**
+ * Sparse index of text lines by vertical band, so the nearest line to a point can be 
+ * found by only looking at the bands around it. Bands are created when the first line 
+ * falls into them. 
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+class LineIndex {
+
+    /**
+     * An indexed line, with the geometry it had when it was indexed.
+     */
+    static class Line {
+        /** */
+        final RenderElement element;
+
+        /** Identifier we're indexed under */
+        final String identifier;
+
+        /** Band we're in */
+        int band;
+
+        /** Vertical center in document coordinates */
+        double centerY;
+
+        /**
+         * @param element
+         * @param identifier
+         */
+        Line(final RenderElement element, final String identifier) {
+            this.element = element;
+            this.identifier = identifier;
+        }
+    }
+
+    /** Height of a band in pixels */
+    private final int bandHeight;
+
+    /** Elements higher than this are not considered lines */
+    private final int maxHeight;
+
+    /** Lines by band */
+    private final Map<Integer, List<Line>> bands = new HashMap<Integer, List<Line>>();
+
+    /** Lines by element identifier */
+    private final Map<String, Line> lines = new HashMap<String, Line>();
+
+    /** Receives element geometries */
+    private final Rectangle geometry = new Rectangle();
+
+    /**
+     * @param bandHeight
+     * @param maxHeight
+     */
+    LineIndex(final int bandHeight, final int maxHeight) {
+        this.bandHeight = bandHeight;
+        this.maxHeight = maxHeight;
+    }
+
+    /**
+     * (Re)indexes the element according to its current geometry. Elements which are not 
+     * lines (anymore) are removed.
+     * 
+     * @param element
+     */
+    void update(final RenderElement element) {
+        final Line line = this.lines.get(element.getIdentifier());
+
+        // Currently we only care for text elements. Elements too large dont give enough 
+        // information, we also dont care about the width, as we only displace y-wise.
+        final Rectangle geometry = RenderElementUtil.geometry(element, CoordinatesType.DOCUMENT_BASED, this.geometry);
+        if (!(element instanceof TextualRenderElement) || geometry.height > this.maxHeight) {
+            if (line != null) remove(line);
+            return;
+        }
+
+        final double centerY = geometry.getCenterY();
+        final int band = floorDiv((int) centerY, this.bandHeight);
+
+        if (line == null) {
+            final Line l = new Line(element, element.getIdentifier());
+            l.centerY = centerY;
+            l.band = band;
+            this.lines.put(element.getIdentifier(), l);
+            band(band, true).add(l);
+            return;
+        }
+
+        // The identifier might have been reassigned to another element
+        if (line.element != element || line.band != band) {
+            remove(line);
+            update(element);
+            return;
+        }
+
+        line.centerY = centerY;
+    }
+
+    /**
+     * Removes the element, if it is indexed.
+     * 
+     * @param element
+     */
+    void remove(final RenderElement element) {
+        final Line line = this.lines.get(element.getIdentifier());
+        if (line != null && line.element == element) remove(line);
+    }
+
+    /**
+     * Removes all lines.
+     */
+    void clear() {
+        this.lines.clear();
+        this.bands.clear();
+    }
+
+    /**
+     * Returns the line closest to the given document y-coordinate.
+     * 
+     * @param y
+     * @param maxDistance Lines further away are ignored. 
+     * @return The closest line or null.
+     */
+    Line nearest(final int y, final int maxDistance) {
+        final int from = floorDiv(y - maxDistance - 1, this.bandHeight);
+        final int to = floorDiv(y + maxDistance + 1, this.bandHeight);
+
+        double distance = Double.MAX_VALUE;
+        Line rval = null;
+
+        for (int b = from; b <= to; b++) {
+            final List<Line> list = band(b, false);
+            if (list == null) continue;
+
+            for (int i = 0; i < list.size(); i++) {
+                final Line line = list.get(i);
+                final double d = Math.abs((int) line.centerY - y);
+
+                if (d > maxDistance) continue;
+
+                if (d < distance) {
+                    distance = d;
+                    rval = line;
+                }
+            }
+        }
+
+        return rval;
+    }
+
+    /**
+     * Checks if the line still has the geometry it was indexed with. 
+     * 
+     * @param line
+     * @return True if the line is current.
+     */
+    boolean isCurrent(final Line line) {
+        final Rectangle geometry = RenderElementUtil.geometry(line.element, CoordinatesType.DOCUMENT_BASED, this.geometry);
+        return geometry.getCenterY() == line.centerY && geometry.height <= this.maxHeight;
+    }
+
+    /**
+     * Returns the number of indexed lines.
+     * 
+     * @return The number of lines.
+     */
+    int size() {
+        return this.lines.size();
+    }
+
+    /**
+     * @param line
+     */
+    private void remove(final Line line) {
+        this.lines.remove(line.identifier);
+
+        final List<Line> list = band(line.band, false);
+        if (list == null) return;
+
+        list.remove(line);
+        if (list.isEmpty()) this.bands.remove(Integer.valueOf(line.band));
+    }
+
+    /**
+     * Divides and rounds towards negative infinity.
+     * 
+     * @param a
+     * @param b
+     * @return .
+     */
+    static int floorDiv(final int a, final int b) {
+        final int q = a / b;
+        return (a % b != 0 && (a < 0) != (b < 0)) ? q - 1 : q;
+    }
+
+    /**
+     * @param band
+     * @param create
+     * @return .
+     */
+    private List<Line> band(final int band, final boolean create) {
+        final Integer key = Integer.valueOf(band);
+
+        List<Line> list = this.bands.get(key);
+        if (list == null && create) {
+            list = new ArrayList<Line>();
+            this.bands.put(key, list);
+        }
+
+        return list;
+    }
+}
@@ -25,13 +25,13 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 
 import de.dfki.km.text20.services.evaluators.gaze.util.filter.AbstractFilter;
-import de.dfki.km.text20.services.evaluators.gaze.util.filter.displacement.GridEntry.GridStatus;
 import de.dfki.km.text20.services.pseudorenderer.CoordinatesType;
+import de.dfki.km.text20.services.pseudorenderer.Pseudorenderer;
+import de.dfki.km.text20.services.pseudorenderer.PseudorendererChanges;
 import de.dfki.km.text20.services.pseudorenderer.RenderElement;
-import de.dfki.km.text20.services.pseudorenderer.renderelements.TextualRenderElement;
+import de.dfki.km.text20.services.pseudorenderer.util.PseudorendererSubscription;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
 import de.dfki.km.text20.services.trackingdevices.eyes.util.EyeTrackingEventWrapper;
 
@@ -45,15 +45,19 @@ public class MagneticDisplacementFilter extends AbstractFilter {
     /** offset of the document in the window */
     Point documentOffset = new Point();
 
-    /** Manges the displacement grid */
-    final Grid grid = new Grid(100, 100);
-
     /** Ensures every RE exists only once */
     Map<String, RenderElement> renderElements = new HashMap<String, RenderElement>();
 
+    /** Textual elements by vertical position */
+    // TODO: A bit harsh the height limit ...
+    final LineIndex lines = new LineIndex(100, 30);
+
     /** Where the elements are located */
     Rectangle screenPosition = new Rectangle();
 
+    /** Keeps our elements in sync with a renderer (may be null) */
+    PseudorendererSubscription subscription;
+
     @Override
     public EyeTrackingEvent filterEvent(final EyeTrackingEvent event) {
 
@@ -64,12 +68,8 @@ public class MagneticDisplacementFilter extends AbstractFilter {
         // Displacement to apply to the center point
         final Point displacement = new Point();
 
-        // Obtain grid entry for point
-        final Point gazeCenter = event.getGazeCenter();
-        final GridEntry gridForPoint = this.grid.getGridForPoint(gazeCenter);
-
-        // If we already have a status for the point, return it ... (may not be the best choice ...?)
-        // if (gridForPoint.gridStatus.equals(GridStatus.SET)) { return createWrapped(event, gridForPoint.xdisplacement, gridForPoint.ydisplacement); }
+        // Pick up geometry changes of the renderer we follow
+        sync();
 
         // Get elements near the document gaze point
         final RenderElement bestNear = getBestElementNear(documentPoint);
@@ -81,11 +81,6 @@ public class MagneticDisplacementFilter extends AbstractFilter {
 
         // Only return new event if we have a displacement.
         if (displacement.x > 0 || displacement.y > 0) {
-            // Update grid for point information
-            gridForPoint.xdisplacement = displacement.x;
-            gridForPoint.ydisplacement = displacement.y;
-            gridForPoint.gridStatus = GridStatus.SET;
-
             return createWrapped(event, displacement.x, displacement.y);
         }
 
@@ -101,6 +96,18 @@ public class MagneticDisplacementFilter extends AbstractFilter {
         this.documentOffset = o;
     }
 
+    /**
+     * Follows all element changes of the given renderer from now on, so the filter does not
+     * depend on {@link #updateRenderElement(RenderElement)} being called for every change.
+     * 
+     * @param pseudorenderer The renderer to follow.
+     * @since 1.4
+     */
+    public void followPseudorenderer(final Pseudorenderer pseudorenderer) {
+        this.subscription = new PseudorendererSubscription(pseudorenderer);
+        resync();
+    }
+
     /**
      * Updates a render element inside the filter. 
      * 
@@ -110,6 +117,7 @@ public class MagneticDisplacementFilter extends AbstractFilter {
         if (re == null) return;
 
         this.renderElements.put(re.getIdentifier(), re);
+        this.lines.update(re);
     }
 
     /**
@@ -143,52 +151,73 @@ public class MagneticDisplacementFilter extends AbstractFilter {
     }
 
     /**
-     * Returns the 'best'  element close to the gaze point
+     * Returns the 'best'  element close to the gaze point, i.e., the closest line directly 
+     * above or below. Only the bands of the line index around the point are considered.
      *  
      * @param documentPoint
      * @return
      */
     protected RenderElement getBestElementNear(final Point documentPoint) {
-        final Set<String> ids = this.renderElements.keySet();
+        // TODO: Check this limit as well
+        final int maxDistance = 100;
 
-        double distance = Double.MAX_VALUE;
-        RenderElement bestGuess = null;
+        // Lines whose geometry changed since they were indexed are reindexed, then we ask again
+        for (int i = 0; i < 3; i++) {
+            final LineIndex.Line line = this.lines.nearest(documentPoint.y, maxDistance);
+            if (line == null) return null;
 
-        for (final String id : ids) {
-            final RenderElement renderElement = this.renderElements.get(id);
+            if (this.lines.isCurrent(line)) return line.element;
 
-            // Currently we only care for text elements
-            if (!(renderElement instanceof TextualRenderElement)) {
-                continue;
-            }
+            this.lines.update(line.element);
+        }
 
-            final Rectangle geometry = renderElement.getGeometry(CoordinatesType.DOCUMENT_BASED);
+        // Too many lines moved, scan all elements instead of returning a stale line
+        for (final RenderElement element : this.renderElements.values()) {
+            this.lines.update(element);
+        }
 
-            // Elements too large dont give enough information for interesting points ... We alo
-            // dont care about the width, as we currently want to displace y-wise only ...
-            // TODO: A bit harsh this limit ...
-            if (geometry.height > 30) {
-                continue;
-            }
+        final LineIndex.Line line = this.lines.nearest(documentPoint.y, maxDistance);
+        return line == null ? null : line.element;
+    }
 
-            // Use point directly above or below gaze.
-            final Point p = new Point(documentPoint.x, (int) geometry.getCenterY());
-            final double d = documentPoint.distance(p);
+    /**
+     * Applies the changes of the renderer we follow (if any) to our elements.
+     */
+    private void sync() {
+        if (this.subscription == null) return;
 
-            // If the distance is too large, ignore
-            // TODO: Check this limit as well
-            if (d > 100) {
-                continue;
-            }
+        final PseudorendererChanges changes = this.subscription.poll();
+        if (!changes.isComplete()) {
+            resync();
+            return;
+        }
 
-            if (d < distance) {
-                distance = d;
-                bestGuess = renderElement;
+        for (final RenderElement element : changes.getRemoved()) {
+            if (this.renderElements.get(element.getIdentifier()) == element) {
+                this.renderElements.remove(element.getIdentifier());
             }
+            this.lines.remove(element);
+        }
 
+        for (final RenderElement element : changes.getAdded()) {
+            updateRenderElement(element);
         }
 
-        return bestGuess;
+        for (final RenderElement element : changes.getChanged()) {
+            updateRenderElement(element);
+        }
+    }
+
+    /**
+     * Replaces all our elements by those currently in the renderer we follow.
+     */
+    private void resync() {
+        this.renderElements.clear();
+        this.lines.clear();
+
+        for (final RenderElement element : this.subscription.resync().getElements()) {
+            updateRenderElement(element);
+        }
     }
 
     /**
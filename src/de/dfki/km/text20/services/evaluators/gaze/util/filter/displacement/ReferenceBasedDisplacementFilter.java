@@ -25,8 +25,14 @@ import java.awt.Point;
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import de.dfki.km.text20.services.evaluators.gaze.util.filter.AbstractFilter;
+import de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
 import de.dfki.km.text20.services.trackingdevices.eyes.util.EyeTrackingEventWrapper;
 
@@ -35,13 +41,97 @@ import de.dfki.km.text20.services.trackingdevices.eyes.util.EyeTrackingEventWrap
  */
 public class ReferenceBasedDisplacementFilter extends AbstractFilter {
 
+    /** How the displacement of a sample is computed. */
+    public static enum Mode {
+        /** Weigh all reference points for every sample. */
+        EXACT,
+
+        /**
+         * Look the displacement up in a tiled field, which is rasterized in the background 
+         * whenever the reference points changed. Until the first field is ready, and outside
+         * of it, samples are computed exactly. 
+         */
+        FIELD
+    }
+
     final static boolean PRINT = true; //+++
 
+    /** Default edge length of a tile in pixels */
+    public static final int DEFAULT_TILE_SIZE = 16;
+
+    /** How far the field extends beyond the reference points */
+    private static final int FIELD_MARGIN = 512;
+
+    /** Max. number of nodes along one side of the field; larger fields get larger tiles */
+    private static final int MAX_NODES = 512;
+
+    /** Rasterizes the fields of all filters. The thread dies if there's nothing to do. */
+    private static final ThreadPoolExecutor rasterizer = new ThreadPoolExecutor(0, 1, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, "ReferenceBasedDisplacementFilter.Rasterizer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
     private final List<Double> lenBuffer = new ArrayList<Double>();
     private double radiusSq = 10000.;
 
     private final List<ReferencePoint> references = new ArrayList<ReferencePoint>();
 
+    /** How samples are displaced */
+    private final Mode mode;
+
+    /** Requested edge length of a tile */
+    private final int tileSize;
+
+    /** Incremented whenever the reference points change */
+    private volatile int version = 0;
+
+    /** The most recent field, possibly outdated, or null */
+    private volatile DisplacementField field;
+
+    /** Set while a rasterization is queued or running */
+    private final AtomicBoolean rasterizing = new AtomicBoolean(false);
+
+    /** Used by filterEvent() in FIELD mode */
+    private final GazeSample scratch = new GazeSample();
+
+    /**
+     * Creates an exact filter.
+     */
+    public ReferenceBasedDisplacementFilter() {
+        this(Mode.EXACT);
+    }
+
+    /**
+     * Creates a filter with the given mode and the default tile size.
+     * 
+     * @param mode How samples are displaced.
+     * 
+     * @since 1.4
+     */
+    public ReferenceBasedDisplacementFilter(final Mode mode) {
+        this(mode, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Creates a filter with the given mode.
+     * 
+     * @param mode How samples are displaced.
+     * @param tileSize Edge length of a tile of the displacement field in pixels.
+     * 
+     * @since 1.4
+     */
+    public ReferenceBasedDisplacementFilter(final Mode mode, final int tileSize) {
+        if (tileSize <= 0) throw new IllegalArgumentException("Tile size must be positive.");
+
+        this.mode = mode;
+        this.tileSize = tileSize;
+    }
+
     /**
      * @return .
      */
@@ -54,28 +144,54 @@ public class ReferenceBasedDisplacementFilter extends AbstractFilter {
      * @return .
      */
     public Point calcDisplacement(final Point point) {
-        buildLenBuffer(point);
-        final int bufSize = this.lenBuffer.size();
+        // Reference points may be updated concurrently, and the length buffer is shared
+        synchronized (this.references) {
+            buildLenBuffer(point);
+            final int bufSize = this.lenBuffer.size();
 
-        assert bufSize == this.references.size();
+            assert bufSize == this.references.size();
 
-        final Point2D.Double p = new Point2D.Double(point.x, point.y);
-        for (int i = 0; i < bufSize; ++i) {
-            final double len = this.lenBuffer.get(i).doubleValue();
-            final double dispX = this.references.get(i).xDisplacement;
-            final double dispY = this.references.get(i).yDisplacement;
+            final Point2D.Double p = new Point2D.Double(point.x, point.y);
+            for (int i = 0; i < bufSize; ++i) {
+                final double len = this.lenBuffer.get(i).doubleValue();
+                final double dispX = this.references.get(i).xDisplacement;
+                final double dispY = this.references.get(i).yDisplacement;
 
-            p.x += len * dispX;
-            p.y += len * dispY;
+                p.x += len * dispX;
+                p.y += len * dispY;
+            }
+            return new Point((int) p.x, (int) p.y);
         }
-        return new Point((int) p.x, (int) p.y);
     }
 
     /**
      * Removes all reference points from filter
      */
     public final void clearReferencePoints() {
-        this.references.clear();
+        synchronized (this.references) {
+            this.references.clear();
+            this.version++;
+        }
+    }
+
+    /**
+     * Returns the mode of this filter.
+     * 
+     * @return The mode.
+     */
+    public Mode getMode() {
+        return this.mode;
+    }
+
+    /**
+     * Returns true if samples are displaced with a field reflecting the current reference 
+     * points. Only meaningful in {@link Mode#FIELD}.
+     * 
+     * @return True if the field is up to date.
+     */
+    public boolean isFieldCurrent() {
+        final DisplacementField f = this.field;
+        return f != null && f.version == this.version;
     }
 
     //    protected final <T extends Point2D> T sumOf(List<T> lp, T res){
@@ -87,8 +203,35 @@ public class ReferenceBasedDisplacementFilter extends AbstractFilter {
     //    	return res;
     //    }
 
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.filter.AbstractFilter#filterSample(de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample)
+     */
+    @Override
+    public void filterSample(final GazeSample sample) {
+        if (this.mode != Mode.FIELD) {
+            super.filterSample(sample);
+            return;
+        }
+
+        final DisplacementField f = this.field;
+        if (f == null || f.version != this.version) rasterize();
+
+        // Use what we have, even if it's outdated, the dispatch must not wait for the rasterizer
+        if (f != null && f.displace(sample)) return;
+
+        final Point result = calcDisplacement(new Point(sample.x, sample.y));
+        sample.x = result.x;
+        sample.y = result.y;
+    }
+
     @Override
     public EyeTrackingEvent filterEvent(final EyeTrackingEvent event) {
+        if (this.mode == Mode.FIELD) {
+            this.scratch.set(event);
+            filterSample(this.scratch);
+            return this.scratch.toEvent();
+        }
+
         // @Eugen, TODO:
         // Implement filter here which displaces tracking events by given reference points
 
@@ -132,8 +275,37 @@ public class ReferenceBasedDisplacementFilter extends AbstractFilter {
     public void updateReferencePoint(final Point referencePoint, final int xdisplacement,
                                      final int ydisplacement, final long measurementTime) {
         // TODO: What to do with the time????
-        clearNearestRefPoints(referencePoint);
-        this.references.add(new ReferencePoint(referencePoint, xdisplacement, ydisplacement, measurementTime));
+        synchronized (this.references) {
+            clearNearestRefPoints(referencePoint);
+            this.references.add(new ReferencePoint(referencePoint, xdisplacement, ydisplacement, measurementTime));
+            this.version++;
+        }
+    }
+
+    /**
+     * Queues a rasterization of the current reference points, unless one is pending already.
+     */
+    private void rasterize() {
+        if (!this.rasterizing.compareAndSet(false, true)) return;
+
+        rasterizer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final int v;
+                    final ReferencePoint[] points;
+
+                    synchronized (ReferenceBasedDisplacementFilter.this.references) {
+                        v = ReferenceBasedDisplacementFilter.this.version;
+                        points = ReferenceBasedDisplacementFilter.this.references.toArray(new ReferencePoint[0]);
+                    }
+
+                    ReferenceBasedDisplacementFilter.this.field = new DisplacementField(points, ReferenceBasedDisplacementFilter.this.tileSize, v);
+                } finally {
+                    ReferenceBasedDisplacementFilter.this.rasterizing.set(false);
+                }
+            }
+        });
     }
 
     private void clearNearestRefPoints(final Point from) {
@@ -209,4 +381,142 @@ public class ReferenceBasedDisplacementFilter extends AbstractFilter {
             this.lenBuffer.set(i, Double.valueOf(len));
         }
     }
+
+    /**
+     * The displacement of all reference points, sampled at the corners of square tiles.
+     * Between the nodes the displacement is interpolated bilinearly. The weights are the 
+     * same as those of {@link ReferenceBasedDisplacementFilter#buildLenBuffer(Point)}, 
+     * which normalize to the inverse squared distance.
+     */
+    static class DisplacementField {
+        /** Reference point version this field was built from */
+        final int version;
+
+        /** Position of node (0, 0) */
+        final int originX, originY;
+
+        /** Edge length of a tile */
+        final int tile;
+
+        /** Number of nodes per row and column */
+        final int columns, rows;
+
+        /** Displacement at the nodes, row by row */
+        final float[] dx, dy;
+
+        /**
+         * @param points
+         * @param tileSize
+         * @param version
+         */
+        DisplacementField(final ReferencePoint[] points, final int tileSize, final int version) {
+            this.version = version;
+
+            if (points.length == 0) {
+                this.originX = 0;
+                this.originY = 0;
+                this.tile = tileSize;
+                this.columns = 0;
+                this.rows = 0;
+                this.dx = new float[0];
+                this.dy = new float[0];
+                return;
+            }
+
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+
+            for (final ReferencePoint p : points) {
+                minX = Math.min(minX, p.position.x);
+                minY = Math.min(minY, p.position.y);
+                maxX = Math.max(maxX, p.position.x);
+                maxY = Math.max(maxY, p.position.y);
+            }
+
+            final int width = maxX - minX + 2 * FIELD_MARGIN;
+            final int height = maxY - minY + 2 * FIELD_MARGIN;
+
+            this.tile = Math.max(tileSize, (Math.max(width, height) + MAX_NODES - 2) / (MAX_NODES - 1));
+            this.originX = minX - FIELD_MARGIN;
+            this.originY = minY - FIELD_MARGIN;
+            this.columns = (width + this.tile - 1) / this.tile + 1;
+            this.rows = (height + this.tile - 1) / this.tile + 1;
+            this.dx = new float[this.columns * this.rows];
+            this.dy = new float[this.columns * this.rows];
+
+            final double[] displacement = new double[2];
+
+            for (int r = 0; r < this.rows; r++) {
+                for (int c = 0; c < this.columns; c++) {
+                    displacementAt(points, this.originX + c * this.tile, this.originY + r * this.tile, displacement);
+                    this.dx[r * this.columns + c] = (float) displacement[0];
+                    this.dy[r * this.columns + c] = (float) displacement[1];
+                }
+            }
+        }
+
+        /**
+         * Computes the weighted displacement at the given position.
+         * 
+         * @param points
+         * @param x
+         * @param y
+         * @param result Receives x and y displacement.
+         */
+        static void displacementAt(final ReferencePoint[] points, final double x,
+                                   final double y, final double[] result) {
+            double sumX = 0, sumY = 0, sumW = 0;
+
+            for (final ReferencePoint p : points) {
+                final double ddx = p.position.x - x;
+                final double ddy = p.position.y - y;
+                final double lenSq = ddx * ddx + ddy * ddy;
+
+                if (lenSq == 0.) {
+                    result[0] = p.xDisplacement;
+                    result[1] = p.yDisplacement;
+                    return;
+                }
+
+                final double w = 1. / lenSq;
+                sumX += w * p.xDisplacement;
+                sumY += w * p.yDisplacement;
+                sumW += w;
+            }
+
+            result[0] = sumX / sumW;
+            result[1] = sumY / sumW;
+        }
+
+        /**
+         * Displaces the sample if it lies within the field.
+         * 
+         * @param sample
+         * @return False if the sample is outside the field.
+         */
+        boolean displace(final GazeSample sample) {
+            final double fx = (double) (sample.x - this.originX) / this.tile;
+            final double fy = (double) (sample.y - this.originY) / this.tile;
+
+            if (fx < 0 || fy < 0 || fx >= this.columns - 1 || fy >= this.rows - 1) return false;
+
+            final int c = (int) fx;
+            final int r = (int) fy;
+            final double u = fx - c;
+            final double v = fy - r;
+
+            final int i00 = r * this.columns + c;
+            final int i10 = i00 + 1;
+            final int i01 = i00 + this.columns;
+            final int i11 = i01 + 1;
+
+            final double ddx = (1 - v) * ((1 - u) * this.dx[i00] + u * this.dx[i10]) + v * ((1 - u) * this.dx[i01] + u * this.dx[i11]);
+            final double ddy = (1 - v) * ((1 - u) * this.dy[i00] + u * this.dy[i10]) + v * ((1 - u) * this.dy[i01] + u * this.dy[i11]);
+
+            sample.x = (int) (sample.x + ddx);
+            sample.y = (int) (sample.y + ddy);
+
+            return true;
+        }
+    }
 }
@@ -21,36 +21,64 @@
  */
 package de.dfki.km.text20.services.evaluators.gaze.util.filter.etufilters;
 
-import java.awt.Point;
-import java.util.ArrayList;
-import java.util.List;
-
-import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 import de.dfki.km.text20.services.evaluators.gaze.util.filter.AbstractFilter;
+import de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
-import de.dfki.km.text20.services.trackingdevices.eyes.util.EyeTrackingEventWrapper;
 
 /**
+ * Olsson's adaptive filter. The mean of the samples of the last <code>timeWindowMs</code> 
+ * is compared to the mean of the window before. If they are closer than 
+ * <code>threshold</code> we assume a fixation and apply an exponential low pass with 
+ * time constant <code>lowPassMs</code>, otherwise we follow the step with the (shorter)
+ * time constant <code>highPassMs</code>.<br/><br/>
+ * 
+ * Both window sums are maintained incrementally, so every sample costs amortized O(1) and
+ * nothing is allocated. Invalid samples are passed through and ignored.
+ * 
  * @author Eugen Massini
  *
  */
 public class OlssonFilter extends AbstractFilter {
 
     protected final long highPassMs;
-    protected final List<Point> lastPoints = new ArrayList<Point>();
-
-    protected final List<Long> lastTimes = new ArrayList<Long>();
     protected final long lowPassMs;
     protected final int size;
     protected final long threshold;
     protected final long timeWindowMs;
 
+    /** Buffered samples, the oldest <code>beforeCount</code> of them form the earlier window */
+    private final int[] ringX, ringY;
+
+    /** */
+    private final long[] ringTime;
+
+    /** Index of the oldest sample, number of samples and number of samples in the earlier window */
+    private int head, count, beforeCount;
+
+    /** Coordinate sums of both windows */
+    private long beforeSumX, beforeSumY, afterSumX, afterSumY;
+
+    /** Current filter output */
+    private double filteredX, filteredY;
+
+    /** Time of the last sample we filtered */
+    private long filteredTime;
+
+    /** If we have an output yet */
+    private boolean initialized;
+
+    /** If the last sample was considered part of a step */
+    private boolean step;
+
+    /** Used by filterEvent() */
+    private final GazeSample scratch = new GazeSample();
+
     /**
-     * @param size
-     * @param timeWindowMs
-     * @param lowPassMs
-     * @param highPassMs
-     * @param threshold
+     * @param size Max. number of samples in both windows together
+     * @param timeWindowMs Length of each window
+     * @param lowPassMs Time constant during fixations
+     * @param highPassMs Time constant after a step was detected
+     * @param threshold Min. distance of both window means to detect a step
      */
     public OlssonFilter(final int size, final long timeWindowMs, final long lowPassMs,
                         final long highPassMs, final long threshold) {
@@ -59,85 +87,128 @@ public class OlssonFilter extends AbstractFilter {
         this.lowPassMs = lowPassMs;
         this.highPassMs = highPassMs;
         this.threshold = threshold;
+
+        this.ringX = new int[Math.max(1, size)];
+        this.ringY = new int[this.ringX.length];
+        this.ringTime = new long[this.ringX.length];
     }
 
     @Override
     public EyeTrackingEvent filterEvent(final EyeTrackingEvent event) {
-        if (this.lastPoints.size() == this.size) {
-            this.lastPoints.remove(0);
-            this.lastTimes.remove(0);
-        }
+        this.scratch.set(event);
+        filterSample(this.scratch);
+        return this.scratch.toEvent();
+    }
 
-        this.lastPoints.add(event.getGazeCenter());
-        this.lastTimes.add(Long.valueOf(event.getObservationTime()));
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.filter.AbstractFilter#filterSample(de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample)
+     */
+    @Override
+    public void filterSample(final GazeSample sample) {
+        if (!sample.valid) return;
 
-        final Point resPoint = getPoint();
+        push(sample.x, sample.y, sample.time);
 
-        if (resPoint == null) return event;
+        // Compare the means of both windows
+        this.step = false;
+        if (this.beforeCount > 0) {
+            final int afterCount = this.count - this.beforeCount;
+            final double dx = (double) this.afterSumX / afterCount - (double) this.beforeSumX / this.beforeCount;
+            final double dy = (double) this.afterSumY / afterCount - (double) this.beforeSumY / this.beforeCount;
 
-        return new EyeTrackingEventWrapper(event) {
+            this.step = dx * dx + dy * dy >= (double) this.threshold * this.threshold;
+        }
 
-            @Override
-            public Point getGazeCenter() {
-                return resPoint;
-            }
-        };
-    }
+        if (!this.initialized) {
+            this.initialized = true;
+            this.filteredX = sample.x;
+            this.filteredY = sample.y;
+        } else {
+            final long tau = this.step ? this.highPassMs : this.lowPassMs;
+            final long dt = Math.max(0, sample.time - this.filteredTime);
+            final double alpha = tau <= 0 ? 1. : (double) dt / (dt + tau);
 
-    private final void addPoints(final Point dest, final Point b) {
-        dest.x += b.x;
-        dest.y += b.y;
-    }
+            this.filteredX += alpha * (sample.x - this.filteredX);
+            this.filteredY += alpha * (sample.y - this.filteredY);
+        }
 
-    private final void scalePoint(final Point dest, final double v) {
-        dest.x *= v;
-        dest.y *= v;
-    }
+        this.filteredTime = sample.time;
 
-    protected final Point getLastPoint() {
-        if (this.lastPoints.isEmpty()) return null;
-        return this.lastPoints.get(this.lastPoints.size() - 1);
+        sample.x = (int) Math.round(this.filteredX);
+        sample.y = (int) Math.round(this.filteredY);
     }
 
-    protected final double getLastTime() {
-        if (this.lastTimes.isEmpty()) return 0;
-        return this.lastTimes.get(this.lastTimes.size() - 1).doubleValue();
+    /**
+     * Returns true if a step (saccade) was detected with the last sample.
+     * 
+     * @return True if we are following a step.
+     */
+    public boolean isStep() {
+        return this.step;
     }
 
-    /* (non-Javadoc)
-     * @see de.dfki.km.augmentedtext.util.filter.centralpoint.CentralPointFilter#getPoint()
+    /**
+     * Adds a sample and moves the window borders according to its time.
+     * 
+     * @param x
+     * @param y
+     * @param time
      */
-    Point getPoint() {
-        final Point lastPoint = getLastPoint();
-        if (lastPoint == null) return null;
-
-        final double lastTime = getLastTime();
-
-        final Point beforeP = new Point(0, 0);
-        final Point afterP = new Point(0, 0);
-        int beforeC = 0;
-        int afterC = 0;
-
-        for (int i = 0; i < this.lastPoints.size(); ++i) {
-            final double dTime = lastTime - this.lastTimes.get(i).doubleValue();
-            if (dTime <= this.timeWindowMs) {
-                addPoints(afterP, this.lastPoints.get(i));
-                ++afterC;
-            } else if (dTime <= 2 * this.timeWindowMs) {
-                addPoints(beforeP, this.lastPoints.get(i));
-                ++beforeC;
-            }
+    private void push(final int x, final int y, final long time) {
+        if (this.count == this.ringX.length) removeOldest();
+
+        final int slot = index(this.count++);
+        this.ringX[slot] = x;
+        this.ringY[slot] = y;
+        this.ringTime[slot] = time;
+        this.afterSumX += x;
+        this.afterSumY += y;
+
+        // Samples older than one window move into the earlier window ...
+        while (this.beforeCount < this.count - 1) {
+            final int i = index(this.beforeCount);
+            if (time - this.ringTime[i] <= this.timeWindowMs) break;
+
+            this.afterSumX -= this.ringX[i];
+            this.afterSumY -= this.ringY[i];
+            this.beforeSumX += this.ringX[i];
+            this.beforeSumY += this.ringY[i];
+            this.beforeCount++;
         }
 
-        scalePoint(beforeP, beforeC);
-        scalePoint(afterP, afterC);
+        // ... and leave it after two
+        while (this.beforeCount > 0 && time - this.ringTime[this.head] > 2 * this.timeWindowMs) {
+            removeOldest();
+        }
+    }
 
-        if (afterP.distance(beforeP) < this.threshold) {
-            // TODO: lowpass
+    /**
+     * Drops the oldest sample.
+     */
+    private void removeOldest() {
+        final int x = this.ringX[this.head];
+        final int y = this.ringY[this.head];
+
+        if (this.beforeCount > 0) {
+            this.beforeSumX -= x;
+            this.beforeSumY -= y;
+            this.beforeCount--;
         } else {
-            // TODO: highpass
+            this.afterSumX -= x;
+            this.afterSumY -= y;
         }
-        throw new NotImplementedException();
+
+        this.head = (this.head + 1) % this.ringX.length;
+        this.count--;
     }
 
+    /**
+     * Returns the ring slot of the i-th sample (0 is the oldest).
+     * 
+     * @param i
+     * @return The slot.
+     */
+    private int index(final int i) {
+        return (this.head + i) % this.ringX.length;
+    }
 }
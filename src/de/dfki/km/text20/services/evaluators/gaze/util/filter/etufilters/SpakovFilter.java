@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import de.dfki.km.text20.services.evaluators.gaze.util.filter.AbstractFilter;
+import de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
 import de.dfki.km.text20.services.trackingdevices.eyes.util.EyeTrackingEventWrapper;
 
@@ -35,6 +36,32 @@ import de.dfki.km.text20.services.trackingdevices.eyes.util.EyeTrackingEventWrap
  */
 public class SpakovFilter extends AbstractFilter {
 
+    /** How the kernel is evaluated. */
+    public static enum Mode {
+        /** The original implementation, boxed backlog and one <code>Math.exp</code> per buffered sample. */
+        EXACT,
+
+        /**
+         * Primitive ring buffers and tabulated kernel weights. If the distance factor is not 
+         * active the weights are updated recursively, so every sample costs O(1). Results are
+         * computed in floating point and may differ from {@link #EXACT} by about a pixel, 
+         * which rounds every intermediate sum.
+         */
+        FAST
+    }
+
+    /** Smallest weight we still tabulate */
+    private static final double MIN_WEIGHT = 1e-12;
+
+    /** Max. number of entries per lookup table */
+    private static final int MAX_TABLE_SIZE = 16384;
+
+    /** Resolution of the distance table in pixels */
+    private static final double DISTANCE_STEP = 0.25;
+
+    /** After how many samples the recursive sums are recomputed to get rid of rounding drift */
+    private static final int REBUILD_INTERVAL = 4096;
+
     protected final double distanceFactor;
     protected final double inv2DistanceFactorSq;
 
@@ -44,6 +71,33 @@ public class SpakovFilter extends AbstractFilter {
     protected final int size;
     protected final double timeFactor;
 
+    /** How we evaluate the kernel */
+    private final Mode mode;
+
+    /** Ring buffer of the last samples ({@link Mode#FAST} only) */
+    private int[] ringX, ringY;
+
+    /** */
+    private long[] ringTime;
+
+    /** Index of the oldest sample and number of samples in the ring */
+    private int head, count;
+
+    /** exp(inv2TimeFactorSq * dt) for integer dt */
+    private double[] timeTable;
+
+    /** exp(inv2DistanceFactorSq * d) for d in steps of DISTANCE_STEP */
+    private double[] distanceTable;
+
+    /** Weighted sums of all but the newest sample, relative to the newest time (recursive update only) */
+    private double sumX, sumY, sumW;
+
+    /** Samples since the recursive sums were last recomputed */
+    private int sinceRebuild;
+
+    /** Used by filterEvent() in FAST mode */
+    private GazeSample scratch;
+
     /**
      * 
      * @param backlogSize
@@ -52,16 +106,233 @@ public class SpakovFilter extends AbstractFilter {
      */
     public SpakovFilter(final int backlogSize, final double timeFactor,
                         final double distanceFactor) {
+        this(backlogSize, timeFactor, distanceFactor, Mode.EXACT);
+    }
+
+    /**
+     * 
+     * @param backlogSize
+     * @param timeFactor a nonzero value activates it, zero value deactivates
+     * @param distanceFactor a nonzero value activates it, zero value deactivates
+     * @param mode How to evaluate the kernel.
+     * 
+     * @since 1.4
+     */
+    public SpakovFilter(final int backlogSize, final double timeFactor,
+                        final double distanceFactor, final Mode mode) {
         this.size = backlogSize;
         this.timeFactor = timeFactor;
         this.distanceFactor = distanceFactor;
+        this.mode = mode;
 
         this.inv2TimeFactorSq = timeFactor != 0. ? -1. / (2. * timeFactor * timeFactor) : 0.;
         this.inv2DistanceFactorSq = distanceFactor != 0. ? -1. / (2. * distanceFactor * distanceFactor) : 0.;
+
+        if (mode == Mode.FAST) {
+            this.ringX = new int[Math.max(1, backlogSize)];
+            this.ringY = new int[this.ringX.length];
+            this.ringTime = new long[this.ringX.length];
+            this.timeTable = table(this.inv2TimeFactorSq, 1.);
+            this.distanceTable = table(this.inv2DistanceFactorSq, DISTANCE_STEP);
+            this.scratch = new GazeSample();
+        }
+    }
+
+    /**
+     * Tabulates exp(factor * i * step) until it drops below MIN_WEIGHT.
+     * 
+     * @param factor
+     * @param step
+     * @return The table.
+     */
+    private static double[] table(final double factor, final double step) {
+        if (factor == 0.) return new double[0];
+
+        final double limit = Math.log(MIN_WEIGHT) / (factor * step);
+        final int n = (int) Math.min(MAX_TABLE_SIZE, Math.ceil(limit) + 1);
+        final double[] rval = new double[n];
+
+        for (int i = 0; i < n; i++) {
+            rval[i] = Math.exp(factor * i * step);
+        }
+
+        return rval;
+    }
+
+    /**
+     * Returns the mode of this filter.
+     * 
+     * @return The mode.
+     */
+    public Mode getMode() {
+        return this.mode;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.util.filter.AbstractFilter#filterSample(de.dfki.km.text20.services.evaluators.gaze.util.filter.GazeSample)
+     */
+    @Override
+    public void filterSample(final GazeSample sample) {
+        if (this.mode != Mode.FAST) {
+            super.filterSample(sample);
+            return;
+        }
+
+        push(sample.x, sample.y, sample.time);
+
+        if (this.count < 2) return;
+
+        final int last = index(this.count - 1);
+        final double lx = this.ringX[last];
+        final double ly = this.ringY[last];
+
+        double sx, sy, sw;
+
+        if (isDistanceFactorActive()) {
+            final long lastTime = this.ringTime[last];
+
+            sx = 0.;
+            sy = 0.;
+            sw = 0.;
+
+            for (int i = 0; i < this.count - 1; i++) {
+                final int j = index(i);
+                final double dx = this.ringX[j] - lx;
+                final double dy = this.ringY[j] - ly;
+                final double w = timeWeight(lastTime - this.ringTime[j]) * distanceWeight(Math.sqrt(dx * dx + dy * dy));
+
+                sx += w * this.ringX[j];
+                sy += w * this.ringY[j];
+                sw += w;
+            }
+        } else {
+            sx = this.sumX;
+            sy = this.sumY;
+            sw = this.sumW;
+        }
+
+        final double norm = 1. / (1. + sw);
+
+        sample.x = (int) ((lx + sx) * norm);
+        sample.y = (int) ((ly + sy) * norm);
+    }
+
+    /**
+     * Adds a sample to the ring and, if the kernel only depends on time, updates the 
+     * recursive sums.
+     * 
+     * @param x
+     * @param y
+     * @param time
+     */
+    private void push(final int x, final int y, final long time) {
+        final boolean recursive = !isDistanceFactorActive();
+        final int capacity = this.ringX.length;
+
+        if (recursive && this.count > 0 && capacity > 1) {
+            final int last = index(this.count - 1);
+            final long lastTime = this.ringTime[last];
+
+            // The oldest sample drops out
+            if (this.count == capacity) {
+                final double w = timeWeight(lastTime - this.ringTime[this.head]);
+                this.sumX -= w * this.ringX[this.head];
+                this.sumY -= w * this.ringY[this.head];
+                this.sumW -= w;
+            }
+
+            // The previous newest sample joins the sums, then everything decays to the new time
+            final double d = timeWeight(time - lastTime);
+            this.sumX = (this.sumX + this.ringX[last]) * d;
+            this.sumY = (this.sumY + this.ringY[last]) * d;
+            this.sumW = (this.sumW + 1.) * d;
+        }
+
+        if (this.count == capacity) {
+            this.head = (this.head + 1) % capacity;
+            this.count--;
+        }
+
+        final int slot = index(this.count);
+        this.ringX[slot] = x;
+        this.ringY[slot] = y;
+        this.ringTime[slot] = time;
+        this.count++;
+
+        if (recursive && ++this.sinceRebuild >= REBUILD_INTERVAL) rebuild();
+    }
+
+    /**
+     * Recomputes the recursive sums from scratch.
+     */
+    private void rebuild() {
+        this.sinceRebuild = 0;
+        this.sumX = 0.;
+        this.sumY = 0.;
+        this.sumW = 0.;
+
+        if (this.count == 0) return;
+
+        final long lastTime = this.ringTime[index(this.count - 1)];
+
+        for (int i = 0; i < this.count - 1; i++) {
+            final int j = index(i);
+            final double w = timeWeight(lastTime - this.ringTime[j]);
+            this.sumX += w * this.ringX[j];
+            this.sumY += w * this.ringY[j];
+            this.sumW += w;
+        }
+    }
+
+    /**
+     * Returns the ring slot of the i-th sample (0 is the oldest).
+     * 
+     * @param i
+     * @return The slot.
+     */
+    private int index(final int i) {
+        return (this.head + i) % this.ringX.length;
+    }
+
+    /**
+     * Returns the kernel weight for the given time difference.
+     * 
+     * @param dt
+     * @return The weight.
+     */
+    private double timeWeight(final long dt) {
+        if (!isTimeFactorActive()) return 1.;
+        if (dt >= 0 && dt < this.timeTable.length) return this.timeTable[(int) dt];
+        return Math.exp(this.inv2TimeFactorSq * dt);
+    }
+
+    /**
+     * Returns the kernel weight for the given distance.
+     * 
+     * @param distance
+     * @return The weight.
+     */
+    private double distanceWeight(final double distance) {
+        final double position = distance / DISTANCE_STEP;
+        final int i = (int) position;
+
+        // Distances are not quantized, so interpolate between the two closest entries
+        if (i + 1 < this.distanceTable.length) {
+            final double w = this.distanceTable[i];
+            return w + (this.distanceTable[i + 1] - w) * (position - i);
+        }
+
+        return Math.exp(this.inv2DistanceFactorSq * distance);
     }
 
     @Override
     public final EyeTrackingEvent filterEvent(final EyeTrackingEvent event) {
+        if (this.mode == Mode.FAST) {
+            this.scratch.set(event);
+            filterSample(this.scratch);
+            return this.scratch.toEvent();
+        }
+
         if (this.lastPoints.size() == this.size) {
             this.lastPoints.remove(0);
             this.lastTimes.remove(0);
@@ -24,8 +24,10 @@ package de.dfki.km.text20.services.evaluators.gaze.util.handler;
 import static net.jcores.jre.CoreKeeper.$;
 
 import java.util.Collection;
+import java.util.List;
 
 import net.xeoh.plugins.base.PluginManager;
+import de.dfki.km.text20.services.evaluators.gaze.BatchGazeHandler;
 import de.dfki.km.text20.services.evaluators.gaze.GazeEvaluationEvent;
 import de.dfki.km.text20.services.evaluators.gaze.GazeEvaluationListener;
 import de.dfki.km.text20.services.evaluators.gaze.GazeEvaluator;
@@ -44,7 +46,7 @@ import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingListener;
  * @since 1.3
  */
 public abstract class AbstractGazeHandler<E extends GazeEvaluationEvent, L extends GazeEvaluationListener<E>>
-        implements EyeTrackingListener, GazeHandler {
+        implements EyeTrackingListener, BatchGazeHandler {
 
     /** Related listener */
     protected L attachedListener;
@@ -85,6 +87,16 @@ public abstract class AbstractGazeHandler<E extends GazeEvaluationEvent, L exten
         // Nothing to see here, move on.
     }
 
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.evaluators.gaze.BatchGazeHandler#newTrackingEvents(java.util.List)
+     */
+    @Override
+    public void newTrackingEvents(final List<EyeTrackingEvent> filteredEvents) {
+        for (int i = 0; i < filteredEvents.size(); i++) {
+            newTrackingEvent(filteredEvents.get(i));
+        }
+    }
+
     /* (non-Javadoc)
      * @see de.dfki.km.text20.services.gazeevaluator.GazeHandler#getFlags()
      */
@@ -0,0 +1,50 @@
+/*
+ * PrimitiveRenderElement.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.pseudorenderer;
+
+import java.awt.Rectangle;
+
+import de.dfki.km.text20.services.pseudorenderer.util.elements.RenderElementUtil;
+
+/**
+ * A render element which can report its geometry without allocating. Elements created by
+ * the {@link Pseudorenderer} implement it, use 
+ * {@link RenderElementUtil#geometry(RenderElement, CoordinatesType, Rectangle)} to access 
+ * the geometry of arbitrary elements.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public interface PrimitiveRenderElement extends RenderElement {
+    /**
+     * Stores the position of this element relative to the given type of coordinate
+     * system in the given rectangle. Use this variant in loops over many elements, it 
+     * does not allocate. 
+     * 
+     * @param type Specified relative to which coordinates system we should return
+     * coordinates.
+     * @param result The rectangle to store the geometry in.
+     * 
+     * @return The result rectangle.
+     */
+    public Rectangle getGeometry(CoordinatesType type, Rectangle result);
+}
@@ -24,9 +24,11 @@ package de.dfki.km.text20.services.pseudorenderer;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.util.Collection;
+import java.util.List;
 
 import de.dfki.km.text20.browserplugin.services.pagemanager.PageManager;
 import de.dfki.km.text20.services.pseudorenderer.options.GetAllElementsIntersectingOption;
+import de.dfki.km.text20.services.pseudorenderer.options.GetNearestElementsOption;
 
 /**
  * The pseudo renderer is a data structure which keeps information linked to 
@@ -86,6 +88,71 @@ public interface Pseudorenderer {
                                                                 CoordinatesType position,
                                                                 GetAllElementsIntersectingOption... options);
 
+    /**
+     * Returns up to k elements closest to the given point, closest first. The distance of 
+     * an element is the distance of the point to the border of the circle around the 
+     * element's center (see <code>OptionMagnetic</code>), so it is negative for points 
+     * well inside an element. 
+     * 
+     * @param point The point to query.
+     * @param position How the coordinates should be interpreted.
+     * @param k Max. number of elements to return.
+     * @param maxDistance Elements further away are not returned.
+     * @param options Additional options, e.g., which elements to consider. 
+     * @return A list of at most k elements.
+     * @since 1.4
+     */
+    public List<RenderElement> getNearestElements(Point point, CoordinatesType position,
+                                                  int k, int maxDistance,
+                                                  GetNearestElementsOption... options);
+
+    /**
+     * Returns the current version of the element set. It increases with every element 
+     * added, removed or moved.
+     * 
+     * @return The version.
+     * @since 1.4
+     */
+    public long getVersion();
+
+    /**
+     * Returns an immutable snapshot of all elements. Never blocks.
+     * 
+     * @return The latest snapshot.
+     * @since 1.4
+     */
+    public PseudorendererSnapshot getSnapshot();
+
+    /**
+     * Returns what changed after the given version, coalesced into one batch. Never blocks.
+     * Use a <code>PseudorendererSubscription</code> to keep track of the versions.
+     * 
+     * @param version The version the caller has seen.
+     * @return The changes since then.
+     * @since 1.4
+     */
+    public PseudorendererChanges getChangesSince(long version);
+
+    /**
+     * Starts a bulk update. Until the matching {@link #endUpdate()} all element changes 
+     * of the calling thread are grouped into a single version. The version, the change 
+     * journal, the spatial index and the snapshot are only published at the end. Element 
+     * attributes such as the geometry are changed in place though, so other threads 
+     * reading an element, including the final geometry check of spatial queries, may see 
+     * them change before the update ends. Calls can be nested.
+     * 
+     * @since 1.4
+     */
+    public void beginUpdate();
+
+    /**
+     * Ends a bulk update started with {@link #beginUpdate()} and publishes its changes. 
+     * Must be called by the same thread, usually in a <code>finally</code> block.
+     * 
+     * @since 1.4
+     */
+    public void endUpdate();
+
     /**
      * Returns the window coordinates (always in screen coordinates).
      * 
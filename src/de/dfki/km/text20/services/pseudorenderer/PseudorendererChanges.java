@@ -0,0 +1,139 @@
+/*
+ * PseudorendererChanges.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.pseudorenderer;
+
+import java.util.Collection;
+
+/**
+ * A batch of changes of a {@link Pseudorenderer} between two versions. Changes are 
+ * coalesced, an element added and removed within the batch does not appear at all, an 
+ * element added and moved only appears as added. 
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public final class PseudorendererChanges {
+
+    /** */
+    private final long fromVersion;
+
+    /** */
+    private final long toVersion;
+
+    /** */
+    private final boolean complete;
+
+    /** */
+    private final Collection<RenderElement> added;
+
+    /** */
+    private final Collection<RenderElement> removed;
+
+    /** */
+    private final Collection<RenderElement> changed;
+
+    /**
+     * @param fromVersion
+     * @param toVersion
+     * @param complete
+     * @param added
+     * @param removed
+     * @param changed
+     */
+    public PseudorendererChanges(final long fromVersion, final long toVersion,
+                                 final boolean complete,
+                                 final Collection<RenderElement> added,
+                                 final Collection<RenderElement> removed,
+                                 final Collection<RenderElement> changed) {
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.complete = complete;
+        this.added = added;
+        this.removed = removed;
+        this.changed = changed;
+    }
+
+    /**
+     * Returns the version the changes start at (exclusive).
+     * 
+     * @return The version.
+     */
+    public long getFromVersion() {
+        return this.fromVersion;
+    }
+
+    /**
+     * Returns the version the changes lead to (inclusive). 
+     * 
+     * @return The version.
+     */
+    public long getToVersion() {
+        return this.toVersion;
+    }
+
+    /**
+     * Returns false if the renderer does not remember all changes since the requested 
+     * version anymore. In that case the collections are empty and a new 
+     * {@link PseudorendererSnapshot} has to be taken.
+     * 
+     * @return True if the changes are complete.
+     */
+    public boolean isComplete() {
+        return this.complete;
+    }
+
+    /**
+     * Returns the elements which were created.
+     * 
+     * @return Unmodifiable collection of elements.
+     */
+    public Collection<RenderElement> getAdded() {
+        return this.added;
+    }
+
+    /**
+     * Returns the elements which were removed.
+     * 
+     * @return Unmodifiable collection of elements.
+     */
+    public Collection<RenderElement> getRemoved() {
+        return this.removed;
+    }
+
+    /**
+     * Returns the (old) elements whose geometry changed.
+     * 
+     * @return Unmodifiable collection of elements.
+     */
+    public Collection<RenderElement> getChanged() {
+        return this.changed;
+    }
+
+    /**
+     * Returns true if nothing changed.
+     * 
+     * @return True if there are no changes.
+     */
+    public boolean isEmpty() {
+        return this.added.isEmpty() && this.removed.isEmpty() && this.changed.isEmpty();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * PseudorendererSnapshot.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.pseudorenderer;
+
+import java.util.List;
+
+/**
+ * An immutable view of the elements of a {@link Pseudorenderer} at a given version. Only 
+ * the set of elements is frozen, the elements themselves are live. Snapshots are cheap, so
+ * taking one for every gaze sample is fine.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public final class PseudorendererSnapshot {
+
+    /** */
+    private final long version;
+
+    /** */
+    private final List<RenderElement> elements;
+
+    /**
+     * @param version The version of the renderer the snapshot was taken at.
+     * @param elements Unmodifiable list of elements, in creation order.
+     */
+    public PseudorendererSnapshot(final long version, final List<RenderElement> elements) {
+        this.version = version;
+        this.elements = elements;
+    }
+
+    /**
+     * Returns the version of the renderer this snapshot reflects. Pass it to 
+     * {@link Pseudorenderer#getChangesSince(long)} to learn what changed afterwards.
+     * 
+     * @return The version.
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Returns all elements, in the order they were created.
+     * 
+     * @return An unmodifiable list of elements.
+     */
+    public List<RenderElement> getElements() {
+        return this.elements;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * ChangeJournal.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.pseudorenderer.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import de.dfki.km.text20.services.pseudorenderer.PseudorendererChanges;
+import de.dfki.km.text20.services.pseudorenderer.RenderElement;
+
+/**
+ * Remembers the most recent element changes of a renderer. Writers must be serialized 
+ * by the caller, readers never lock. Every change gets its own version, and is stored in 
+ * the slot version % capacity; a reader detects overwritten slots by their version. Changes
+ * made between {@link #begin()} and {@link #commit()} share a single version.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+final class ChangeJournal {
+
+    /** Kinds of changes */
+    enum Kind {
+        /** */
+        ADDED,
+        /** */
+        REMOVED,
+        /** */
+        GEOMETRY
+    }
+
+    /**
+     * All changes of a version.
+     */
+    static final class Entry {
+        /** */
+        final long version;
+
+        /** */
+        final Kind[] kinds;
+
+        /** */
+        final RenderElement[] elements;
+
+        /**
+         * @param version
+         * @param kinds
+         * @param elements
+         */
+        Entry(final long version, final Kind[] kinds, final RenderElement[] elements) {
+            this.version = version;
+            this.kinds = kinds;
+            this.elements = elements;
+        }
+    }
+
+    /** */
+    private final AtomicReferenceArray<Entry> slots;
+
+    /** Version of the last change, published after its slot was written */
+    private volatile long version = 0;
+
+    /** Changes of the open group, <code>null</code> if there is none */
+    private List<Kind> pendingKinds;
+
+    /** */
+    private List<RenderElement> pendingElements;
+
+    /**
+     * @param capacity Number of changes to remember.
+     */
+    ChangeJournal(final int capacity) {
+        this.slots = new AtomicReferenceArray<Entry>(capacity);
+    }
+
+    /**
+     * Records a change. Callers must not call this concurrently.
+     * 
+     * @param kind
+     * @param element
+     * @return The version of the change.
+     */
+    long append(final Kind kind, final RenderElement element) {
+        if (this.pendingKinds != null) {
+            this.pendingKinds.add(kind);
+            this.pendingElements.add(element);
+            return this.version + 1;
+        }
+
+        return write(new Kind[] { kind }, new RenderElement[] { element });
+    }
+
+    /**
+     * Starts a group, all changes until {@link #commit()} get the same version. 
+     */
+    void begin() {
+        this.pendingKinds = new ArrayList<Kind>();
+        this.pendingElements = new ArrayList<RenderElement>();
+    }
+
+    /**
+     * Ends the group and publishes its changes.
+     * 
+     * @return The version of the group, or the current version if it was empty.
+     */
+    long commit() {
+        final List<Kind> kinds = this.pendingKinds;
+        final List<RenderElement> elements = this.pendingElements;
+
+        this.pendingKinds = null;
+        this.pendingElements = null;
+
+        if (kinds == null || kinds.isEmpty()) return this.version;
+
+        return write(kinds.toArray(new Kind[kinds.size()]), elements.toArray(new RenderElement[elements.size()]));
+    }
+
+    /**
+     * Writes the next entry.
+     * 
+     * @param kinds
+     * @param elements
+     * @return The new version.
+     */
+    private long write(final Kind[] kinds, final RenderElement[] elements) {
+        final long v = this.version + 1;
+
+        this.slots.set((int) (v % this.slots.length()), new Entry(v, kinds, elements));
+        this.version = v;
+
+        return v;
+    }
+
+    /**
+     * Returns the version of the last change.
+     * 
+     * @return The version.
+     */
+    long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Collects and coalesces all changes after the given version.
+     * 
+     * @param from
+     * @return The changes.
+     */
+    PseudorendererChanges changesSince(final long from) {
+        final long to = this.version;
+        final Set<RenderElement> empty = Collections.emptySet();
+
+        if (from >= to) return new PseudorendererChanges(from, from, from <= to, empty, empty, empty);
+        if (to - from > this.slots.length()) return new PseudorendererChanges(from, to, false, empty, empty, empty);
+
+        final Set<RenderElement> added = new LinkedHashSet<RenderElement>();
+        final Set<RenderElement> removed = new LinkedHashSet<RenderElement>();
+        final Set<RenderElement> changed = new LinkedHashSet<RenderElement>();
+
+        for (long v = from + 1; v <= to; v++) {
+            final Entry entry = this.slots.get((int) (v % this.slots.length()));
+
+            // Overwritten while we were reading
+            if (entry == null || entry.version != v)
+                return new PseudorendererChanges(from, to, false, empty, empty, empty);
+
+            for (int i = 0; i < entry.kinds.length; i++) {
+                final RenderElement element = entry.elements[i];
+
+                switch (entry.kinds[i]) {
+                case ADDED:
+                    added.add(element);
+                    break;
+                case REMOVED:
+                    if (!added.remove(element)) removed.add(element);
+                    changed.remove(element);
+                    break;
+                case GEOMETRY:
+                    if (!added.contains(element)) changed.add(element);
+                    break;
+                }
+            }
+        }
+
+        return new PseudorendererChanges(from, to, true, unmodifiable(added), unmodifiable(removed), unmodifiable(changed));
+    }
+
+    /**
+     * @param set
+     * @return .
+     */
+    private static Collection<RenderElement> unmodifiable(final Set<RenderElement> set) {
+        return Collections.unmodifiableSet(set);
+    }
+}
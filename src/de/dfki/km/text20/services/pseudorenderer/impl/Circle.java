@@ -23,6 +23,7 @@ package de.dfki.km.text20.services.pseudorenderer.impl;
 
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.geom.Point2D;
 
 /**
  * 
@@ -67,4 +68,19 @@ final class Circle {
     public double borderDistance(Point point) {
         return this.center.distance(point) - this.radius;
     }
+
+    /**
+     * Same as <code>new Circle(rectangle).borderDistance(point)</code>, without creating 
+     * the circle.
+     * 
+     * @param rectangle
+     * @param point
+     * @return .
+     */
+    public static double borderDistance(Rectangle rectangle, Point point) {
+        final int cx = (int) rectangle.getCenterX();
+        final int cy = (int) rectangle.getCenterY();
+
+        return Point2D.distance(cx, cy, point.x, point.y) - Math.max(rectangle.height, rectangle.width) / 2;
+    }
 }
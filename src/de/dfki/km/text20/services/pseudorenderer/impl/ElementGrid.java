@@ -0,0 +1,269 @@
+/*
+ * ElementGrid.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.pseudorenderer.impl;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sparse uniform grid over the rectangles of render elements. Every element is registered
+ * in all cells it covers; elements covering too many cells are kept in a separate list 
+ * which is checked on every query. Not thread safe, the renderer guards it with its 
+ * element lock.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+final class ElementGrid {
+
+    /** Edge length of a cell */
+    static final int CELL_SIZE = 128;
+
+    /** Elements covering more cells are not put into cells */
+    static final int MAX_CELLS = 64;
+
+    /** Elements by packed cell coordinates */
+    private final Map<Long, List<RenderElementImpl>> cells = new HashMap<Long, List<RenderElementImpl>>();
+
+    /** Elements too large for the cells */
+    private final List<RenderElementImpl> oversized = new ArrayList<RenderElementImpl>();
+
+    /** Number of elements in this grid */
+    private int size = 0;
+
+    /** Largest circle radius (see {@link Circle}) of any element we have seen */
+    private int maxRadius = 0;
+
+    /** Cells ever used */
+    private int minCellX = Integer.MAX_VALUE, minCellY = Integer.MAX_VALUE;
+
+    /** */
+    private int maxCellX = Integer.MIN_VALUE, maxCellY = Integer.MIN_VALUE;
+
+    /**
+     * Adds an element with the given rectangle (in the coordinates of this grid).
+     * 
+     * @param element
+     * @param r
+     */
+    void add(final RenderElementImpl element, final Rectangle r) {
+        element.grid = this;
+        element.cellX0 = cell(r.x);
+        element.cellY0 = cell(r.y);
+        element.cellX1 = cell(r.x + Math.max(r.width, 1) - 1);
+        element.cellY1 = cell(r.y + Math.max(r.height, 1) - 1);
+        element.oversized = (long) (element.cellX1 - element.cellX0 + 1) * (element.cellY1 - element.cellY0 + 1) > MAX_CELLS;
+
+        this.size++;
+
+        if (element.oversized) {
+            this.oversized.add(element);
+            return;
+        }
+
+        this.maxRadius = Math.max(this.maxRadius, Math.max(r.width, r.height) / 2);
+        this.minCellX = Math.min(this.minCellX, element.cellX0);
+        this.minCellY = Math.min(this.minCellY, element.cellY0);
+        this.maxCellX = Math.max(this.maxCellX, element.cellX1);
+        this.maxCellY = Math.max(this.maxCellY, element.cellY1);
+
+        for (int y = element.cellY0; y <= element.cellY1; y++) {
+            for (int x = element.cellX0; x <= element.cellX1; x++) {
+                final Long key = key(x, y);
+
+                List<RenderElementImpl> list = this.cells.get(key);
+                if (list == null) {
+                    list = new ArrayList<RenderElementImpl>(4);
+                    this.cells.put(key, list);
+                }
+
+                list.add(element);
+            }
+        }
+    }
+
+    /**
+     * Removes an element previously added.
+     * 
+     * @param element
+     */
+    void remove(final RenderElementImpl element) {
+        if (element.grid != this) return;
+
+        element.grid = null;
+        this.size--;
+
+        if (element.oversized) {
+            this.oversized.remove(element);
+            return;
+        }
+
+        for (int y = element.cellY0; y <= element.cellY1; y++) {
+            for (int x = element.cellX0; x <= element.cellX1; x++) {
+                final Long key = key(x, y);
+                final List<RenderElementImpl> list = this.cells.get(key);
+
+                if (list == null) continue;
+
+                list.remove(element);
+                if (list.isEmpty()) this.cells.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Adds all elements whose cells overlap the rectangle to the result. Every element 
+     * is added once per stamp.
+     * 
+     * @param r Query rectangle in the coordinates of this grid.
+     * @param stamp Unique number of this query.
+     * @param result Receives the candidates.
+     */
+    void query(final Rectangle r, final int stamp, final Collection<RenderElementImpl> result) {
+        if (this.size == 0) return;
+
+        final int x0 = cell(r.x);
+        final int y0 = cell(r.y);
+        final int x1 = cell(r.x + Math.max(r.width, 1) - 1);
+        final int y1 = cell(r.y + Math.max(r.height, 1) - 1);
+
+        // Huge queries, just take everything
+        if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) > this.cells.size()) {
+            for (final List<RenderElementImpl> list : this.cells.values()) {
+                collect(list, stamp, result);
+            }
+        } else {
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    final List<RenderElementImpl> list = this.cells.get(key(x, y));
+                    if (list != null) collect(list, stamp, result);
+                }
+            }
+        }
+
+        collect(this.oversized, stamp, result);
+    }
+
+    /**
+     * Offers elements to the query, in rings of cells around the given point, until no 
+     * element outside the rings can be closer than what the query has. An element first
+     * met in ring n has its center outside of rings 0..n-1, so its circle border is at 
+     * least (n - 1) * CELL_SIZE - maxRadius away.
+     * 
+     * @param x Query point in the coordinates of this grid.
+     * @param y
+     * @param query
+     */
+    void nearest(final int x, final int y, final NearestQuery query) {
+        for (int i = 0; i < this.oversized.size(); i++) {
+            query.offer(this.oversized.get(i));
+        }
+
+        if (this.cells.isEmpty()) return;
+
+        final int cx = cell(x);
+        final int cy = cell(y);
+        final int rings = Math.max(Math.max(cx - this.minCellX, this.maxCellX - cx), Math.max(cy - this.minCellY, this.maxCellY - cy));
+
+        for (int n = 0; n <= rings; n++) {
+            if (n > 0 && (double) (n - 1) * CELL_SIZE - this.maxRadius > query.bound()) return;
+
+            // Once a ring has more cells than we have, simply look at all of them
+            if (8L * n > this.cells.size()) {
+                for (final List<RenderElementImpl> list : this.cells.values()) {
+                    offer(list, query);
+                }
+                return;
+            }
+
+            for (int i = cx - n; i <= cx + n; i++) {
+                offer(this.cells.get(key(i, cy - n)), query);
+                if (n > 0) offer(this.cells.get(key(i, cy + n)), query);
+            }
+
+            for (int j = cy - n + 1; j <= cy + n - 1; j++) {
+                offer(this.cells.get(key(cx - n, j)), query);
+                offer(this.cells.get(key(cx + n, j)), query);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of elements in this grid.
+     * 
+     * @return The size.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * @param list
+     * @param stamp
+     * @param result
+     */
+    private static void collect(final List<RenderElementImpl> list, final int stamp,
+                                final Collection<RenderElementImpl> result) {
+        for (int i = 0; i < list.size(); i++) {
+            final RenderElementImpl element = list.get(i);
+            if (element.queryStamp == stamp) continue;
+
+            element.queryStamp = stamp;
+            result.add(element);
+        }
+    }
+
+    /**
+     * @param list
+     * @param query
+     */
+    private static void offer(final List<RenderElementImpl> list, final NearestQuery query) {
+        if (list == null) return;
+
+        for (int i = 0; i < list.size(); i++) {
+            query.offer(list.get(i));
+        }
+    }
+
+    /**
+     * Returns the cell of a coordinate.
+     * 
+     * @param v
+     * @return .
+     */
+    static int cell(final int v) {
+        return v >= 0 ? v / CELL_SIZE : -((-v - 1) / CELL_SIZE) - 1;
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @return .
+     */
+    private static Long key(final int x, final int y) {
+        return Long.valueOf((long) x << 32 | y & 0xffffffffL);
+    }
+}
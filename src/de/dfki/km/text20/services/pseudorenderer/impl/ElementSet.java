@@ -0,0 +1,186 @@
+/*
+ * ElementSet.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.pseudorenderer.impl;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.dfki.km.text20.services.pseudorenderer.RenderElement;
+
+/**
+ * Immutable, persistent set of elements in creation order. The elements are stored in 
+ * chunks, so adding or removing an element only copies one chunk and the chunk table, 
+ * not the whole set. 
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+final class ElementSet {
+
+    /** Max. elements per chunk */
+    static final int CHUNK_SIZE = 64;
+
+    /** */
+    static final ElementSet EMPTY = new ElementSet(new RenderElementImpl[0][], new int[0], 0);
+
+    /** Non-empty chunks, ordered by element sequence */
+    private final RenderElementImpl[][] chunks;
+
+    /** Number of elements before each chunk */
+    private final int[] offsets;
+
+    /** */
+    private final int size;
+
+    /**
+     * @param chunks
+     * @param offsets
+     * @param size
+     */
+    private ElementSet(final RenderElementImpl[][] chunks, final int[] offsets, final int size) {
+        this.chunks = chunks;
+        this.offsets = offsets;
+        this.size = size;
+    }
+
+    /**
+     * Returns a set with the element appended. The element must be newer than all others.
+     * 
+     * @param element
+     * @return The new set.
+     */
+    ElementSet add(final RenderElementImpl element) {
+        final int n = this.chunks.length;
+
+        // Start a new chunk
+        if (n == 0 || this.chunks[n - 1].length == CHUNK_SIZE) {
+            final RenderElementImpl[][] c = Arrays.copyOf(this.chunks, n + 1);
+            final int[] o = Arrays.copyOf(this.offsets, n + 1);
+            c[n] = new RenderElementImpl[] { element };
+            o[n] = this.size;
+            return new ElementSet(c, o, this.size + 1);
+        }
+
+        // Extend the last one, the offsets stay the same
+        final RenderElementImpl[][] c = this.chunks.clone();
+        final RenderElementImpl[] last = Arrays.copyOf(c[n - 1], c[n - 1].length + 1);
+        last[last.length - 1] = element;
+        c[n - 1] = last;
+
+        return new ElementSet(c, this.offsets, this.size + 1);
+    }
+
+    /**
+     * Returns a set without the element.
+     * 
+     * @param element
+     * @return The new set, or this set if the element was not contained.
+     */
+    ElementSet remove(final RenderElementImpl element) {
+        // Find the last chunk starting at or before the element
+        int lo = 0, hi = this.chunks.length - 1, ci = -1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (this.chunks[mid][0].sequence <= element.sequence) {
+                ci = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+
+        if (ci < 0) return this;
+
+        final RenderElementImpl[] chunk = this.chunks[ci];
+        int ei = -1;
+        for (int i = 0; i < chunk.length; i++) {
+            if (chunk[i] == element) {
+                ei = i;
+                break;
+            }
+        }
+
+        if (ei < 0) return this;
+
+        final RenderElementImpl[][] c;
+        final int[] o;
+
+        if (chunk.length == 1) {
+            c = new RenderElementImpl[this.chunks.length - 1][];
+            o = new int[this.chunks.length - 1];
+            System.arraycopy(this.chunks, 0, c, 0, ci);
+            System.arraycopy(this.chunks, ci + 1, c, ci, c.length - ci);
+            System.arraycopy(this.offsets, 0, o, 0, ci);
+            for (int i = ci; i < o.length; i++) {
+                o[i] = this.offsets[i + 1] - 1;
+            }
+        } else {
+            final RenderElementImpl[] smaller = new RenderElementImpl[chunk.length - 1];
+            System.arraycopy(chunk, 0, smaller, 0, ei);
+            System.arraycopy(chunk, ei + 1, smaller, ei, smaller.length - ei);
+
+            c = this.chunks.clone();
+            c[ci] = smaller;
+            o = this.offsets.clone();
+            for (int i = ci + 1; i < o.length; i++) {
+                o[i]--;
+            }
+        }
+
+        return new ElementSet(c, o, this.size - 1);
+    }
+
+    /**
+     * Returns the number of elements.
+     * 
+     * @return The size.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns an unmodifiable list view of this set.
+     * 
+     * @return The list.
+     */
+    List<RenderElement> asList() {
+        return new AbstractList<RenderElement>() {
+            @Override
+            public RenderElement get(final int index) {
+                if (index < 0 || index >= ElementSet.this.size)
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + ElementSet.this.size);
+
+                int ci = Arrays.binarySearch(ElementSet.this.offsets, index);
+                if (ci < 0) ci = -ci - 2;
+
+                return ElementSet.this.chunks[ci][index - ElementSet.this.offsets[ci]];
+            }
+
+            @Override
+            public int size() {
+                return ElementSet.this.size;
+            }
+        };
+    }
+}
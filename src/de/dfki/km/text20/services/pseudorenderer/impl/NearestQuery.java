@@ -0,0 +1,156 @@
+/*
+ * NearestQuery.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.pseudorenderer.impl;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.dfki.km.text20.services.pseudorenderer.CoordinatesType;
+import de.dfki.km.text20.services.pseudorenderer.RenderElement;
+import de.dfki.km.text20.services.pseudorenderer.RenderElementMetaAttribute;
+
+/**
+ * Collects the k closest elements offered by the {@link ElementGrid}s, applying the 
+ * element filters before anything else.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+final class NearestQuery {
+
+    /** Query point in document coordinates */
+    final Point point;
+
+    /** Elements further away are rejected */
+    final double maxDistance;
+
+    /** Marks elements we have seen */
+    final int stamp;
+
+    /** If invalid elements should be skipped */
+    final boolean onlyValid;
+
+    /** Accepted type or null */
+    final Class<? extends RenderElement> type;
+
+    /** Best elements so far, closest first */
+    private final RenderElementImpl[] elements;
+
+    /** Their distances */
+    private final double[] distances;
+
+    /** Number of elements found */
+    private int size = 0;
+
+    /** Receives element geometries */
+    private final Rectangle geometry = new Rectangle();
+
+    /**
+     * @param point
+     * @param k
+     * @param maxDistance
+     * @param stamp
+     * @param onlyValid
+     * @param type
+     */
+    NearestQuery(final Point point, final int k, final double maxDistance, final int stamp,
+                 final boolean onlyValid, final Class<? extends RenderElement> type) {
+        this.point = point;
+        this.maxDistance = maxDistance;
+        this.stamp = stamp;
+        this.onlyValid = onlyValid;
+        this.type = type;
+        this.elements = new RenderElementImpl[k];
+        this.distances = new double[k];
+    }
+
+    /**
+     * Considers the given element.
+     * 
+     * @param element
+     */
+    void offer(final RenderElementImpl element) {
+        if (element.queryStamp == this.stamp) return;
+        element.queryStamp = this.stamp;
+
+        if (this.type != null && !this.type.isInstance(element)) return;
+        if (this.onlyValid && Boolean.TRUE.equals(element.getMetaAttribute(RenderElementMetaAttribute.INVALID)))
+            return;
+
+        final double d = Circle.borderDistance(element.getGeometry(CoordinatesType.DOCUMENT_BASED, this.geometry), this.point);
+        if (d > bound()) return;
+
+        // Insertion sort, equally distant elements are ordered by creation
+        int i = this.size;
+        while (i > 0 && closer(d, element, i - 1)) {
+            i--;
+        }
+
+        if (i == this.elements.length) return;
+
+        for (int j = Math.min(this.size, this.elements.length - 1); j > i; j--) {
+            this.elements[j] = this.elements[j - 1];
+            this.distances[j] = this.distances[j - 1];
+        }
+
+        this.elements[i] = element;
+        this.distances[i] = d;
+
+        if (this.size < this.elements.length) this.size++;
+    }
+
+    /**
+     * @param d
+     * @param element
+     * @param i
+     * @return True if the element should come before the i-th element.
+     */
+    private boolean closer(final double d, final RenderElementImpl element, final int i) {
+        return d < this.distances[i] || d == this.distances[i] && element.sequence < this.elements[i].sequence;
+    }
+
+    /**
+     * Returns the distance an element must not exceed to be accepted.
+     * 
+     * @return The current bound.
+     */
+    double bound() {
+        return this.size < this.elements.length ? this.maxDistance : this.distances[this.size - 1];
+    }
+
+    /**
+     * Returns the elements found, closest first.
+     * 
+     * @return The result.
+     */
+    List<RenderElement> result() {
+        final List<RenderElement> rval = new ArrayList<RenderElement>(this.size);
+
+        for (int i = 0; i < this.size; i++) {
+            rval.add(this.elements[i]);
+        }
+
+        return rval;
+    }
+}
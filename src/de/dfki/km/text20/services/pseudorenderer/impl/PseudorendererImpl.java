@@ -25,20 +25,29 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.concurrent.locks.Lock;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 import net.xeoh.plugins.base.util.OptionUtils;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 import de.dfki.km.text20.services.pseudorenderer.CoordinatesType;
 import de.dfki.km.text20.services.pseudorenderer.Pseudorenderer;
+import de.dfki.km.text20.services.pseudorenderer.PseudorendererChanges;
+import de.dfki.km.text20.services.pseudorenderer.PseudorendererSnapshot;
 import de.dfki.km.text20.services.pseudorenderer.PseudorendererStatus;
 import de.dfki.km.text20.services.pseudorenderer.RenderElement;
 import de.dfki.km.text20.services.pseudorenderer.RenderElementMetaAttribute;
 import de.dfki.km.text20.services.pseudorenderer.options.GetAllElementsIntersectingOption;
+import de.dfki.km.text20.services.pseudorenderer.options.GetNearestElementsOption;
 import de.dfki.km.text20.services.pseudorenderer.options.getallelementsintersecting.OptionMagnetic;
 import de.dfki.km.text20.services.pseudorenderer.options.getallelementsintersecting.OptionNoIntersections;
 import de.dfki.km.text20.services.pseudorenderer.options.getallelementsintersecting.OptionOnlyValid;
+import de.dfki.km.text20.services.pseudorenderer.options.getnearestelements.OptionElementType;
 import de.dfki.km.text20.services.pseudorenderer.renderelements.GraphicalRenderElement;
 import de.dfki.km.text20.services.pseudorenderer.renderelements.TextualRenderElement;
 
@@ -56,17 +65,58 @@ public class PseudorendererImpl implements Pseudorenderer {
     final Rectangle currentGeometry = new Rectangle();
 
     /** Prohibits two threads from accessing the element. */
-    final Lock elementsLock = new ReentrantLock();
+    final ReentrantLock elementsLock = new ReentrantLock();
+
+    /** Nesting depth of bulk updates, guarded by the elements lock */
+    int updateDepth = 0;
+
+    /** Change ID shared by all changes of the current bulk update */
+    long updateChangeID;
+
+    /** Elements moved during the current bulk update, reindexed on its end or before a query */
+    final Set<RenderElementImpl> pendingIndex = new LinkedHashSet<RenderElementImpl>();
+
+    /** If the journal was written during the current bulk update */
+    boolean pendingPublish = false;
 
     /** The last change ID we emitted */
-    volatile long lastChangeID = 0;
+    final AtomicLong lastChangeID = new AtomicLong();
+
+    /** Keeps all render elements created in this context, replaced on every change */
+    volatile PseudorendererSnapshot snapshot = new PseudorendererSnapshot(0, ElementSet.EMPTY.asList());
+
+    /** The elements of the current snapshot, guarded by the elements lock */
+    ElementSet elements = ElementSet.EMPTY;
+
+    /** Recent changes, written with the elements lock held */
+    final ChangeJournal journal = new ChangeJournal(16384);
+
+    /** Spatial index of all document based elements */
+    final ElementGrid documentGrid = new ElementGrid();
 
-    /** Keeps all render elements created in this context */
-    final Collection<RenderElement> renderElements = new ArrayList<RenderElement>();
+    /** Spatial index of all viewport based elements, they move with the viewport */
+    final ElementGrid viewportGrid = new ElementGrid();
+
+    /** Creation order of the elements, guarded by the elements lock */
+    long nextSequence = 0;
+
+    /** Distinguishes grid queries, guarded by the elements lock */
+    int queryStamp = 0;
+
+    /** Restores the creation order of query results */
+    static final Comparator<RenderElementImpl> CREATION_ORDER = new Comparator<RenderElementImpl>() {
+        @Override
+        public int compare(final RenderElementImpl o1, final RenderElementImpl o2) {
+            return o1.sequence < o2.sequence ? -1 : o1.sequence == o2.sequence ? 0 : 1;
+        }
+    };
 
     /** Where the viewport starts */
     final Point viewportStart = new Point();
 
+    /** Incremented whenever the window geometry or the viewport changes */
+    volatile int geometryEpoch = 0;
+
     /** Setup the renderer */
     public PseudorendererImpl() {
         // Make us visible
@@ -124,7 +174,13 @@ public class PseudorendererImpl implements Pseudorenderer {
 
         this.elementsLock.lock();
         try {
-            this.renderElements.add(re);
+            final RenderElementImpl rei = (RenderElementImpl) re;
+            rei.sequence = this.nextSequence++;
+            rei.registered = true;
+            index(rei);
+
+            this.elements = this.elements.add(rei);
+            publish(this.journal.append(ChangeJournal.Kind.ADDED, rei));
         } finally {
             this.elementsLock.unlock();
         }
@@ -163,19 +219,33 @@ public class PseudorendererImpl implements Pseudorenderer {
             r.y += this.viewportStart.y;
         }
 
-        Collection<RenderElement> allElements;
+        final List<RenderElementImpl> candidates = new ArrayList<RenderElementImpl>();
 
-        // Make a copy in order not to block other threads accessing the elements
+        // Collect candidates from the index, their geometry is checked without holding the lock
         this.elementsLock.lock();
         try {
-            allElements = new ArrayList<RenderElement>(this.renderElements);
+            flushIndex();
+
+            final int stamp = ++this.queryStamp;
+
+            this.documentGrid.query(r, stamp, candidates);
+
+            if (this.viewportGrid.size() > 0) {
+                final Rectangle v = new Rectangle(r);
+                v.translate(-this.viewportStart.x, -this.viewportStart.y);
+                this.viewportGrid.query(v, stamp, candidates);
+            }
         } finally {
             this.elementsLock.unlock();
         }
 
+        // Report them in the order they were created, as we always did
+        Collections.sort(candidates, CREATION_ORDER);
+
         // Check which rectangles intersect
-        for (final RenderElement re : allElements) {
-            final Rectangle geometry = re.getGeometry(CoordinatesType.DOCUMENT_BASED);
+        final Rectangle geometry = new Rectangle();
+        for (final RenderElementImpl re : candidates) {
+            re.getGeometry(CoordinatesType.DOCUMENT_BASED, geometry);
             if (geometry.intersects(r)) {
                 rval.add(re);
             }
@@ -186,23 +256,9 @@ public class PseudorendererImpl implements Pseudorenderer {
             final Point queryCenter = new Point((int) r.getCenterX(), (int) r.getCenterY());
             final int maxDistance = ou.get(OptionMagnetic.class).getMaxDistance();
 
-            RenderElement bestMatch = null;
-            double distance = Double.MAX_VALUE;
-
-            // Find best match
-            for (final RenderElement re : allElements) {
-                final Circle current = new Circle(re.getGeometry(CoordinatesType.DOCUMENT_BASED));
-                final double currentDistance = current.borderDistance(queryCenter);
-
-                if (currentDistance < distance && currentDistance <= maxDistance) {
-                    distance = currentDistance;
-                    bestMatch = re;
-                }
-            }
-
-            if (bestMatch != null) {
-                rval.add(bestMatch);
-            }
+            // Invalid elements are skipped while searching, so we get the closest valid one
+            final GetNearestElementsOption filter = ou.contains(OptionOnlyValid.class) ? ou.get(OptionOnlyValid.class) : null;
+            rval.addAll(getNearestElements(queryCenter, CoordinatesType.DOCUMENT_BASED, 1, maxDistance, filter == null ? new GetNearestElementsOption[0] : new GetNearestElementsOption[] { filter }));
         }
 
         // First, filter all invalid data.
@@ -230,6 +286,47 @@ public class PseudorendererImpl implements Pseudorenderer {
         return rval;
     }
 
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.pseudorenderer.Pseudorenderer#getNearestElements(java.awt.Point, de.dfki.km.text20.services.pseudorenderer.CoordinatesType, int, int, de.dfki.km.text20.services.pseudorenderer.options.GetNearestElementsOption[])
+     */
+    @Override
+    public List<RenderElement> getNearestElements(final Point point,
+                                                  final CoordinatesType position,
+                                                  final int k, final int maxDistance,
+                                                  final GetNearestElementsOption... options) {
+        if (point == null || k <= 0) return new ArrayList<RenderElement>();
+
+        final OptionUtils<GetNearestElementsOption> ou = new OptionUtils<GetNearestElementsOption>(options);
+        final boolean onlyValid = ou.contains(OptionOnlyValid.class);
+        final Class<? extends RenderElement> type = ou.contains(OptionElementType.class) ? ou.get(OptionElementType.class).getType() : null;
+
+        // Get the point in document coordinates
+        final Point p = (Point) point.clone();
+        if (position == CoordinatesType.SCREEN_BASED) {
+            if (!this.currentGeometry.contains(point)) return new ArrayList<RenderElement>();
+
+            p.x += this.viewportStart.x - this.currentGeometry.x;
+            p.y += this.viewportStart.y - this.currentGeometry.y;
+        } else if (position == CoordinatesType.VIEWPORT_BASED) {
+            p.x += this.viewportStart.x;
+            p.y += this.viewportStart.y;
+        }
+
+        this.elementsLock.lock();
+        try {
+            flushIndex();
+
+            final NearestQuery query = new NearestQuery(p, k, maxDistance, ++this.queryStamp, onlyValid, type);
+
+            this.documentGrid.nearest(p.x, p.y, query);
+            this.viewportGrid.nearest(p.x - this.viewportStart.x, p.y - this.viewportStart.y, query);
+
+            return query.result();
+        } finally {
+            this.elementsLock.unlock();
+        }
+    }
+
     /* (non-Javadoc)
      * @see de.dfki.km.augmentedtext.services.pseudorenderer.Pseudorenderer#getGeometry()
      */
@@ -263,6 +360,7 @@ public class PseudorendererImpl implements Pseudorenderer {
         this.currentGeometry.y = g.y;
         this.currentGeometry.width = g.width;
         this.currentGeometry.height = g.height;
+        this.geometryEpoch++;
 
         // System.out.println("Updated windowGeometry: (" + screenX + "," + screenY + "," + width + "," + height + ")");
     }
@@ -289,6 +387,7 @@ public class PseudorendererImpl implements Pseudorenderer {
     public void setViewport(final Point start) {
         this.viewportStart.x = start.x;
         this.viewportStart.y = start.y;
+        this.geometryEpoch++;
 
         // System.out.println("Updated viewport: (" + documentX + "," + documentY + ")");
     }
@@ -299,7 +398,70 @@ public class PseudorendererImpl implements Pseudorenderer {
      * @return
      */
     protected long getChangeID() {
-        return this.lastChangeID++;
+        if (this.updateDepth > 0 && this.elementsLock.isHeldByCurrentThread())
+            return this.updateChangeID;
+
+        return this.lastChangeID.getAndIncrement();
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.pseudorenderer.Pseudorenderer#beginUpdate()
+     */
+    @Override
+    public void beginUpdate() {
+        this.elementsLock.lock();
+
+        if (this.updateDepth++ > 0) return;
+
+        this.updateChangeID = this.lastChangeID.getAndIncrement();
+        this.journal.begin();
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.pseudorenderer.Pseudorenderer#endUpdate()
+     */
+    @Override
+    public void endUpdate() {
+        if (!this.elementsLock.isHeldByCurrentThread())
+            throw new IllegalStateException("endUpdate() without beginUpdate()");
+
+        try {
+            if (--this.updateDepth > 0) return;
+
+            flushIndex();
+
+            final long version = this.journal.commit();
+            if (this.pendingPublish) {
+                this.pendingPublish = false;
+                publish(version);
+            }
+        } finally {
+            this.elementsLock.unlock();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.pseudorenderer.Pseudorenderer#getVersion()
+     */
+    @Override
+    public long getVersion() {
+        return this.journal.getVersion();
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.pseudorenderer.Pseudorenderer#getSnapshot()
+     */
+    @Override
+    public PseudorendererSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.pseudorenderer.Pseudorenderer#getChangesSince(long)
+     */
+    @Override
+    public PseudorendererChanges getChangesSince(final long version) {
+        return this.journal.changesSince(version);
     }
 
     /* (non-Javadoc)
@@ -314,10 +476,86 @@ public class PseudorendererImpl implements Pseudorenderer {
         // Make a copy in order not to block other threads accessing the elements
         this.elementsLock.lock();
         try {
+            if (renderElementImpl instanceof RenderElementImpl) {
+                final RenderElementImpl rei = (RenderElementImpl) renderElementImpl;
+                if (!rei.registered) return;
+
+                rei.registered = false;
+                if (rei.grid != null) rei.grid.remove(rei);
+
+                this.elements = this.elements.remove(rei);
+                publish(this.journal.append(ChangeJournal.Kind.REMOVED, rei));
+            }
+        } finally {
+            this.elementsLock.unlock();
+        }
+    }
+
+    /**
+     * Called by elements whose geometry changed, moves them inside the spatial index.
+     * 
+     * @param element
+     */
+    void updateIndex(final RenderElementImpl element) {
+        this.elementsLock.lock();
+        try {
+            if (!element.registered) return;
+
+            if (this.updateDepth > 0) {
+                this.pendingIndex.add(element);
+            } else {
+                if (element.grid != null) element.grid.remove(element);
+                index(element);
+            }
 
-            this.renderElements.remove(renderElementImpl);
+            publish(this.journal.append(ChangeJournal.Kind.GEOMETRY, element));
         } finally {
             this.elementsLock.unlock();
         }
     }
+
+    /**
+     * Publishes a snapshot of the current elements for every journal write, so that the 
+     * snapshot version never falls behind the journal, or defers that to the end of the 
+     * current bulk update. Must hold the elements lock.
+     * 
+     * @param version The version of the change.
+     */
+    private void publish(final long version) {
+        if (this.updateDepth > 0) {
+            this.pendingPublish = true;
+            return;
+        }
+
+        this.snapshot = new PseudorendererSnapshot(version, this.elements.asList());
+    }
+
+    /**
+     * Reindexes the elements moved during the current bulk update. Called before queries as 
+     * well, since the thread running the update may query in between. Must hold the elements 
+     * lock.
+     */
+    private void flushIndex() {
+        if (this.pendingIndex.isEmpty()) return;
+
+        // Every moved element is indexed once
+        for (final RenderElementImpl element : this.pendingIndex) {
+            if (!element.registered) continue;
+            if (element.grid != null) element.grid.remove(element);
+
+            index(element);
+        }
+
+        this.pendingIndex.clear();
+    }
+
+    /**
+     * Adds the element to the grid of its coordinates type. Must hold the elements lock.
+     * 
+     * @param element
+     */
+    private void index(final RenderElementImpl element) {
+        final ElementGrid g = element.getCoordinatesType() == CoordinatesType.VIEWPORT_BASED ? this.viewportGrid : this.documentGrid;
+        g.add(element, element.getRawRectangle());
+    }
 }
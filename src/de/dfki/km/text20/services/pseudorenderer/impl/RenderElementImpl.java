@@ -29,7 +29,7 @@ import java.util.Map;
 
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 import de.dfki.km.text20.services.pseudorenderer.CoordinatesType;
-import de.dfki.km.text20.services.pseudorenderer.RenderElement;
+import de.dfki.km.text20.services.pseudorenderer.PrimitiveRenderElement;
 import de.dfki.km.text20.services.pseudorenderer.RenderElementMetaAttribute;
 
 /**
@@ -37,7 +37,7 @@ import de.dfki.km.text20.services.pseudorenderer.RenderElementMetaAttribute;
  *
  * @author Ralf Biedert
  */
-public class RenderElementImpl implements RenderElement {
+public class RenderElementImpl implements PrimitiveRenderElement {
 
     /** Contains the meta information of this render element */
     private final Map<RenderElementMetaAttribute, Serializable> metaInformation = new HashMap<RenderElementMetaAttribute, Serializable>();
@@ -63,6 +63,52 @@ public class RenderElementImpl implements RenderElement {
     /** If we are visible or not */
     private boolean visible;
 
+    /** Order in which the elements were created, assigned by the renderer */
+    long sequence;
+
+    /** If we are (still) registered with the renderer */
+    boolean registered;
+
+    /** The spatial index we're in and the cells we cover */
+    ElementGrid grid;
+
+    /** */
+    int cellX0, cellY0, cellX1, cellY1;
+
+    /** If we're too large for the cells of the grid */
+    boolean oversized;
+
+    /** Last query which collected us */
+    int queryStamp;
+
+    /** Cached offset to screen coordinates, valid as long as the renderer's geometry epoch matches */
+    private volatile ScreenOffset screenOffset;
+
+    /**
+     * Offset to screen coordinates together with the epoch it was computed in. Immutable, so
+     * readers on other threads never see an offset mixed from two epochs. 
+     */
+    private static final class ScreenOffset {
+        /** */
+        final int epoch;
+
+        /** */
+        final int x;
+
+        /** */
+        final int y;
+
+        /**
+         * @param epoch
+         * @param offset
+         */
+        ScreenOffset(final int epoch, final Point offset) {
+            this.epoch = epoch;
+            this.x = offset.x;
+            this.y = offset.y;
+        }
+    }
+
     /**
      * @param pseudorendererImpl
      */
@@ -86,12 +132,33 @@ public class RenderElementImpl implements RenderElement {
      */
     @Override
     public Rectangle getGeometry(final CoordinatesType ct) {
+        return getGeometry(ct, new Rectangle());
+    }
 
-        // 1. normalize element position to document
-        final Rectangle rval = (Rectangle) this.rectangle.clone();
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.pseudorenderer.PrimitiveRenderElement#getGeometry(de.dfki.km.text20.services.pseudorenderer.CoordinatesType, java.awt.Rectangle)
+     */
+    @Override
+    public Rectangle getGeometry(final CoordinatesType ct, final Rectangle rval) {
+        rval.setBounds(this.rectangle);
+
+        // Screen coordinates only change with the viewport or the window, so we cache them
+        if (ct == CoordinatesType.SCREEN_BASED) {
+            final int epoch = this.pseudorenderer.geometryEpoch;
+
+            ScreenOffset offset = this.screenOffset;
+            if (offset == null || offset.epoch != epoch) {
+                offset = new ScreenOffset(epoch, screenOffset());
+                this.screenOffset = offset;
+            }
+
+            rval.x += offset.x;
+            rval.y += offset.y;
+            return rval;
+        }
 
-        final Point viewport = this.pseudorenderer.getViewport();
-        final Rectangle window = this.pseudorenderer.getGeometry();
+        // 1. normalize element position to document
+        final Point viewport = this.pseudorenderer.viewportStart;
 
         switch (this.coordinatesType) {
         case DOCUMENT_BASED:
@@ -114,9 +181,35 @@ public class RenderElementImpl implements RenderElement {
             rval.y -= viewport.y;
             break;
         case SCREEN_BASED:
+            break;
+        }
+
+        return rval;
+    }
+
+    /**
+     * Returns what has to be added to our rectangle to get screen coordinates.
+     * 
+     * @return The offset.
+     */
+    private Point screenOffset() {
+        final Point viewport = this.pseudorenderer.getViewport();
+        final Rectangle window = this.pseudorenderer.getGeometry();
+        final Point rval = new Point();
+
+        switch (this.coordinatesType) {
+        case DOCUMENT_BASED:
             // FIXME: Check if elements are visible, or outside the viewport / screen
-            rval.x += window.x - viewport.x;
-            rval.y += window.y - viewport.y;
+            rval.x = window.x - viewport.x;
+            rval.y = window.y - viewport.y;
+            break;
+        case VIEWPORT_BASED:
+            rval.x = window.x;
+            rval.y = window.y;
+            break;
+        case SCREEN_BASED:
+            // Still does not make sense ...
+            throw new NotImplementedException();
         }
 
         return rval;
@@ -143,6 +236,8 @@ public class RenderElementImpl implements RenderElement {
             this.rectangle.width = rectangle.width;
             this.rectangle.height = rectangle.height;
             this.coordinatesType = type;
+            this.screenOffset = null;
+            this.pseudorenderer.updateIndex(this);
             return;
         }
 
@@ -167,6 +262,15 @@ public class RenderElementImpl implements RenderElement {
         return "RenderElement Rectangle=" + this.rectangle;
     }
 
+    /**
+     * Returns our rectangle relative to our coordinates type, without any conversion.
+     * 
+     * @return The rectangle itself, must not be modified. 
+     */
+    Rectangle getRawRectangle() {
+        return this.rectangle;
+    }
+
     /**
      * @return
      */
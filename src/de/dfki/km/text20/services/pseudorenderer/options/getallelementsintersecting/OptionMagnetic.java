@@ -55,4 +55,23 @@ public class OptionMagnetic implements GetAllElementsIntersectingOption {
     public int getMaxDistance() {
         return this.maxDistance;
     }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return 31 + this.maxDistance;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+
+        return this.maxDistance == ((OptionMagnetic) obj).maxDistance;
+    }
 }
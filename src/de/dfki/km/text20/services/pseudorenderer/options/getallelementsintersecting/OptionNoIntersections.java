@@ -33,4 +33,19 @@ public class OptionNoIntersections implements GetAllElementsIntersectingOption {
     /**  */
     private static final long serialVersionUID = -9206200676681479421L;
 
+    /* (non-Javadoc)
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        return obj != null && getClass() == obj.getClass();
+    }
 }
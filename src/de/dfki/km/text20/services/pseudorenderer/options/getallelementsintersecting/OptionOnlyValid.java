@@ -22,15 +22,32 @@
 package de.dfki.km.text20.services.pseudorenderer.options.getallelementsintersecting;
 
 import de.dfki.km.text20.services.pseudorenderer.options.GetAllElementsIntersectingOption;
+import de.dfki.km.text20.services.pseudorenderer.options.GetNearestElementsOption;
 
 /**
- * Signals that if intersections occur, we only accept the latest elements.
+ * Signals that elements marked as invalid should be ignored. Can also be passed to 
+ * nearest element queries.
  * 
  * @author Ralf Biedert
  */
-public class OptionOnlyValid implements GetAllElementsIntersectingOption {
+public class OptionOnlyValid implements GetAllElementsIntersectingOption, GetNearestElementsOption {
 
     /** */
     private static final long serialVersionUID = -2439789146299147106L;
-    //
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        return obj != null && getClass() == obj.getClass();
+    }
 }
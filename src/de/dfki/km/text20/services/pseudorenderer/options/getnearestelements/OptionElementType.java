@@ -0,0 +1,73 @@
+/*
+ * OptionElementType.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.pseudorenderer.options.getnearestelements;
+
+import de.dfki.km.text20.services.pseudorenderer.RenderElement;
+import de.dfki.km.text20.services.pseudorenderer.options.GetNearestElementsOption;
+
+/**
+ * Only elements of the given type are considered, e.g., <code>TextualRenderElement.class</code>
+ * to snap to words only.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public class OptionElementType implements GetNearestElementsOption {
+    /** */
+    private static final long serialVersionUID = -3180411263536815547L;
+
+    /** */
+    private final Class<? extends RenderElement> type;
+
+    /**
+     * @param type The type of elements to accept.
+     */
+    public OptionElementType(Class<? extends RenderElement> type) {
+        this.type = type;
+    }
+
+    /**
+     * @return the type
+     */
+    public Class<? extends RenderElement> getType() {
+        return this.type;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return 31 + (this.type == null ? 0 : this.type.hashCode());
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+
+        return this.type == ((OptionElementType) obj).type;
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * HitTestCache.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.pseudorenderer.util;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.dfki.km.text20.services.pseudorenderer.CoordinatesType;
+import de.dfki.km.text20.services.pseudorenderer.Pseudorenderer;
+import de.dfki.km.text20.services.pseudorenderer.RenderElement;
+import de.dfki.km.text20.services.pseudorenderer.options.GetAllElementsIntersectingOption;
+import de.dfki.km.text20.services.pseudorenderer.options.GetNearestElementsOption;
+
+/**
+ * Remembers the results of element queries for the current gaze sample, so that handlers 
+ * asking the same question about the same sample share one answer. Results are keyed by the 
+ * renderer version, the query geometry and the options, and for coordinates other than 
+ * document ones also by the viewport and the window position. Results are immutable.<br/><br/>
+ * 
+ * Changes of meta attributes (e.g., validity) do not change the renderer version, so the 
+ * cache should be cleared with {@link #nextSample()} for every sample.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public class HitTestCache {
+
+    /** Max. number of results we keep per sample */
+    private static final int MAX_ENTRIES = 64;
+
+    /** Renderer we query */
+    private final Pseudorenderer pseudorenderer;
+
+    /** Results of the current sample */
+    private final Map<Query, List<RenderElement>> results = new HashMap<Query, List<RenderElement>>();
+
+    /** Number of queries answered from the cache */
+    private long hits;
+
+    /** Number of queries passed to the renderer */
+    private long misses;
+
+    /**
+     * Creates a new cache.
+     * 
+     * @param pseudorenderer The renderer to query.
+     */
+    public HitTestCache(final Pseudorenderer pseudorenderer) {
+        this.pseudorenderer = pseudorenderer;
+    }
+
+    /**
+     * Same as {@link Pseudorenderer#getAllElementsIntersecting(Rectangle, CoordinatesType, GetAllElementsIntersectingOption...)}, 
+     * but answered from the cache if possible.
+     * 
+     * @param rectangle The rectangle to query.
+     * @param position How the coordinates should be interpreted.
+     * @param options Additional options.
+     * @return An immutable list of all elements.
+     */
+    public List<RenderElement> getAllElementsIntersecting(final Rectangle rectangle,
+                                                          final CoordinatesType position,
+                                                          final GetAllElementsIntersectingOption... options) {
+        final Query query = query(-1, rectangle.x, rectangle.y, rectangle.width, rectangle.height, position, options);
+
+        synchronized (this) {
+            final List<RenderElement> rval = this.results.get(query);
+            if (rval != null) {
+                this.hits++;
+                return rval;
+            }
+        }
+
+        final Collection<RenderElement> elements = this.pseudorenderer.getAllElementsIntersecting(rectangle, position, options);
+        return store(query, elements);
+    }
+
+    /**
+     * Same as {@link Pseudorenderer#getNearestElements(Point, CoordinatesType, int, int, GetNearestElementsOption...)}, 
+     * but answered from the cache if possible.
+     * 
+     * @param point The point to query.
+     * @param position How the coordinates should be interpreted.
+     * @param k Max. number of elements to return.
+     * @param maxDistance Elements further away are not returned.
+     * @param options Additional options.
+     * @return An immutable list of at most k elements.
+     */
+    public List<RenderElement> getNearestElements(final Point point,
+                                                  final CoordinatesType position,
+                                                  final int k, final int maxDistance,
+                                                  final GetNearestElementsOption... options) {
+        final Query query = query(k, point.x, point.y, maxDistance, 0, position, options);
+
+        synchronized (this) {
+            final List<RenderElement> rval = this.results.get(query);
+            if (rval != null) {
+                this.hits++;
+                return rval;
+            }
+        }
+
+        final List<RenderElement> elements = this.pseudorenderer.getNearestElements(point, position, k, maxDistance, options);
+        return store(query, elements);
+    }
+
+    /**
+     * Forgets all results, should be called whenever a new sample is being dispatched.
+     */
+    public synchronized void nextSample() {
+        this.results.clear();
+    }
+
+    /**
+     * Returns how many queries were answered from the cache.
+     * 
+     * @return The number of hits.
+     */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns how many queries had to be passed to the renderer.
+     * 
+     * @return The number of misses.
+     */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Resets the hit and miss counters.
+     */
+    public synchronized void resetCounters() {
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    /**
+     * Stores the result of a query.
+     * 
+     * @param query
+     * @param elements
+     * @return The immutable result.
+     */
+    private synchronized List<RenderElement> store(final Query query,
+                                                   final Collection<RenderElement> elements) {
+        final List<RenderElement> rval = Collections.unmodifiableList(new ArrayList<RenderElement>(elements));
+
+        if (this.results.size() >= MAX_ENTRIES) this.results.clear();
+
+        this.results.put(query, rval);
+        this.misses++;
+
+        return rval;
+    }
+
+    /**
+     * Assembles the key of a query.
+     * 
+     * @param k
+     * @param x
+     * @param y
+     * @param w
+     * @param h
+     * @param position
+     * @param options
+     * @return .
+     */
+    private Query query(final int k, final int x, final int y, final int w, final int h,
+                        final CoordinatesType position, final Object[] options) {
+        final Query rval = new Query();
+
+        rval.version = this.pseudorenderer.getVersion();
+        rval.k = k;
+        rval.x = x;
+        rval.y = y;
+        rval.w = w;
+        rval.h = h;
+        rval.position = position;
+        rval.options = options == null ? null : Arrays.asList(options);
+
+        // Everything but document coordinates depends on where the document is
+        if (position != CoordinatesType.DOCUMENT_BASED) {
+            rval.viewport = this.pseudorenderer.getViewport();
+            rval.window = this.pseudorenderer.getGeometry();
+        }
+
+        return rval;
+    }
+
+    /**
+     * Key of a query.
+     */
+    private static class Query {
+        /** */
+        long version;
+
+        /** Number of requested elements, -1 for intersection queries */
+        int k;
+
+        /** Query geometry, for nearest queries w is the max. distance */
+        int x, y, w, h;
+
+        /** */
+        CoordinatesType position;
+
+        /** */
+        List<Object> options;
+
+        /** Only set if the position is not document based */
+        Point viewport;
+
+        /** Only set if the position is not document based */
+        Rectangle window;
+
+        /* (non-Javadoc)
+         * @see java.lang.Object#hashCode()
+         */
+        @Override
+        public int hashCode() {
+            int rval = (int) (this.version ^ (this.version >>> 32));
+            rval = 31 * rval + this.k;
+            rval = 31 * rval + this.x;
+            rval = 31 * rval + this.y;
+            rval = 31 * rval + this.w;
+            rval = 31 * rval + this.h;
+            rval = 31 * rval + (this.position == null ? 0 : this.position.hashCode());
+            rval = 31 * rval + (this.options == null ? 0 : this.options.hashCode());
+            return rval;
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Query)) return false;
+
+            final Query other = (Query) obj;
+
+            return this.version == other.version && this.k == other.k && this.x == other.x && this.y == other.y && this.w == other.w && this.h == other.h && this.position == other.position && equal(this.options, other.options) && equal(this.viewport, other.viewport) && equal(this.window, other.window);
+        }
+
+        /**
+         * @param a
+         * @param b
+         * @return True if both are null or equal.
+         */
+        private static boolean equal(final Object a, final Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
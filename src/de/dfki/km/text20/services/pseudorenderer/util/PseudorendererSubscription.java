@@ -0,0 +1,95 @@
+/*
+ * PseudorendererSubscription.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.pseudorenderer.util;
+
+import de.dfki.km.text20.services.pseudorenderer.Pseudorenderer;
+import de.dfki.km.text20.services.pseudorenderer.PseudorendererChanges;
+import de.dfki.km.text20.services.pseudorenderer.PseudorendererSnapshot;
+
+/**
+ * Follows the changes of a {@link Pseudorenderer}. Every {@link #poll()} returns what 
+ * changed since the previous one. Neither polling nor resyncing blocks the threads 
+ * updating the renderer. Not thread safe, every consumer should have its own subscription.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public class PseudorendererSubscription {
+
+    /** */
+    private final Pseudorenderer pseudorenderer;
+
+    /** Version we have seen */
+    private long version;
+
+    /**
+     * Subscribes to all changes after the given version.
+     * 
+     * @param pseudorenderer The renderer to follow.
+     * @param version The version to start at, e.g. from a {@link PseudorendererSnapshot}.
+     */
+    public PseudorendererSubscription(final Pseudorenderer pseudorenderer, final long version) {
+        this.pseudorenderer = pseudorenderer;
+        this.version = version;
+    }
+
+    /**
+     * Subscribes to all changes from now on.
+     * 
+     * @param pseudorenderer The renderer to follow.
+     */
+    public PseudorendererSubscription(final Pseudorenderer pseudorenderer) {
+        this(pseudorenderer, pseudorenderer.getVersion());
+    }
+
+    /**
+     * Returns all changes since the last poll. If they are not complete, call
+     * {@link #resync()}.
+     * 
+     * @return The changes.
+     */
+    public PseudorendererChanges poll() {
+        final PseudorendererChanges changes = this.pseudorenderer.getChangesSince(this.version);
+        if (changes.isComplete()) this.version = changes.getToVersion();
+        return changes;
+    }
+
+    /**
+     * Takes a new snapshot and continues polling from there.
+     * 
+     * @return The snapshot.
+     */
+    public PseudorendererSnapshot resync() {
+        final PseudorendererSnapshot snapshot = this.pseudorenderer.getSnapshot();
+        this.version = snapshot.getVersion();
+        return snapshot;
+    }
+
+    /**
+     * Returns the version up to which we have seen the changes.
+     * 
+     * @return The version.
+     */
+    public long getVersion() {
+        return this.version;
+    }
+}
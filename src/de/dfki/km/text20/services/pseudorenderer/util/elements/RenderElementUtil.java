@@ -26,6 +26,7 @@ import java.io.Serializable;
 
 import net.jcores.jre.utils.VanillaUtil;
 import de.dfki.km.text20.services.pseudorenderer.CoordinatesType;
+import de.dfki.km.text20.services.pseudorenderer.PrimitiveRenderElement;
 import de.dfki.km.text20.services.pseudorenderer.RenderElement;
 import de.dfki.km.text20.services.pseudorenderer.RenderElementMetaAttribute;
 import de.dfki.km.text20.services.pseudorenderer.renderelements.GraphicalRenderElement;
@@ -80,6 +81,28 @@ public class RenderElementUtil extends VanillaUtil<RenderElement> implements Ren
         return this.object.getGeometry(type);
     }
 
+    /**
+     * Stores the geometry of an element in the given rectangle, without allocating if the 
+     * element supports it.
+     * 
+     * @param element The element to query.
+     * @param type The coordinates type to use.
+     * @param result The rectangle to store the geometry in.
+     * @return The result rectangle, or null if the element has no geometry.
+     * @since 1.4
+     */
+    public static Rectangle geometry(final RenderElement element, final CoordinatesType type,
+                                     final Rectangle result) {
+        if (element instanceof PrimitiveRenderElement)
+            return ((PrimitiveRenderElement) element).getGeometry(type, result);
+
+        final Rectangle geometry = element.getGeometry(type);
+        if (geometry == null) return null;
+
+        result.setBounds(geometry);
+        return result;
+    }
+
     /**
      * @return .
      * @see de.dfki.km.text20.services.pseudorenderer.RenderElement#getIdentifier()
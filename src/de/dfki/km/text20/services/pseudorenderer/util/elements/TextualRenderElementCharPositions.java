@@ -21,38 +21,57 @@
  */
 package de.dfki.km.text20.services.pseudorenderer.util.elements;
 
+import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import de.dfki.km.text20.services.pseudorenderer.CoordinatesType;
 import de.dfki.km.text20.services.pseudorenderer.renderelements.TextualRenderElement;
 
 /**
- * Calculates char positions of render elements.
+ * Calculates char positions of render elements. For every (content, font) pair a table
+ * of cumulative character advances is computed once and kept in a cache shared by all
+ * instances, so that queries are answered by a binary search on that table.
  * 
  * @author Ralf Biedert
  * @since 1.0
  */
 public class TextualRenderElementCharPositions {
 
-    /** Used to measure sized */
-    private final FontMetrics fontMetrics;
+    /** Max. number of advance tables we keep per font */
+    private static final int MAX_TABLES_PER_FONT = 4096;
 
-    /** To dispose graphics */
-    private final Graphics graphics;
+    /** Advance tables per font */
+    private static final Map<Font, AdvanceCache> caches = new HashMap<Font, AdvanceCache>();
+
+    /** Used to obtain font metrics, created on first use */
+    private static Graphics graphics;
+
+    /** Advance tables of our font */
+    private final AdvanceCache cache;
 
     /**
-     * 
+     * Creates a new position calculator using the default font.
      */
     public TextualRenderElementCharPositions() {
-        final BufferedImage bufferedImage = new BufferedImage(200, 200, BufferedImage.TYPE_3BYTE_BGR);
-
-        this.graphics = bufferedImage.getGraphics();
-        this.fontMetrics = this.graphics.getFontMetrics();
+        this(null);
+    }
 
+    /**
+     * Creates a new position calculator using the given font.
+     * 
+     * @param font The font to measure with, or <code>null</code> for the default font.
+     * @since 1.4
+     */
+    public TextualRenderElementCharPositions(final Font font) {
+        this.cache = cacheFor(font);
     }
 
     /**
@@ -67,26 +86,18 @@ public class TextualRenderElementCharPositions {
     public Rectangle getCoordinatesOf(final TextualRenderElement renderElement,
                                       final CoordinatesType type, final int chatPosition) {
 
-        final String content = renderElement.getContent();
+        final int[] advances = this.cache.advancesOf(renderElement.getContent());
         final Rectangle geometry = renderElement.getGeometry(type);
 
         final double widthOfRectangle = geometry.getWidth();
+        final double currentSum = advances[advances.length - 1];
 
         double startPosChar = 0;
         double endPosChar = 0;
-        double currentSum = 0;
-
-        for (int i = 0; i < content.length(); i++) {
-            final char c = content.charAt(i);
 
-            final double cWidth = this.fontMetrics.charWidth(c);
-
-            if (i == chatPosition) {
-                startPosChar = currentSum;
-                endPosChar = currentSum + cWidth;
-            }
-
-            currentSum += cWidth;
+        if (chatPosition >= 0 && chatPosition < advances.length - 1) {
+            startPosChar = advances[chatPosition];
+            endPosChar = advances[chatPosition + 1];
         }
 
         final double _start = startPosChar / currentSum;
@@ -116,23 +127,30 @@ public class TextualRenderElementCharPositions {
         final Rectangle geometry = renderElement.getGeometry(type);
         if (!geometry.contains(p)) return -1;
 
-        final String content = renderElement.getContent();
+        final int[] advances = this.cache.advancesOf(renderElement.getContent());
+        final int length = advances.length - 1;
+        final double total = advances[length];
+
+        if (length == 0 || total <= 0) return -1;
+
         final int x = p.x - geometry.x;
         final double px = x / (double) geometry.width;
 
-        double last = 0;
-
-        //
-        for (int i = 0; i < content.length(); i++) {
-            final String a = content.substring(0, i + 1);
-            final double aa = getWidthRelation(a, content);
+        // Find the first character whose end lies at or behind px
+        int low = 0;
+        int high = length - 1;
 
-            if (last <= px && px <= aa) return i;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
 
-            last = aa;
+            if (advances[mid + 1] / total < px) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
         }
 
-        return -1;
+        return advances[low + 1] / total >= px ? low : -1;
     }
 
     /**
@@ -143,8 +161,8 @@ public class TextualRenderElementCharPositions {
      * @return .
      */
     public double getWidthRelation(final char c, final char d) {
-        final double a = this.fontMetrics.charWidth(c);
-        final double b = this.fontMetrics.charWidth(d);
+        final double a = this.cache.charWidth(c);
+        final double b = this.cache.charWidth(d);
         return a / b;
     }
 
@@ -154,29 +172,92 @@ public class TextualRenderElementCharPositions {
      * @return .
      */
     public double getWidthRelation(final String a, final String b) {
+        final int[] aa = this.cache.advancesOf(a);
+        final int[] bb = this.cache.advancesOf(b);
 
-        double aa = 0;
-        double bb = 0;
+        return aa[aa.length - 1] / (double) bb[bb.length - 1];
+    }
 
-        for (final char c : a.toCharArray()) {
-            aa += this.fontMetrics.charWidth(c);
-        }
-        for (final char c : b.toCharArray()) {
-            bb += this.fontMetrics.charWidth(c);
+    /**
+     * Returns the shared cache for the given font.
+     * 
+     * @param font Font, or <code>null</code> for the default one.
+     * @return The cache.
+     */
+    private static synchronized AdvanceCache cacheFor(final Font font) {
+        if (graphics == null) {
+            final BufferedImage bufferedImage = new BufferedImage(1, 1, BufferedImage.TYPE_3BYTE_BGR);
+            graphics = bufferedImage.getGraphics();
         }
 
-        return aa / bb;
+        final Font f = font == null ? graphics.getFont() : font;
 
+        AdvanceCache rval = caches.get(f);
+        if (rval == null) {
+            rval = new AdvanceCache(graphics.getFontMetrics(f));
+            caches.put(f, rval);
+        }
+
+        return rval;
     }
 
-    /* (non-Javadoc)
-     * @see java.lang.Object#finalize()
+    /**
+     * Advance tables of a single font, the least recently used ones are dropped first.
      */
-    @Override
-    protected void finalize() throws Throwable {
-        super.finalize();
+    private static class AdvanceCache {
+
+        /** Metrics of the font */
+        private final FontMetrics fontMetrics;
+
+        /** Maps content to its cumulative advances */
+        private final Map<String, int[]> tables = new LinkedHashMap<String, int[]>(64, 0.75f, true) {
+            /** */
+            private static final long serialVersionUID = 6305826785441928150L;
+
+            /* (non-Javadoc)
+             * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+             */
+            @Override
+            protected boolean removeEldestEntry(final Entry<String, int[]> eldest) {
+                return size() > MAX_TABLES_PER_FONT;
+            }
+        };
 
-        // Don't know if that's really necessary.
-        this.graphics.dispose();
+        /**
+         * @param fontMetrics
+         */
+        AdvanceCache(final FontMetrics fontMetrics) {
+            this.fontMetrics = fontMetrics;
+        }
+
+        /**
+         * Returns the cumulative advances of the given content. Entry <code>i</code>
+         * is the width of the first <code>i</code> characters, so the table has one
+         * more entry than the content has characters.
+         * 
+         * @param content
+         * @return The table, must not be modified.
+         */
+        synchronized int[] advancesOf(final String content) {
+            int[] rval = this.tables.get(content);
+            if (rval != null) return rval;
+
+            rval = new int[content.length() + 1];
+            for (int i = 0; i < content.length(); i++) {
+                rval[i + 1] = rval[i] + this.fontMetrics.charWidth(content.charAt(i));
+            }
+
+            this.tables.put(content, rval);
+
+            return rval;
+        }
+
+        /**
+         * @param c
+         * @return The width of the given char.
+         */
+        synchronized int charWidth(final char c) {
+            return this.fontMetrics.charWidth(c);
+        }
     }
 }
@@ -0,0 +1,496 @@
+/*
+ * TextLayoutIndex.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.pseudorenderer.util.layout;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import de.dfki.km.text20.services.pseudorenderer.CoordinatesType;
+import de.dfki.km.text20.services.pseudorenderer.Pseudorenderer;
+import de.dfki.km.text20.services.pseudorenderer.RenderElement;
+import de.dfki.km.text20.services.pseudorenderer.renderelements.TextualRenderElement;
+
+/**
+ * Groups the textual elements of a page into lines and brings them into reading order.
+ * Elements are grouped per text ID, within a text an element belongs to the line whose 
+ * vertical extent contains its center. The index is maintained incrementally by whoever 
+ * updates the elements (usually the page manager), so that handlers can ask for the line 
+ * or the word under a point without going through all elements of the page.<br/><br/>
+ * 
+ * Lines are kept in a sorted set per text and words in a sorted list per line. For lookups 
+ * by point all lines of all texts are also kept in one set ordered by their top, so that 
+ * only lines starting at most one line height above the point have to be checked, no 
+ * matter how many texts the page has. Line numbers and word indices are recomputed on the 
+ * first query after a text changed. Elements fixed on the window are not part of the layout.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public class TextLayoutIndex {
+
+    /** Orders words left to right */
+    static final Comparator<Word> HORIZONTAL_ORDER = new Comparator<Word>() {
+        @Override
+        public int compare(final Word o1, final Word o2) {
+            if (o1.bounds.x != o2.bounds.x) return o1.bounds.x < o2.bounds.x ? -1 : 1;
+            if (o1.sequence != o2.sequence) return o1.sequence < o2.sequence ? -1 : 1;
+            return 0;
+        }
+    };
+
+    /** Used to convert query points */
+    private final Pseudorenderer pseudorenderer;
+
+    /** All texts by their ID */
+    private final Map<Integer, Text> texts = new HashMap<Integer, Text>();
+
+    /** All indexed elements */
+    private final Map<TextualRenderElement, Word> words = new HashMap<TextualRenderElement, Word>();
+
+    /** Lines of all texts, ordered by their top */
+    private final TreeSet<TextLine> lines = new TreeSet<TextLine>(TextLine.TOP_ORDER);
+
+    /** Highest line we have seen since the last clear, bounds how far above a point we have to look */
+    private int maxLineHeight;
+
+    /** Tie breakers for words and lines */
+    private int nextWord, nextLine;
+
+    /**
+     * Creates an empty index.
+     * 
+     * @param pseudorenderer The renderer whose elements we index, used to convert coordinates.
+     */
+    public TextLayoutIndex(final Pseudorenderer pseudorenderer) {
+        this.pseudorenderer = pseudorenderer;
+    }
+
+    /**
+     * Adds an element to the index, or moves it if its geometry or text ID changed. 
+     * Elements without a size or fixed on the window are removed.
+     * 
+     * @param element The element to update.
+     */
+    public synchronized void update(final TextualRenderElement element) {
+        final Rectangle bounds = element.getGeometry(CoordinatesType.DOCUMENT_BASED);
+
+        if (element.getCoordinatesType() == CoordinatesType.VIEWPORT_BASED || bounds.width <= 0 || bounds.height <= 0) {
+            remove(element);
+            return;
+        }
+
+        final int textID = element.getTextID();
+
+        Word word = this.words.get(element);
+        if (word == null) {
+            word = new Word(element, this.nextWord++);
+            this.words.put(element, word);
+        } else {
+            if (word.bounds.equals(bounds) && word.line.text.textID == textID) return;
+            detach(word);
+        }
+
+        word.bounds = bounds;
+        attach(word, text(textID));
+    }
+
+    /**
+     * Removes an element from the index.
+     * 
+     * @param element The element to remove.
+     */
+    public synchronized void remove(final RenderElement element) {
+        final Word word = this.words.remove(element);
+        if (word == null) return;
+
+        detach(word);
+    }
+
+    /**
+     * Removes all elements.
+     */
+    public synchronized void clear() {
+        for (final Word word : this.words.values()) {
+            word.line.words.clear();
+        }
+
+        this.words.clear();
+        this.texts.clear();
+        this.lines.clear();
+        this.maxLineHeight = 0;
+    }
+
+    /**
+     * Returns the number of indexed elements.
+     * 
+     * @return The number of elements.
+     */
+    public synchronized int size() {
+        return this.words.size();
+    }
+
+    /**
+     * Returns the line at the given point. If lines of several texts overlap there, the one 
+     * starting lowest is returned.
+     * 
+     * @param point The point to look at.
+     * @param type The coordinates of the point.
+     * @return The line, or <code>null</code> if there is none.
+     */
+    public synchronized TextLine getLineAt(final Point point, final CoordinatesType type) {
+        final Point p = toDocument(point, type);
+        if (p == null) return null;
+
+        for (final TextLine line : candidates(p.y)) {
+            if (contains(line, p.x, p.y)) return line;
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the element at the given point. If lines of several texts overlap there, the 
+     * lines starting lower are checked first.
+     * 
+     * @param point The point to look at.
+     * @param type The coordinates of the point.
+     * @return The element, or <code>null</code> if there is none.
+     */
+    public synchronized TextualRenderElement getElementAt(final Point point,
+                                                          final CoordinatesType type) {
+        final Point p = toDocument(point, type);
+        if (p == null) return null;
+
+        for (final TextLine line : candidates(p.y)) {
+            if (!contains(line, p.x, p.y)) continue;
+
+            // Find the last word starting left of the point
+            int low = 0;
+            int high = line.words.size() - 1;
+            while (low < high) {
+                final int mid = (low + high + 1) >>> 1;
+                if (line.words.get(mid).bounds.x <= p.x) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+
+            final Rectangle bounds = line.words.get(low).bounds;
+            if (bounds.x <= p.x && p.x < bounds.x + bounds.width) return line.words.get(low).element;
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the line an element is part of.
+     * 
+     * @param element The element.
+     * @return The line, or <code>null</code> if the element is not indexed.
+     */
+    public synchronized TextLine getLineOf(final TextualRenderElement element) {
+        final Word word = this.words.get(element);
+        return word == null ? null : word.line;
+    }
+
+    /**
+     * Returns the line below the given one in the same text.
+     * 
+     * @param line The line to start from.
+     * @return The next line, or <code>null</code> if there is none or the line is not valid anymore.
+     */
+    public synchronized TextLine getNextLine(final TextLine line) {
+        if (line.words.isEmpty()) return null;
+        return line.text.lines.higher(line);
+    }
+
+    /**
+     * Returns the line above the given one in the same text.
+     * 
+     * @param line The line to start from.
+     * @return The previous line, or <code>null</code> if there is none or the line is not valid anymore.
+     */
+    public synchronized TextLine getPreviousLine(final TextLine line) {
+        if (line.words.isEmpty()) return null;
+        return line.text.lines.lower(line);
+    }
+
+    /**
+     * Returns the number of lines of a text.
+     * 
+     * @param textID The text ID.
+     * @return The number of lines.
+     */
+    public synchronized int getLineCount(final int textID) {
+        final Text text = this.texts.get(Integer.valueOf(textID));
+        return text == null ? 0 : text.lines.size();
+    }
+
+    /**
+     * Returns the line with the given number.
+     * 
+     * @param textID The text ID.
+     * @param number The line number, starting with 0 at the top.
+     * @return The line or <code>null</code> if there is none.
+     */
+    public synchronized TextLine getLine(final int textID, final int number) {
+        final Text text = this.texts.get(Integer.valueOf(textID));
+        if (text == null || number < 0 || number >= text.lines.size()) return null;
+
+        text.updateOrder();
+        return text.order[number];
+    }
+
+    /**
+     * Returns the position of the element in the reading order of its text.
+     * 
+     * @param element The element.
+     * @return The word index, or -1 if the element is not indexed.
+     */
+    public synchronized int getWordIndex(final TextualRenderElement element) {
+        final Word word = this.words.get(element);
+        if (word == null) return -1;
+
+        word.line.text.updateOrder();
+        return word.line.firstWord + Collections.binarySearch(word.line.words, word, HORIZONTAL_ORDER);
+    }
+
+    /**
+     * Returns the element at the given position in the reading order of a text.
+     * 
+     * @param textID The text ID.
+     * @param index The word index.
+     * @return The element or <code>null</code> if there is none.
+     */
+    public synchronized TextualRenderElement getElement(final int textID, final int index) {
+        final Text text = this.texts.get(Integer.valueOf(textID));
+        if (text == null || index < 0) return null;
+
+        text.updateOrder();
+
+        // Find the last line starting at or before the index
+        int low = 0;
+        int high = text.order.length - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (text.order[mid].firstWord <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        final TextLine line = text.order[low];
+        final int offset = index - line.firstWord;
+        if (offset >= line.words.size()) return null;
+
+        return line.words.get(offset).element;
+    }
+
+    /**
+     * Inserts the word into the line containing its center, or into a new line.
+     * 
+     * @param word
+     * @param text
+     */
+    private void attach(final Word word, final Text text) {
+        final Rectangle r = word.bounds;
+        final int center = r.y + r.height / 2;
+
+        // Only lines whose center lies within our extent are candidates
+        TextLine line = null;
+        for (final TextLine candidate : text.lines.subSet(TextLine.probe(r.y, Integer.MIN_VALUE), true, TextLine.probe(r.y + r.height, Integer.MAX_VALUE), true)) {
+            if (candidate.top > center || center > candidate.bottom) continue;
+            if (line == null || Math.abs(candidate.center - center) < Math.abs(line.center - center))
+                line = candidate;
+        }
+
+        if (line == null) {
+            line = new TextLine(this, text, this.nextLine++);
+            line.updateBounds();
+        } else {
+            text.lines.remove(line);
+            this.lines.remove(line);
+        }
+
+        final int position = Collections.binarySearch(line.words, word, HORIZONTAL_ORDER);
+        line.words.add(-position - 1, word);
+        line.include(r);
+
+        text.lines.add(line);
+        text.dirty = true;
+
+        this.lines.add(line);
+        this.maxLineHeight = Math.max(this.maxLineHeight, line.bottom - line.top);
+
+        word.line = line;
+    }
+
+    /**
+     * Removes the word from its line.
+     * 
+     * @param word
+     */
+    private void detach(final Word word) {
+        final TextLine line = word.line;
+        final Text text = line.text;
+
+        text.lines.remove(line);
+        this.lines.remove(line);
+        line.words.remove(Collections.binarySearch(line.words, word, HORIZONTAL_ORDER));
+
+        if (line.words.size() > 0) {
+            line.updateBounds();
+            text.lines.add(line);
+            this.lines.add(line);
+        }
+
+        if (text.lines.isEmpty()) {
+            this.texts.remove(Integer.valueOf(text.textID));
+        }
+
+        text.dirty = true;
+        word.line = null;
+    }
+
+    /**
+     * @param textID
+     * @return The text with the given ID, created if necessary.
+     */
+    private Text text(final int textID) {
+        Text rval = this.texts.get(Integer.valueOf(textID));
+        if (rval == null) {
+            rval = new Text(textID);
+            this.texts.put(Integer.valueOf(textID), rval);
+        }
+        return rval;
+    }
+
+    /**
+     * @param y
+     * @return All lines which might contain the given height, lowest top first.
+     */
+    private Iterable<TextLine> candidates(final int y) {
+        // Lines starting more than the highest line above can't reach down to us
+        final TextLine from = TextLine.probeTop(y - this.maxLineHeight, Integer.MIN_VALUE);
+        final TextLine to = TextLine.probeTop(y, Integer.MAX_VALUE);
+
+        return this.lines.subSet(from, false, to, true).descendingSet();
+    }
+
+    /**
+     * @param line
+     * @param x
+     * @param y
+     * @return True if the line contains the point.
+     */
+    private static boolean contains(final TextLine line, final int x, final int y) {
+        return line.top <= y && y < line.bottom && line.left <= x && x < line.right;
+    }
+
+    /**
+     * @param point
+     * @param type
+     * @return The point in document coordinates.
+     */
+    private Point toDocument(final Point point, final CoordinatesType type) {
+        if (type == CoordinatesType.DOCUMENT_BASED) return point;
+        return this.pseudorenderer.convertPoint(point, type, CoordinatesType.DOCUMENT_BASED);
+    }
+
+    /**
+     * All lines with the same text ID.
+     */
+    static class Text {
+
+        /** Our ID */
+        final int textID;
+
+        /** Lines top to bottom */
+        final TreeSet<TextLine> lines = new TreeSet<TextLine>(TextLine.VERTICAL_ORDER);
+
+        /** Lines as array, valid if not dirty */
+        TextLine[] order = new TextLine[0];
+
+        /** Set if line numbers and word indices have to be recomputed */
+        boolean dirty = true;
+
+        /**
+         * @param textID
+         */
+        Text(final int textID) {
+            this.textID = textID;
+        }
+
+        /**
+         * Recomputes line numbers and word offsets if necessary.
+         */
+        void updateOrder() {
+            if (!this.dirty) return;
+
+            this.order = this.lines.toArray(this.order.length == this.lines.size() ? this.order : new TextLine[this.lines.size()]);
+
+            int words = 0;
+            for (int i = 0; i < this.order.length; i++) {
+                this.order[i].number = i;
+                this.order[i].firstWord = words;
+                words += this.order[i].words.size();
+            }
+
+            this.dirty = false;
+        }
+    }
+
+    /**
+     * An indexed element.
+     */
+    static class Word {
+
+        /** The element */
+        final TextualRenderElement element;
+
+        /** Breaks ties between words at the same position */
+        final int sequence;
+
+        /** Bounds when it was indexed (in document coordinates) */
+        Rectangle bounds;
+
+        /** Line we are part of */
+        TextLine line;
+
+        /**
+         * @param element
+         * @param sequence
+         */
+        Word(final TextualRenderElement element, final int sequence) {
+            this.element = element;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * TextLine.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.pseudorenderer.util.layout;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import de.dfki.km.text20.services.pseudorenderer.renderelements.TextualRenderElement;
+
+/**
+ * A line of text as seen by the {@link TextLayoutIndex}, i.e., all words of the same text
+ * which are vertically aligned. Lines are only valid until the words they contain change,
+ * their accessors return copies.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public class TextLine {
+
+    /** Orders lines top to bottom */
+    static final Comparator<TextLine> VERTICAL_ORDER = new Comparator<TextLine>() {
+        @Override
+        public int compare(final TextLine o1, final TextLine o2) {
+            if (o1.center != o2.center) return o1.center < o2.center ? -1 : 1;
+            if (o1.sequence != o2.sequence) return o1.sequence < o2.sequence ? -1 : 1;
+            return 0;
+        }
+    };
+
+    /** Orders lines by their top */
+    static final Comparator<TextLine> TOP_ORDER = new Comparator<TextLine>() {
+        @Override
+        public int compare(final TextLine o1, final TextLine o2) {
+            if (o1.top != o2.top) return o1.top < o2.top ? -1 : 1;
+            if (o1.sequence != o2.sequence) return o1.sequence < o2.sequence ? -1 : 1;
+            return 0;
+        }
+    };
+
+    /** The index we belong to, also guards all fields */
+    final TextLayoutIndex index;
+
+    /** Text we are part of */
+    final TextLayoutIndex.Text text;
+
+    /** Breaks ties between lines with the same center */
+    final int sequence;
+
+    /** Our words, ordered left to right */
+    final List<TextLayoutIndex.Word> words = new ArrayList<TextLayoutIndex.Word>();
+
+    /** Bounds (in document coordinates) */
+    int top, bottom, left, right;
+
+    /** Vertical center, the key by which we are sorted */
+    int center;
+
+    /** Number of this line and of its first word within the text, valid if the text is not dirty */
+    int number, firstWord;
+
+    /**
+     * @param index
+     * @param text
+     * @param sequence
+     */
+    TextLine(final TextLayoutIndex index, final TextLayoutIndex.Text text, final int sequence) {
+        this.index = index;
+        this.text = text;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Creates a probe to search lines by center.
+     * 
+     * @param center
+     * @param sequence
+     * @return .
+     */
+    static TextLine probe(final int center, final int sequence) {
+        final TextLine rval = new TextLine(null, null, sequence);
+        rval.center = center;
+        return rval;
+    }
+
+    /**
+     * Creates a probe to search lines by top.
+     * 
+     * @param top
+     * @param sequence
+     * @return .
+     */
+    static TextLine probeTop(final int top, final int sequence) {
+        final TextLine rval = new TextLine(null, null, sequence);
+        rval.top = top;
+        return rval;
+    }
+
+    /**
+     * Recomputes the bounds from our words.
+     */
+    void updateBounds() {
+        this.top = Integer.MAX_VALUE;
+        this.left = Integer.MAX_VALUE;
+        this.bottom = Integer.MIN_VALUE;
+        this.right = Integer.MIN_VALUE;
+
+        for (final TextLayoutIndex.Word word : this.words) {
+            include(word.bounds);
+        }
+    }
+
+    /**
+     * Grows the bounds to include the rectangle.
+     * 
+     * @param r
+     */
+    void include(final Rectangle r) {
+        this.top = Math.min(this.top, r.y);
+        this.left = Math.min(this.left, r.x);
+        this.bottom = Math.max(this.bottom, r.y + r.height);
+        this.right = Math.max(this.right, r.x + r.width);
+        this.center = (this.top + this.bottom) / 2;
+    }
+
+    /**
+     * Returns the text ID of the words in this line.
+     * 
+     * @return The text ID, -1 if the words had none.
+     */
+    public int getTextID() {
+        return this.text.textID;
+    }
+
+    /**
+     * Returns the bounds of this line in document coordinates.
+     * 
+     * @return The bounds.
+     */
+    public Rectangle getBounds() {
+        synchronized (this.index) {
+            return new Rectangle(this.left, this.top, this.right - this.left, this.bottom - this.top);
+        }
+    }
+
+    /**
+     * Returns the words of this line, left to right.
+     * 
+     * @return A copy of the words.
+     */
+    public List<TextualRenderElement> getElements() {
+        synchronized (this.index) {
+            final List<TextualRenderElement> rval = new ArrayList<TextualRenderElement>(this.words.size());
+            for (final TextLayoutIndex.Word word : this.words) {
+                rval.add(word.element);
+            }
+            return rval;
+        }
+    }
+
+    /**
+     * Returns the number of this line within its text, counted from the top.
+     * 
+     * @return The line number, -1 if the line is not valid anymore.
+     */
+    public int getLineNumber() {
+        synchronized (this.index) {
+            if (!isValid()) return -1;
+
+            this.text.updateOrder();
+            return this.number;
+        }
+    }
+
+    /**
+     * Returns the number of words in this line.
+     * 
+     * @return The number of words.
+     */
+    public int size() {
+        synchronized (this.index) {
+            return this.words.size();
+        }
+    }
+
+    /**
+     * Returns if this line is still part of the index.
+     * 
+     * @return True if it is.
+     */
+    public boolean isValid() {
+        synchronized (this.index) {
+            return this.words.size() > 0;
+        }
+    }
+}
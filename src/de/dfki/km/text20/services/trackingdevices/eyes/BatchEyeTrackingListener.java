@@ -0,0 +1,42 @@
+/*
+ * BatchEyeTrackingListener.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.trackingdevices.eyes;
+
+import java.util.List;
+
+/**
+ * An {@link EyeTrackingListener} that can process several events at once. Devices 
+ * delivering batches check for this interface and call {@link #newTrackingEvents(List)}, 
+ * all other listeners receive the events one by one.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public interface BatchEyeTrackingListener extends EyeTrackingListener {
+    /**
+     * Called with a number of new events, in the order they were observed. The list must 
+     * not be modified and should not be kept after the call returns.
+     * 
+     * @param events The new events.
+     */
+    public void newTrackingEvents(List<EyeTrackingEvent> events);
+}
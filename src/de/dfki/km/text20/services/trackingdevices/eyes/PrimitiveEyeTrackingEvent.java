@@ -0,0 +1,76 @@
+/*
+ * PrimitiveEyeTrackingEvent.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.trackingdevices.eyes;
+
+/**
+ * An eye tracking event whose most frequently used values were resolved when the event
+ * was created. In contrast to the {@link EyeTrackingEvent} getters, which return fresh
+ * objects the caller may modify, these accessors do not allocate.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public interface PrimitiveEyeTrackingEvent extends EyeTrackingEvent {
+    /**
+     * Returns the x coordinate of the best guess for the current gaze.
+     * 
+     * @return The x coordinate, -1 if the gaze was not valid.
+     */
+    public int getGazeX();
+
+    /**
+     * Returns the y coordinate of the best guess for the current gaze.
+     * 
+     * @return The y coordinate, -1 if the gaze was not valid.
+     */
+    public int getGazeY();
+
+    /**
+     * Returns the x component of the head position.
+     * 
+     * @return The x component.
+     */
+    public float getHeadX();
+
+    /**
+     * Returns the y component of the head position.
+     * 
+     * @return The y component.
+     */
+    public float getHeadY();
+
+    /**
+     * Returns the z component of the head position.
+     * 
+     * @return The z component.
+     */
+    public float getHeadZ();
+
+    /**
+     * Checks a single validity without allocating a varargs array.
+     * 
+     * @param validity The validity to check.
+     * 
+     * @return True if the given value is valid.
+     */
+    public boolean isValid(EyeTrackingEventValidity validity);
+}
@@ -0,0 +1,295 @@
+/*
+ * TrackingEventRingBuffer.java
+ *
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.trackingdevices.eyes.impl.trackingserver;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
+
+/**
+ * Bounded, preallocated queue between the tracking server callback and our listeners.
+ * The producer never allocates, and depending on the {@link OverflowPolicy} it either
+ * waits for the consumer or discards events when the buffer is full.
+ *
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public class TrackingEventRingBuffer {
+
+    /** What to do if an event arrives while the buffer is full. */
+    public static enum OverflowPolicy {
+        /** Block the producer until the consumer freed a slot. */
+        BLOCK,
+
+        /** Overwrite the oldest queued event. */
+        DROP_OLDEST,
+
+        /** Discard the incoming event. */
+        DROP_NEWEST
+    }
+
+    /** Preallocated slots */
+    private final EyeTrackingEvent[] slots;
+
+    /** What to do when we're full */
+    private final OverflowPolicy policy;
+
+    /** Guards all fields below */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Signalled when an element was added */
+    private final Condition notEmpty = this.lock.newCondition();
+
+    /** Signalled when an element was removed */
+    private final Condition notFull = this.lock.newCondition();
+
+    /** Index of the oldest element */
+    private int head = 0;
+
+    /** Number of queued elements */
+    private int size = 0;
+
+    /** Number of events we had to discard */
+    private long dropped = 0;
+
+    /** Largest size we have seen so far */
+    private int highWaterMark = 0;
+
+    /** Set once the buffer was closed, after that all events are rejected */
+    private boolean closed = false;
+
+    /**
+     * Creates a new ring buffer.
+     *
+     * @param capacity Number of slots to preallocate.
+     * @param policy What to do if the buffer is full.
+     */
+    public TrackingEventRingBuffer(final int capacity, final OverflowPolicy policy) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+
+        this.slots = new EyeTrackingEvent[capacity];
+        this.policy = policy;
+    }
+
+    /**
+     * Adds an event to the buffer, obeying the overflow policy.
+     *
+     * @param event The event to add.
+     * @return False if an event (either this or an older one) was discarded, or if the
+     * buffer was closed.
+     * @throws InterruptedException If we were interrupted while waiting in BLOCK mode.
+     */
+    public boolean put(final EyeTrackingEvent event) throws InterruptedException {
+        boolean rval = true;
+
+        this.lock.lock();
+        try {
+            if (this.closed) return false;
+
+            if (this.size == this.slots.length) {
+                switch (this.policy) {
+                case BLOCK:
+                    while (this.size == this.slots.length && !this.closed) {
+                        this.notFull.await();
+                    }
+
+                    // Nobody is going to drain us anymore
+                    if (this.closed) return false;
+                    break;
+                case DROP_NEWEST:
+                    this.dropped++;
+                    return false;
+                case DROP_OLDEST:
+                    this.slots[this.head] = null;
+                    this.head = (this.head + 1) % this.slots.length;
+                    this.size--;
+                    this.dropped++;
+                    rval = false;
+                    break;
+                }
+            }
+
+            this.slots[(this.head + this.size) % this.slots.length] = event;
+            this.size++;
+            this.highWaterMark = Math.max(this.highWaterMark, this.size);
+
+            this.notEmpty.signal();
+        } finally {
+            this.lock.unlock();
+        }
+
+        return rval;
+    }
+
+    /**
+     * Closes the buffer. Producers waiting for a free slot return, and all further events
+     * are rejected. Events already queued can still be taken.
+     */
+    public void close() {
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.notFull.signalAll();
+            this.notEmpty.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns if the buffer was closed.
+     *
+     * @return True if {@link #close()} was called.
+     */
+    public boolean isClosed() {
+        this.lock.lock();
+        try {
+            return this.closed;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the oldest event, waiting at most the given time for one to arrive.
+     *
+     * @param timeout Time to wait.
+     * @param unit Unit of the time.
+     * @return The oldest event or <code>null</code> if none arrived in time, or if the
+     * buffer is closed and empty.
+     * @throws InterruptedException If we were interrupted while waiting.
+     */
+    public EyeTrackingEvent poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+
+        this.lock.lock();
+        try {
+            while (this.size == 0) {
+                if (nanos <= 0 || this.closed) return null;
+                nanos = this.notEmpty.awaitNanos(nanos);
+            }
+
+            final EyeTrackingEvent rval = this.slots[this.head];
+
+            this.slots[this.head] = null;
+            this.head = (this.head + 1) % this.slots.length;
+            this.size--;
+
+            this.notFull.signal();
+
+            return rval;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Moves up to the given number of queued events into the list, without waiting.
+     *
+     * @param target The list to add the events to.
+     * @param max Max. number of events to move.
+     * @return The number of moved events.
+     */
+    public int drainTo(final List<EyeTrackingEvent> target, final int max) {
+        this.lock.lock();
+        try {
+            final int n = Math.min(max, this.size);
+
+            for (int i = 0; i < n; i++) {
+                target.add(this.slots[this.head]);
+                this.slots[this.head] = null;
+                this.head = (this.head + 1) % this.slots.length;
+            }
+
+            this.size -= n;
+
+            if (n > 0) this.notFull.signalAll();
+
+            return n;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of currently queued events.
+     *
+     * @return The queue depth.
+     */
+    public int size() {
+        this.lock.lock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the capacity of this buffer.
+     *
+     * @return The capacity.
+     */
+    public int capacity() {
+        return this.slots.length;
+    }
+
+    /**
+     * Returns the number of discarded events since creation.
+     *
+     * @return The number of dropped events.
+     */
+    public long getDropped() {
+        this.lock.lock();
+        try {
+            return this.dropped;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the largest queue depth observed since creation.
+     *
+     * @return The high water mark.
+     */
+    public int getHighWaterMark() {
+        this.lock.lock();
+        try {
+            return this.highWaterMark;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the overflow policy.
+     *
+     * @return The policy.
+     */
+    public OverflowPolicy getPolicy() {
+        return this.policy;
+    }
+}
@@ -21,13 +21,11 @@
  */
 package de.dfki.km.text20.services.trackingdevices.eyes.impl.trackingserver;
 
-import static net.jcores.jre.CoreKeeper.$;
-
-import java.awt.Point;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -39,13 +37,15 @@ import net.xeoh.plugins.diagnosis.local.util.DiagnosisChannelUtil;
 import net.xeoh.plugins.diagnosis.local.util.DiagnosisUtil;
 import net.xeoh.plugins.informationbroker.InformationBroker;
 import net.xeoh.plugins.remote.RemoteAPILipe;
+import de.dfki.km.text20.services.trackingdevices.eyes.BatchEyeTrackingListener;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingDevice;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingDeviceInfo;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingDeviceProvider;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingDeviceType;
-import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEventValidity;
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingListener;
 import de.dfki.km.text20.services.trackingdevices.eyes.diagnosis.channels.tracer.EyeTrackingDeviceTracer;
+import de.dfki.km.text20.services.trackingdevices.eyes.impl.trackingserver.TrackingEventRingBuffer.OverflowPolicy;
 import de.dfki.km.text20.trackingserver.eyes.remote.TrackingClientCallback;
 import de.dfki.km.text20.trackingserver.eyes.remote.TrackingCommand;
 import de.dfki.km.text20.trackingserver.eyes.remote.TrackingDeviceInformation;
@@ -60,6 +60,24 @@ import de.dfki.km.text20.trackingserver.eyes.remote.options.SendCommandOption;
 @PluginImplementation
 public class TrackingServerDeviceProviderImpl implements EyeTrackingDeviceProvider {
 
+    /** How incoming events are delivered to the listeners. */
+    public static enum DispatchMode {
+        /** Listeners are called on the thread of the tracking server callback. */
+        DIRECT,
+
+        /** Events are queued in a ring buffer and delivered by a dedicated thread. */
+        RINGBUFFER
+    }
+
+    /** Default number of slots in the ring buffer */
+    static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    /** Max. time in ms between two status reports of the dispatcher */
+    static final long STATUS_INTERVAL = 1000;
+
+    /** Number of dispatched events after which the dispatcher reports its status */
+    static final long STATUS_EVENTS = 1000;
+
     private class ServerTrackingDevice implements EyeTrackingDevice,
             TrackingClientCallback {
 
@@ -81,6 +99,12 @@ public class TrackingServerDeviceProviderImpl implements EyeTrackingDeviceProvid
         /** Last proper position values of the right eye */
         final LastObservations last = new LastObservations();
 
+        /** Decouples incoming events from our listeners (null in direct mode) */
+        TrackingEventRingBuffer ringBuffer;
+
+        /** Drains the ring buffer */
+        Thread dispatcherThread;
+
         /**
          * @param string
          * @throws URISyntaxException
@@ -106,6 +130,12 @@ public class TrackingServerDeviceProviderImpl implements EyeTrackingDeviceProvid
             this.deviceInformation = this.registry.getTrackingDeviceInformation();
             channel.status("servertrackingdevice/getinfo/obtained");
 
+            // Check how we should deliver our events
+            if (getDispatchMode() == DispatchMode.RINGBUFFER) {
+                this.ringBuffer = new TrackingEventRingBuffer(getBufferSize(), getOverflowPolicy());
+                startDispatcher();
+            }
+
             this.registry.addTrackingListener(this);
 
             channel.status("servertrackingdevice/end");
@@ -199,278 +229,69 @@ public class TrackingServerDeviceProviderImpl implements EyeTrackingDeviceProvid
             // Sometimes null events might occur. Filter them.
             if (e == null) return;
 
-            // Convert class to 'interface'
-            final de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent trackingEvent = new de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent() {
-
-                /*
-                 * (non-Javadoc)
-                 * 
-                 * @see
-                 * de.dfki.km.augmentedtext.services.trackingdevices.TrackingEvent
-                 * #areValid(de.dfki.km.augmentedtext.services.trackingdevices.
-                 * TrackingEventValidity[])
-                 */
-                @Override
-                public boolean areValid(final EyeTrackingEventValidity... validities) {
-                    boolean rval = true;
-                    
-                    // Check the individual validities
-                    for (final EyeTrackingEventValidity v : validities) {
-                        if (v == EyeTrackingEventValidity.CENTER_POSITION_VALID) {
-                            rval &= e.centerGaze != null;
-                        }
-                    }
-                    
-                    // Return the result
-                    return rval;
-                }
-
-                /*
-                 * (non-Javadoc)
-                 * 
-                 * @see
-                 * de.dfki.km.augmentedtext.services.trackingdevices.TrackingEvent
-                 * #eventTime()
-                 */
-                @Override
-                public long getObservationTime() {
-                    return e.observationTime;
-                }
-                
-                /* (non-Javadoc)
-                 * @see de.dfki.km.text20.services.trackingdevices.common.TrackingEvent#getRelativeStartTime()
-                 */
-                @Override
-                public long getElapsedTime() {
-                    return e.elapsedTime;
-                }
+            // Convert class to 'interface', this also resolves the head position
+            final TrackingServerEyeTrackingEvent trackingEvent = new TrackingServerEyeTrackingEvent(e, this.last);
 
-                /*
-                 * (non-Javadoc)
-                 * 
-                 * @see
-                 * de.dfki.km.augmentedtext.services.trackingdevices.TrackingEvent
-                 * #getGazeCenter()
-                 */
-                @Override
-                public Point getGazeCenter() {
-                    if (e.centerGaze == null) return new Point(-1, -1);
-                    return new Point(e.centerGaze.x, e.centerGaze.y);
+            // Either hand the event over to our dispatcher, or deliver it ourselves
+            if (this.ringBuffer != null) {
+                try {
+                    this.ringBuffer.put(trackingEvent);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
                 }
+                return;
+            }
 
-                /*
-                 * (non-Javadoc)
-                 * 
-                 * @see
-                 * de.dfki.km.augmentedtext.services.trackingdevices.TrackingEvent
-                 * #getHeadPosition()
-                 */
-                @Override
-                public float[] getHeadPosition() {
-                    final float rval[] = new float[3];
-                    final float invalid[] = new float[] { -1, -1, -1 };
-
-                    boolean leftEyeFound = true;
-                    boolean rightEyeFound = true;
-
-                    final float leftEyePos[] = (e.leftEyePos != null) ? e.leftEyePos : invalid;
-                    final float rightEyePos[] = (e.rightEyePos != null) ? e.rightEyePos : invalid;
-
-                    // First check if all of the head coordinates are okay.
-                    for (int i = 0; i < 3; i++) {
-
-                        // Update the backup value if the current value is in
-                        // valid range
-                        if (!(leftEyePos[i] > 0.0f && leftEyePos[i] < 1.0f))
-                            leftEyeFound = false;
-
-                        if (!(rightEyePos[i] > 0.0f && rightEyePos[i] < 1.0f))
-                            rightEyeFound = false;
-                    }
-
-                    // Check if we got both eyes ...
-                    if (leftEyeFound && rightEyeFound) {
-                        // If everything is fine, update the last deltas
-                        for (int i = 0; i < 3; i++) {
-                            ServerTrackingDevice.this.last.lastDeltas[i] = rightEyePos[i] - leftEyePos[i];
-                            ServerTrackingDevice.this.last.lastLeft[i] = leftEyePos[i];
-                            ServerTrackingDevice.this.last.lastRight[i] = rightEyePos[i];
-                        }
-
-                        ServerTrackingDevice.this.last.dateOfLeft = e.observationTime;
-                        ServerTrackingDevice.this.last.dateOfRight = e.observationTime;
-
-                        // Update rval
-                        for (int i = 0; i < 3; i++)
-                            rval[i] = (leftEyePos[i] + rightEyePos[i]) / 2;
-
-                        // And return
-                        return rval;
-                    }
-
-                    // In case we have only the left eye ....
-                    if (leftEyeFound) {
-                        // Update last deltas
-                        for (int i = 0; i < 3; i++)
-                            ServerTrackingDevice.this.last.lastLeft[i] = leftEyePos[i];
-
-                        ServerTrackingDevice.this.last.dateOfLeft = e.observationTime;
-
-                        // Update rval
-                        for (int i = 0; i < 3; i++)
-                            rval[i] = (leftEyePos[i] + ServerTrackingDevice.this.last.lastDeltas[i] / 2);
-
-                        // And return
-                        return rval;
-                    }
-
-                    // Or the right eye ....
-                    if (rightEyeFound) {
-                        // Update last deltas
-                        for (int i = 0; i < 3; i++)
-                            ServerTrackingDevice.this.last.lastRight[i] = rightEyePos[i];
-
-                        ServerTrackingDevice.this.last.dateOfRight = e.observationTime;
-
-                        // Update rval
-                        for (int i = 0; i < 3; i++)
-                            rval[i] = (rightEyePos[i] - ServerTrackingDevice.this.last.lastDeltas[i] / 2);
-
-                        // And return
-                        return rval;
-                    }
+            dispatch(trackingEvent);
+        }
 
-                    // In this case, no eye was found, so we select the latest
-                    // position
-                    if (ServerTrackingDevice.this.last.dateOfLeft > ServerTrackingDevice.this.last.dateOfRight) {
-                        for (int i = 0; i < 3; i++)
-                            rval[i] = (ServerTrackingDevice.this.last.lastLeft[i] - ServerTrackingDevice.this.last.lastDeltas[i] / 2);
+        /**
+         * Delivers the event to all registered listeners.
+         * 
+         * @param trackingEvent The event to deliver.
+         */
+        void dispatch(final EyeTrackingEvent trackingEvent) {
+            // Lock listeners ...
+            ServerTrackingDevice.this.listenerLock.lock();
 
-                    } else {
-                        for (int i = 0; i < 3; i++)
-                            rval[i] = (ServerTrackingDevice.this.last.lastRight[i] + ServerTrackingDevice.this.last.lastDeltas[i] / 2);
+            try {
+                // And dispatch it to the listener
+                for (int i = 0; i < ServerTrackingDevice.this.trackingListener.size(); i++) {
+                    final EyeTrackingListener l = ServerTrackingDevice.this.trackingListener.get(i);
+                    try {
+                        l.newTrackingEvent(trackingEvent);
+                    } catch (Exception exception) {
+                        exception.printStackTrace();
+                        TrackingServerDeviceProviderImpl.this.diagnosis.channel(EyeTrackingDeviceTracer.class).status("event/dispatch/exception", "exception", exception.getMessage());
                     }
-
-                    return rval;
-                }
-
-                /*
-                 * (non-Javadoc)
-                 * 
-                 * @see java.lang.Object#toString()
-                 */
-                @Override
-                public float getLeftEyeDistance() {
-                    return e.eyeDistances[0];
                 }
+            } finally {
+                ServerTrackingDevice.this.listenerLock.unlock();
+            }
+        }
 
-                /* (non-Javadoc)
-                 * @see de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent#getLeftEyePosition()
-                 */
-                @Override
-                public float[] getLeftEyePosition() {
-                    return e.leftEyePos;
-                }
-
-                /*
-                 * (non-Javadoc)
-                 * 
-                 * @see
-                 * de.dfki.km.augmentedtext.services.trackingdevices.TrackingEvent
-                 * #pupilSizeLeft()
-                 */
-                @Override
-                public float getPupilSizeLeft() {
-                    return e.pupilSizeLeft;
-                }
-
-                /*
-                 * (non-Javadoc)
-                 * 
-                 * @see
-                 * de.dfki.km.augmentedtext.services.trackingdevices.TrackingEvent
-                 * #pupilSizeRight()
-                 */
-                @Override
-                public float getPupilSizeRight() {
-                    return e.pupilSizeRight;
-                }
-
-                /* (non-Javadoc)
-                 * @see de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent#getRightEyeDistance()
-                 */
-                @Override
-                public float getRightEyeDistance() {
-                    return e.eyeDistances[1];
-                }
-
-                /* (non-Javadoc)
-                 * @see de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent#getRightEyePosition()
-                 */
-                @Override
-                public float[] getRightEyePosition() {
-                    return $.clone(e.rightEyePos);
-                }
-
-                /* (non-Javadoc)
-                 * @see java.lang.Object#toString()
-                 */
-                @Override
-                public String toString() {
-                    final StringBuilder sb = new StringBuilder();
-                    sb.append("[");
-                    sb.append(getObservationTime());
-                    sb.append(": ");
-                    sb.append(getGazeCenter());
-                    sb.append("]");
-                    return sb.toString();
-                }
-
-                /* (non-Javadoc)
-                 * @see de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent#getLeftEyeGazePoint()
-                 */
-                @Override
-                public Point getLeftEyeGazePoint() {
-                    return $.clone(e.leftGaze);
-                }
-
-                /* (non-Javadoc)
-                 * @see de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent#getLeftEyeGazePosition()
-                 */
-                @Override
-                public float[] getLeftEyeGazePosition() {
-                    return $.clone(e.gazeLeftPos);
-                }
-
-                /* (non-Javadoc)
-                 * @see de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent#getRightEyeGazePoint()
-                 */
-                @Override
-                public Point getRightEyeGazePoint() {
-                    return $.clone(e.rightGaze);
-                }
-
-                /* (non-Javadoc)
-                 * @see de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent#getRightEyeGazePosition()
-                 */
-                @Override
-                public float[] getRightEyeGazePosition() {
-                    return $.clone(e.gazeRightPos);
-                }
-            };
-
-            // Lock listeners ...
+        /**
+         * Delivers a batch of events to all registered listeners. Batch listeners receive 
+         * the whole list, all others the events one by one.
+         * 
+         * @param trackingEvents The events to deliver, in order.
+         */
+        void dispatch(final List<EyeTrackingEvent> trackingEvents) {
+            // Lock listeners only once for the whole batch
             ServerTrackingDevice.this.listenerLock.lock();
 
-            // TODO: Decouple the follwing calls from this method, otherwise we
-            // might block our caller ...
-
             try {
-                // And dispatch it to the listener
                 for (int i = 0; i < ServerTrackingDevice.this.trackingListener.size(); i++) {
                     final EyeTrackingListener l = ServerTrackingDevice.this.trackingListener.get(i);
                     try {
-                        l.newTrackingEvent(trackingEvent);
+                        if (l instanceof BatchEyeTrackingListener) {
+                            ((BatchEyeTrackingListener) l).newTrackingEvents(trackingEvents);
+                            continue;
+                        }
+
+                        for (int j = 0; j < trackingEvents.size(); j++) {
+                            l.newTrackingEvent(trackingEvents.get(j));
+                        }
                     } catch (Exception exception) {
                         exception.printStackTrace();
                         TrackingServerDeviceProviderImpl.this.diagnosis.channel(EyeTrackingDeviceTracer.class).status("event/dispatch/exception", "exception", exception.getMessage());
@@ -479,7 +300,65 @@ public class TrackingServerDeviceProviderImpl implements EyeTrackingDeviceProvid
             } finally {
                 ServerTrackingDevice.this.listenerLock.unlock();
             }
+        }
+
+        /**
+         * Starts the thread that drains the ring buffer and delivers the events to our
+         * listeners, so that slow listeners don't block the tracking server callback.
+         */
+        private void startDispatcher() {
+            final DiagnosisChannelUtil<String> channel = TrackingServerDeviceProviderImpl.this.diagnosis.channel(EyeTrackingDeviceTracer.class);
+            final TrackingEventRingBuffer buffer = this.ringBuffer;
+
+            this.dispatcherThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long dispatched = 0;
+                    long lastDispatched = 0;
+                    long lastDropped = 0;
+                    long lastReport = System.currentTimeMillis();
+
+                    while (!Thread.currentThread().isInterrupted() && !buffer.isClosed()) {
+                        try {
+                            final EyeTrackingEvent event = buffer.poll(STATUS_INTERVAL, TimeUnit.MILLISECONDS);
+
+                            // Deliver everything that queued up meanwhile as one batch
+                            if (event != null) {
+                                final List<EyeTrackingEvent> batch = new ArrayList<EyeTrackingEvent>();
+                                batch.add(event);
+                                buffer.drainTo(batch, buffer.capacity());
+
+                                if (batch.size() == 1) dispatch(event);
+                                else dispatch(batch);
+
+                                dispatched += batch.size();
+                            }
+
+                            // Report the queue state from time to time, at most once per interval if we lost something
+                            final long dropped = buffer.getDropped();
+                            final long now = System.currentTimeMillis();
+                            final boolean due = now - lastReport >= STATUS_INTERVAL;
+
+                            if ((due && (dropped != lastDropped || event == null)) || dispatched - lastDispatched >= STATUS_EVENTS) {
+                                channel.status("event/queue/status", "depth", Integer.valueOf(buffer.size()), "highwatermark", Integer.valueOf(buffer.getHighWaterMark()), "dropped", Long.valueOf(dropped), "dispatched", Long.valueOf(dispatched));
+                                lastDispatched = dispatched;
+                                lastDropped = dropped;
+                                lastReport = now;
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+
+                    channel.status("event/queue/stopped", "dropped", Long.valueOf(buffer.getDropped()), "dispatched", Long.valueOf(dispatched));
+                }
+            });
 
+            this.dispatcherThread.setName("ServerTrackingDevice.Dispatcher");
+            this.dispatcherThread.setDaemon(true);
+            this.dispatcherThread.start();
+
+            channel.status("event/queue/start", "capacity", Integer.valueOf(buffer.capacity()), "policy", buffer.getPolicy().name());
         }
 
         /*
@@ -507,8 +386,14 @@ public class TrackingServerDeviceProviderImpl implements EyeTrackingDeviceProvid
          */
         @Override
         public void closeDevice() {
-            // TODO Auto-generated method stub
+            // Release producers blocked on a full buffer, the dispatcher won't drain it anymore
+            if (this.ringBuffer != null) {
+                this.ringBuffer.close();
+            }
 
+            if (this.dispatcherThread != null) {
+                this.dispatcherThread.interrupt();
+            }
         }
 
         /* (non-Javadoc)
@@ -516,9 +401,31 @@ public class TrackingServerDeviceProviderImpl implements EyeTrackingDeviceProvid
          */
         @Override
         public void newTrackingEvents(TrackingEvent... arg0) {
-            for (TrackingEvent trackingEvent : arg0) {
-                newTrackingEvent(trackingEvent);
+            if (arg0 == null) return;
+
+            final List<EyeTrackingEvent> events = new ArrayList<EyeTrackingEvent>(arg0.length);
+
+            // Convert all events in order, null events are filtered as well
+            for (final TrackingEvent e : arg0) {
+                if (e == null) continue;
+                events.add(new TrackingServerEyeTrackingEvent(e, this.last));
+            }
+
+            if (events.isEmpty()) return;
+
+            // Queue them one by one, the dispatcher will batch them again.
+            if (this.ringBuffer != null) {
+                try {
+                    for (int i = 0; i < events.size(); i++) {
+                        if (!this.ringBuffer.put(events.get(i)) && this.ringBuffer.isClosed()) break;
+                    }
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+                return;
             }
+
+            dispatch(events);
         }
     }
 
@@ -548,6 +455,58 @@ public class TrackingServerDeviceProviderImpl implements EyeTrackingDeviceProvid
         return new String[] { "eyetrackingdevice:trackingserver" };
     }
 
+    /**
+     * Returns the configured dispatch mode (key <code>dispatch.mode</code>).
+     * 
+     * @return The dispatch mode, {@link DispatchMode#DIRECT} by default.
+     */
+    DispatchMode getDispatchMode() {
+        final String mode = this.configuration.getConfiguration(TrackingServerDeviceProviderImpl.class, "dispatch.mode");
+        if (mode == null) return DispatchMode.DIRECT;
+
+        try {
+            return DispatchMode.valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            this.diagnosis.channel(EyeTrackingDeviceTracer.class).status("config/dispatchmode/unknown", "mode", mode);
+            return DispatchMode.DIRECT;
+        }
+    }
+
+    /**
+     * Returns the configured ring buffer size (key <code>dispatch.buffer.size</code>).
+     * 
+     * @return The number of slots.
+     */
+    int getBufferSize() {
+        final String size = this.configuration.getConfiguration(TrackingServerDeviceProviderImpl.class, "dispatch.buffer.size");
+        if (size == null) return DEFAULT_BUFFER_SIZE;
+
+        try {
+            final int rval = Integer.parseInt(size.trim());
+            return rval > 0 ? rval : DEFAULT_BUFFER_SIZE;
+        } catch (NumberFormatException e) {
+            this.diagnosis.channel(EyeTrackingDeviceTracer.class).status("config/buffersize/invalid", "size", size);
+            return DEFAULT_BUFFER_SIZE;
+        }
+    }
+
+    /**
+     * Returns the configured overflow policy (key <code>dispatch.overflow</code>).
+     * 
+     * @return The overflow policy, {@link OverflowPolicy#DROP_OLDEST} by default.
+     */
+    OverflowPolicy getOverflowPolicy() {
+        final String policy = this.configuration.getConfiguration(TrackingServerDeviceProviderImpl.class, "dispatch.overflow");
+        if (policy == null) return OverflowPolicy.DROP_OLDEST;
+
+        try {
+            return OverflowPolicy.valueOf(policy.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            this.diagnosis.channel(EyeTrackingDeviceTracer.class).status("config/overflow/unknown", "policy", policy);
+            return OverflowPolicy.DROP_OLDEST;
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
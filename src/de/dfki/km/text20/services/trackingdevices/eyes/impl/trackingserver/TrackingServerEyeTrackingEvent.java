@@ -0,0 +1,343 @@
+/*
+ * TrackingServerEyeTrackingEvent.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.services.trackingdevices.eyes.impl.trackingserver;
+
+import java.awt.Point;
+
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEventValidity;
+import de.dfki.km.text20.services.trackingdevices.eyes.PrimitiveEyeTrackingEvent;
+import de.dfki.km.text20.trackingserver.eyes.remote.TrackingEvent;
+
+/**
+ * Immutable view of a {@link TrackingEvent} received from the tracking server. Gaze
+ * center, validity and head position are resolved once when the event is created; the
+ * object getters are computed on demand and always return a fresh copy.
+ * 
+ * @author Ralf Biedert
+ * @since 1.4
+ */
+public final class TrackingServerEyeTrackingEvent implements PrimitiveEyeTrackingEvent {
+
+    /** Used if an eye position is missing */
+    private static final float[] INVALID = new float[] { -1, -1, -1 };
+
+    /** The original event */
+    private final TrackingEvent event;
+
+    /** If the center gaze was valid */
+    private final boolean centerValid;
+
+    /** Gaze center */
+    private final int gazeX, gazeY;
+
+    /** Head position */
+    private final float headX, headY, headZ;
+
+    /**
+     * Creates a new event and resolves the head position. Must be called in the order the
+     * events arrived, as the last observations are updated.
+     * 
+     * @param event The event received from the server.
+     * @param last The last observations of the eyes, will be updated.
+     */
+    public TrackingServerEyeTrackingEvent(final TrackingEvent event, final LastObservations last) {
+        this.event = event;
+        this.centerValid = event.centerGaze != null;
+        this.gazeX = this.centerValid ? event.centerGaze.x : -1;
+        this.gazeY = this.centerValid ? event.centerGaze.y : -1;
+
+        final float leftEyePos[] = (event.leftEyePos != null) ? event.leftEyePos : INVALID;
+        final float rightEyePos[] = (event.rightEyePos != null) ? event.rightEyePos : INVALID;
+
+        boolean leftEyeFound = true;
+        boolean rightEyeFound = true;
+
+        // First check if all of the head coordinates are okay.
+        for (int i = 0; i < 3; i++) {
+            if (!(leftEyePos[i] > 0.0f && leftEyePos[i] < 1.0f)) leftEyeFound = false;
+            if (!(rightEyePos[i] > 0.0f && rightEyePos[i] < 1.0f)) rightEyeFound = false;
+        }
+
+        // Check if we got both eyes ...
+        if (leftEyeFound && rightEyeFound) {
+            for (int i = 0; i < 3; i++) {
+                last.lastDeltas[i] = rightEyePos[i] - leftEyePos[i];
+                last.lastLeft[i] = leftEyePos[i];
+                last.lastRight[i] = rightEyePos[i];
+            }
+
+            last.dateOfLeft = event.observationTime;
+            last.dateOfRight = event.observationTime;
+
+            this.headX = (leftEyePos[0] + rightEyePos[0]) / 2;
+            this.headY = (leftEyePos[1] + rightEyePos[1]) / 2;
+            this.headZ = (leftEyePos[2] + rightEyePos[2]) / 2;
+            return;
+        }
+
+        // In case we have only the left eye ....
+        if (leftEyeFound) {
+            for (int i = 0; i < 3; i++)
+                last.lastLeft[i] = leftEyePos[i];
+
+            last.dateOfLeft = event.observationTime;
+
+            this.headX = leftEyePos[0] + last.lastDeltas[0] / 2;
+            this.headY = leftEyePos[1] + last.lastDeltas[1] / 2;
+            this.headZ = leftEyePos[2] + last.lastDeltas[2] / 2;
+            return;
+        }
+
+        // Or the right eye ....
+        if (rightEyeFound) {
+            for (int i = 0; i < 3; i++)
+                last.lastRight[i] = rightEyePos[i];
+
+            last.dateOfRight = event.observationTime;
+
+            this.headX = rightEyePos[0] - last.lastDeltas[0] / 2;
+            this.headY = rightEyePos[1] - last.lastDeltas[1] / 2;
+            this.headZ = rightEyePos[2] - last.lastDeltas[2] / 2;
+            return;
+        }
+
+        // In this case, no eye was found, so we select the latest position
+        if (last.dateOfLeft > last.dateOfRight) {
+            this.headX = last.lastLeft[0] - last.lastDeltas[0] / 2;
+            this.headY = last.lastLeft[1] - last.lastDeltas[1] / 2;
+            this.headZ = last.lastLeft[2] - last.lastDeltas[2] / 2;
+        } else {
+            this.headX = last.lastRight[0] + last.lastDeltas[0] / 2;
+            this.headY = last.lastRight[1] + last.lastDeltas[1] / 2;
+            this.headZ = last.lastRight[2] + last.lastDeltas[2] / 2;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent#areValid(de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEventValidity[])
+     */
+    @Override
+    public boolean areValid(final EyeTrackingEventValidity... validities) {
+        for (final EyeTrackingEventValidity v : validities) {
+            if (!isValid(v)) return false;
+        }
+
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.PrimitiveEyeTrackingEvent#isValid(de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEventValidity)
+     */
+    @Override
+    public boolean isValid(final EyeTrackingEventValidity validity) {
+        if (validity == EyeTrackingEventValidity.CENTER_POSITION_VALID) return this.centerValid;
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.common.TrackingEvent#getObservationTime()
+     */
+    @Override
+    public long getObservationTime() {
+        return this.event.observationTime;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.common.TrackingEvent#getElapsedTime()
+     */
+    @Override
+    public long getElapsedTime() {
+        return this.event.elapsedTime;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.PrimitiveEyeTrackingEvent#getGazeX()
+     */
+    @Override
+    public int getGazeX() {
+        return this.gazeX;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.PrimitiveEyeTrackingEvent#getGazeY()
+     */
+    @Override
+    public int getGazeY() {
+        return this.gazeY;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.PrimitiveEyeTrackingEvent#getHeadX()
+     */
+    @Override
+    public float getHeadX() {
+        return this.headX;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.PrimitiveEyeTrackingEvent#getHeadY()
+     */
+    @Override
+    public float getHeadY() {
+        return this.headY;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.PrimitiveEyeTrackingEvent#getHeadZ()
+     */
+    @Override
+    public float getHeadZ() {
+        return this.headZ;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent#getGazeCenter()
+     */
+    @Override
+    public Point getGazeCenter() {
+        return new Point(this.gazeX, this.gazeY);
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent#getHeadPosition()
+     */
+    @Override
+    public float[] getHeadPosition() {
+        return new float[] { this.headX, this.headY, this.headZ };
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent#getLeftEyeDistance()
+     */
+    @Override
+    public float getLeftEyeDistance() {
+        return this.event.eyeDistances[0];
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent#getRightEyeDistance()
+     */
+    @Override
+    public float getRightEyeDistance() {
+        return this.event.eyeDistances[1];
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent#getLeftEyePosition()
+     */
+    @Override
+    public float[] getLeftEyePosition() {
+        return copy(this.event.leftEyePos);
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent#getRightEyePosition()
+     */
+    @Override
+    public float[] getRightEyePosition() {
+        return copy(this.event.rightEyePos);
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent#getPupilSizeLeft()
+     */
+    @Override
+    public float getPupilSizeLeft() {
+        return this.event.pupilSizeLeft;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent#getPupilSizeRight()
+     */
+    @Override
+    public float getPupilSizeRight() {
+        return this.event.pupilSizeRight;
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent#getLeftEyeGazePoint()
+     */
+    @Override
+    public Point getLeftEyeGazePoint() {
+        return copy(this.event.leftGaze);
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent#getRightEyeGazePoint()
+     */
+    @Override
+    public Point getRightEyeGazePoint() {
+        return copy(this.event.rightGaze);
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent#getLeftEyeGazePosition()
+     */
+    @Override
+    public float[] getLeftEyeGazePosition() {
+        return copy(this.event.gazeLeftPos);
+    }
+
+    /* (non-Javadoc)
+     * @see de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent#getRightEyeGazePosition()
+     */
+    @Override
+    public float[] getRightEyeGazePosition() {
+        return copy(this.event.gazeRightPos);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("[");
+        sb.append(getObservationTime());
+        sb.append(": ");
+        sb.append(getGazeCenter());
+        sb.append("]");
+        return sb.toString();
+    }
+
+    /**
+     * Copies a point, if there is one.
+     * 
+     * @param p The point to copy.
+     * @return A copy or <code>null</code>.
+     */
+    private static Point copy(final Point p) {
+        if (p == null) return null;
+        return new Point(p.x, p.y);
+    }
+
+    /**
+     * Copies an array, if there is one.
+     * 
+     * @param f The array to copy.
+     * @return A copy or <code>null</code>.
+     */
+    private static float[] copy(final float[] f) {
+        if (f == null) return null;
+        return f.clone();
+    }
+}
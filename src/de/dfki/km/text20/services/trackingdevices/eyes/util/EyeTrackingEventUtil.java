@@ -29,6 +29,7 @@ package de.dfki.km.text20.services.trackingdevices.eyes.util;
 
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
 import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEventValidity;
+import de.dfki.km.text20.services.trackingdevices.eyes.PrimitiveEyeTrackingEvent;
 
 /**
  * Util functions for gaze events.
@@ -54,7 +55,36 @@ public class EyeTrackingEventUtil extends EyeTrackingEventWrapper {
      * @return True if both eyes were invisible
      */
     public boolean bothInvisible() {
+        if (this.originalEvent instanceof PrimitiveEyeTrackingEvent) {
+            final PrimitiveEyeTrackingEvent event = (PrimitiveEyeTrackingEvent) this.originalEvent;
+            return !event.isValid(EyeTrackingEventValidity.CENTER_POSITION_VALID) || (event.getGazeX() < 0 && event.getGazeY() < 0);
+        }
+
         return !this.originalEvent.areValid(EyeTrackingEventValidity.CENTER_POSITION_VALID) ||
                 this.originalEvent.getGazeCenter() == null || (this.originalEvent.getGazeCenter().x < 0 && this.originalEvent.getGazeCenter().y < 0);
     }
+
+    /**
+     * Returns the x coordinate of the gaze center, without allocating if the event 
+     * supports it.
+     * 
+     * @param event The event to query.
+     * @return The x coordinate.
+     */
+    public static int gazeX(final EyeTrackingEvent event) {
+        if (event instanceof PrimitiveEyeTrackingEvent) return ((PrimitiveEyeTrackingEvent) event).getGazeX();
+        return event.getGazeCenter().x;
+    }
+
+    /**
+     * Returns the y coordinate of the gaze center, without allocating if the event 
+     * supports it.
+     * 
+     * @param event The event to query.
+     * @return The y coordinate.
+     */
+    public static int gazeY(final EyeTrackingEvent event) {
+        if (event instanceof PrimitiveEyeTrackingEvent) return ((PrimitiveEyeTrackingEvent) event).getGazeY();
+        return event.getGazeCenter().y;
+    }
 }
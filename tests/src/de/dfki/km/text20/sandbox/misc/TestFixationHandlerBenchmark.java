@@ -0,0 +1,206 @@
+/*
+ * TestFixationHandlerBenchmark.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.sandbox.misc;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import net.xeoh.plugins.base.PluginManager;
+import net.xeoh.plugins.base.impl.PluginManagerFactory;
+import net.xeoh.plugins.base.options.getplugin.OptionCapabilities;
+import de.dfki.km.text20.browserplugin.services.sessionrecorder.ReplayListener;
+import de.dfki.km.text20.browserplugin.services.sessionrecorder.SessionRecorderManager;
+import de.dfki.km.text20.browserplugin.services.sessionrecorder.SessionReplay;
+import de.dfki.km.text20.browserplugin.services.sessionrecorder.events.AbstractSessionEvent;
+import de.dfki.km.text20.browserplugin.services.sessionrecorder.events.EyeTrackingEventContainer;
+import de.dfki.km.text20.browserplugin.services.sessionrecorder.options.replay.OptionWaitForFinish;
+import de.dfki.km.text20.services.evaluators.gaze.GazeHandler;
+import de.dfki.km.text20.services.evaluators.gaze.GazeHandlerFactory;
+import de.dfki.km.text20.services.evaluators.gaze.impl.handler.fixation.idt.v1.DispersionFixationHandlerFactory;
+import de.dfki.km.text20.services.evaluators.gaze.impl.handler.fixation.ivt.v1.VelocityFixationHandlerFactory;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationEvent;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationEventType;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationListener;
+import de.dfki.km.text20.services.evaluators.gaze.options.AddGazeEvaluationListenerOption;
+import de.dfki.km.text20.services.evaluators.gaze.options.spawnevaluator.OptionGazeEvaluator;
+import de.dfki.km.text20.services.evaluators.gaze.options.spawnevaluator.OptionGazeEvaluatorPassthrough;
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
+
+/**
+ * Replays a recorded session through the fixation handlers and compares their 
+ * throughput and how many events they classify like the v1 handler.
+ * 
+ * @author Ralf Biedert
+ */
+public class TestFixationHandlerBenchmark {
+
+    /** How often we replay the session for the throughput measurement */
+    static final int REPETITIONS = 200;
+
+    /**
+     * @param args
+     * @throws URISyntaxException
+     */
+    public static void main(final String[] args) throws URISyntaxException {
+        final PluginManager pm = PluginManagerFactory.createPluginManager();
+        pm.addPluginsFrom(new URI("classpath://*"));
+
+        final List<EyeTrackingEvent> session = load(pm, new File("tests/sessions/session.xstream"));
+        final List<EyeTrackingEvent> events = repeat(session, REPETITIONS);
+
+        System.out.println("Loaded " + session.size() + " events, replaying " + events.size());
+
+        final GazeHandlerFactory factories[] = new GazeHandlerFactory[] { 
+            new de.dfki.km.text20.services.evaluators.gaze.impl.handler.fixation.v1.FixationHandlerFactory(),
+            new de.dfki.km.text20.services.evaluators.gaze.impl.handler.fixation.v2.FixationHandlerFactory(),
+            new VelocityFixationHandlerFactory(), 
+            new DispersionFixationHandlerFactory() 
+        };
+
+        final Set<EyeTrackingEvent> reference = classify(factories[0], session);
+
+        for (GazeHandlerFactory factory : factories) {
+            final GazeHandler handler = spawn(factory, new FixationListener() {
+                @Override
+                public void newEvaluationEvent(FixationEvent event) {
+                    //
+                }
+            });
+
+            // Warm up, then measure
+            replay(handler, session);
+
+            final long start = System.nanoTime();
+            replay(handler, events);
+            final long time = System.nanoTime() - start;
+
+            final Set<EyeTrackingEvent> fixated = classify(factory, session);
+            int agree = 0;
+            for (EyeTrackingEvent e : session) {
+                if (fixated.contains(e) == reference.contains(e)) agree++;
+            }
+
+            System.out.println(factory.getClass().getName());
+            System.out.println("    " + (long) (events.size() / (time / 1e9)) + " events/s");
+            System.out.println("    " + fixated.size() + " events in fixations, " + (100 * agree / session.size()) + "% agreement with v1");
+        }
+
+        pm.shutdown();
+        System.exit(0);
+    }
+
+    /**
+     * Loads all eye tracking events of a session.
+     * 
+     * @param pm
+     * @param file
+     * @return .
+     */
+    static List<EyeTrackingEvent> load(final PluginManager pm, final File file) {
+        final List<EyeTrackingEvent> rval = new ArrayList<EyeTrackingEvent>();
+        final SessionReplay player = pm.getPlugin(SessionRecorderManager.class, new OptionCapabilities("sessionrecorder:xstream")).loadSessionReplay(file);
+
+        player.replay(new ReplayListener() {
+            @Override
+            public void nextEvent(AbstractSessionEvent event) {
+                if (event instanceof EyeTrackingEventContainer) rval.add((EyeTrackingEvent) event);
+            }
+        }, new OptionWaitForFinish());
+
+        return rval;
+    }
+
+    /**
+     * Concatenates the session multiple times, shifting the event times.
+     * 
+     * @param session
+     * @param times
+     * @return .
+     */
+    static List<EyeTrackingEvent> repeat(final List<EyeTrackingEvent> session, final int times) {
+        final List<EyeTrackingEvent> rval = new ArrayList<EyeTrackingEvent>();
+        final long duration = session.get(session.size() - 1).getObservationTime() - session.get(0).getObservationTime() + 10;
+
+        for (int i = 0; i < times; i++) {
+            for (EyeTrackingEvent e : session) {
+                final EyeTrackingEventContainer c = new EyeTrackingEventContainer(e);
+                c.setEventTime(e.getObservationTime() + i * duration);
+                rval.add(c);
+            }
+        }
+
+        return rval;
+    }
+
+    /**
+     * Returns all events the factory's handler considers part of a fixation.
+     * 
+     * @param factory
+     * @param session
+     * @return .
+     */
+    static Set<EyeTrackingEvent> classify(final GazeHandlerFactory factory,
+                                          final List<EyeTrackingEvent> session) {
+        final Set<EyeTrackingEvent> rval = Collections.newSetFromMap(new IdentityHashMap<EyeTrackingEvent, Boolean>());
+        final List<EyeTrackingEvent> last = new ArrayList<EyeTrackingEvent>();
+
+        replay(spawn(factory, new FixationListener() {
+            @Override
+            public void newEvaluationEvent(FixationEvent event) {
+                last.clear();
+                if (event.getType() == FixationEventType.FIXATION_END) {
+                    rval.addAll(event.getFixation().getTrackingEvents());
+                } else {
+                    last.addAll(event.getFixation().getTrackingEvents());
+                }
+            }
+        }), session);
+
+        rval.addAll(last);
+        return rval;
+    }
+
+    /**
+     * @param factory
+     * @param listener
+     * @return .
+     */
+    static GazeHandler spawn(final GazeHandlerFactory factory, final FixationListener listener) {
+        return factory.spawnEvaluator(listener, new OptionGazeEvaluatorPassthrough(new AddGazeEvaluationListenerOption[0]), new OptionGazeEvaluator(null));
+    }
+
+    /**
+     * @param handler
+     * @param events
+     */
+    static void replay(final GazeHandler handler, final List<EyeTrackingEvent> events) {
+        for (EyeTrackingEvent e : events) {
+            handler.newTrackingEvent(e);
+        }
+    }
+}
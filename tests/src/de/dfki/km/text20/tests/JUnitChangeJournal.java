@@ -0,0 +1,271 @@
+/*
+ * JUnitChangeJournal.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.tests;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.dfki.km.text20.services.pseudorenderer.CoordinatesType;
+import de.dfki.km.text20.services.pseudorenderer.PseudorendererChanges;
+import de.dfki.km.text20.services.pseudorenderer.PseudorendererSnapshot;
+import de.dfki.km.text20.services.pseudorenderer.RenderElement;
+import de.dfki.km.text20.services.pseudorenderer.impl.PseudorendererImpl;
+import de.dfki.km.text20.services.pseudorenderer.util.PseudorendererSubscription;
+
+/**
+ * Checks how the pseudorenderer coalesces its changes and that snapshots and changes 
+ * agree with each other.
+ * 
+ * @author Ralf Biedert
+ */
+public class JUnitChangeJournal {
+
+    /** */
+    final PseudorendererImpl pseudorenderer = new PseudorendererImpl();
+
+    /**
+     * Elements added and removed in between don't show up, moved ones show up once, 
+     * and added ones are never reported as changed.
+     */
+    @Test
+    public void testCoalescing() {
+        final RenderElement moved = create("moved");
+        final RenderElement removed = create("removed");
+        final long from = this.pseudorenderer.getVersion();
+
+        final RenderElement added = create("added");
+        added.setGeometry(new Rectangle(10, 10, 10, 10), CoordinatesType.DOCUMENT_BASED);
+
+        final RenderElement transient_ = create("transient");
+        transient_.setGeometry(new Rectangle(20, 20, 10, 10), CoordinatesType.DOCUMENT_BASED);
+        this.pseudorenderer.removeElement(transient_);
+
+        moved.setGeometry(new Rectangle(30, 30, 10, 10), CoordinatesType.DOCUMENT_BASED);
+        moved.setGeometry(new Rectangle(40, 40, 10, 10), CoordinatesType.DOCUMENT_BASED);
+
+        this.pseudorenderer.removeElement(removed);
+
+        final PseudorendererChanges changes = this.pseudorenderer.getChangesSince(from);
+        Assert.assertTrue(changes.isComplete());
+        Assert.assertEquals(from, changes.getFromVersion());
+        Assert.assertEquals(this.pseudorenderer.getVersion(), changes.getToVersion());
+        Assert.assertEquals(set(added), new HashSet<RenderElement>(changes.getAdded()));
+        Assert.assertEquals(set(removed), new HashSet<RenderElement>(changes.getRemoved()));
+        Assert.assertEquals(set(moved), new HashSet<RenderElement>(changes.getChanged()));
+
+        // Nothing happened since
+        Assert.assertTrue(this.pseudorenderer.getChangesSince(changes.getToVersion()).isEmpty());
+    }
+
+    /**
+     * All changes of an update share one version, and the snapshot only shows them once 
+     * the update ended.
+     */
+    @Test
+    public void testUpdateSharesVersion() {
+        final RenderElement moved = create("moved");
+        final long from = this.pseudorenderer.getVersion();
+
+        this.pseudorenderer.beginUpdate();
+        final RenderElement added = create("added");
+        moved.setGeometry(new Rectangle(30, 30, 10, 10), CoordinatesType.DOCUMENT_BASED);
+        Assert.assertEquals(from, this.pseudorenderer.getSnapshot().getVersion());
+        Assert.assertFalse(this.pseudorenderer.getSnapshot().getElements().contains(added));
+        this.pseudorenderer.endUpdate();
+
+        Assert.assertEquals(from + 1, this.pseudorenderer.getVersion());
+        Assert.assertEquals(from + 1, this.pseudorenderer.getSnapshot().getVersion());
+        Assert.assertTrue(this.pseudorenderer.getSnapshot().getElements().contains(added));
+
+        final PseudorendererChanges changes = this.pseudorenderer.getChangesSince(from);
+        Assert.assertEquals(set(added), new HashSet<RenderElement>(changes.getAdded()));
+        Assert.assertEquals(set(moved), new HashSet<RenderElement>(changes.getChanged()));
+    }
+
+    /**
+     * Applying the changes since a snapshot to it must give the next snapshot.
+     */
+    @Test
+    public void testSnapshotPlusChanges() {
+        final Random random = new Random(7);
+        final List<RenderElement> live = new ArrayList<RenderElement>();
+
+        for (int round = 0; round < 200; round++) {
+            final PseudorendererSnapshot before = this.pseudorenderer.getSnapshot();
+            final boolean grouped = random.nextBoolean();
+
+            if (grouped) this.pseudorenderer.beginUpdate();
+            for (int i = 0; i < 20; i++) {
+                final int op = random.nextInt(3);
+                if (op == 0 || live.isEmpty()) {
+                    live.add(create("e" + round + "." + i));
+                } else if (op == 1) {
+                    live.get(random.nextInt(live.size())).setGeometry(new Rectangle(random.nextInt(1000), random.nextInt(1000), 10, 10), CoordinatesType.DOCUMENT_BASED);
+                } else {
+                    this.pseudorenderer.removeElement(live.remove(random.nextInt(live.size())));
+                }
+            }
+            if (grouped) this.pseudorenderer.endUpdate();
+
+            final PseudorendererSnapshot after = this.pseudorenderer.getSnapshot();
+            final PseudorendererChanges changes = this.pseudorenderer.getChangesSince(before.getVersion());
+
+            Assert.assertTrue(changes.isComplete());
+            Assert.assertEquals(live, after.getElements());
+
+            // Every change publishes a snapshot, moves included
+            Assert.assertEquals(changes.getToVersion(), after.getVersion());
+            Assert.assertTrue(this.pseudorenderer.getChangesSince(after.getVersion()).isEmpty());
+
+            final Set<RenderElement> replayed = new HashSet<RenderElement>(before.getElements());
+            Assert.assertTrue(replayed.containsAll(changes.getRemoved()));
+            Assert.assertTrue(replayed.containsAll(changes.getChanged()));
+            replayed.removeAll(changes.getRemoved());
+            for (final RenderElement element : changes.getAdded()) {
+                Assert.assertTrue(replayed.add(element));
+            }
+
+            Assert.assertEquals(new HashSet<RenderElement>(after.getElements()), replayed);
+        }
+    }
+
+    /**
+     * If too many changes happened the journal says so instead of returning a part of them.
+     */
+    @Test
+    public void testIncomplete() {
+        final long from = this.pseudorenderer.getVersion();
+        final RenderElement element = create("element");
+
+        for (int i = 0; i < 20000; i++) {
+            element.setGeometry(new Rectangle(i, i, 10, 10), CoordinatesType.DOCUMENT_BASED);
+        }
+
+        final PseudorendererChanges changes = this.pseudorenderer.getChangesSince(from);
+        Assert.assertFalse(changes.isComplete());
+        Assert.assertTrue(changes.isEmpty());
+    }
+
+    /**
+     * After the journal overflowed with moves alone, one resync brings a subscription 
+     * back to complete changes.
+     */
+    @Test
+    public void testResyncAfterMovesOnly() {
+        final RenderElement element = create("element");
+        final PseudorendererSubscription subscription = new PseudorendererSubscription(this.pseudorenderer);
+
+        for (int i = 0; i < 20000; i++) {
+            element.setGeometry(new Rectangle(i, i, 10, 10), CoordinatesType.DOCUMENT_BASED);
+        }
+
+        Assert.assertEquals(this.pseudorenderer.getVersion(), this.pseudorenderer.getSnapshot().getVersion());
+        Assert.assertFalse(subscription.poll().isComplete());
+
+        subscription.resync();
+        Assert.assertTrue(subscription.poll().isComplete());
+
+        element.setGeometry(new Rectangle(1, 1, 10, 10), CoordinatesType.DOCUMENT_BASED);
+        final PseudorendererChanges changes = subscription.poll();
+        Assert.assertTrue(changes.isComplete());
+        Assert.assertEquals(set(element), new HashSet<RenderElement>(changes.getChanged()));
+    }
+
+    /**
+     * Readers never see half of an update, even while it is being written.
+     * 
+     * @throws InterruptedException
+     */
+    @Test
+    public void testConcurrentSnapshotsAreConsistent() throws InterruptedException {
+        final AtomicReference<String> failure = new AtomicReference<String>();
+
+        final Thread reader = new Thread() {
+            @Override
+            public void run() {
+                while (!isInterrupted() && failure.get() == null) {
+                    final PseudorendererSnapshot snapshot = JUnitChangeJournal.this.pseudorenderer.getSnapshot();
+
+                    // Elements are added and removed in pairs
+                    final Set<String> ids = new HashSet<String>();
+                    for (final RenderElement element : snapshot.getElements()) {
+                        ids.add(element.getIdentifier());
+                    }
+                    for (final String id : ids) {
+                        final String partner = id.endsWith("a") ? id.replaceAll("a$", "b") : id.replaceAll("b$", "a");
+                        if (!ids.contains(partner)) failure.set("Half an update in version " + snapshot.getVersion() + ": " + id);
+                    }
+                }
+            }
+        };
+        reader.start();
+
+        final List<RenderElement[]> pairs = new ArrayList<RenderElement[]>();
+        for (int i = 0; i < 5000 && failure.get() == null; i++) {
+            this.pseudorenderer.beginUpdate();
+            try {
+                if (pairs.size() > 10) {
+                    final RenderElement[] pair = pairs.remove(0);
+                    this.pseudorenderer.removeElement(pair[0]);
+                    this.pseudorenderer.removeElement(pair[1]);
+                }
+
+                pairs.add(new RenderElement[] { create("p" + i + "a"), create("p" + i + "b") });
+            } finally {
+                this.pseudorenderer.endUpdate();
+            }
+        }
+
+        reader.interrupt();
+        reader.join();
+
+        Assert.assertNull(failure.get());
+    }
+
+    /**
+     * @param id
+     * @return A new element.
+     */
+    private RenderElement create(final String id) {
+        final RenderElement element = this.pseudorenderer.createElement(RenderElement.class);
+        element.setIdentifier(id);
+        return element;
+    }
+
+    /**
+     * @param element
+     * @return A set with the element.
+     */
+    private static Set<RenderElement> set(final RenderElement element) {
+        final Set<RenderElement> rval = new HashSet<RenderElement>();
+        rval.add(element);
+        return rval;
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * JUnitCompactBatchDecoder.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.tests;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.dfki.km.text20.browserplugin.browser.browserplugin.BrowserAPI;
+import de.dfki.km.text20.browserplugin.browser.browserplugin.impl.BatchHandler;
+import de.dfki.km.text20.browserplugin.browser.browserplugin.impl.CompactBatchDecoder;
+import de.dfki.km.text20.browserplugin.services.pagemanager.PageManager;
+
+/**
+ * Encodes random updates the way text20.js does and checks they come out of the batch 
+ * handler unchanged and inside one bulk update, and that corrupt batches are not applied 
+ * at all.
+ * 
+ * @author Ralf Biedert
+ */
+public class JUnitCompactBatchDecoder {
+
+    /** */
+    final Random random = new Random(7);
+
+    /** Calls the batch handler made to the browser API and the page manager, as strings */
+    final List<String> calls = new ArrayList<String>();
+
+    /** Records all calls */
+    final InvocationHandler recorder = new InvocationHandler() {
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            JUnitCompactBatchDecoder.this.calls.add(method.getName() + (args == null ? "" : Arrays.asList(args).toString()));
+            return null;
+        }
+    };
+
+    /** Handles the batches the way the plugin does */
+    final BatchHandler handler = new BatchHandler(proxy(BrowserAPI.class), proxy(PageManager.class));
+
+    /** What the encoder sent last for each element: number, x, y, w, h */
+    final Map<String, int[]> sent = new HashMap<String, int[]>();
+
+    /** Type and content the encoder sent last */
+    final Map<String, String[]> sentStrings = new HashMap<String, String[]>();
+
+    /** Next numeric ID of the encoder */
+    int next;
+
+    /**
+     * Random batches of flags, meta information and geometry.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        for (int batch = 0; batch < 200; batch++) {
+            final StringBuilder records = new StringBuilder("~2");
+            final List<String> expected = new ArrayList<String>();
+            expected.add("beginUpdate");
+
+            if (batch == 0) records.append(";R");
+
+            for (int i = 0; i < 20; i++) {
+                final String id = "element " + this.random.nextInt(50) + (this.random.nextBoolean() ? "" : "/\u00e4,;%");
+
+                switch (this.random.nextInt(4)) {
+                case 0:
+                    final boolean value = this.random.nextBoolean();
+                    final String flag = this.random.nextInt(5) == 0 ? "REMOVED" : "VISIBLE";
+                    records.append(";F" + number(id, records) + "," + encode(flag) + "," + (value ? 1 : 0));
+                    expected.add("updateElementFlag[" + id + ", " + flag + ", " + value + "]");
+
+                    if (value && flag.equals("REMOVED")) forget(id);
+                    break;
+
+                case 1:
+                    final String value2 = "value " + this.random.nextInt(1000) + " +,;";
+                    records.append(";M" + number(id, records) + ",key," + encode(value2));
+                    expected.add("updateElementMetaInformation[" + id + ", key, " + value2 + "]");
+                    break;
+
+                default:
+                    final int[] geometry = { this.random.nextInt(3000) - 1000, this.random.nextInt(3000), this.random.nextInt(500), this.random.nextInt(50) };
+                    final String content = this.random.nextInt(3) == 0 ? "word " + this.random.nextInt(10) : null;
+                    records.append(";" + geometry(id, "text", content, geometry, records));
+                    expected.add("updateElementGeometry[" + id + ", text, " + this.sentStrings.get(id)[1] + ", " + geometry[0] + ", " + geometry[1] + ", " + geometry[2] + ", " + geometry[3] + "]");
+                    break;
+                }
+            }
+
+            expected.add("commitUpdate");
+
+            Assert.assertNull(this.handler.batch(records.toString()));
+            Assert.assertEquals(expected, this.calls);
+            this.calls.clear();
+        }
+    }
+
+    /**
+     * Corrupt batches are not applied at all, and the decoder forgets all numbers until the 
+     * page starts over.
+     */
+    @Test
+    public void testCorruptInput() {
+        Assert.assertNull(this.handler.batch("~2;R;D0,a;D1,b;G0,f,a,b,c,d"));
+        Assert.assertEquals(3, this.calls.size());
+        this.calls.clear();
+
+        final String[] corrupt = { "~2;G0,1,1;G1,", // truncated
+                                   "~2;G0,1,1;G7,1,1", // unknown element
+                                   "~2;G0,1,1;G-,1,1", // not a number
+                                   "~2;G0,1,1;", // missing record
+                                   "~2;G0,1,1;Q0", // unknown record
+                                   "~2;M0,key,%zz", // broken escape
+                                   "~3;G0,1,1", // unknown version
+                                   "~" };
+
+        for (final String batch : corrupt) {
+            // The numbers were fine before
+            Assert.assertNull(this.handler.batch("~2;R;D0,a;D1,b;G0,f,a,b,c,d"));
+            this.calls.clear();
+
+            Assert.assertEquals(batch, CompactBatchDecoder.RESYNC, this.handler.batch(batch));
+            Assert.assertEquals(batch, 0, this.calls.size());
+
+            // The old numbers are gone
+            Assert.assertEquals(batch, CompactBatchDecoder.RESYNC, this.handler.batch("~2;G0,1,1"));
+            Assert.assertEquals(batch, 0, this.calls.size());
+        }
+
+        // Starting over with absolute values works
+        Assert.assertNull(this.handler.batch("~2;R;D0,a;G0,f,a,b,c,d"));
+        Assert.assertEquals(Arrays.asList("beginUpdate", "updateElementGeometry[a, null, null, 10, 11, 12, 13]", "commitUpdate"), this.calls);
+    }
+
+    /**
+     * Textual batches are applied inside one bulk update as well, and empty ones not at all.
+     */
+    @Test
+    public void testTextualBatch() {
+        Assert.assertNull(this.handler.batch("updateElementMeta(a,key,value;b,key,other)"));
+        Assert.assertEquals(Arrays.asList("beginUpdate", "updateElementMetaInformation[a, key, value]", "updateElementMetaInformation[b, key, other]", "commitUpdate"), this.calls);
+        this.calls.clear();
+
+        Assert.assertNull(this.handler.batch("updateElementGeometry(a,text,.null,1,2,3,4)"));
+        Assert.assertEquals(Arrays.asList("beginUpdate", "updateElementGeometry[a, text, null, 1, 2, 3, 4]", "commitUpdate"), this.calls);
+        this.calls.clear();
+
+        Assert.assertNull(this.handler.batch("nonsense"));
+        Assert.assertEquals(0, this.calls.size());
+    }
+
+    /**
+     * @param type
+     * @return A proxy of the type recording all calls.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(final Class<T> type) {
+        return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type }, this.recorder);
+    }
+
+    /**
+     * Like text20.js, defines the element if necessary.
+     * 
+     * @param id
+     * @param records
+     * @return The number of the element, base 36.
+     */
+    private String number(final String id, final StringBuilder records) {
+        int[] e = this.sent.get(id);
+        if (e == null) {
+            e = new int[] { this.next++, 0, 0, 0, 0 };
+            this.sent.put(id, e);
+            this.sentStrings.put(id, new String[2]);
+            records.append(";D" + Integer.toString(e[0], 36) + "," + encode(id));
+        }
+        return Integer.toString(e[0], 36);
+    }
+
+    /**
+     * Like text20.js, only changed fields relative to the last ones.
+     * 
+     * @param id
+     * @param type
+     * @param content
+     * @param geometry
+     * @param records
+     * @return The record.
+     */
+    private String geometry(final String id, final String type, final String content,
+                            final int[] geometry, final StringBuilder records) {
+        final String n = number(id, records);
+        final int[] e = this.sent.get(id);
+        final String[] strings = this.sentStrings.get(id);
+
+        int mask = 0;
+        final StringBuilder fields = new StringBuilder();
+
+        for (int i = 0; i < 4; i++) {
+            if (geometry[i] == e[i + 1]) continue;
+
+            mask |= 1 << i;
+            fields.append("," + Integer.toString(geometry[i] - e[i + 1], 36));
+            e[i + 1] = geometry[i];
+        }
+
+        if (!type.equals(strings[0])) {
+            mask |= 16;
+            fields.append("," + encode(type));
+            strings[0] = type;
+        }
+
+        if (content != null && !content.equals(strings[1])) {
+            mask |= 32;
+            fields.append("," + encode(content));
+            strings[1] = content;
+        }
+
+        return "G" + n + "," + Integer.toString(mask, 36) + fields;
+    }
+
+    /**
+     * @param id
+     */
+    private void forget(final String id) {
+        this.sent.remove(id);
+        this.sentStrings.remove(id);
+    }
+
+    /**
+     * Like encodeURIComponent().
+     * 
+     * @param string
+     * @return The encoded string.
+     */
+    private static String encode(final String string) {
+        try {
+            return URLEncoder.encode(string, "UTF-8").replace("+", "%20");
+        } catch (final Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
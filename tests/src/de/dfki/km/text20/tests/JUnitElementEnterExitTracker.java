@@ -0,0 +1,227 @@
+/*
+ * JUnitElementEnterExitTracker.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.tests;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.dfki.km.text20.browserplugin.services.mastergazehandler.impl.gazehandler.enterexit.ElementEnterExitTracker;
+import de.dfki.km.text20.browserplugin.services.mastergazehandler.impl.gazehandler.enterexit.ElementEnterExitTracker.TransitionListener;
+import de.dfki.km.text20.services.pseudorenderer.CoordinatesType;
+import de.dfki.km.text20.services.pseudorenderer.RenderElement;
+import de.dfki.km.text20.services.pseudorenderer.RenderElementMetaAttribute;
+import de.dfki.km.text20.services.pseudorenderer.impl.PseudorendererImpl;
+import de.dfki.km.text20.services.pseudorenderer.util.HitTestCache;
+
+/**
+ * Checks the dwell and hysteresis state machine of the enter / exit tracker.
+ * 
+ * @author Ralf Biedert
+ */
+public class JUnitElementEnterExitTracker {
+
+    /** */
+    final PseudorendererImpl pseudorenderer = new PseudorendererImpl();
+
+    /** */
+    final HitTestCache hitTestCache = new HitTestCache(this.pseudorenderer);
+
+    /** Transitions as "ENTER id" or "EXIT id" */
+    final List<String> transitions = new ArrayList<String>();
+
+    /** */
+    ElementEnterExitTracker tracker;
+
+    /** */
+    RenderElement element;
+
+    /**
+     * Window at (100, 100), element at (200, 200) in document coordinates, i.e., at
+     * (300, 300) on screen. 10 pixels hysteresis, 80ms dwell.
+     */
+    @Before
+    public void setUp() {
+        this.pseudorenderer.setGeometry(new Rectangle(100, 100, 800, 600));
+        this.pseudorenderer.setViewport(new Point(0, 0));
+
+        this.element = create("element", new Rectangle(200, 200, 50, 20));
+
+        this.tracker = new ElementEnterExitTracker(this.pseudorenderer, this.hitTestCache, new TransitionListener() {
+            @Override
+            public void elementEntered(final RenderElement e, final long time) {
+                JUnitElementEnterExitTracker.this.transitions.add("ENTER " + e.getIdentifier());
+            }
+
+            @Override
+            public void elementExited(final RenderElement e, final long time) {
+                JUnitElementEnterExitTracker.this.transitions.add("EXIT " + e.getIdentifier());
+            }
+        }, 10, 80);
+    }
+
+    /**
+     * Elements are entered only after the gaze stayed on them for the dwell time.
+     */
+    @Test
+    public void testEnterAfterDwell() {
+        sample(310, 310, 0);
+        sample(320, 310, 40);
+        assertTransitions();
+
+        // Leaving in between starts over
+        sample(500, 500, 60);
+        sample(310, 310, 100);
+        sample(310, 310, 170);
+        assertTransitions();
+
+        sample(310, 310, 180);
+        assertTransitions("ENTER element");
+        Assert.assertTrue(this.tracker.isEntered(this.element));
+
+        // No repeated enter while staying
+        sample(315, 315, 300);
+        assertTransitions("ENTER element");
+    }
+
+    /**
+     * Entered elements are only exited once the gaze left them by more than the hysteresis.
+     */
+    @Test
+    public void testHysteresis() {
+        enter();
+
+        // 5 pixels right of the element
+        sample(355, 310, 200);
+        assertTransitions("ENTER element");
+
+        // 15 pixels right of the element
+        sample(365, 310, 210);
+        assertTransitions("ENTER element", "EXIT element");
+        Assert.assertFalse(this.tracker.isEntered(this.element));
+
+        // The margin does not count for entering
+        sample(355, 310, 220);
+        sample(355, 310, 400);
+        assertTransitions("ENTER element", "EXIT element");
+    }
+
+    /**
+     * Leaving the page exits entered elements, no matter why we lost the gaze.
+     */
+    @Test
+    public void testExitOnLeave() {
+        enter();
+
+        // Outside the window
+        sample(50, 50, 200);
+        assertTransitions("ENTER element", "EXIT element");
+
+        enter();
+
+        // Invalid sample or hidden page
+        this.hitTestCache.nextSample();
+        this.tracker.update(null, 400);
+        assertTransitions("ENTER element", "EXIT element", "ENTER element", "EXIT element");
+    }
+
+    /**
+     * Removed or unsubscribed elements are exited, even if the gaze still rests on them.
+     */
+    @Test
+    public void testExitOnRemove() {
+        enter();
+
+        this.element.setMetaAttribute(RenderElementMetaAttribute.CALLBACK_ENTER_EXIT_GAZE, Boolean.FALSE);
+        sample(310, 310, 200);
+        assertTransitions("ENTER element", "EXIT element");
+
+        this.element.setMetaAttribute(RenderElementMetaAttribute.CALLBACK_ENTER_EXIT_GAZE, Boolean.TRUE);
+        enter();
+
+        this.pseudorenderer.removeElement(this.element);
+        sample(310, 310, 400);
+        assertTransitions("ENTER element", "EXIT element", "ENTER element", "EXIT element");
+    }
+
+    /**
+     * Removals are noticed even if we missed too many changes to get them listed.
+     */
+    @Test
+    public void testExitOnRemoveAfterMissedChanges() {
+        final RenderElement other = create("other", new Rectangle(600, 600, 10, 10));
+        enter();
+
+        this.pseudorenderer.removeElement(this.element);
+        for (int i = 0; i < 20000; i++) {
+            other.setGeometry(new Rectangle(600 + i % 100, 600, 10, 10), CoordinatesType.DOCUMENT_BASED);
+        }
+
+        sample(310, 310, 200);
+        assertTransitions("ENTER element", "EXIT element");
+    }
+
+    /**
+     * Enters the element at time 100.
+     */
+    private void enter() {
+        sample(310, 310, 0);
+        sample(310, 310, 100);
+        Assert.assertTrue(this.tracker.isEntered(this.element));
+    }
+
+    /**
+     * @param x Screen x.
+     * @param y Screen y.
+     * @param time
+     */
+    private void sample(final int x, final int y, final long time) {
+        this.hitTestCache.nextSample();
+        this.tracker.update(new Point(x, y), time);
+    }
+
+    /**
+     * @param expected
+     */
+    private void assertTransitions(final String... expected) {
+        Assert.assertEquals(Arrays.asList(expected), this.transitions);
+    }
+
+    /**
+     * @param id
+     * @param geometry
+     * @return A subscribed element.
+     */
+    private RenderElement create(final String id, final Rectangle geometry) {
+        final RenderElement rval = this.pseudorenderer.createElement(RenderElement.class);
+        rval.setIdentifier(id);
+        rval.setGeometry(geometry, CoordinatesType.DOCUMENT_BASED);
+        rval.setMetaAttribute(RenderElementMetaAttribute.CALLBACK_ENTER_EXIT_GAZE, Boolean.TRUE);
+        return rval;
+    }
+}
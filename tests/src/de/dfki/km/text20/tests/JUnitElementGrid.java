@@ -0,0 +1,188 @@
+/*
+ * JUnitElementGrid.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.tests;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.dfki.km.text20.services.pseudorenderer.CoordinatesType;
+import de.dfki.km.text20.services.pseudorenderer.RenderElement;
+import de.dfki.km.text20.services.pseudorenderer.impl.PseudorendererImpl;
+
+/**
+ * Compares the grid backed intersection queries of the pseudorenderer with a brute force 
+ * scan over all elements.
+ * 
+ * @author Ralf Biedert
+ */
+public class JUnitElementGrid {
+
+    /** */
+    final Random random = new Random(23);
+
+    /** */
+    final PseudorendererImpl pseudorenderer = new PseudorendererImpl();
+
+    /** All live elements, in creation order */
+    final List<RenderElement> elements = new ArrayList<RenderElement>();
+
+    /**
+     * Random elements, some of them moved, removed or fixed to the viewport.
+     */
+    @Test
+    public void testIntersectingMatchesBruteForce() {
+        this.pseudorenderer.setGeometry(new Rectangle(100, 50, 1200, 900));
+
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 50; i++) {
+                final RenderElement element = this.pseudorenderer.createElement(RenderElement.class);
+                element.setIdentifier("e" + round + "." + i);
+                element.setGeometry(randomRectangle(), randomType());
+                this.elements.add(element);
+            }
+
+            // Move some elements around
+            for (int i = 0; i < 20; i++) {
+                final RenderElement element = this.elements.get(this.random.nextInt(this.elements.size()));
+                element.setGeometry(randomRectangle(), randomType());
+            }
+
+            // Remove a few
+            for (int i = 0; i < 10; i++) {
+                this.pseudorenderer.removeElement(this.elements.remove(this.random.nextInt(this.elements.size())));
+            }
+
+            this.pseudorenderer.setViewport(new Point(this.random.nextInt(2000) - 500, this.random.nextInt(2000) - 500));
+
+            for (int i = 0; i < 50; i++) {
+                final Rectangle query = randomRectangle();
+                Assert.assertEquals(bruteForce(query), new ArrayList<RenderElement>(this.pseudorenderer.getAllElementsIntersecting(query, CoordinatesType.DOCUMENT_BASED)));
+            }
+        }
+    }
+
+    /**
+     * Screen based queries are translated by the window and the viewport.
+     */
+    @Test
+    public void testScreenBasedMatchesBruteForce() {
+        final Rectangle window = new Rectangle(100, 50, 1200, 900);
+        this.pseudorenderer.setGeometry(window);
+        this.pseudorenderer.setViewport(new Point(0, 700));
+
+        for (int i = 0; i < 500; i++) {
+            final RenderElement element = this.pseudorenderer.createElement(RenderElement.class);
+            element.setIdentifier("e" + i);
+            element.setGeometry(randomRectangle(), randomType());
+            this.elements.add(element);
+        }
+
+        for (int i = 0; i < 200; i++) {
+            final Rectangle query = randomRectangle();
+            final List<RenderElement> expected = new ArrayList<RenderElement>();
+
+            if (window.intersects(query)) {
+                final Rectangle document = new Rectangle(query);
+                document.translate(-window.x, -window.y + 700);
+                expected.addAll(bruteForce(document));
+            }
+
+            Assert.assertEquals(expected, new ArrayList<RenderElement>(this.pseudorenderer.getAllElementsIntersecting(query, CoordinatesType.SCREEN_BASED)));
+        }
+    }
+
+    /**
+     * The thread running a bulk update sees its own moves right away.
+     */
+    @Test
+    public void testQueriesInsideBulkUpdate() {
+        for (int i = 0; i < 300; i++) {
+            final RenderElement element = this.pseudorenderer.createElement(RenderElement.class);
+            element.setIdentifier("e" + i);
+            element.setGeometry(randomRectangle(), CoordinatesType.DOCUMENT_BASED);
+            this.elements.add(element);
+        }
+
+        this.pseudorenderer.beginUpdate();
+        try {
+            for (int round = 0; round < 20; round++) {
+                for (int i = 0; i < 30; i++) {
+                    final RenderElement element = this.elements.get(this.random.nextInt(this.elements.size()));
+                    element.setGeometry(randomRectangle(), CoordinatesType.DOCUMENT_BASED);
+                }
+
+                for (int i = 0; i < 20; i++) {
+                    final Rectangle query = randomRectangle();
+                    Assert.assertEquals(bruteForce(query), new ArrayList<RenderElement>(this.pseudorenderer.getAllElementsIntersecting(query, CoordinatesType.DOCUMENT_BASED)));
+                }
+            }
+        } finally {
+            this.pseudorenderer.endUpdate();
+        }
+    }
+
+    /**
+     * @param query Rectangle in document coordinates.
+     * @return All elements intersecting it, in creation order.
+     */
+    private List<RenderElement> bruteForce(final Rectangle query) {
+        final List<RenderElement> rval = new ArrayList<RenderElement>();
+
+        for (final RenderElement element : this.elements) {
+            if (element.getGeometry(CoordinatesType.DOCUMENT_BASED).intersects(query)) {
+                rval.add(element);
+            }
+        }
+
+        return rval;
+    }
+
+    /**
+     * @return Mostly small rectangles, but also empty and very large ones, anywhere.
+     */
+    private Rectangle randomRectangle() {
+        final int x = this.random.nextInt(5000) - 1000;
+        final int y = this.random.nextInt(5000) - 1000;
+
+        switch (this.random.nextInt(10)) {
+        case 0:
+            return new Rectangle(x, y, 0, 0);
+        case 1:
+            return new Rectangle(x, y, this.random.nextInt(3000), this.random.nextInt(3000));
+        default:
+            return new Rectangle(x, y, this.random.nextInt(200), this.random.nextInt(40));
+        }
+    }
+
+    /**
+     * @return Document or viewport based.
+     */
+    private CoordinatesType randomType() {
+        return this.random.nextInt(5) == 0 ? CoordinatesType.VIEWPORT_BASED : CoordinatesType.DOCUMENT_BASED;
+    }
+}
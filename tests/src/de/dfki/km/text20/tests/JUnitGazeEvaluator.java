@@ -0,0 +1,426 @@
+/*
+ * JUnitGazeEvaluator.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.tests;
+
+import java.awt.Point;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.xeoh.plugins.base.PluginManager;
+import net.xeoh.plugins.base.impl.PluginManagerFactory;
+import net.xeoh.plugins.base.util.JSPFProperties;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.dfki.km.text20.services.evaluators.gaze.GazeEvaluator;
+import de.dfki.km.text20.services.evaluators.gaze.GazeEvaluatorManager;
+import de.dfki.km.text20.services.evaluators.gaze.GazeHandler;
+import de.dfki.km.text20.services.evaluators.gaze.GazeHandlerFlags;
+import de.dfki.km.text20.services.evaluators.gaze.impl.GazeEvaluatorImpl;
+import de.dfki.km.text20.services.evaluators.gaze.impl.handler.fixation.v1.FixationHandler;
+import de.dfki.km.text20.services.evaluators.gaze.impl.handler.fixation.v2.FixationHandler2;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationEvent;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationEventType;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.fixation.FixationListener;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.raw.RawGazeEvent;
+import de.dfki.km.text20.services.evaluators.gaze.listenertypes.raw.RawGazeListener;
+import de.dfki.km.text20.services.evaluators.gaze.options.AddGazeEvaluationListenerOption;
+import de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener.OptionFixationParameters;
+import de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener.OptionRequestVersion;
+import de.dfki.km.text20.services.evaluators.gaze.options.addgazeevaluationlistener.OptionSynchronous;
+import de.dfki.km.text20.services.trackingdevices.eyes.BatchEyeTrackingListener;
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingDevice;
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingDeviceInfo;
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingDeviceType;
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingListener;
+import de.dfki.km.text20.services.trackingdevices.eyes.util.EyeTrackingEventDummy;
+import de.dfki.km.text20.trackingserver.eyes.remote.TrackingCommand;
+import de.dfki.km.text20.trackingserver.eyes.remote.options.SendCommandOption;
+
+/**
+ * Checks how the gaze evaluator passes events to its handlers.
+ * 
+ * @author Ralf Biedert
+ */
+public class JUnitGazeEvaluator {
+    /** Number of events per batch */
+    static final int BATCH = 50;
+
+    PluginManager pm;
+
+    /** The listener the evaluator registered at our device */
+    EyeTrackingListener evaluatorListener;
+
+    /**
+     * 
+     */
+    @After
+    public void shutdown() {
+        if (this.pm != null) this.pm.shutdown();
+    }
+
+    /**
+     * A batch the device delivers at once is no backlog, so even handlers that may be 
+     * coalesced must see every event.
+     */
+    @Test
+    public void batchReachesEveryHandlerWithDrop() {
+        checkBatchReachesEveryHandler("DROP");
+    }
+
+    /**
+     * Same for COALESCE, which applies to all handlers once there is a backlog.
+     */
+    @Test
+    public void batchReachesEveryHandlerWithCoalesce() {
+        checkBatchReachesEveryHandler("COALESCE");
+    }
+
+    /**
+     * Fixation detection must never be coalesced.
+     */
+    @Test
+    public void fixationHandlerRequiresAllEvents() {
+        final GazeEvaluator evaluator = createEvaluator("DROP");
+
+        evaluator.addEvaluationListener(new FixationListener() {
+            @Override
+            public void newEvaluationEvent(final FixationEvent event) {
+                //
+            }
+        });
+
+        Assert.assertEquals(1, ((GazeEvaluatorImpl) evaluator).getHandlerGraph().size());
+        for (final GazeHandler handler : ((GazeEvaluatorImpl) evaluator).getHandlerGraph().keySet()) {
+            Assert.assertTrue(handler.getFlags().contains(GazeHandlerFlags.REQUIRE_ALL_EVENTS));
+        }
+    }
+
+    /**
+     * Listeners that are not thread safe must stay on the delivering thread, even if the
+     * evaluator runs its handlers on lanes.
+     */
+    @Test
+    public void synchronousListenerStaysOnCallerThread() {
+        final GazeEvaluator evaluator = createEvaluator("BLOCK", "LANES");
+        final List<Thread> threads = new ArrayList<Thread>();
+
+        evaluator.addEvaluationListener(new RawGazeListener() {
+            @Override
+            public void newEvaluationEvent(final RawGazeEvent event) {
+                threads.add(Thread.currentThread());
+            }
+
+            @Override
+            public boolean requireUnfilteredEvents() {
+                return false;
+            }
+        }, new OptionSynchronous());
+
+        this.evaluatorListener.newTrackingEvent(createEvent(0));
+
+        Assert.assertEquals(1, threads.size());
+        Assert.assertSame(Thread.currentThread(), threads.get(0));
+    }
+
+    /**
+     * Removing a listener removes its handler once nobody else uses it.
+     */
+    @Test
+    public void removeListenerRemovesHandler() {
+        final GazeEvaluator evaluator = createEvaluator("BLOCK", "LANES");
+        final GazeEvaluatorImpl impl = (GazeEvaluatorImpl) evaluator;
+        final List<Long> received = new ArrayList<Long>();
+
+        final RawGazeListener raw = new RawGazeListener() {
+            @Override
+            public void newEvaluationEvent(final RawGazeEvent event) {
+                received.add(Long.valueOf(event.getTrackingEvent().getObservationTime()));
+            }
+
+            @Override
+            public boolean requireUnfilteredEvents() {
+                return false;
+            }
+        };
+        final FixationListener first = new FixationListener() {
+            @Override
+            public void newEvaluationEvent(final FixationEvent event) {
+                //
+            }
+        };
+        final FixationListener second = new FixationListener() {
+            @Override
+            public void newEvaluationEvent(final FixationEvent event) {
+                //
+            }
+        };
+
+        evaluator.addEvaluationListener(raw, new OptionSynchronous());
+        evaluator.addEvaluationListener(first);
+        evaluator.addEvaluationListener(second);
+        Assert.assertEquals(2, impl.getHandlerGraph().size());
+
+        impl.removeEvaluationListener(raw);
+        this.evaluatorListener.newTrackingEvent(createEvent(0));
+        Assert.assertEquals(0, received.size());
+        Assert.assertEquals(1, impl.getHandlerGraph().size());
+
+        // The fixation handler is shared and stays until its last listener is gone
+        impl.removeEvaluationListener(first);
+        Assert.assertEquals(1, impl.getHandlerGraph().size());
+
+        impl.removeEvaluationListener(second);
+        Assert.assertEquals(0, impl.getHandlerGraph().size());
+    }
+
+    /**
+     * A listener sharing a fixation handler that is already inside a fixation must not get
+     * the remainder of that fixation, only the next one.
+     */
+    @Test
+    public void lateFixationListenerWaitsForStart() {
+        final GazeEvaluator evaluator = createEvaluator("BLOCK");
+        final List<FixationEventType> early = new ArrayList<FixationEventType>();
+        final List<FixationEventType> late = new ArrayList<FixationEventType>();
+
+        evaluator.addEvaluationListener(new FixationListener() {
+            @Override
+            public void newEvaluationEvent(final FixationEvent event) {
+                early.add(event.getType());
+            }
+        });
+
+        fixate(0, 100);
+        Assert.assertTrue(early.contains(FixationEventType.FIXATION_START));
+
+        evaluator.addEvaluationListener(new FixationListener() {
+            @Override
+            public void newEvaluationEvent(final FixationEvent event) {
+                late.add(event.getType());
+            }
+        });
+        Assert.assertEquals(1, ((GazeEvaluatorImpl) evaluator).getHandlerGraph().size());
+
+        fixate(300, 100);
+        Assert.assertTrue(late.isEmpty());
+
+        fixate(600, 500);
+        Assert.assertFalse(late.isEmpty());
+        Assert.assertEquals(FixationEventType.FIXATION_START, late.get(0));
+    }
+
+    /**
+     * A failing listener must not keep the other listeners of a shared handler from their 
+     * events.
+     */
+    @Test
+    public void failingFixationListenerDoesNotBlockOthers() {
+        final GazeEvaluator evaluator = createEvaluator("BLOCK");
+        final List<FixationEventType> received = new ArrayList<FixationEventType>();
+
+        evaluator.addEvaluationListener(new FixationListener() {
+            @Override
+            public void newEvaluationEvent(final FixationEvent event) {
+                throw new IllegalStateException("Expected by the test");
+            }
+        });
+        evaluator.addEvaluationListener(new FixationListener() {
+            @Override
+            public void newEvaluationEvent(final FixationEvent event) {
+                received.add(event.getType());
+            }
+        });
+
+        fixate(0, 100);
+        Assert.assertTrue(received.contains(FixationEventType.FIXATION_START));
+    }
+
+    /**
+     * Fixation handlers are only shared by requests with the same options.
+     */
+    @Test
+    public void fixationHandlerSharedByOptions() {
+        final GazeEvaluator evaluator = createEvaluator("BLOCK");
+        final FixationListener listener = new FixationListener() {
+            @Override
+            public void newEvaluationEvent(final FixationEvent event) {
+                //
+            }
+        };
+
+        evaluator.addEvaluationListener(listener);
+        evaluator.addEvaluationListener(listener, new OptionFixationParameters(25, 100));
+        Assert.assertEquals(1, ((GazeEvaluatorImpl) evaluator).getHandlerGraph().size());
+
+        evaluator.addEvaluationListener(listener, new OptionFixationParameters(40, 100));
+        Assert.assertEquals(2, ((GazeEvaluatorImpl) evaluator).getHandlerGraph().size());
+
+        // We can't tell what an unknown option does, so it gets its own handler
+        evaluator.addEvaluationListener(listener, new AddGazeEvaluationListenerOption() {
+            private static final long serialVersionUID = 1L;
+        });
+        Assert.assertEquals(3, ((GazeEvaluatorImpl) evaluator).getHandlerGraph().size());
+    }
+
+    /**
+     * The original fixation handler stays the default, newer versions have to be requested.
+     */
+    @Test
+    public void fixationHandlerVersionSelection() {
+        final GazeEvaluator evaluator = createEvaluator("BLOCK");
+        final GazeEvaluatorImpl impl = (GazeEvaluatorImpl) evaluator;
+        final FixationListener listener = new FixationListener() {
+            @Override
+            public void newEvaluationEvent(final FixationEvent event) {
+                //
+            }
+        };
+
+        evaluator.addEvaluationListener(listener);
+        Assert.assertEquals(FixationHandler.class, impl.getHandlerGraph().keySet().iterator().next().getClass());
+        impl.removeEvaluationListener(listener);
+
+        evaluator.addEvaluationListener(listener, new OptionRequestVersion(FixationListener.class, null, 10000));
+        Assert.assertEquals(FixationHandler.class, impl.getHandlerGraph().keySet().iterator().next().getClass());
+        impl.removeEvaluationListener(listener);
+
+        evaluator.addEvaluationListener(listener, new OptionRequestVersion(FixationListener.class, null, 20000));
+        Assert.assertEquals(FixationHandler2.class, impl.getHandlerGraph().keySet().iterator().next().getClass());
+    }
+
+    /**
+     * Looks at one point for 300ms.
+     * 
+     * @param start Time of the first event.
+     * @param position Position of the point on both axes.
+     */
+    private void fixate(final long start, final int position) {
+        for (int i = 0; i < 30; i++) {
+            final EyeTrackingEventDummy event = new EyeTrackingEventDummy();
+            event.eventTime = start + i * 10;
+            event.gazeCenter = new Point(position, position);
+            this.evaluatorListener.newTrackingEvent(event);
+        }
+    }
+
+    /**
+     * @param policy
+     */
+    private void checkBatchReachesEveryHandler(final String policy) {
+        final GazeEvaluator evaluator = createEvaluator(policy);
+        final List<Long> received = new ArrayList<Long>();
+
+        evaluator.addEvaluationListener(new RawGazeListener() {
+            @Override
+            public void newEvaluationEvent(final RawGazeEvent event) {
+                received.add(Long.valueOf(event.getTrackingEvent().getObservationTime()));
+            }
+
+            @Override
+            public boolean requireUnfilteredEvents() {
+                return false;
+            }
+        });
+
+        for (int round = 0; round < 3; round++) {
+            final List<EyeTrackingEvent> batch = new ArrayList<EyeTrackingEvent>();
+            for (int i = 0; i < BATCH; i++) {
+                batch.add(createEvent(round * BATCH + i));
+            }
+
+            ((BatchEyeTrackingListener) this.evaluatorListener).newTrackingEvents(batch);
+        }
+
+        Assert.assertEquals(3 * BATCH, received.size());
+        for (int i = 0; i < received.size(); i++) {
+            Assert.assertEquals(i, received.get(i).longValue());
+        }
+    }
+
+    /**
+     * @param time
+     * @return A valid event observed at the given time.
+     */
+    private static EyeTrackingEvent createEvent(final long time) {
+        final EyeTrackingEventDummy event = new EyeTrackingEventDummy();
+        event.eventTime = time;
+        event.gazeCenter = new Point((int) time, (int) time);
+        return event;
+    }
+
+    /**
+     * @param policy The overload policy to use.
+     * @return A new evaluator, fed by {@link #evaluatorListener}.
+     */
+    private GazeEvaluator createEvaluator(final String policy) {
+        return createEvaluator(policy, "SEQUENTIAL");
+    }
+
+    /**
+     * @param policy The overload policy to use.
+     * @param mode The execution mode to use.
+     * @return A new evaluator, fed by {@link #evaluatorListener}.
+     */
+    private GazeEvaluator createEvaluator(final String policy, final String mode) {
+        final JSPFProperties props = new JSPFProperties();
+        props.setProperty(GazeEvaluator.class, "overload.policy", policy);
+        props.setProperty(GazeEvaluator.class, "execution.mode", mode);
+
+        this.pm = PluginManagerFactory.createPluginManager(props);
+        this.pm.addPluginsFrom(URI.create("classpath://*"));
+
+        final GazeEvaluator evaluator = this.pm.getPlugin(GazeEvaluatorManager.class).createEvaluator(new EyeTrackingDevice() {
+            @Override
+            public void addTrackingListener(final EyeTrackingListener listener) {
+                JUnitGazeEvaluator.this.evaluatorListener = listener;
+            }
+
+            @Override
+            public EyeTrackingDeviceInfo getDeviceInfo() {
+                return null;
+            }
+
+            @Override
+            public void closeDevice() {
+                //
+            }
+
+            @Override
+            public EyeTrackingDeviceType getDeviceType() {
+                return EyeTrackingDeviceType.MOUSE;
+            }
+
+            @Override
+            public void sendLowLevelCommand(final TrackingCommand command, final SendCommandOption... options) {
+                //
+            }
+        });
+
+        Assert.assertNotNull(this.evaluatorListener);
+        return evaluator;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * JUnitHitTestCache.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.tests;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.dfki.km.text20.services.pseudorenderer.CoordinatesType;
+import de.dfki.km.text20.services.pseudorenderer.RenderElement;
+import de.dfki.km.text20.services.pseudorenderer.impl.PseudorendererImpl;
+import de.dfki.km.text20.services.pseudorenderer.options.getallelementsintersecting.OptionOnlyValid;
+import de.dfki.km.text20.services.pseudorenderer.util.HitTestCache;
+
+/**
+ * Checks when the hit test cache answers queries itself, and that its counters tell.
+ * 
+ * @author Ralf Biedert
+ */
+public class JUnitHitTestCache {
+
+    /** */
+    final PseudorendererImpl pseudorenderer = new PseudorendererImpl();
+
+    /** */
+    final HitTestCache cache = new HitTestCache(this.pseudorenderer);
+
+    /** */
+    RenderElement element;
+
+    /** */
+    @Before
+    public void setUp() {
+        this.pseudorenderer.setGeometry(new Rectangle(0, 0, 1000, 1000));
+        this.pseudorenderer.setViewport(new Point(0, 0));
+
+        this.element = this.pseudorenderer.createElement(RenderElement.class);
+        this.element.setIdentifier("element");
+        this.element.setGeometry(new Rectangle(100, 100, 50, 50), CoordinatesType.DOCUMENT_BASED);
+    }
+
+    /**
+     * Equal queries of one sample are answered once, with the same result.
+     */
+    @Test
+    public void testHitsAndMisses() {
+        final List<RenderElement> first = intersecting(120, 120);
+        Assert.assertEquals(Arrays.asList(this.element), first);
+        assertCounters(0, 1);
+
+        Assert.assertSame(first, intersecting(120, 120));
+        assertCounters(1, 1);
+
+        // Equal options built for another call share the result
+        final Rectangle r = new Rectangle(120, 120, 1, 1);
+        final List<RenderElement> valid = this.cache.getAllElementsIntersecting(r, CoordinatesType.DOCUMENT_BASED, new OptionOnlyValid());
+        Assert.assertSame(valid, this.cache.getAllElementsIntersecting(r, CoordinatesType.DOCUMENT_BASED, new OptionOnlyValid()));
+        assertCounters(2, 2);
+
+        // Nearest queries are keyed separately
+        final List<RenderElement> nearest = this.cache.getNearestElements(new Point(120, 120), CoordinatesType.DOCUMENT_BASED, 1, 100);
+        Assert.assertEquals(Arrays.asList(this.element), nearest);
+        Assert.assertSame(nearest, this.cache.getNearestElements(new Point(120, 120), CoordinatesType.DOCUMENT_BASED, 1, 100));
+        Assert.assertNotSame(nearest, this.cache.getNearestElements(new Point(120, 120), CoordinatesType.DOCUMENT_BASED, 2, 100));
+        assertCounters(3, 4);
+
+        this.cache.resetCounters();
+        assertCounters(0, 0);
+    }
+
+    /**
+     * Results of older renderer versions are not reused.
+     */
+    @Test
+    public void testVersions() {
+        Assert.assertEquals(Arrays.asList(this.element), intersecting(120, 120));
+
+        this.element.setGeometry(new Rectangle(500, 500, 50, 50), CoordinatesType.DOCUMENT_BASED);
+        Assert.assertTrue(intersecting(120, 120).isEmpty());
+        assertCounters(0, 2);
+
+        final RenderElement other = this.pseudorenderer.createElement(RenderElement.class);
+        other.setGeometry(new Rectangle(110, 110, 50, 50), CoordinatesType.DOCUMENT_BASED);
+        Assert.assertEquals(Arrays.asList(other), intersecting(120, 120));
+        assertCounters(0, 3);
+
+        this.pseudorenderer.removeElement(other);
+        Assert.assertTrue(intersecting(120, 120).isEmpty());
+        assertCounters(0, 4);
+    }
+
+    /**
+     * Screen queries depend on the viewport and the window, document queries don't.
+     */
+    @Test
+    public void testViewportAndWindow() {
+        final Rectangle r = new Rectangle(120, 120, 1, 1);
+
+        Assert.assertEquals(Arrays.asList(this.element), this.cache.getAllElementsIntersecting(r, CoordinatesType.SCREEN_BASED));
+        Assert.assertEquals(Arrays.asList(this.element), intersecting(120, 120));
+        assertCounters(0, 2);
+
+        this.pseudorenderer.setViewport(new Point(0, 300));
+        Assert.assertTrue(this.cache.getAllElementsIntersecting(r, CoordinatesType.SCREEN_BASED).isEmpty());
+        Assert.assertEquals(Arrays.asList(this.element), intersecting(120, 120));
+        assertCounters(1, 3);
+
+        this.pseudorenderer.setViewport(new Point(0, 0));
+        this.pseudorenderer.setGeometry(new Rectangle(100, 0, 1000, 1000));
+        Assert.assertTrue(this.cache.getAllElementsIntersecting(r, CoordinatesType.SCREEN_BASED).isEmpty());
+        Assert.assertEquals(Arrays.asList(this.element), intersecting(120, 120));
+        assertCounters(2, 4);
+    }
+
+    /**
+     * The cache is emptied for every sample, and once it holds too many results.
+     */
+    @Test
+    public void testEviction() {
+        final List<RenderElement> first = intersecting(0, 0);
+
+        this.cache.nextSample();
+        Assert.assertNotSame(first, intersecting(0, 0));
+        assertCounters(0, 2);
+
+        // The cache holds 64 results per sample, the 65th empties it
+        for (int i = 1; i < 64; i++) {
+            intersecting(i, 0);
+        }
+        assertCounters(0, 65);
+
+        intersecting(0, 0);
+        assertCounters(1, 65);
+
+        intersecting(64, 0);
+        intersecting(0, 0);
+        assertCounters(1, 67);
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @return The elements intersecting the document point.
+     */
+    private List<RenderElement> intersecting(final int x, final int y) {
+        return this.cache.getAllElementsIntersecting(new Rectangle(x, y, 1, 1), CoordinatesType.DOCUMENT_BASED);
+    }
+
+    /**
+     * @param hits
+     * @param misses
+     */
+    private void assertCounters(final long hits, final long misses) {
+        Assert.assertEquals("hits", hits, this.cache.getHits());
+        Assert.assertEquals("misses", misses, this.cache.getMisses());
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * JUnitJSCallCoalescer.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.tests;
+
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.dfki.km.text20.browserplugin.browser.browserplugin.impl.JSCallCoalescer;
+
+/**
+ * Checks the frames of the call coalescer, and that text20.js can decode them.
+ * 
+ * @author Ralf Biedert
+ */
+public class JUnitJSCallCoalescer {
+
+    /** Not started, so frames are only encoded */
+    final JSCallCoalescer coalescer = new JSCallCoalescer();
+
+    /**
+     * All argument types are encoded with their prefix.
+     */
+    @Test
+    public void testEncode() {
+        this.coalescer.enqueue("fnc", Integer.valueOf(1), Double.valueOf(-2.5), Boolean.TRUE, Boolean.FALSE, null, "a b");
+        this.coalescer.enqueue("none");
+
+        Assert.assertEquals("fnc,n1,n-2.5,b1,b0,u,sa%20b;none", this.coalescer.flush());
+    }
+
+    /**
+     * Separators and escapes inside names and strings come back unchanged when decoded 
+     * like onFrame() in text20.js does.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        final String nasty = "a,b;c %+\u00e4/?&=~*'()\"\\";
+        this.coalescer.enqueue("ns.f" + nasty, nasty, "", Long.valueOf(42));
+        this.coalescer.enqueue("second", Boolean.TRUE);
+
+        final String frame = this.coalescer.flush();
+        Assert.assertFalse(frame, frame.contains("+"));
+
+        final List<List<Object>> calls = decode(frame);
+        Assert.assertEquals(2, calls.size());
+        Assert.assertEquals(Arrays.<Object> asList("ns.f" + nasty, nasty, "", Double.valueOf(42)), calls.get(0));
+        Assert.assertEquals(Arrays.<Object> asList("second", Boolean.TRUE), calls.get(1));
+    }
+
+    /**
+     * Only the latest call of a supersedable function per frame is delivered, in its place, 
+     * while all other calls are kept in order.
+     */
+    @Test
+    public void testSuperseding() {
+        this.coalescer.addSupersedable("gaze");
+
+        this.coalescer.enqueue("gaze", Integer.valueOf(1));
+        this.coalescer.enqueue("other", Integer.valueOf(1));
+        this.coalescer.enqueue("gaze", Integer.valueOf(2));
+        this.coalescer.enqueue("other", Integer.valueOf(2));
+        this.coalescer.enqueue("gaze", Integer.valueOf(3));
+
+        Assert.assertEquals("other,n1;other,n2;gaze,n3", this.coalescer.flush());
+        Assert.assertEquals(5, this.coalescer.getCalls());
+        Assert.assertEquals(2, this.coalescer.getSuperseded());
+        Assert.assertEquals(1, this.coalescer.getFrames());
+
+        // Every frame starts over
+        this.coalescer.enqueue("gaze", Integer.valueOf(4));
+        Assert.assertEquals("gaze,n4", this.coalescer.flush());
+
+        // Empty frames are not sent
+        Assert.assertNull(this.coalescer.flush());
+        Assert.assertEquals(2, this.coalescer.getFrames());
+    }
+
+    /**
+     * A function stays supersedable until it was released as often as it was added.
+     */
+    @Test
+    public void testReferenceCount() {
+        this.coalescer.addSupersedable("gaze");
+        this.coalescer.addSupersedable("gaze");
+
+        this.coalescer.releaseSupersedable("gaze");
+        Assert.assertEquals("gaze,n2", frame("gaze"));
+
+        this.coalescer.releaseSupersedable("gaze");
+        Assert.assertEquals("gaze,n1;gaze,n2", frame("gaze"));
+
+        // Releasing too often does not count below zero
+        this.coalescer.releaseSupersedable("gaze");
+        this.coalescer.addSupersedable("gaze");
+        Assert.assertEquals("gaze,n2", frame("gaze"));
+
+        // Other functions were never affected
+        Assert.assertEquals("raw,n1;raw,n2", frame("raw"));
+    }
+
+    /**
+     * @param function
+     * @return The frame of two calls to the function.
+     */
+    private String frame(final String function) {
+        this.coalescer.enqueue(function, Integer.valueOf(1));
+        this.coalescer.enqueue(function, Integer.valueOf(2));
+        return this.coalescer.flush();
+    }
+
+    /**
+     * Like onFrame() in text20.js, decodes a frame into lists of function name and arguments.
+     * 
+     * @param frame
+     * @return The calls.
+     * @throws Exception
+     */
+    private static List<List<Object>> decode(final String frame) throws Exception {
+        final List<List<Object>> rval = new ArrayList<List<Object>>();
+
+        for (final String call : frame.split(";")) {
+            if (call.length() == 0) continue;
+
+            final String[] fields = call.split(",", -1);
+            final List<Object> decoded = new ArrayList<Object>();
+            decoded.add(URLDecoder.decode(fields[0], "UTF-8"));
+
+            for (int i = 1; i < fields.length; i++) {
+                final String v = fields[i].substring(1);
+
+                switch (fields[i].charAt(0)) {
+                case 'n':
+                    decoded.add(Double.valueOf(v));
+                    break;
+                case 'b':
+                    decoded.add(Boolean.valueOf(v.equals("1")));
+                    break;
+                case 's':
+                    decoded.add(URLDecoder.decode(v, "UTF-8"));
+                    break;
+                default:
+                    decoded.add(null);
+                }
+            }
+
+            rval.add(decoded);
+        }
+
+        return rval;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * JUnitMagneticDisplacementFilter.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.tests;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.dfki.km.text20.services.evaluators.gaze.util.filter.displacement.MagneticDisplacementFilter;
+import de.dfki.km.text20.services.pseudorenderer.CoordinatesType;
+import de.dfki.km.text20.services.pseudorenderer.impl.PseudorendererImpl;
+import de.dfki.km.text20.services.pseudorenderer.renderelements.TextualRenderElement;
+import de.dfki.km.text20.services.trackingdevices.eyes.util.EyeTrackingEventDummy;
+
+/**
+ * @author Ralf Biedert
+ */
+public class JUnitMagneticDisplacementFilter {
+
+    /**
+     * The filter sees elements created, moved and removed in the renderer it follows.
+     */
+    @Test
+    public void testFollowPseudorenderer() {
+        final PseudorendererImpl pseudorenderer = new PseudorendererImpl();
+        final MagneticDisplacementFilter filter = createFilter();
+
+        filter.followPseudorenderer(pseudorenderer);
+
+        final TextualRenderElement line = createLine(pseudorenderer, 200, 20);
+        Assert.assertEquals(210, filter(filter, 180));
+
+        line.setGeometry(new Rectangle(0, 250, 100, 20), CoordinatesType.DOCUMENT_BASED);
+        Assert.assertEquals(260, filter(filter, 230));
+
+        pseudorenderer.removeElement(line);
+        Assert.assertEquals(230, filter(filter, 230));
+    }
+
+    /**
+     * If many lines moved without the filter being told, we must still snap to the 
+     * nearest line by its current position.
+     */
+    @Test
+    public void testManyStaleLines() {
+        final PseudorendererImpl pseudorenderer = new PseudorendererImpl();
+        final MagneticDisplacementFilter filter = createFilter();
+        final TextualRenderElement lines[] = new TextualRenderElement[5];
+
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = createLine(pseudorenderer, 95 + i * 20, 10);
+            filter.updateRenderElement(lines[i]);
+        }
+
+        for (int i = 0; i < lines.length; i++) {
+            lines[i].setGeometry(new Rectangle(0, 175 + i * 20, 100, 10), CoordinatesType.DOCUMENT_BASED);
+        }
+
+        Assert.assertEquals(180, filter(filter, 95));
+    }
+
+    /**
+     * @return A filter for a document shown at the origin.
+     */
+    private static MagneticDisplacementFilter createFilter() {
+        final MagneticDisplacementFilter filter = new MagneticDisplacementFilter();
+        filter.updateScreenPosition(new Rectangle(0, 0, 1000, 1000));
+        filter.updateDocumentOffset(new Point());
+        return filter;
+    }
+
+    /**
+     * @param pseudorenderer
+     * @param y
+     * @param height
+     * @return A textual element at the given height.
+     */
+    private static TextualRenderElement createLine(final PseudorendererImpl pseudorenderer,
+                                                   final int y, final int height) {
+        final TextualRenderElement line = pseudorenderer.createElement(TextualRenderElement.class);
+        line.setIdentifier("line" + y);
+        line.setGeometry(new Rectangle(0, y, 100, height), CoordinatesType.DOCUMENT_BASED);
+        return line;
+    }
+
+    /**
+     * @param filter
+     * @param y
+     * @return The filtered y-coordinate of a gaze at the given height.
+     */
+    private static int filter(final MagneticDisplacementFilter filter, final int y) {
+        final EyeTrackingEventDummy event = new EyeTrackingEventDummy();
+        event.gazeCenter = new Point(50, y);
+        return filter.filterEvent(event).getGazeCenter().y;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * JUnitNearestQuery.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.tests;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.dfki.km.text20.services.pseudorenderer.CoordinatesType;
+import de.dfki.km.text20.services.pseudorenderer.RenderElement;
+import de.dfki.km.text20.services.pseudorenderer.RenderElementMetaAttribute;
+import de.dfki.km.text20.services.pseudorenderer.impl.PseudorendererImpl;
+import de.dfki.km.text20.services.pseudorenderer.options.GetNearestElementsOption;
+import de.dfki.km.text20.services.pseudorenderer.options.getallelementsintersecting.OptionOnlyValid;
+import de.dfki.km.text20.services.pseudorenderer.options.getnearestelements.OptionElementType;
+import de.dfki.km.text20.services.pseudorenderer.renderelements.TextualRenderElement;
+
+/**
+ * Compares the k nearest elements the pseudorenderer finds with a brute force scan over 
+ * all elements.
+ * 
+ * @author Ralf Biedert
+ */
+public class JUnitNearestQuery {
+
+    /** */
+    final Random random = new Random(42);
+
+    /** */
+    final PseudorendererImpl pseudorenderer = new PseudorendererImpl();
+
+    /** All live elements, in creation order */
+    final List<RenderElement> elements = new ArrayList<RenderElement>();
+
+    /**
+     * Random documents and queries, with and without filters.
+     */
+    @Test
+    public void testNearestMatchesBruteForce() {
+        this.pseudorenderer.setGeometry(new Rectangle(0, 0, 1200, 900));
+
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 50; i++) {
+                final Class<? extends RenderElement> type = this.random.nextBoolean() ? TextualRenderElement.class : RenderElement.class;
+                final RenderElement element = this.pseudorenderer.createElement(type);
+                element.setIdentifier("e" + round + "." + i);
+                element.setGeometry(randomRectangle(), this.random.nextInt(5) == 0 ? CoordinatesType.VIEWPORT_BASED : CoordinatesType.DOCUMENT_BASED);
+                if (this.random.nextInt(4) == 0) element.setMetaAttribute(RenderElementMetaAttribute.INVALID, Boolean.TRUE);
+                this.elements.add(element);
+            }
+
+            // Move and remove some
+            for (int i = 0; i < 20; i++) {
+                this.elements.get(this.random.nextInt(this.elements.size())).setGeometry(randomRectangle(), CoordinatesType.DOCUMENT_BASED);
+            }
+            for (int i = 0; i < 10; i++) {
+                this.pseudorenderer.removeElement(this.elements.remove(this.random.nextInt(this.elements.size())));
+            }
+
+            this.pseudorenderer.setViewport(new Point(this.random.nextInt(2000) - 500, this.random.nextInt(2000) - 500));
+
+            for (int i = 0; i < 100; i++) {
+                final Point point = new Point(this.random.nextInt(5000) - 1000, this.random.nextInt(5000) - 1000);
+                final int k = 1 + this.random.nextInt(10);
+                final int maxDistance = this.random.nextBoolean() ? 50 + this.random.nextInt(500) : Integer.MAX_VALUE;
+                final boolean onlyValid = this.random.nextBoolean();
+                final Class<? extends RenderElement> type = this.random.nextBoolean() ? TextualRenderElement.class : null;
+
+                final List<GetNearestElementsOption> options = new ArrayList<GetNearestElementsOption>();
+                if (onlyValid) options.add(new OptionOnlyValid());
+                if (type != null) options.add(new OptionElementType(type));
+
+                final List<RenderElement> expected = bruteForce(point, k, maxDistance, onlyValid, type);
+                final List<RenderElement> actual = this.pseudorenderer.getNearestElements(point, CoordinatesType.DOCUMENT_BASED, k, maxDistance, options.toArray(new GetNearestElementsOption[0]));
+
+                Assert.assertEquals(expected, actual);
+            }
+        }
+    }
+
+    /**
+     * @param point
+     * @param k
+     * @param maxDistance
+     * @param onlyValid
+     * @param type
+     * @return The k elements with the smallest border distance, equal ones in creation order.
+     */
+    private List<RenderElement> bruteForce(final Point point, final int k,
+                                           final int maxDistance, final boolean onlyValid,
+                                           final Class<? extends RenderElement> type) {
+        final List<RenderElement> candidates = new ArrayList<RenderElement>();
+        final List<Double> distances = new ArrayList<Double>();
+
+        for (final RenderElement element : this.elements) {
+            if (type != null && !type.isInstance(element)) continue;
+            if (onlyValid && Boolean.TRUE.equals(element.getMetaAttribute(RenderElementMetaAttribute.INVALID)))
+                continue;
+
+            final double d = borderDistance(element.getGeometry(CoordinatesType.DOCUMENT_BASED), point);
+            if (d > maxDistance) continue;
+
+            candidates.add(element);
+            distances.add(Double.valueOf(d));
+        }
+
+        final List<Integer> order = new ArrayList<Integer>();
+        for (int i = 0; i < candidates.size(); i++) {
+            order.add(Integer.valueOf(i));
+        }
+
+        // Stable, so equal distances stay in creation order
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer o1, final Integer o2) {
+                return distances.get(o1.intValue()).compareTo(distances.get(o2.intValue()));
+            }
+        });
+
+        final List<RenderElement> rval = new ArrayList<RenderElement>();
+        for (int i = 0; i < Math.min(k, order.size()); i++) {
+            rval.add(candidates.get(order.get(i).intValue()));
+        }
+
+        return rval;
+    }
+
+    /**
+     * The distance of the point to the circle around the rectangle, as the renderer 
+     * defines it.
+     * 
+     * @param r
+     * @param p
+     * @return The distance.
+     */
+    private static double borderDistance(final Rectangle r, final Point p) {
+        return Point2D.distance((int) r.getCenterX(), (int) r.getCenterY(), p.x, p.y) - Math.max(r.height, r.width) / 2;
+    }
+
+    /**
+     * @return Mostly small rectangles, but also empty and very large ones, anywhere.
+     */
+    private Rectangle randomRectangle() {
+        final int x = this.random.nextInt(5000) - 1000;
+        final int y = this.random.nextInt(5000) - 1000;
+
+        switch (this.random.nextInt(10)) {
+        case 0:
+            return new Rectangle(x, y, 0, 0);
+        case 1:
+            return new Rectangle(x, y, this.random.nextInt(3000), this.random.nextInt(3000));
+        default:
+            return new Rectangle(x, y, this.random.nextInt(200), this.random.nextInt(40));
+        }
+    }
+}
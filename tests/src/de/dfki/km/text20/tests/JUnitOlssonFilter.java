@@ -0,0 +1,221 @@
+/*
+ * JUnitOlssonFilter.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.tests;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.xeoh.plugins.base.PluginManager;
+import net.xeoh.plugins.base.impl.PluginManagerFactory;
+import net.xeoh.plugins.base.options.getplugin.OptionCapabilities;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.dfki.km.text20.browserplugin.services.sessionrecorder.ReplayListener;
+import de.dfki.km.text20.browserplugin.services.sessionrecorder.SessionRecorderManager;
+import de.dfki.km.text20.browserplugin.services.sessionrecorder.SessionReplay;
+import de.dfki.km.text20.browserplugin.services.sessionrecorder.events.AbstractSessionEvent;
+import de.dfki.km.text20.browserplugin.services.sessionrecorder.events.EyeTrackingEventContainer;
+import de.dfki.km.text20.browserplugin.services.sessionrecorder.options.replay.OptionWaitForFinish;
+import de.dfki.km.text20.services.evaluators.gaze.util.filter.etufilters.OlssonFilter;
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEventValidity;
+import de.dfki.km.text20.services.trackingdevices.eyes.util.EyeTrackingEventDummy;
+
+/**
+ * Runs the Olsson filter over the recorded session in <code>tests/sessions</code>. 
+ * 
+ * @author Ralf Biedert
+ */
+public class JUnitOlssonFilter {
+    static final int SIZE = 64;
+
+    static final long WINDOW = 50;
+
+    static final long LOW_PASS = 80;
+
+    static final long HIGH_PASS = 5;
+
+    static final long THRESHOLD = 30;
+
+    PluginManager pm;
+
+    List<EyeTrackingEvent> session = new ArrayList<EyeTrackingEvent>();
+
+    /**
+     * @throws Exception
+     */
+    @Before
+    public void loadSession() throws Exception {
+        this.pm = PluginManagerFactory.createPluginManager();
+        this.pm.addPluginsFrom(new URI("classpath://*"));
+
+        final SessionReplay player = this.pm.getPlugin(SessionRecorderManager.class, new OptionCapabilities("sessionrecorder:xstream")).loadSessionReplay(new File("tests/sessions/session.xstream"));
+        player.replay(new ReplayListener() {
+            @Override
+            public void nextEvent(AbstractSessionEvent event) {
+                if (event instanceof EyeTrackingEventContainer) JUnitOlssonFilter.this.session.add((EyeTrackingEvent) event);
+            }
+        }, new OptionWaitForFinish());
+    }
+
+    /**
+     * 
+     */
+    @After
+    public void shutdown() {
+        this.pm.shutdown();
+    }
+
+    /**
+     * The incremental windows must give exactly what recomputing both windows for 
+     * every sample gives.
+     */
+    @Test
+    public void matchesReference() {
+        Assert.assertTrue(this.session.size() > 500);
+
+        final OlssonFilter filter = new OlssonFilter(SIZE, WINDOW, LOW_PASS, HIGH_PASS, THRESHOLD);
+        final List<EyeTrackingEvent> backlog = new ArrayList<EyeTrackingEvent>();
+
+        double fx = 0, fy = 0;
+        long lastTime = 0;
+        int steps = 0;
+
+        for (final EyeTrackingEvent event : this.session) {
+            final Point result = filter.filterEvent(event).getGazeCenter();
+
+            if (!event.areValid(EyeTrackingEventValidity.CENTER_POSITION_VALID)) continue;
+
+            // Reference
+            final Point p = event.getGazeCenter();
+            final long time = event.getObservationTime();
+
+            if (backlog.size() == SIZE) backlog.remove(0);
+            backlog.add(event);
+
+            long ax = 0, ay = 0, bx = 0, by = 0;
+            int ac = 0, bc = 0;
+            for (final EyeTrackingEvent e : backlog) {
+                final long dt = time - e.getObservationTime();
+                if (dt <= WINDOW) {
+                    ax += e.getGazeCenter().x;
+                    ay += e.getGazeCenter().y;
+                    ac++;
+                } else if (dt <= 2 * WINDOW) {
+                    bx += e.getGazeCenter().x;
+                    by += e.getGazeCenter().y;
+                    bc++;
+                }
+            }
+
+            boolean step = false;
+            if (bc > 0) {
+                final double dx = (double) ax / ac - (double) bx / bc;
+                final double dy = (double) ay / ac - (double) by / bc;
+                step = dx * dx + dy * dy >= THRESHOLD * THRESHOLD;
+            }
+
+            if (lastTime == 0) {
+                fx = p.x;
+                fy = p.y;
+            } else {
+                final long tau = step ? HIGH_PASS : LOW_PASS;
+                final long dt = Math.max(0, time - lastTime);
+                final double alpha = (double) dt / (dt + tau);
+                fx += alpha * (p.x - fx);
+                fy += alpha * (p.y - fy);
+            }
+            lastTime = time;
+
+            if (step) steps++;
+
+            Assert.assertEquals(step, filter.isStep());
+            Assert.assertEquals(new Point((int) Math.round(fx), (int) Math.round(fy)), result);
+        }
+
+        Assert.assertTrue("No steps in session", steps > 0);
+    }
+
+    /**
+     * While the gaze rests the output must move less than the input.
+     */
+    @Test
+    public void smoothsSession() {
+        final OlssonFilter filter = new OlssonFilter(SIZE, WINDOW, LOW_PASS, HIGH_PASS, THRESHOLD);
+
+        double input = 0, output = 0;
+        Point lastInput = null, lastOutput = null;
+
+        for (final EyeTrackingEvent event : this.session) {
+            final Point in = event.getGazeCenter();
+            final Point out = filter.filterEvent(event).getGazeCenter();
+
+            if (lastInput != null) {
+                input += lastInput.distance(in);
+                output += lastOutput.distance(out);
+            }
+
+            lastInput = in;
+            lastOutput = out;
+        }
+
+        Assert.assertTrue(output <= input);
+    }
+
+    /**
+     * After a saccade the output must arrive at the new position quickly, a plain low 
+     * pass would still lag behind.
+     */
+    @Test
+    public void followsSaccades() {
+        final OlssonFilter filter = new OlssonFilter(SIZE, WINDOW, LOW_PASS, HIGH_PASS, THRESHOLD);
+        final Dimension screen = new Dimension(1280, 1024);
+
+        long time = 1000;
+        for (int i = 0; i < 30; i++, time += 16) {
+            filter.filterEvent(new EyeTrackingEventDummy(screen).simulate(new Point(100, 100)).time(time));
+        }
+
+        Point p = null;
+        for (int i = 0; i < 4; i++, time += 16) {
+            p = filter.filterEvent(new EyeTrackingEventDummy(screen).simulate(new Point(600, 300)).time(time)).getGazeCenter();
+        }
+
+        Assert.assertTrue("Output lags at " + p, p.distance(600, 300) < 5);
+
+        // And stays there
+        for (int i = 0; i < 30; i++, time += 16) {
+            p = filter.filterEvent(new EyeTrackingEventDummy(screen).simulate(new Point(600, 300)).time(time)).getGazeCenter();
+        }
+
+        Assert.assertFalse(filter.isStep());
+        Assert.assertEquals(new Point(600, 300), p);
+    }
+}
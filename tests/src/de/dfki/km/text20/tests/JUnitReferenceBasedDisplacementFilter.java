@@ -21,13 +21,17 @@
  */
 package de.dfki.km.text20.tests;
 
+import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.geom.Point2D;
+import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 import de.dfki.km.text20.services.evaluators.gaze.util.filter.displacement.ReferenceBasedDisplacementFilter;
+import de.dfki.km.text20.services.evaluators.gaze.util.filter.displacement.ReferenceBasedDisplacementFilter.Mode;
+import de.dfki.km.text20.services.trackingdevices.eyes.util.EyeTrackingEventDummy;
 
 /**
  * @author Ralf Biedert
@@ -117,4 +121,48 @@ public class JUnitReferenceBasedDisplacementFilter {
         Assert.assertEquals(res, new Point(20 - 2, -15 + 3));
     }
 
+    /**
+     * @throws InterruptedException
+     */
+    @Test
+    public void testField() throws InterruptedException {
+        final ReferenceBasedDisplacementFilter exact = new ReferenceBasedDisplacementFilter();
+        final ReferenceBasedDisplacementFilter field = new ReferenceBasedDisplacementFilter(Mode.FIELD);
+        final Dimension screen = new Dimension(1280, 1024);
+        final Random random = new Random(0);
+
+        // A 3x3 calibration
+        for (int i = 0; i < 9; i++) {
+            final Point p = new Point(140 + (i % 3) * 500, 112 + (i / 3) * 400);
+            final int dx = random.nextInt(41) - 20;
+            final int dy = random.nextInt(41) - 20;
+
+            exact.updateReferencePoint(p, dx, dy, i);
+            field.updateReferencePoint(p, dx, dy, i);
+        }
+
+        // The first sample is computed exactly and triggers the rasterization
+        Assert.assertFalse(field.isFieldCurrent());
+        Point p = new Point(640, 512);
+        Assert.assertEquals(exact.calcDisplacement(p), field.filterEvent(new EyeTrackingEventDummy(screen).simulate(p)).getGazeCenter());
+
+        for (int i = 0; i < 100 && !field.isFieldCurrent(); i++) {
+            Thread.sleep(50);
+        }
+
+        Assert.assertTrue(field.isFieldCurrent());
+
+        for (int i = 0; i < 10000; i++) {
+            p = new Point(random.nextInt(screen.width), random.nextInt(screen.height));
+
+            final Point a = exact.calcDisplacement(p);
+            final Point b = field.filterEvent(new EyeTrackingEventDummy(screen).simulate(p)).getGazeCenter();
+
+            Assert.assertTrue(p + ": " + a + " vs. " + b, a.distance(b) <= 2);
+        }
+
+        // Changes invalidate the field
+        field.updateReferencePoint(new Point(640, 512), 30, 30, 10);
+        Assert.assertFalse(field.isFieldCurrent());
+    }
 }
@@ -21,8 +21,11 @@
  */
 package de.dfki.km.text20.tests;
 
+import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 import java.io.Serializable;
 
 import org.junit.Assert;
@@ -182,4 +185,58 @@ public class JUnitRenderElementCharPositions {
         Assert.assertTrue(getPos("MMll", 51) == 1);
 
     }
+
+    /**
+     * @param metrics
+     * @param str
+     * @return The summed width of all chars, as the original implementation measured it.
+     */
+    private static int width(final FontMetrics metrics, final String str) {
+        int rval = 0;
+        for (final char c : str.toCharArray()) {
+            rval += metrics.charWidth(c);
+        }
+        return rval;
+    }
+
+    /**
+     * Compares the cached lookup against measuring every prefix.
+     */
+    @Test
+    public void testCachedPositions() {
+        final Font font = new Font(Font.SERIF, Font.PLAIN, 13);
+        final FontMetrics metrics = new BufferedImage(1, 1, BufferedImage.TYPE_3BYTE_BGR).getGraphics().getFontMetrics(font);
+        final TextualRenderElementCharPositions recp = new TextualRenderElementCharPositions(font);
+
+        final String text = "The quick brown fox jumps over the lazy dog, twice: WiMiWiMi lllIII.";
+        final TextualRenderElement element = createElement(text);
+
+        final int total = width(metrics, text);
+
+        for (int x = 0; x < 100; x++) {
+            final double px = x / 100.0;
+
+            int expected = -1;
+            for (int i = 0; i < text.length(); i++) {
+                if (px <= width(metrics, text.substring(0, i + 1)) / (double) total) {
+                    expected = i;
+                    break;
+                }
+            }
+
+            Assert.assertEquals("x " + x, expected, recp.getPositionOf(element, CoordinatesType.DOCUMENT_BASED, new Point(x, 50)));
+        }
+
+        // Position and coordinates must agree (narrow chars suffer from rounding)
+        final String word = "WiMi, lazy dog";
+        final TextualRenderElement wordElement = createElement(word);
+        for (int i = 0; i < word.length(); i++) {
+            final Rectangle r = recp.getCoordinatesOf(wordElement, CoordinatesType.DOCUMENT_BASED, i);
+            if (r.width < 3) continue;
+
+            Assert.assertEquals("char " + i, i, recp.getPositionOf(wordElement, CoordinatesType.DOCUMENT_BASED, new Point(r.x + r.width / 2, 50)));
+        }
+
+        Assert.assertEquals(-1, recp.getPositionOf(createElement(""), CoordinatesType.DOCUMENT_BASED, new Point(50, 50)));
+    }
 }
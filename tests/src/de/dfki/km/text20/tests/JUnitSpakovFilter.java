@@ -0,0 +1,163 @@
+/*
+ * JUnitSpakovFilter.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.dfki.km.text20.services.evaluators.gaze.util.filter.etufilters.SpakovFilter;
+import de.dfki.km.text20.services.evaluators.gaze.util.filter.etufilters.SpakovFilter.Mode;
+import de.dfki.km.text20.services.trackingdevices.eyes.EyeTrackingEvent;
+import de.dfki.km.text20.services.trackingdevices.eyes.util.EyeTrackingEventDummy;
+
+/**
+ * Compares the {@link Mode#FAST} Spakov filter against the original implementation.
+ * 
+ * @author Ralf Biedert
+ */
+public class JUnitSpakovFilter {
+    /** Synthetic gaze stream: noisy fixations, saccades and a few tracking gaps */
+    List<EyeTrackingEvent> stream = new ArrayList<EyeTrackingEvent>();
+
+    /**
+     * 
+     */
+    @Before
+    public void createStream() {
+        final Random random = new Random(0);
+        final Dimension screen = new Dimension(1280, 1024);
+
+        long time = 1000000;
+        while (this.stream.size() < 20000) {
+            final int fx = random.nextInt(screen.width);
+            final int fy = random.nextInt(screen.height);
+            final int n = 5 + random.nextInt(40);
+
+            for (int i = 0; i < n; i++) {
+                final Point p = new Point(fx + (int) (random.nextGaussian() * 10), fy + (int) (random.nextGaussian() * 10));
+                this.stream.add(new EyeTrackingEventDummy(screen).simulate(p).time(time));
+                time += 16 + random.nextInt(2);
+            }
+
+            if (random.nextInt(20) == 0) time += 500;
+        }
+    }
+
+    /**
+     * 
+     */
+    @Test
+    public void timeAndDistance() {
+        compare(5, 8, 12);
+        compare(10, 40, 30);
+    }
+
+    /**
+     * 
+     */
+    @Test
+    public void timeOnly() {
+        compare(5, 8, 0);
+        compare(20, 60, 0);
+    }
+
+    /**
+     * 
+     */
+    @Test
+    public void distanceOnly() {
+        compare(10, 0, 30);
+    }
+
+    /**
+     * 
+     */
+    @Test
+    public void unweighted() {
+        compare(1, 0, 0);
+        compare(8, 0, 0);
+    }
+
+    /**
+     * Runs both modes over the stream. The exact mode truncates every intermediate sum, 
+     * so each buffered sample may cost it up to a pixel. Against the same kernel evaluated 
+     * without any rounding the fast mode must only be off by its final truncation (plus a 
+     * bit of table resolution).
+     * 
+     * @param backlog
+     * @param timeFactor
+     * @param distanceFactor
+     */
+    private void compare(final int backlog, final double timeFactor,
+                         final double distanceFactor) {
+        final SpakovFilter exact = new SpakovFilter(backlog, timeFactor, distanceFactor);
+        final SpakovFilter fast = new SpakovFilter(backlog, timeFactor, distanceFactor, Mode.FAST);
+
+        assertEquals(Mode.EXACT, exact.getMode());
+        assertEquals(Mode.FAST, fast.getMode());
+
+        final double ft = timeFactor != 0 ? -1. / (2. * timeFactor * timeFactor) : 0.;
+        final double fd = distanceFactor != 0 ? -1. / (2. * distanceFactor * distanceFactor) : 0.;
+
+        double sum = 0;
+        int max = 0;
+
+        for (int n = 0; n < this.stream.size(); n++) {
+            final EyeTrackingEvent event = this.stream.get(n);
+            final Point a = exact.filterEvent(event).getGazeCenter();
+            final Point b = fast.filterEvent(event).getGazeCenter();
+
+            final int d = Math.max(Math.abs(a.x - b.x), Math.abs(a.y - b.y));
+
+            sum += d;
+            max = Math.max(max, d);
+
+            // Reference without rounding
+            final Point last = event.getGazeCenter();
+            double sx = last.x, sy = last.y, sw = 1.;
+            for (int i = Math.max(0, n - backlog + 1); i < n; i++) {
+                final EyeTrackingEvent e = this.stream.get(i);
+                final Point p = e.getGazeCenter();
+                final double w = Math.exp(ft * (event.getObservationTime() - e.getObservationTime()) + fd * p.distance(last));
+                sx += w * p.x;
+                sy += w * p.y;
+                sw += w;
+            }
+
+            assertTrue("Reference deviation", Math.abs(sx / sw - b.x) < 1.001 && Math.abs(sy / sw - b.y) < 1.001);
+        }
+
+        final double mean = sum / this.stream.size();
+
+        assertTrue("Max. deviation " + max + " for " + backlog + "/" + timeFactor + "/" + distanceFactor, max <= backlog);
+        assertTrue("Mean deviation " + mean + " for " + backlog + "/" + timeFactor + "/" + distanceFactor, mean < 1.);
+    }
+}
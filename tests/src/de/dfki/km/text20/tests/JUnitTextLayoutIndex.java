@@ -0,0 +1,186 @@
+/*
+ * JUnitTextLayoutIndex.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert, DFKI. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA 02110-1301  USA
+ *
+ */
+package de.dfki.km.text20.tests;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.dfki.km.text20.services.pseudorenderer.CoordinatesType;
+import de.dfki.km.text20.services.pseudorenderer.impl.PseudorendererImpl;
+import de.dfki.km.text20.services.pseudorenderer.renderelements.TextualRenderElement;
+import de.dfki.km.text20.services.pseudorenderer.util.layout.TextLayoutIndex;
+import de.dfki.km.text20.services.pseudorenderer.util.layout.TextLine;
+
+/**
+ * Compares the point lookups of the text layout index with a brute force scan over all 
+ * lines, on pages with many, partially overlapping texts.
+ * 
+ * @author Ralf Biedert
+ */
+public class JUnitTextLayoutIndex {
+
+    /** */
+    final Random random = new Random(42);
+
+    /** */
+    final PseudorendererImpl pseudorenderer = new PseudorendererImpl();
+
+    /** */
+    final TextLayoutIndex index = new TextLayoutIndex(this.pseudorenderer);
+
+    /** All indexed elements */
+    final List<TextualRenderElement> elements = new ArrayList<TextualRenderElement>();
+
+    /**
+     * Many texts at random positions, some of them moved or removed afterwards.
+     */
+    @Test
+    public void testLookupsMatchBruteForce() {
+        for (int text = 0; text < 200; text++) {
+            addText(text);
+        }
+
+        check(2000);
+
+        // Move some words into other texts and remove a few
+        for (int i = 0; i < 300; i++) {
+            final TextualRenderElement element = this.elements.get(this.random.nextInt(this.elements.size()));
+            final Rectangle r = element.getGeometry(CoordinatesType.DOCUMENT_BASED);
+            r.translate(this.random.nextInt(400) - 200, this.random.nextInt(400) - 200);
+            element.setGeometry(r, CoordinatesType.DOCUMENT_BASED);
+            element.setTextID(this.random.nextInt(200));
+            this.index.update(element);
+        }
+
+        for (int i = 0; i < 300; i++) {
+            final TextualRenderElement element = this.elements.remove(this.random.nextInt(this.elements.size()));
+            this.pseudorenderer.removeElement(element);
+            this.index.remove(element);
+        }
+
+        check(2000);
+    }
+
+    /**
+     * A single very high line must not hide the lines around it.
+     */
+    @Test
+    public void testHighLine() {
+        for (int text = 0; text < 50; text++) {
+            addText(text);
+        }
+
+        final TextualRenderElement element = this.pseudorenderer.createElement(TextualRenderElement.class);
+        element.setIdentifier("high");
+        element.setTextID(1000);
+        element.setGeometry(new Rectangle(500, 0, 30, 3000), CoordinatesType.DOCUMENT_BASED);
+        this.index.update(element);
+        this.elements.add(element);
+
+        check(2000);
+    }
+
+    /**
+     * Queries random points.
+     * 
+     * @param queries
+     */
+    private void check(final int queries) {
+        for (int i = 0; i < queries; i++) {
+            final Point p = new Point(this.random.nextInt(3500) - 250, this.random.nextInt(3500) - 250);
+
+            // All lines containing the point, and all their words covering it horizontally 
+            final List<TextLine> lines = new ArrayList<TextLine>();
+            final List<TextualRenderElement> words = new ArrayList<TextualRenderElement>();
+            int lowestTop = Integer.MIN_VALUE;
+
+            for (final TextualRenderElement element : this.elements) {
+                final TextLine line = this.index.getLineOf(element);
+                if (!line.getBounds().contains(p)) continue;
+
+                if (!lines.contains(line)) {
+                    lines.add(line);
+                    lowestTop = Math.max(lowestTop, line.getBounds().y);
+                }
+
+                final Rectangle r = element.getGeometry(CoordinatesType.DOCUMENT_BASED);
+                if (r.x <= p.x && p.x < r.x + r.width) {
+                    words.add(element);
+                }
+            }
+
+            final TextLine line = this.index.getLineAt(p, CoordinatesType.DOCUMENT_BASED);
+            if (lines.isEmpty()) {
+                Assert.assertNull(line);
+            } else {
+                Assert.assertTrue(lines.contains(line));
+                Assert.assertEquals(lowestTop, line.getBounds().y);
+            }
+
+            final TextualRenderElement element = this.index.getElementAt(p, CoordinatesType.DOCUMENT_BASED);
+            if (words.isEmpty()) {
+                Assert.assertNull(element);
+            } else {
+                Assert.assertTrue(words.contains(element));
+            }
+        }
+    }
+
+    /**
+     * Adds a block of lines with words of varying size side by side.
+     * 
+     * @param textID
+     */
+    private void addText(final int textID) {
+        final int left = this.random.nextInt(2500);
+        int y = this.random.nextInt(2500);
+
+        final int lines = 1 + this.random.nextInt(15);
+        for (int l = 0; l < lines; l++) {
+            final int height = 10 + this.random.nextInt(20);
+            int x = left;
+
+            final int words = 1 + this.random.nextInt(10);
+            for (int w = 0; w < words; w++) {
+                final int width = 5 + this.random.nextInt(60);
+                final int top = y + this.random.nextInt(3);
+
+                final TextualRenderElement element = this.pseudorenderer.createElement(TextualRenderElement.class);
+                element.setIdentifier("t" + textID + "." + l + "." + w);
+                element.setTextID(textID);
+                element.setGeometry(new Rectangle(x, top, width, height - 3), CoordinatesType.DOCUMENT_BASED);
+                this.index.update(element);
+                this.elements.add(element);
+
+                x += width + this.random.nextInt(10);
+            }
+
+            y += height + this.random.nextInt(5);
+        }
+    }
+}